@@ -0,0 +1,57 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import org.sqlite.SQLite.SQLite3Values;
+
+/**
+ * User defined SQL aggregate function whose state is a plain Java object.
+ * <pre>{@code
+ * new Aggregate<long[], Long>() {
+ *   public long[] init() {
+ *     return new long[1];
+ *   }
+ *   public long[] step(long[] sum, SQLite3Values args) {
+ *     sum[0] += args.getLong(0);
+ *     return sum;
+ *   }
+ *   public Long result(long[] sum) {
+ *     return sum[0];
+ *   }
+ * }
+ * }</pre>
+ * Unlike {@link AggregateStepCallback}, the state is not serialized into the <code>sqlite3_aggregate_context</code>:
+ * it is kept in a table keyed by the address of this context, and released by <code>xFinal</code>.
+ * A {@link RuntimeException} thrown by any method is reported as an SQL error.
+ * @param <S> state type
+ * @param <R> result type: <code>null</code>, String, Integer, Long, Double, ..., byte[] or {@link ZeroBlob}
+ * @see Conn#createAggregateFunction(String, int, int, Aggregate)
+ * @see WindowAggregate
+ */
+public interface Aggregate<S, R> {
+	/**
+	 * @return the initial state of a group
+	 */
+	S init();
+
+	/**
+	 * Adds a row to the group.
+	 * @param state current state
+	 * @param args function arguments
+	 * @return new state (may be <code>state</code> itself)
+	 */
+	S step(S state, SQLite3Values args);
+
+	/**
+	 * @param state current state (<code>init()</code> when the group is empty)
+	 * @return the value of the aggregate (the state must not be modified as this method may be invoked many times
+	 * by a window function)
+	 */
+	R result(S state);
+}
@@ -0,0 +1,132 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import com.sun.jna.Pointer;
+import org.sqlite.SQLite.SQLite3Context;
+import org.sqlite.SQLite.SQLite3Values;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Native callbacks of an {@link Aggregate} (or {@link WindowAggregate}).
+ * <p>
+ * One byte is allocated by <code>sqlite3_aggregate_context</code>: its address identifies the group
+ * and it is set once the group state has been initialized.
+ */
+final class AggregateFunction<S, R> {
+	private final Aggregate<S, R> aggregate;
+	// aggregate context address => state
+	private final Map<Long, S> states = new HashMap<>();
+
+	final AggregateStepCallback xStep = new AggregateStepCallback() {
+		@Override
+		protected int numberOfBytes() {
+			return 1;
+		}
+
+		@Override
+		protected void step(SQLite3Context pCtx, Pointer aggrCtx, SQLite3Values args) {
+			try {
+				final S state;
+				if (aggrCtx.getByte(0) == 0) {
+					state = aggregate.init();
+					aggrCtx.setByte(0, (byte) 1);
+				} else {
+					state = states.get(Pointer.nativeValue(aggrCtx));
+				}
+				states.put(Pointer.nativeValue(aggrCtx), aggregate.step(state, args));
+			} catch (RuntimeException e) {
+				pCtx.setResultError(String.valueOf(e.getMessage()));
+			}
+		}
+	};
+	final AggregateFinalCallback xFinal = new AggregateFinalCallback() {
+		@Override
+		protected void finalStep(SQLite3Context pCtx, Pointer aggrCtx) {
+			try {
+				final S state;
+				if (aggrCtx == null) { // no row
+					state = aggregate.init();
+				} else {
+					state = states.remove(Pointer.nativeValue(aggrCtx));
+				}
+				setResult(pCtx, aggregate.result(state));
+			} catch (RuntimeException e) {
+				pCtx.setResultError(String.valueOf(e.getMessage()));
+			}
+		}
+	};
+	// window functions only
+	final AggregateFinalCallback xValue = new AggregateFinalCallback() {
+		@Override
+		protected void finalStep(SQLite3Context pCtx, Pointer aggrCtx) {
+			try {
+				final S state;
+				if (aggrCtx == null) {
+					state = aggregate.init();
+				} else {
+					state = states.get(Pointer.nativeValue(aggrCtx));
+				}
+				setResult(pCtx, aggregate.result(state));
+			} catch (RuntimeException e) {
+				pCtx.setResultError(String.valueOf(e.getMessage()));
+			}
+		}
+	};
+	final AggregateStepCallback xInverse = new AggregateStepCallback() {
+		@Override
+		protected int numberOfBytes() {
+			return 1;
+		}
+
+		@Override
+		protected void step(SQLite3Context pCtx, Pointer aggrCtx, SQLite3Values args) {
+			try {
+				final Long key = Pointer.nativeValue(aggrCtx);
+				states.put(key, ((WindowAggregate<S, R>) aggregate).inverse(states.get(key), args));
+			} catch (RuntimeException e) {
+				pCtx.setResultError(String.valueOf(e.getMessage()));
+			}
+		}
+	};
+
+	AggregateFunction(Aggregate<S, R> aggregate) {
+		this.aggregate = aggregate;
+	}
+
+	private static void setResult(SQLite3Context pCtx, Object value) {
+		if (value == null) {
+			pCtx.setResultNull();
+		} else if (value instanceof String) {
+			pCtx.setResultText((String) value);
+		} else if (value instanceof Integer) {
+			pCtx.setResultInt((Integer) value);
+		} else if (value instanceof Byte) {
+			pCtx.setResultInt((Byte) value);
+		} else if (value instanceof Short) {
+			pCtx.setResultInt((Short) value);
+		} else if (value instanceof Boolean) {
+			pCtx.setResultInt((Boolean) value ? 1 : 0);
+		} else if (value instanceof Long) {
+			pCtx.setResultLong((Long) value);
+		} else if (value instanceof Double) {
+			pCtx.setResultDouble((Double) value);
+		} else if (value instanceof Float) {
+			pCtx.setResultDouble((Float) value);
+		} else if (value instanceof byte[]) {
+			pCtx.setResultBlob((byte[]) value);
+		} else if (value instanceof ZeroBlob) {
+			pCtx.setResultZeroBlob((ZeroBlob) value);
+		} else {
+			pCtx.setResultError(String.format("unsupported result type: %s", value.getClass().getSimpleName()));
+		}
+	}
+}
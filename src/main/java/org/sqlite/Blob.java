@@ -11,6 +11,7 @@ package org.sqlite;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 
 import static org.sqlite.SQLite.*;
@@ -54,13 +55,36 @@ public class Blob implements AutoCloseable {
 		if (b == null) {
 			throw new NullPointerException();
 		}
+		final int n = read(b, readOffset);
+		readOffset += n;
+		return n;
+	}
+
+	/**
+	 * Reads <code>b.remaining()</code> bytes at <code>offset</code> into <code>b</code> (its position is not changed).
+	 * Heap buffers are filled through a pooled direct buffer.
+	 */
+	int read(ByteBuffer b, int offset) throws SQLiteException {
 		checkOpen();
 		final int n = b.remaining();
-		final int res = sqlite3_blob_read(pBlob, b, n, readOffset);
-		if (res != SQLITE_OK) {
-			throw new SQLiteException(c, "error while reading blob", res);
+		if (b.isDirect()) {
+			check(sqlite3_blob_read(pBlob, b.slice(), n, offset), "error while reading blob");
+			return n;
+		}
+		final ByteBuffer buffer = DirectBuffers.acquire();
+		try {
+			final ByteBuffer dst = b.duplicate();
+			for (int done = 0; done < n; ) {
+				final int len = Math.min(n - done, buffer.capacity());
+				((Buffer) buffer).clear();
+				check(sqlite3_blob_read(pBlob, buffer, len, offset + done), "error while reading blob");
+				((Buffer) buffer).limit(len);
+				dst.put(buffer);
+				done += len;
+			}
+		} finally {
+			DirectBuffers.release(buffer);
 		}
-		readOffset += n;
 		return n;
 	}
 
@@ -74,16 +98,47 @@ public class Blob implements AutoCloseable {
 		if (b == null) {
 			throw new NullPointerException();
 		}
+		final int n = write(b, writeOffset);
+		writeOffset += n;
+		return n;
+	}
+
+	/**
+	 * Writes <code>b.remaining()</code> bytes of <code>b</code> at <code>offset</code> (its position is not changed).
+	 * Heap buffers are written through a pooled direct buffer.
+	 */
+	int write(ByteBuffer b, int offset) throws SQLiteException {
 		checkOpen();
 		final int n = b.remaining();
-		final int res = sqlite3_blob_write(pBlob, b, n, writeOffset);
-		if (res != SQLITE_OK) {
-			throw new SQLiteException(c, "error while writing blob", res);
+		if (b.isDirect()) {
+			check(sqlite3_blob_write(pBlob, b.slice(), n, offset), "error while writing blob");
+			return n;
+		}
+		final ByteBuffer buffer = DirectBuffers.acquire();
+		try {
+			final ByteBuffer src = b.duplicate();
+			for (int done = 0; done < n; ) {
+				final int len = Math.min(n - done, buffer.capacity());
+				((Buffer) buffer).clear();
+				((Buffer) src).limit(src.position() + len);
+				buffer.put(src);
+				((Buffer) buffer).flip();
+				((Buffer) src).limit(b.limit());
+				check(sqlite3_blob_write(pBlob, buffer, len, offset + done), "error while writing blob");
+				done += len;
+			}
+		} finally {
+			DirectBuffers.release(buffer);
 		}
-		writeOffset += n;
 		return n;
 	}
 
+	private void check(int res, String msg) throws SQLiteException {
+		if (res != SQLITE_OK) {
+			throw new SQLiteException(c, msg, res);
+		}
+	}
+
 	/**
 	 * Move this BLOB handle to a new row
 	 * @param iRow new row id
@@ -146,6 +201,13 @@ public class Blob implements AutoCloseable {
 		}
 	}
 
+	/**
+	 * @return a channel positioned at the start of this BLOB (closing the channel closes this BLOB)
+	 */
+	public BlobChannel getChannel() {
+		return new BlobChannel(this);
+	}
+
 	public OutputStream getOutputStream() {
 		return new BlobOutputStream();
 	}
@@ -174,18 +236,18 @@ public class Blob implements AutoCloseable {
 
 	private class BlobInputStream extends InputStream {
 		private int mark;
+		private final byte[] one = new byte[1];
 
 		@Override
 		public int read() throws IOException {
 			if (isEOF()) {
 				return -1;
 			}
-			final byte[] b = new byte[1];
-			final int i = read(b);
-			if (i < 0) {
-				return i;
+			final int i = read(one);
+			if (i <= 0) {
+				return -1;
 			}
-			return b[0];
+			return one[0] & 0xFF;
 		}
 
 		@Override
@@ -270,9 +332,12 @@ public class Blob implements AutoCloseable {
 	}
 
 	private class BlobOutputStream extends OutputStream {
+		private final byte[] one = new byte[1];
+
 		@Override
 		public void write(int b) throws IOException {
-			write(new byte[]{(byte) b});
+			one[0] = (byte) b;
+			write(one);
 		}
 
 		@Override
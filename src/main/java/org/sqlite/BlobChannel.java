@@ -0,0 +1,237 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Channel over an open BLOB (see {@link Blob#getChannel()}).
+ * <p>
+ * Direct buffers are read and written in place by <code>sqlite3_blob_read/write</code>; heap buffers
+ * and {@link #transferTo}/{@link #transferFrom} go through pooled direct buffers, so that file and socket
+ * channels do not need any intermediate copy.
+ * As with any BLOB handle, the size is fixed: writing past the end or truncating fails.
+ */
+public class BlobChannel implements SeekableByteChannel, ScatteringByteChannel, GatheringByteChannel {
+	private final Blob blob;
+	private long position;
+
+	BlobChannel(Blob blob) {
+		this.blob = blob;
+	}
+
+	@Override
+	public int read(ByteBuffer dst) throws IOException {
+		final long size = size();
+		if (position >= size) {
+			return -1;
+		}
+		final int n = (int) Math.min(dst.remaining(), size - position);
+		if (n == 0) {
+			return 0;
+		}
+		final int limit = dst.limit();
+		((Buffer) dst).limit(dst.position() + n);
+		try {
+			blob.read(dst, (int) position);
+		} catch (SQLiteException e) {
+			throw new IOException(e);
+		} finally {
+			((Buffer) dst).limit(limit);
+		}
+		((Buffer) dst).position(dst.position() + n);
+		position += n;
+		return n;
+	}
+
+	@Override
+	public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+		long count = 0;
+		for (int i = offset; i < offset + length; i++) {
+			if (!dsts[i].hasRemaining()) {
+				continue;
+			}
+			final int n = read(dsts[i]);
+			if (n < 0) {
+				return count == 0 ? -1 : count;
+			}
+			count += n;
+		}
+		return count;
+	}
+
+	@Override
+	public long read(ByteBuffer[] dsts) throws IOException {
+		return read(dsts, 0, dsts.length);
+	}
+
+	@Override
+	public int write(ByteBuffer src) throws IOException {
+		final int n = src.remaining();
+		if (position + n > size()) {
+			throw new IOException(String.format("cannot write %d bytes at %d: BLOB size is %d", n, position, size()));
+		}
+		try {
+			blob.write(src, (int) position);
+		} catch (SQLiteException e) {
+			throw new IOException(e);
+		}
+		((Buffer) src).position(src.position() + n);
+		position += n;
+		return n;
+	}
+
+	@Override
+	public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+		long count = 0;
+		for (int i = offset; i < offset + length; i++) {
+			count += write(srcs[i]);
+		}
+		return count;
+	}
+
+	@Override
+	public long write(ByteBuffer[] srcs) throws IOException {
+		return write(srcs, 0, srcs.length);
+	}
+
+	@Override
+	public long position() throws IOException {
+		checkOpen();
+		return position;
+	}
+
+	@Override
+	public BlobChannel position(long newPosition) throws IOException {
+		if (newPosition < 0) {
+			throw new IllegalArgumentException(String.format("invalid position: %d < 0", newPosition));
+		}
+		checkOpen();
+		position = newPosition;
+		return this;
+	}
+
+	@Override
+	public long size() throws IOException {
+		try {
+			return blob.getBytes();
+		} catch (SQLiteException e) {
+			throw new ClosedChannelException();
+		}
+	}
+
+	/**
+	 * A BLOB cannot be resized.
+	 * @throws IOException if <code>size</code> is less than the BLOB size
+	 */
+	@Override
+	public BlobChannel truncate(long size) throws IOException {
+		if (size < 0) {
+			throw new IllegalArgumentException(String.format("invalid size: %d < 0", size));
+		} else if (size < size()) {
+			throw new IOException("BLOB cannot be resized");
+		}
+		if (position > size) {
+			position = size;
+		}
+		return this;
+	}
+
+	/**
+	 * Transfers bytes from this BLOB to <code>target</code> (this channel position is not modified).
+	 * @return number of bytes transferred (less than <code>count</code> when a non-blocking <code>target</code> is full)
+	 * @see java.nio.channels.FileChannel#transferTo(long, long, WritableByteChannel)
+	 */
+	public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+		if (position < 0 || count < 0) {
+			throw new IllegalArgumentException();
+		}
+		final long end = Math.min(size(), position + count);
+		final ByteBuffer buffer = DirectBuffers.acquire();
+		try {
+			long offset = position;
+			while (offset < end) {
+				((Buffer) buffer).clear().limit((int) Math.min(buffer.capacity(), end - offset));
+				blob.read(buffer, (int) offset);
+				offset += target.write(buffer);
+				if (buffer.hasRemaining()) { // non-blocking target
+					break;
+				}
+			}
+			return Math.max(0, offset - position);
+		} catch (SQLiteException e) {
+			throw new IOException(e);
+		} finally {
+			DirectBuffers.release(buffer);
+		}
+	}
+
+	/**
+	 * Transfers bytes from <code>src</code> into this BLOB (this channel position is not modified).
+	 * @return number of bytes transferred (less than <code>count</code> when <code>src</code> reaches its end
+	 * or when a non-blocking <code>src</code> has no byte available)
+	 * @see java.nio.channels.FileChannel#transferFrom(ReadableByteChannel, long, long)
+	 */
+	public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+		if (position < 0 || count < 0) {
+			throw new IllegalArgumentException();
+		}
+		final long end = Math.min(size(), position + count);
+		final ByteBuffer buffer = DirectBuffers.acquire();
+		try {
+			long offset = position;
+			while (offset < end) {
+				((Buffer) buffer).clear().limit((int) Math.min(buffer.capacity(), end - offset));
+				final int n = src.read(buffer);
+				if (n <= 0) { // end of stream or non-blocking source
+					break;
+				}
+				((Buffer) buffer).flip();
+				blob.write(buffer, (int) offset);
+				offset += n;
+			}
+			return Math.max(0, offset - position);
+		} catch (SQLiteException e) {
+			throw new IOException(e);
+		} finally {
+			DirectBuffers.release(buffer);
+		}
+	}
+
+	@Override
+	public boolean isOpen() {
+		return !blob.isClosed();
+	}
+
+	/**
+	 * Closes the BLOB.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			blob.close();
+		} catch (SQLiteException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private void checkOpen() throws ClosedChannelException {
+		if (blob.isClosed()) {
+			throw new ClosedChannelException();
+		}
+	}
+}
@@ -17,7 +17,10 @@ public interface BusyHandler extends Callback {
 	 * @return <code>true</code> to try again, <code>false</code> to abort.
 	 */
 	default boolean callback(Pointer pArg, int count) {
-		return busy(count);
+		final Object event = Jfr.begin(Jfr.BUSY_WAIT);
+		final boolean retry = busy(count);
+		Jfr.busyWait(event, count, retry);
+		return retry;
 	}
 
 	/**
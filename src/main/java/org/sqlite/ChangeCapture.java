@@ -0,0 +1,251 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import com.sun.jna.Callback;
+import com.sun.jna.Pointer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Change data capture built on the update, commit and rollback hooks.
+ * <p>
+ * Row changes (action, table, rowid) are buffered per transaction in primitive arrays, with table names interned
+ * (a native name is converted only once and then matched by value).
+ * When the transaction commits, the batch is published asynchronously to all listeners (in commit order);
+ * when it is rolled back, the batch is dropped.
+ * Savepoints are tracked from the executed SQL (a trace callback chained with the one registered by
+ * {@link Conn#trace(int, TraceV2Callback)}, one upcall per statement): changes undone by <code>ROLLBACK TO</code> are dropped,
+ * like those of a statement which fails without rolling back the transaction (ABORT conflict resolution).
+ * <p>
+ * Limitations are those of the update hook (no WITHOUT ROWID tables, no truncate optimization...).
+ * A batch is published when the commit hook is invoked: a COMMIT which subsequently fails is not retracted.
+ * @see UpdateHook
+ * @see CommitHook
+ * @see RollbackHook
+ */
+public final class ChangeCapture implements AutoCloseable {
+	/**
+	 * Committed changes listener.
+	 */
+	@FunctionalInterface
+	public interface Listener {
+		/**
+		 * Invoked on the publisher thread, never concurrently for the same connection.
+		 * @param changes committed changes
+		 */
+		void onCommit(Changes changes);
+	}
+
+	// Update hook without String conversion
+	interface RawUpdateHook extends Callback {
+		void callback(Pointer pArg, int actionCode, Pointer dbName, Pointer tblName, long rowId);
+	}
+
+	private final Conn c;
+	private final ExecutorService publisher;
+	private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+	// retained to prevent the native callbacks from being garbage collected
+	private final RawUpdateHook updateHook = this::update;
+	private final CommitHook commitHook = this::commit;
+	private final RollbackHook rollbackHook = this::rollback;
+	private final Savepoints savepoints = new Savepoints(() -> this.size, this::truncate);
+
+	// current transaction (accessed only by the thread using the connection)
+	private int[] actions = new int[16];
+	private String[] tables = new String[16];
+	private long[] rowIds = new long[16];
+	private int size;
+	// interned table names and their UTF-8 encoding (bounded)
+	private static final int MAX_NAMES = 64;
+	private byte[][] nameBytes = new byte[4][];
+	private String[] names = new String[4];
+	private int nameCount;
+
+	private ChangeCapture(Conn c) {
+		this.c = c;
+		publisher = Executors.newSingleThreadExecutor(r -> {
+			final Thread t = new Thread(r, "sqlite-cdc");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	 * Install the update, commit and rollback hooks on the specified connection and track savepoints.
+	 * The capture already installed on the connection, if any, is closed.
+	 * @param c connection
+	 * @return capture to which listeners are added
+	 */
+	public static ChangeCapture install(Conn c) throws ConnException {
+		c.closeCapture();
+		final ChangeCapture cc = new ChangeCapture(c);
+		c.updateHook(cc.updateHook);
+		c.commitHook(cc.commitHook);
+		c.rollbackHook(cc.rollbackHook);
+		c.savepoints(cc.savepoints);
+		c.capture = cc;
+		return cc;
+	}
+
+	public void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Uninstall the hooks (if the connection is still open) and stop the publisher thread once pending batches are published.
+	 */
+	@Override
+	public void close() throws ConnException {
+		try {
+			if (!c.isClosed() && c.capture == this) {
+				c.updateHook((UpdateHook) null);
+				c.commitHook(null);
+				c.rollbackHook(null);
+				c.savepoints(null);
+				c.capture = null;
+			}
+		} finally {
+			publisher.shutdown();
+		}
+	}
+
+	private void update(Pointer pArg, int actionCode, Pointer dbName, Pointer tblName, long rowId) {
+		if (size == rowIds.length) {
+			final int capacity = size << 1;
+			actions = Arrays.copyOf(actions, capacity);
+			tables = Arrays.copyOf(tables, capacity);
+			rowIds = Arrays.copyOf(rowIds, capacity);
+		}
+		actions[size] = actionCode;
+		tables[size] = tableName(tblName);
+		rowIds[size] = rowId;
+		size++;
+	}
+
+	// matched by value: the native string may be freed or reused by a schema change
+	private String tableName(Pointer tblName) {
+		for (int i = 0; i < nameCount; i++) {
+			if (equals(tblName, nameBytes[i])) {
+				return names[i];
+			}
+		}
+		final String name = tblName.getString(0L, SQLite.UTF_8_ECONDING);
+		if (nameCount == MAX_NAMES) {
+			Arrays.fill(names, null);
+			Arrays.fill(nameBytes, null);
+			nameCount = 0;
+		} else if (nameCount == names.length) {
+			nameBytes = Arrays.copyOf(nameBytes, nameCount << 1);
+			names = Arrays.copyOf(names, nameCount << 1);
+		}
+		nameBytes[nameCount] = name.getBytes(StandardCharsets.UTF_8);
+		names[nameCount++] = name;
+		return name;
+	}
+
+	private static boolean equals(Pointer str, byte[] bytes) {
+		for (int i = 0; i < bytes.length; i++) {
+			if (str.getByte(i) != bytes[i]) {
+				return false;
+			}
+		}
+		return str.getByte(bytes.length) == 0;
+	}
+
+	private boolean commit() {
+		if (size > 0 && !listeners.isEmpty()) {
+			final Changes changes = new Changes(Arrays.copyOf(actions, size), Arrays.copyOf(tables, size), Arrays.copyOf(rowIds, size));
+			try {
+				publisher.execute(() -> publish(changes));
+			} catch (RuntimeException e) { // rejected after close
+				SQLite.sqlite3_log(-1, "change capture closed: " + e);
+			}
+		}
+		clear();
+		return true;
+	}
+
+	private void rollback() {
+		clear();
+	}
+
+	private void clear() {
+		truncate(0);
+		savepoints.clear();
+	}
+
+	private void truncate(int size) {
+		Arrays.fill(tables, size, this.size, null);
+		this.size = size;
+	}
+
+	private void publish(Changes changes) {
+		for (Listener listener : listeners) {
+			try {
+				listener.onCommit(changes);
+			} catch (RuntimeException e) {
+				SQLite.sqlite3_log(-1, "error in change listener: " + e);
+			}
+		}
+	}
+
+	/**
+	 * Immutable batch of row changes committed by one transaction.
+	 */
+	public static final class Changes {
+		private final int[] actions;
+		private final String[] tables;
+		private final long[] rowIds;
+
+		Changes(int[] actions, String[] tables, long[] rowIds) {
+			this.actions = actions;
+			this.tables = tables;
+			this.rowIds = rowIds;
+		}
+
+		public int size() {
+			return actions.length;
+		}
+		/**
+		 * @param i change index
+		 * @return {@link ActionCodes#SQLITE_INSERT}, {@link ActionCodes#SQLITE_UPDATE} or {@link ActionCodes#SQLITE_DELETE}
+		 */
+		public int getAction(int i) {
+			return actions[i];
+		}
+		public String getTable(int i) {
+			return tables[i];
+		}
+		public long getRowId(int i) {
+			return rowIds[i];
+		}
+
+		@Override
+		public String toString() {
+			final StringBuilder sb = new StringBuilder("[");
+			for (int i = 0; i < actions.length; i++) {
+				if (i > 0) {
+					sb.append(", ");
+				}
+				sb.append(actions[i] == ActionCodes.SQLITE_INSERT ? "INSERT" : actions[i] == ActionCodes.SQLITE_UPDATE ? "UPDATE" : "DELETE")
+						.append(' ').append(tables[i]).append(' ').append(rowIds[i]);
+			}
+			return sb.append(']').toString();
+		}
+	}
+}
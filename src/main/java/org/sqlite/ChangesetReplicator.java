@@ -0,0 +1,267 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Incremental replication based on session changesets.
+ * <p>
+ * The {@link Primary} records changes with a {@link Session} and publishes one changeset per call to {@link Primary#publish()}
+ * (typically after each commit). The {@link Follower} applies received changesets in batches, one transaction per batch.
+ * The cost is proportional to the change volume, not to the database size.
+ * Schema changes are not replicated: the follower must start from a copy of the primary (see {@link Backup}).
+ */
+public final class ChangesetReplicator {
+	private ChangesetReplicator() {
+	}
+
+	/**
+	 * Pluggable changeset transport.
+	 */
+	public interface Transport extends Closeable {
+		/**
+		 * @param changeset changeset to publish
+		 */
+		void send(byte[] changeset) throws IOException;
+		/**
+		 * @return next changeset (blocking) or <code>null</code> at end of stream
+		 */
+		byte[] receive() throws IOException;
+		/**
+		 * @return <code>true</code> if {@link #receive()} would not block
+		 */
+		boolean ready() throws IOException;
+	}
+
+	/**
+	 * Length-prefixed frames over a stream (file, pipe, socket...).
+	 * <p>
+	 * After an I/O error, the stream may be left in the middle of a frame: the transport is closed
+	 * and any subsequent call fails.
+	 */
+	public static final class StreamTransport implements Transport {
+		private final DataInputStream in;
+		private final DataOutputStream out;
+		private IOException failure;
+
+		/**
+		 * @param in source (may be null on the primary side)
+		 * @param out destination (may be null on the follower side)
+		 */
+		public StreamTransport(InputStream in, OutputStream out) {
+			this.in = in == null ? null : new DataInputStream(new BufferedInputStream(in));
+			this.out = out == null ? null : new DataOutputStream(new BufferedOutputStream(out));
+		}
+
+		@Override
+		public void send(byte[] changeset) throws IOException {
+			checkUsable();
+			try {
+				out.writeInt(changeset.length);
+				out.write(changeset);
+				out.flush();
+			} catch (IOException e) {
+				throw fail(e);
+			}
+		}
+
+		@Override
+		public byte[] receive() throws IOException {
+			checkUsable();
+			final int length;
+			try {
+				length = in.readInt();
+			} catch (EOFException e) {
+				return null;
+			} catch (IOException e) {
+				throw fail(e);
+			}
+			final byte[] changeset = new byte[length];
+			try {
+				in.readFully(changeset);
+			} catch (IOException e) { // truncated frame included
+				throw fail(e);
+			}
+			return changeset;
+		}
+
+		@Override
+		public boolean ready() throws IOException {
+			checkUsable();
+			return in.available() > 0;
+		}
+
+		private void checkUsable() throws IOException {
+			if (failure != null) {
+				throw new IOException("transport unusable after a previous failure", failure);
+			}
+		}
+
+		private IOException fail(IOException e) {
+			failure = e;
+			try {
+				close();
+			} catch (IOException suppressed) {
+				e.addSuppressed(suppressed);
+			}
+			return e;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				if (out != null) {
+					out.close();
+				}
+			} finally {
+				if (in != null) {
+					in.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Changes capture on the primary database.
+	 */
+	public static final class Primary implements AutoCloseable {
+		private final Conn c;
+		private final String dbName;
+		private final Transport transport;
+		private Session session;
+
+		/**
+		 * Start recording changes made to all tables (with a PRIMARY KEY) of the specified database.
+		 * @param c primary connection
+		 * @param dbName "main" or the name of an attached database
+		 * @param transport destination
+		 */
+		public Primary(Conn c, String dbName, Transport transport) throws ConnException {
+			this.c = c;
+			this.dbName = dbName;
+			this.transport = transport;
+			session = open();
+		}
+
+		private Session open() throws ConnException {
+			final Session s = c.openSession(dbName);
+			try {
+				s.attach(null);
+			} catch (ConnException e) {
+				s.close();
+				throw e;
+			}
+			return s;
+		}
+
+		/**
+		 * Send the changes recorded since the previous call and start a new session.
+		 * Must be called outside of any transaction (after commit): uncommitted changes would be published.
+		 * Publishing is not driven by the commit hook because the commit is not durable yet when the hook is invoked
+		 * and the hook must not use the connection.
+		 * If the transport fails, the session is kept and the changes are sent again by the next call
+		 * (unless the transport cannot be reused, like a {@link StreamTransport}).
+		 * @return changeset size in bytes (0 if nothing changed)
+		 * @throws ConnException if a transaction is active
+		 */
+		public int publish() throws ConnException, IOException {
+			if (!c.getAutoCommit()) {
+				throw new ConnException(c, "cannot publish uncommitted changes", ErrCodes.WRAPPER_SPECIFIC);
+			}
+			if (session.isEmpty()) {
+				return 0;
+			}
+			final byte[] changeset = session.changeset();
+			if (changeset.length > 0) {
+				transport.send(changeset);
+			}
+			session.close();
+			session = open();
+			return changeset.length;
+		}
+
+		/**
+		 * Stop recording (the transport is not closed).
+		 */
+		@Override
+		public void close() {
+			session.close();
+		}
+	}
+
+	/**
+	 * Changes application on a follower database.
+	 */
+	public static final class Follower {
+		private final Conn c;
+		private final Transport transport;
+		private final ConflictHandler handler;
+
+		/**
+		 * @param c follower connection (in auto-commit mode)
+		 * @param transport source
+		 * @param handler conflict policy (for example {@link ConflictHandler#REPLACE})
+		 */
+		public Follower(Conn c, Transport transport, ConflictHandler handler) {
+			this.c = c;
+			this.transport = transport;
+			this.handler = handler;
+		}
+
+		/**
+		 * Wait for the next changeset then apply it, together with the changesets already available, in a single transaction.
+		 * @param maxBatch maximum number of changesets per transaction
+		 * @return number of changesets applied or -1 at end of stream
+		 */
+		public int apply(int maxBatch) throws ConnException, IOException {
+			byte[] changeset = transport.receive();
+			if (changeset == null) {
+				return -1;
+			}
+			int n = 0;
+			c.fastExec("BEGIN");
+			try {
+				do {
+					c.applyChangeset(changeset, handler);
+					n++;
+				} while (n < maxBatch && transport.ready() && (changeset = transport.receive()) != null);
+				c.fastExec("COMMIT");
+			} catch (ConnException | IOException | RuntimeException e) {
+				if (!c.getAutoCommit()) {
+					c.fastExec("ROLLBACK");
+				}
+				throw e;
+			}
+			return n;
+		}
+
+		/**
+		 * Apply changesets until end of stream.
+		 * @param maxBatch maximum number of changesets per transaction
+		 * @return total number of changesets applied
+		 */
+		public long run(int maxBatch) throws ConnException, IOException {
+			long total = 0L;
+			int n;
+			while ((n = apply(maxBatch)) >= 0) {
+				total += n;
+			}
+			return total;
+		}
+	}
+}
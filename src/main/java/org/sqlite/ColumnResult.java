@@ -0,0 +1,80 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import static org.sqlite.SQLite.SQLITE_TRANSIENT;
+import static org.sqlite.SQLite.sqlite3_result_blob;
+import static org.sqlite.SQLite.sqlite3_result_double;
+import static org.sqlite.SQLite.sqlite3_result_int;
+import static org.sqlite.SQLite.sqlite3_result_int64;
+import static org.sqlite.SQLite.sqlite3_result_null;
+import static org.sqlite.SQLite.sqlite3_result_text;
+
+/**
+ * Value of a virtual table column, reused by all invocations: unlike {@link SQLite.SQLite3Context},
+ * nothing is allocated to set a numeric value.
+ * Only valid during the callback it is given to.
+ * @see VirtualCursor#column(int, ColumnResult)
+ */
+public final class ColumnResult {
+	private long pCtx;
+
+	ColumnResult() {
+	}
+
+	ColumnResult moveTo(long pCtx) {
+		this.pCtx = pCtx;
+		return this;
+	}
+
+	/**
+	 * @see <a href="http://sqlite.org/c3ref/result_blob.html">sqlite3_result_null</a>
+	 */
+	public void setNull() {
+		sqlite3_result_null(pCtx);
+	}
+	/**
+	 * @see <a href="http://sqlite.org/c3ref/result_blob.html">sqlite3_result_int</a>
+	 */
+	public void setInt(int value) {
+		sqlite3_result_int(pCtx, value);
+	}
+	/**
+	 * @see <a href="http://sqlite.org/c3ref/result_blob.html">sqlite3_result_int64</a>
+	 */
+	public void setLong(long value) {
+		sqlite3_result_int64(pCtx, value);
+	}
+	/**
+	 * @see <a href="http://sqlite.org/c3ref/result_blob.html">sqlite3_result_double</a>
+	 */
+	public void setDouble(double value) {
+		sqlite3_result_double(pCtx, value);
+	}
+	/**
+	 * @see <a href="http://sqlite.org/c3ref/result_blob.html">sqlite3_result_text</a>
+	 */
+	public void setText(String value) {
+		if (value == null) {
+			setNull();
+		} else {
+			sqlite3_result_text(pCtx, value, -1, SQLITE_TRANSIENT);
+		}
+	}
+	/**
+	 * @see <a href="http://sqlite.org/c3ref/result_blob.html">sqlite3_result_blob</a>
+	 */
+	public void setBlob(byte[] value) {
+		if (value == null) {
+			setNull();
+		} else {
+			sqlite3_result_blob(pCtx, value, value.length, SQLITE_TRANSIENT);
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package org.sqlite;
+
+import com.sun.jna.Callback;
+import com.sun.jna.Pointer;
+
+/**
+ * Commit notification callback.
+ * @see Conn#commitHook(CommitHook)
+ * @see <a href="http://sqlite.org/c3ref/commit_hook.html">sqlite3_commit_hook</a>
+ */
+@FunctionalInterface
+public interface CommitHook extends Callback {
+	/**
+	 * @param pArg <code>null</code>.
+	 * @return non-zero to convert the COMMIT into a ROLLBACK.
+	 */
+	default int callback(Pointer pArg) {
+		return commit() ? 0 : 1;
+	}
+
+	/**
+	 * Invoked whenever a transaction is about to be committed.
+	 * The callback must not modify the database connection.
+	 * @return <code>false</code> to convert the COMMIT into a ROLLBACK.
+	 */
+	boolean commit();
+}
@@ -0,0 +1,66 @@
+package org.sqlite;
+
+import com.sun.jna.Callback;
+import com.sun.jna.Pointer;
+
+/**
+ * Conflict handler used when applying a changeset.
+ * @see Conn#applyChangeset(byte[], ConflictHandler)
+ * @see <a href="https://sqlite.org/session/sqlite3changeset_apply.html">sqlite3changeset_apply</a>
+ */
+@FunctionalInterface
+public interface ConflictHandler extends Callback {
+	/** Conflict types */
+	int SQLITE_CHANGESET_DATA = 1, SQLITE_CHANGESET_NOTFOUND = 2, SQLITE_CHANGESET_CONFLICT = 3,
+			SQLITE_CHANGESET_CONSTRAINT = 4, SQLITE_CHANGESET_FOREIGN_KEY = 5;
+	/** Conflict resolutions */
+	int SQLITE_CHANGESET_OMIT = 0, SQLITE_CHANGESET_REPLACE = 1, SQLITE_CHANGESET_ABORT = 2;
+
+	/**
+	 * Replica policy: the incoming change wins, missing rows are skipped, constraint violations abort.
+	 * <p>
+	 * An UPDATE or DELETE of a row that does not exist on the replica ({@link #SQLITE_CHANGESET_NOTFOUND})
+	 * is silently omitted: the divergence (and any lost update) is not reported.
+	 * Use {@link #STRICT} to make it fail instead.
+	 */
+	ConflictHandler REPLACE = eConflict -> {
+		switch (eConflict) {
+			case SQLITE_CHANGESET_DATA:
+			case SQLITE_CHANGESET_CONFLICT:
+				return SQLITE_CHANGESET_REPLACE;
+			case SQLITE_CHANGESET_NOTFOUND:
+				return SQLITE_CHANGESET_OMIT;
+			default:
+				return SQLITE_CHANGESET_ABORT;
+		}
+	};
+
+	/**
+	 * Same as {@link #REPLACE} but missing rows abort the changeset application.
+	 */
+	ConflictHandler STRICT = eConflict -> {
+		switch (eConflict) {
+			case SQLITE_CHANGESET_DATA:
+			case SQLITE_CHANGESET_CONFLICT:
+				return SQLITE_CHANGESET_REPLACE;
+			default:
+				return SQLITE_CHANGESET_ABORT;
+		}
+	};
+
+	/**
+	 * @param pCtx <code>null</code>
+	 * @param eConflict conflict type
+	 * @param pIter changeset iterator (unused)
+	 * @return conflict resolution
+	 */
+	default int callback(Pointer pCtx, int eConflict, Pointer pIter) {
+		return onConflict(eConflict);
+	}
+
+	/**
+	 * @param eConflict SQLITE_CHANGESET_DATA | NOTFOUND | CONFLICT | CONSTRAINT | FOREIGN_KEY
+	 * @return SQLITE_CHANGESET_OMIT | REPLACE | ABORT (REPLACE is only valid for DATA and CONFLICT)
+	 */
+	int onConflict(int eConflict);
+}
@@ -8,17 +8,30 @@
  */
 package org.sqlite;
 
+import com.sun.jna.Native;
 import com.sun.jna.Pointer;
 import com.sun.jna.ptr.IntByReference;
+import com.sun.jna.ptr.LongByReference;
 import com.sun.jna.ptr.PointerByReference;
 import org.sqlite.parser.ast.LiteralExpr;
 import org.sqlite.parser.ast.Pragma;
 import org.sqlite.parser.ast.QualifiedName;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongUnaryOperator;
 
 import static org.sqlite.SQLite.*;
 
@@ -35,6 +48,20 @@ public final class Conn implements AutoCloseable {
 	private SQLite3 pDb;
 	private final boolean sharedCacheMode;
 	private TimeoutProgressCallback timeoutProgressCallback;
+	private ObjectName mbeanName;
+	// retained to prevent the native callback from being garbage collected
+	private TraceV2Callback traceCallback;
+	private int traceMask;
+	// savepoints of the installed capture, tracked by a trace callback chained with the user one
+	private Savepoints savepoints;
+	private final TraceV2Callback savepointTrace = this::traceSavepoints;
+	private Authorizer authorizer;
+	// typed and aggregate functions by name/nArg and modules, retained to prevent the native callbacks from being garbage collected
+	private final Map<String, Object> functions = new HashMap<>();
+	// installed change data capture (retains the hooks)
+	AutoCloseable capture;
+	// open sessions, deleted before the connection is closed
+	private final List<Session> sessions = new ArrayList<>();
 
 	private final Map<String, Stmt> cache = new LinkedHashMap<String, Stmt>() {
 		@Override
@@ -50,11 +77,21 @@ public final class Conn implements AutoCloseable {
 				}
 				it.next().close(true);
 				it.remove();
+				cacheEvictions++;
 			}
 			return false;
 		}
 	};
 	private int maxCacheSize = 100; // TODO parameterize
+	// SQL => column descriptor (bounded like the statement cache)
+	private final Map<String, StmtMeta> metaCache = new LinkedHashMap<String, StmtMeta>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, StmtMeta> eldest) {
+			return size() > Math.max(maxCacheSize, 16);
+		}
+	};
+	// statements cache counters (guarded by cache)
+	private long cacheHits, cacheMisses, cacheEvictions;
 
 	// Make sure a stmt is not finalized while current conn is being closed
 	final Object lock = new Object();
@@ -127,7 +164,12 @@ public final class Conn implements AutoCloseable {
 		}
 
 		synchronized (lock) {
+			unregisterMBean();
 			flush();
+			// Open sessions must be deleted before the connection
+			for (int i = sessions.size() - 1; i >= 0; i--) {
+				sessions.get(i).close();
+			}
 
 			// Dangling statements
 			SQLite3Stmt stmt = sqlite3_next_stmt(pDb, null);
@@ -245,16 +287,21 @@ public final class Conn implements AutoCloseable {
 	 */
 	public Stmt prepare(String sql, boolean cacheable) throws ConnException {
 		checkOpen();
+		final Object event = Jfr.begin(Jfr.PREPARE);
 		if (cacheable) {
 			final Stmt stmt = find(sql);
 			if (stmt != null) {
+				Jfr.prepare(event, sql, true);
 				return stmt;
 			}
 		}
 		final Pointer pSql = nativeString(sql);
 		final PointerByReference ppStmt = new PointerByReference();
 		final PointerByReference ppTail = new PointerByReference();
+		final long start = Metrics.start();
 		final int res = blockingPrepare(null, pSql, cacheable ? SQLITE_PREPARE_PERSISTENT : 0, ppStmt, ppTail);
+		Metrics.record(Metrics.Op.PREPARE, sql, start);
+		Jfr.prepare(event, sql, false);
 		check(res, "error while preparing statement '%s'", sql);
 		final Pointer pStmt = ppStmt.getValue();
 		final SQLite3Stmt stmt = pStmt == null ? null: new SQLite3Stmt(pStmt);
@@ -286,7 +333,9 @@ public final class Conn implements AutoCloseable {
 		int rc = sqlite3_unlock_notify(pDb, UnlockNotificationCallback.INSTANCE, pDb.getPointer());
 		assert rc == ErrCodes.SQLITE_LOCKED || rc == ExtErrCodes.SQLITE_LOCKED_SHAREDCACHE || rc == SQLITE_OK;
 		if (rc == SQLITE_OK) {
+			final Object event = Jfr.begin(Jfr.BUSY_WAIT);
 			notif.await(this);
+			Jfr.busyWait(event, 0, true);
 		}
 		return rc;
 	}
@@ -386,7 +435,26 @@ public final class Conn implements AutoCloseable {
 	 */
 	public void fastExec(String sql) throws ConnException {
 		checkOpen();
-		check(sqlite3_exec(pDb, sql, null, null, null), "error while executing '%s'", sql);
+		final int res = sqlite3_exec(pDb, sql, null, null, null);
+		if (res != SQLITE_OK) {
+			stepFailed(null);
+		}
+		check(res, "error while executing '%s'", sql);
+	}
+	/**
+	 * Commits or rolls back the current transaction (recorded as a <code>SQLiteCommit</code> Java Flight Recorder event).
+	 * @param rollback <code>true</code> to roll back the transaction
+	 * @param begin <code>true</code> to start a new transaction
+	 * @throws ConnException if current connection is closed or the transaction cannot be ended.
+	 */
+	public void endTransaction(boolean rollback, boolean begin) throws ConnException {
+		final Object event = Jfr.begin(Jfr.COMMIT);
+		if (rollback) {
+			fastExec(begin ? "ROLLBACK; BEGIN" : "ROLLBACK");
+		} else {
+			fastExec(begin ? "COMMIT; BEGIN" : "COMMIT");
+		}
+		Jfr.commit(event, rollback);
 	}
 
 	/**
@@ -454,6 +522,122 @@ public final class Conn implements AutoCloseable {
 		sqlite3_interrupt(pDb);
 	}
 
+	// Called by the query timeout scheduler thread
+	void interruptNoCheck() {
+		synchronized (lock) {
+			if (pDb != null) {
+				sqlite3_interrupt(pDb);
+			}
+		}
+	}
+
+	/**
+	 * Retrieve runtime status information about this database connection.
+	 * @param op status parameter
+	 * @param reset whether or not the highest instantaneous value (or the counter) is reset
+	 * @return current value and highest instantaneous value
+	 * @throws ConnException if current connection is closed
+	 * @see <a href="https://www.sqlite.org/c3ref/db_status.html">sqlite3_db_status</a>
+	 */
+	public int[] status(DbStatus op, boolean reset) throws ConnException {
+		checkOpen();
+		final IntByReference pCur = new IntByReference();
+		final IntByReference pHiwtr = new IntByReference();
+		check(sqlite3_db_status(pDb, op.value, pCur, pHiwtr, reset), "error while retrieving status %s", op.name());
+		return new int[]{pCur.getValue(), pHiwtr.getValue()};
+	}
+	// Called by the management thread: returns null when the connection is closed.
+	int[] statusNoCheck(DbStatus op, boolean reset) {
+		synchronized (lock) {
+			if (pDb == null) {
+				return null;
+			}
+			final IntByReference pCur = new IntByReference();
+			final IntByReference pHiwtr = new IntByReference();
+			if (sqlite3_db_status(pDb, op.value, pCur, pHiwtr, reset) != SQLITE_OK) {
+				return null;
+			}
+			return new int[]{pCur.getValue(), pHiwtr.getValue()};
+		}
+	}
+
+	/**
+	 * Retrieve process-wide runtime status information about SQLite.
+	 * @param op status parameter
+	 * @param reset whether or not the highest recorded value is reset
+	 * @return current value and highest recorded value
+	 * @see <a href="https://www.sqlite.org/c3ref/status.html">sqlite3_status64</a>
+	 */
+	public static long[] status(GlobalStatus op, boolean reset) throws SQLiteException {
+		final long[] status = statusNoCheck(op, reset);
+		if (status == null) {
+			throw new SQLiteException(String.format("error while retrieving status %s", op.name()), ErrCodes.SQLITE_MISUSE);
+		}
+		return status;
+	}
+	static long[] statusNoCheck(GlobalStatus op, boolean reset) {
+		final LongByReference pCurrent = new LongByReference();
+		final LongByReference pHighwater = new LongByReference();
+		if (sqlite3_status64(op.value, pCurrent, pHighwater, reset) != SQLITE_OK) {
+			return null;
+		}
+		return new long[]{pCurrent.getValue(), pHighwater.getValue()};
+	}
+
+	/**
+	 * Publish this connection status (pager cache, lookaside, memory and statements cache) as a platform MBean.
+	 * The MBean is unregistered when the connection is closed.
+	 * @return MBean name (<code>org.sqlite:type=Connection,id=...</code>)
+	 * @see ConnStatusMXBean
+	 */
+	public ObjectName registerMBean() throws ConnException {
+		checkOpen();
+		synchronized (lock) {
+			if (mbeanName != null) {
+				return mbeanName;
+			}
+			try {
+				final ObjectName name = new ObjectName("org.sqlite:type=Connection,id=" +
+						Integer.toHexString(System.identityHashCode(this)) + ",file=" + ObjectName.quote(getFilename()));
+				ManagementFactory.getPlatformMBeanServer().registerMBean(new ConnStatus(this), name);
+				return mbeanName = name;
+			} catch (JMException e) {
+				throw new ConnException(this, "error while registering MBean: " + e.getMessage(), ErrCodes.WRAPPER_SPECIFIC);
+			}
+		}
+	}
+	private void unregisterMBean() {
+		if (mbeanName == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+		} catch (JMException e) {
+			sqlite3_log(-1, "error while unregistering MBean: " + e.getMessage());
+		}
+		mbeanName = null;
+	}
+
+	/**
+	 * Publish the process-wide SQLite status as a platform MBean (idempotent).
+	 * @return MBean name (<code>org.sqlite:type=Global</code>)
+	 * @see GlobalStatusMXBean
+	 */
+	public static ObjectName registerGlobalMBean() throws SQLiteException {
+		try {
+			final ObjectName name = new ObjectName("org.sqlite:type=Global");
+			final MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+			synchronized (GlobalStatusImpl.class) {
+				if (!mbs.isRegistered(name)) {
+					mbs.registerMBean(new GlobalStatusImpl(), name);
+				}
+			}
+			return name;
+		} catch (JMException e) {
+			throw new SQLiteException("error while registering MBean: " + e.getMessage(), ErrCodes.WRAPPER_SPECIFIC);
+		}
+	}
+
 	/**
 	 * Set a busy timeout
 	 * @param ms timeout in millis
@@ -480,10 +664,19 @@ public final class Conn implements AutoCloseable {
 	 * @see <a href="https://www.sqlite.org/c3ref/db_filename.html">sqlite3_db_filename</a>
 	 */
 	public String getFilename() {
+		return getFilename("main");
+	}
+	/**
+	 * @param dbName "main", "temp" or the name of an attached database
+	 * @return the filename of the specified database (empty for a temporary or in-memory database),
+	 * <code>null</code> if there is no such database
+	 * @see <a href="https://www.sqlite.org/c3ref/db_filename.html">sqlite3_db_filename</a>
+	 */
+	public String getFilename(String dbName) {
 		if (pDb == null) {
 			return null;
 		}
-		return sqlite3_db_filename(pDb, "main"); // ko if pDb is null
+		return sqlite3_db_filename(pDb, dbName); // ko if pDb is null
 	}
 
 	/**
@@ -606,6 +799,23 @@ public final class Conn implements AutoCloseable {
 		return sqlite3_limit(pDb, id, newVal);
 	}
 
+	/**
+	 * @param dbName "main", "temp", the name of an attached database or <code>null</code> for "temp" then "main"
+	 * (like an unqualified table name, except that attached databases are not searched)
+	 * @param tblName table name
+	 * @return the database of the table if it is a rowid table (neither a view nor a WITHOUT ROWID table), otherwise <code>null</code>
+	 * @see <a href="http://sqlite.org/c3ref/table_column_metadata.html">sqlite3_table_column_metadata</a>
+	 */
+	public String getRowIdTableSchema(String dbName, String tblName) throws ConnException {
+		checkOpen();
+		for (String db : dbName == null ? new String[]{"temp", "main"} : new String[]{dbName}) {
+			if (sqlite3_table_column_metadata(pDb, db, tblName, null, null, null, null, null, null) == SQLITE_OK) { // the table exists
+				return sqlite3_table_column_metadata(pDb, db, tblName, "rowid", null, null, null, null, null) == SQLITE_OK ? db : null;
+			}
+		}
+		return null;
+	}
+
 	boolean[] getTableColumnMetadata(String dbName, String tblName, String colName) throws ConnException {
 		checkOpen();
 		final IntByReference pNotNull = new IntByReference();
@@ -646,10 +856,62 @@ public final class Conn implements AutoCloseable {
 		return new Backup(pBackup, dst, src);
 	}
 
+	/**
+	 * Create a new session recording changes made through this connection.
+	 * @param dbName "main" or the name of an attached database
+	 * @return Session (deleted when this connection is closed, if not before)
+	 * @throws ConnException if the library is not compiled with SQLITE_ENABLE_SESSION
+	 * @see <a href="https://sqlite.org/session/sqlite3session_create.html">sqlite3session_create</a>
+	 */
+	public Session openSession(String dbName) throws ConnException {
+		checkOpen();
+		if (!SessionApi.AVAILABLE) {
+			throw new ConnException(this, "session extension not supported", ErrCodes.WRAPPER_SPECIFIC);
+		}
+		final PointerByReference ppSession = new PointerByReference();
+		check(SessionApi.sqlite3session_create(pDb, dbName, ppSession), "error while creating session on '%s'", dbName);
+		final Session session = new Session(this, dbName, new SQLite3Session(ppSession.getValue()));
+		sessions.add(session);
+		return session;
+	}
+
+	// A capture whose hooks are replaced would never be drained
+	void closeCapture() throws ConnException {
+		if (capture instanceof ChangeCapture) {
+			((ChangeCapture) capture).close();
+		} else if (capture instanceof PreUpdateCapture) {
+			((PreUpdateCapture) capture).close();
+		} else if (capture instanceof ResultCache) {
+			((ResultCache) capture).close();
+		}
+	}
+
+	void removeSession(Session session) {
+		sessions.remove(session);
+	}
+
+	/**
+	 * Apply a changeset to this database.
+	 * @param changeset changeset produced by {@link Session#changeset()}
+	 * @param handler conflict handler
+	 * @throws ConnException if the changeset cannot be applied (it is then rolled back)
+	 * @see <a href="https://sqlite.org/session/sqlite3changeset_apply.html">sqlite3changeset_apply</a>
+	 */
+	public void applyChangeset(byte[] changeset, ConflictHandler handler) throws ConnException {
+		checkOpen();
+		if (!SessionApi.AVAILABLE) {
+			throw new ConnException(this, "session extension not supported", ErrCodes.WRAPPER_SPECIFIC);
+		}
+		check(SessionApi.sqlite3changeset_apply(pDb, changeset.length, changeset, null, handler, null), "error while applying changeset on '%s'", getFilename());
+	}
+
 	/**
 	 * Sets the number of seconds the driver will wait for a statement to execute to the given number of seconds.
 	 * @param timeout in seconds
+	 * @deprecated installs a progress handler invoked every 100 VM operations.
+	 * Use {@link Stmt#step(int)} or {@link Stmt#stepNoCheck(int)} which rely on a shared deadline scheduler.
 	 */
+	@Deprecated
 	public void setQueryTimeout(int timeout) throws ConnException {
 		if (timeout == 0) {
 			if (timeoutProgressCallback == null) {
@@ -665,6 +927,7 @@ public final class Conn implements AutoCloseable {
 	}
 
 	/**
+	 * Legacy tracing: replaced by {@link #trace(int, TraceV2Callback)} (both cannot be active at the same time).
 	 * @param tc Tracing callback
 	 * @see <a href="http://sqlite.org/c3ref/profile.html">sqlite3_trace</a>
 	 */
@@ -674,6 +937,7 @@ public final class Conn implements AutoCloseable {
 	}
 
 	/**
+	 * Legacy profiling: replaced by {@link #trace(int, TraceV2Callback)} (both cannot be active at the same time).
 	 * @param pc Profiling callback
 	 * @see <a href="http://sqlite.org/c3ref/profile.html">sqlite3_profile</a>
 	 */
@@ -682,6 +946,48 @@ public final class Conn implements AutoCloseable {
 		sqlite3_profile(pDb, pc, null);
 	}
 
+	/**
+	 * Register a trace callback (or unregister it when <code>mask</code> is 0 or <code>tc</code> is null).
+	 * The callback is retained by this connection until it is replaced.
+	 * @param mask combination of <code>TraceV2Callback.SQLITE_TRACE_*</code> event codes
+	 * @param tc Tracing callback
+	 * @see <a href="http://sqlite.org/c3ref/trace_v2.html">sqlite3_trace_v2</a>
+	 */
+	public void trace(int mask, TraceV2Callback tc) throws ConnException {
+		checkOpen();
+		traceMask = tc == null ? 0 : mask;
+		traceCallback = traceMask == 0 ? null : tc;
+		registerTrace();
+	}
+	void savepoints(Savepoints sp) throws ConnException {
+		checkOpen();
+		savepoints = sp;
+		registerTrace();
+	}
+	// changes made by a failed statement are undone by SQLite but not reported to the capture
+	void stepFailed(Pointer pStmt) {
+		if (savepoints != null) {
+			savepoints.failed(pStmt);
+		}
+	}
+	private void registerTrace() throws ConnException {
+		final int res;
+		if (savepoints == null) {
+			res = sqlite3_trace_v2(pDb, traceMask, traceCallback, null);
+		} else {
+			res = sqlite3_trace_v2(pDb, traceMask | TraceV2Callback.SQLITE_TRACE_STMT, savepointTrace, null);
+		}
+		check(res, "error while setting trace callback on '%s'", getFilename());
+	}
+	private void traceSavepoints(int type, Pointer p, Pointer x) {
+		if (type == TraceV2Callback.SQLITE_TRACE_STMT) {
+			savepoints.statement(p, x);
+		}
+		if ((traceMask & type) != 0) {
+			traceCallback.trace(type, p, x);
+		}
+	}
+
 	/**
 	 * @param uh Data change notification callback.
 	 * @see <a href="http://sqlite.org/c3ref/update_hook.html">sqlite3_update_hook</a>
@@ -690,6 +996,38 @@ public final class Conn implements AutoCloseable {
 		checkOpen();
 		return sqlite3_update_hook(pDb, uh, null);
 	}
+	void updateHook(ChangeCapture.RawUpdateHook uh) throws ConnException {
+		checkOpen();
+		sqlite3_update_hook(pDb, uh, null);
+	}
+	/**
+	 * @param ph Pre-update notification callback (may be null)
+	 * @throws ConnException if the library is not compiled with SQLITE_ENABLE_PREUPDATE_HOOK
+	 * @see <a href="http://sqlite.org/c3ref/preupdate_count.html">sqlite3_preupdate_hook</a>
+	 */
+	public Pointer preUpdateHook(PreUpdateHook ph) throws ConnException {
+		checkOpen();
+		if (!PreUpdateApi.AVAILABLE) {
+			throw new ConnException(this, "pre-update hook not supported", ErrCodes.WRAPPER_SPECIFIC);
+		}
+		return PreUpdateApi.sqlite3_preupdate_hook(pDb, ph, null);
+	}
+	/**
+	 * @param ch Commit notification callback (may be null)
+	 * @see <a href="http://sqlite.org/c3ref/commit_hook.html">sqlite3_commit_hook</a>
+	 */
+	public Pointer commitHook(CommitHook ch) throws ConnException {
+		checkOpen();
+		return sqlite3_commit_hook(pDb, ch, null);
+	}
+	/**
+	 * @param rh Rollback notification callback (may be null)
+	 * @see <a href="http://sqlite.org/c3ref/commit_hook.html">sqlite3_rollback_hook</a>
+	 */
+	public Pointer rollbackHook(RollbackHook rh) throws ConnException {
+		checkOpen();
+		return sqlite3_rollback_hook(pDb, rh, null);
+	}
 	/**
 	 * Register an authorizer callback.
 	 * @param auth Compile-time authorization callback (may be null)
@@ -698,7 +1036,12 @@ public final class Conn implements AutoCloseable {
 	 */
 	public int setAuhtorizer(Authorizer auth) throws ConnException {
 		checkOpen();
-		return sqlite3_set_authorizer(pDb, auth, null);
+		final int res = sqlite3_set_authorizer(pDb, auth, null);
+		authorizer = auth;
+		return res;
+	}
+	Authorizer getAuthorizer() {
+		return authorizer;
 	}
 
 	/**
@@ -714,6 +1057,58 @@ public final class Conn implements AutoCloseable {
 		check(sqlite3_create_function_v2(pDb, name, nArg, flags, null, xFunc, null, null, null),
 				"error while registering function %s", name);
 	}
+	/**
+	 * Create a deterministic SQL scalar function of one integer argument.
+	 * @see #createLongFunction(String, LongBinaryOperator)
+	 */
+	public void createLongFunction(String name, LongUnaryOperator f) throws ConnException {
+		createPrimitiveFunction(name, 1, PrimitiveFunction.ofLong(f));
+	}
+	/**
+	 * Create a deterministic SQL scalar function of two integer arguments.
+	 * <p>
+	 * Unlike {@link #createScalarFunction(String, int, int, ScalarCallback)}, arguments are read and the result
+	 * is set through raw pointers, without any JNA structure or Java value per argument,
+	 * which matters for functions used by expression indexes or in a <code>WHERE</code> clause.
+	 * The function is flagged {@link FunctionFlags#SQLITE_DETERMINISTIC} and
+	 * {@link FunctionFlags#SQLITE_INNOCUOUS} (since 3.31.0). When an argument is NULL, the result is NULL
+	 * and <code>f</code> is not invoked. A {@link RuntimeException} thrown by <code>f</code> is reported as an SQL error.
+	 * Only supported on 64-bit platforms.
+	 * <pre>{@code
+	 * c.createLongFunction("lmul", (a, b) -> a * b);
+	 * }</pre>
+	 */
+	public void createLongFunction(String name, LongBinaryOperator f) throws ConnException {
+		createPrimitiveFunction(name, 2, PrimitiveFunction.ofLong(f));
+	}
+	/**
+	 * Create a deterministic SQL scalar function of one floating point argument.
+	 * @see #createLongFunction(String, LongBinaryOperator)
+	 */
+	public void createDoubleFunction(String name, DoubleUnaryOperator f) throws ConnException {
+		createPrimitiveFunction(name, 1, PrimitiveFunction.ofDouble(f));
+	}
+	/**
+	 * Create a deterministic SQL scalar function of two floating point arguments.
+	 * @see #createLongFunction(String, LongBinaryOperator)
+	 */
+	public void createDoubleFunction(String name, DoubleBinaryOperator f) throws ConnException {
+		createPrimitiveFunction(name, 2, PrimitiveFunction.ofDouble(f));
+	}
+
+	private void createPrimitiveFunction(String name, int nArg, PrimitiveFunction xFunc) throws ConnException {
+		checkOpen();
+		if (Native.POINTER_SIZE != 8) {
+			throw new ConnException(this, "typed functions are only supported on 64-bit platforms", ErrCodes.WRAPPER_SPECIFIC);
+		}
+		int flags = FunctionFlags.SQLITE_UTF8 | FunctionFlags.SQLITE_DETERMINISTIC;
+		if (libversionNumber() >= 3031000) {
+			flags |= FunctionFlags.SQLITE_INNOCUOUS;
+		}
+		check(PrimitiveApi.sqlite3_create_function_v2(pDb, name, nArg, flags, null, xFunc, null, null, null),
+				"error while registering function %s", name);
+		functions.put(name + '/' + nArg, xFunc);
+	}
 	/**
 	 * Create a user defined SQL aggregate function.
 	 * @param name function name
@@ -730,6 +1125,60 @@ public final class Conn implements AutoCloseable {
 				"error while registering function %s", name);
 	}
 
+	/**
+	 * Create a user defined SQL aggregate function whose state is a Java object.
+	 * @param name function name
+	 * @param nArg number of arguments expected
+	 * @param flags {@link org.sqlite.FunctionFlags}.*
+	 * @param aggregate function implementation
+	 * @see <a href="http://sqlite.org/c3ref/create_function.html">sqlite3_create_function_v2</a>
+	 */
+	public <S, R> void createAggregateFunction(String name, int nArg, int flags, Aggregate<S, R> aggregate) throws ConnException {
+		final AggregateFunction<S, R> f = new AggregateFunction<>(aggregate);
+		createAggregateFunction(name, nArg, flags, f.xStep, f.xFinal);
+		functions.put(name + '/' + nArg, f);
+	}
+	/**
+	 * Create a user defined SQL aggregate window function.
+	 * @param name function name
+	 * @param nArg number of arguments expected
+	 * @param flags {@link org.sqlite.FunctionFlags}.*
+	 * @param aggregate function implementation
+	 * @throws ConnException if the library is older than 3.25.0
+	 * @see <a href="http://sqlite.org/c3ref/create_function.html">sqlite3_create_window_function</a>
+	 */
+	public <S, R> void createWindowFunction(String name, int nArg, int flags, WindowAggregate<S, R> aggregate) throws ConnException {
+		checkOpen();
+		if (!WindowApi.AVAILABLE) {
+			throw new ConnException(this, "window functions not supported", ErrCodes.WRAPPER_SPECIFIC);
+		}
+		final AggregateFunction<S, R> f = new AggregateFunction<>(aggregate);
+		check(WindowApi.sqlite3_create_window_function(pDb, name, nArg, flags, null, f.xStep, f.xFinal, f.xValue, f.xInverse, null),
+				"error while registering function %s", name);
+		functions.put(name + '/' + nArg, f);
+	}
+
+	/**
+	 * Register a read-only virtual table module implemented in Java.
+	 * <p>
+	 * Rows are read through {@link VirtualCursor}, without any Java object created by the binding per row besides
+	 * the boxing of the callback arguments by JNA, so SQL can scan or join in-memory data without copying it
+	 * into a real table first.
+	 * Only supported on 64-bit platforms.
+	 * @param name module name (<code>CREATE VIRTUAL TABLE ... USING name</code>, or eponymous virtual table name)
+	 * @param module virtual tables factory
+	 * @see <a href="http://sqlite.org/c3ref/create_module.html">sqlite3_create_module_v2</a>
+	 */
+	public void createModule(String name, VirtualTableModule module) throws ConnException {
+		checkOpen();
+		if (Native.POINTER_SIZE != 8) {
+			throw new ConnException(this, "virtual table modules are only supported on 64-bit platforms", ErrCodes.WRAPPER_SPECIFIC);
+		}
+		final NativeModule m = new NativeModule(module);
+		check(sqlite3_create_module_v2(pDb, name, m.module, null, null), "error while registering module %s", name);
+		functions.put("module:" + name, m);
+	}
+
 	/**
 	 * @param dbName "main" or "temp" or attached database name
 	 * @return the text encoding used by the <code>dbName</code> database
@@ -781,13 +1230,31 @@ public final class Conn implements AutoCloseable {
 		fastExec(pragma.toSql());
 	}
 
+	// To be called in Stmt.getMeta
+	StmtMeta meta(Stmt stmt, boolean reprepared) throws StmtException {
+		synchronized (metaCache) {
+			StmtMeta meta = metaCache.get(stmt.sql);
+			if (meta == null || reprepared || !meta.matches(stmt)) {
+				meta = StmtMeta.of(stmt);
+				metaCache.put(stmt.sql, meta);
+			}
+			return meta;
+		}
+	}
+
 	// To be called in Conn.prepare
 	Stmt find(String sql) {
 		if (maxCacheSize <= 0) {
 			return null;
 		}
 		synchronized (cache) {
-			return cache.remove(sql);
+			final Stmt stmt = cache.remove(sql);
+			if (stmt == null) {
+				cacheMisses++;
+			} else {
+				cacheHits++;
+			}
+			return stmt;
 		}
 	}
 
@@ -815,6 +1282,31 @@ public final class Conn implements AutoCloseable {
 		return cache.size();
 	}
 
+	/**
+	 * @return number of prepared statements found in the cache
+	 */
+	public long getCacheHits() {
+		synchronized (cache) {
+			return cacheHits;
+		}
+	}
+	/**
+	 * @return number of cacheable statements not found in the cache (and prepared)
+	 */
+	public long getCacheMisses() {
+		synchronized (cache) {
+			return cacheMisses;
+		}
+	}
+	/**
+	 * @return number of prepared statements finalized because the cache was full
+	 */
+	public long getCacheEvictions() {
+		synchronized (cache) {
+			return cacheEvictions;
+		}
+	}
+
 	/**
 	 * sets the size of prepared statements cache.
 	 * Cache is turned off (and flushed) when size &lt;= 0
@@ -0,0 +1,120 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import static org.sqlite.DbStatus.*;
+
+// MBean registered by Conn.registerMBean and unregistered when the connection is closed.
+final class ConnStatus implements ConnStatusMXBean {
+	private final Conn c;
+
+	ConnStatus(Conn c) {
+		this.c = c;
+	}
+
+	private long current(DbStatus op) {
+		final int[] status = c.statusNoCheck(op, false);
+		return status == null ? -1L : status[0];
+	}
+	private long highwater(DbStatus op) {
+		final int[] status = c.statusNoCheck(op, false);
+		return status == null ? -1L : status[1];
+	}
+
+	@Override
+	public String getFilename() {
+		return c.getFilename();
+	}
+	@Override
+	public boolean isClosed() {
+		return c.isClosed();
+	}
+
+	@Override
+	public long getCacheUsed() {
+		return current(SQLITE_DBSTATUS_CACHE_USED);
+	}
+	@Override
+	public long getCacheHit() {
+		return current(SQLITE_DBSTATUS_CACHE_HIT);
+	}
+	@Override
+	public long getCacheMiss() {
+		return current(SQLITE_DBSTATUS_CACHE_MISS);
+	}
+	@Override
+	public long getCacheWrite() {
+		return current(SQLITE_DBSTATUS_CACHE_WRITE);
+	}
+	@Override
+	public long getCacheSpill() {
+		return current(SQLITE_DBSTATUS_CACHE_SPILL);
+	}
+
+	@Override
+	public long getLookasideUsed() {
+		return current(SQLITE_DBSTATUS_LOOKASIDE_USED);
+	}
+	@Override
+	public long getLookasideHighwater() {
+		return highwater(SQLITE_DBSTATUS_LOOKASIDE_USED);
+	}
+	@Override
+	public long getLookasideHit() {
+		return highwater(SQLITE_DBSTATUS_LOOKASIDE_HIT);
+	}
+	@Override
+	public long getLookasideMissSize() {
+		return highwater(SQLITE_DBSTATUS_LOOKASIDE_MISS_SIZE);
+	}
+	@Override
+	public long getLookasideMissFull() {
+		return highwater(SQLITE_DBSTATUS_LOOKASIDE_MISS_FULL);
+	}
+
+	@Override
+	public long getSchemaUsed() {
+		return current(SQLITE_DBSTATUS_SCHEMA_USED);
+	}
+	@Override
+	public long getStmtUsed() {
+		return current(SQLITE_DBSTATUS_STMT_USED);
+	}
+
+	@Override
+	public int getStmtCacheSize() {
+		return c.getCacheSize();
+	}
+	@Override
+	public int getStmtCacheMaxSize() {
+		return c.getMaxCacheSize();
+	}
+	@Override
+	public long getStmtCacheHits() {
+		return c.getCacheHits();
+	}
+	@Override
+	public long getStmtCacheMisses() {
+		return c.getCacheMisses();
+	}
+	@Override
+	public long getStmtCacheEvictions() {
+		return c.getCacheEvictions();
+	}
+
+	@Override
+	public void reset() {
+		for (DbStatus op : new DbStatus[]{SQLITE_DBSTATUS_LOOKASIDE_USED, SQLITE_DBSTATUS_LOOKASIDE_HIT,
+				SQLITE_DBSTATUS_LOOKASIDE_MISS_SIZE, SQLITE_DBSTATUS_LOOKASIDE_MISS_FULL,
+				SQLITE_DBSTATUS_CACHE_HIT, SQLITE_DBSTATUS_CACHE_MISS, SQLITE_DBSTATUS_CACHE_WRITE,
+				SQLITE_DBSTATUS_CACHE_SPILL}) {
+			c.statusNoCheck(op, true);
+		}
+	}
+}
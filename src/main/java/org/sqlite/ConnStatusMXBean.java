@@ -0,0 +1,56 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+/**
+ * Management interface exposing the status of one database connection.
+ * <p>
+ * Values of closed connections are reported as -1.
+ * @see Conn#registerMBean()
+ * @see Conn#status(DbStatus, boolean)
+ */
+public interface ConnStatusMXBean {
+	String getFilename();
+	boolean isClosed();
+
+	/** @return approximate number of bytes of heap memory used by all pager caches */
+	long getCacheUsed();
+	/** @return number of pager cache hits */
+	long getCacheHit();
+	/** @return number of pager cache misses */
+	long getCacheMiss();
+	/** @return number of dirty cache entries written to disk */
+	long getCacheWrite();
+	/** @return number of dirty cache entries written to disk in the middle of a transaction */
+	long getCacheSpill();
+
+	/** @return number of lookaside memory slots currently checked out */
+	long getLookasideUsed();
+	long getLookasideHighwater();
+	long getLookasideHit();
+	long getLookasideMissSize();
+	long getLookasideMissFull();
+
+	/** @return approximate number of bytes of heap memory used to store the schema */
+	long getSchemaUsed();
+	/** @return approximate number of bytes of heap and lookaside memory used by all prepared statements */
+	long getStmtUsed();
+
+	/** @return number of prepared statements currently in the cache */
+	int getStmtCacheSize();
+	int getStmtCacheMaxSize();
+	long getStmtCacheHits();
+	long getStmtCacheMisses();
+	long getStmtCacheEvictions();
+
+	/**
+	 * Reset the pager cache and lookaside counters and the lookaside high-water mark.
+	 */
+	void reset();
+}
@@ -0,0 +1,35 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+/**
+ * Status Parameters for database connections
+ * @see Conn#status(DbStatus, boolean)
+ * @see <a href="http://sqlite.org/c3ref/c_dbstatus_options.html">Status Parameters for database connections</a>
+ */
+public enum DbStatus {
+	SQLITE_DBSTATUS_LOOKASIDE_USED(0),
+	SQLITE_DBSTATUS_CACHE_USED(1),
+	SQLITE_DBSTATUS_SCHEMA_USED(2),
+	SQLITE_DBSTATUS_STMT_USED(3),
+	SQLITE_DBSTATUS_LOOKASIDE_HIT(4),
+	SQLITE_DBSTATUS_LOOKASIDE_MISS_SIZE(5),
+	SQLITE_DBSTATUS_LOOKASIDE_MISS_FULL(6),
+	SQLITE_DBSTATUS_CACHE_HIT(7),
+	SQLITE_DBSTATUS_CACHE_MISS(8),
+	SQLITE_DBSTATUS_CACHE_WRITE(9),
+	SQLITE_DBSTATUS_DEFERRED_FKS(10),
+	SQLITE_DBSTATUS_CACHE_USED_SHARED(11),
+	SQLITE_DBSTATUS_CACHE_SPILL(12);
+	final int value;
+
+	DbStatus(int value) {
+		this.value = value;
+	}
+}
@@ -0,0 +1,208 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Process-wide hashed timing wheel used to implement query timeouts.
+ * <p>
+ * A deadline is armed once per statement execution and reused by all its steps: the timeout applies to each
+ * <code>sqlite3_step</code> call. A single daemon thread calls <code>sqlite3_interrupt</code> on the connection
+ * of any step running for longer than the timeout (or whose owner thread has been interrupted).
+ * Entering and leaving a step is a volatile write and a compare-and-set, without any allocation.
+ * <p>
+ * The interruption of the owner thread while a step is running is only detected when a timeout is set,
+ * within one wheel revolution (one second).
+ * @see <a href="http://sqlite.org/c3ref/interrupt.html">sqlite3_interrupt</a>
+ */
+final class DeadlineWheel implements Runnable {
+	// One wheel revolution is one second: each deadline is checked at least once per revolution.
+	private static final long TICK_MS = 50L;
+	private static final int WHEEL_SIZE = 20;
+
+	private static final class Holder {
+		private static final DeadlineWheel INSTANCE = new DeadlineWheel();
+	}
+
+	/**
+	 * Armed query timeout.
+	 */
+	static final class Deadline {
+		private static final AtomicLongFieldUpdater<Deadline> STEP = AtomicLongFieldUpdater.newUpdater(Deadline.class, "step");
+
+		private final Conn c;
+		private final Thread owner;
+		final long timeout; // in nanos
+		// odd while a step is running, negated while the worker is interrupting it
+		private volatile long step;
+		private long start; // of the current step, published by the write to step
+		private long current; // value of step while the current step is running (owner thread only)
+		private volatile boolean cancelled;
+		private Deadline next;
+
+		private Deadline(Conn c, Thread owner, long timeout) {
+			this.c = c;
+			this.owner = owner;
+			this.timeout = timeout;
+		}
+
+		/**
+		 * Before <code>sqlite3_step</code> (owner thread only).
+		 */
+		void enter() {
+			start = System.nanoTime();
+			current = step + 1;
+			step = current;
+		}
+
+		/**
+		 * After <code>sqlite3_step</code> (owner thread only).
+		 */
+		void exit() {
+			final long s = current;
+			while (!STEP.compareAndSet(this, s, s + 1)) { // the worker is interrupting this step
+				Thread.yield();
+			}
+		}
+
+		/**
+		 * Disarm this deadline at the end of the execution (owner thread only, outside any step).
+		 */
+		void cancel() {
+			cancelled = true;
+		}
+
+		/**
+		 * @return the delay until the next check (in nanos)
+		 */
+		private long check(long now) {
+			final long s = step;
+			if ((s & 1L) == 0L) { // between two steps
+				return timeout;
+			}
+			final long elapsed = now - start;
+			if (elapsed < timeout && !owner.isInterrupted()) {
+				return timeout - elapsed;
+			}
+			// sqlite3_interrupt is connection-wide: it must not be called once the step has returned.
+			if (STEP.compareAndSet(this, s, -s)) {
+				try {
+					c.interruptNoCheck();
+				} finally {
+					step = s;
+				}
+			}
+			return timeout;
+		}
+	}
+
+	private final ConcurrentLinkedQueue<Deadline> pending = new ConcurrentLinkedQueue<>();
+	private final Deadline[] buckets = new Deadline[WHEEL_SIZE];
+	private final Thread worker;
+	private volatile boolean sleeping;
+	private long tick; // accessed only by the worker thread
+	private int size; // number of deadlines in buckets, accessed only by the worker thread
+
+	private DeadlineWheel() {
+		worker = new Thread(this, "sqlite-query-timeout");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Arm a query timeout for the current thread.
+	 * @param c connection to interrupt
+	 * @param timeout in millis (&gt; 0)
+	 * @return deadline to be entered and exited around each step and cancelled when the execution ends.
+	 */
+	static Deadline schedule(Conn c, long timeout) {
+		return Holder.INSTANCE.add(c, timeout);
+	}
+
+	private Deadline add(Conn c, long timeout) {
+		final Deadline deadline = new Deadline(c, Thread.currentThread(), TimeUnit.MILLISECONDS.toNanos(timeout));
+		pending.add(deadline);
+		if (sleeping) {
+			sleeping = false;
+			LockSupport.unpark(worker);
+		}
+		return deadline;
+	}
+
+	@Override
+	public void run() {
+		long deadline = System.nanoTime();
+		for (; ; ) {
+			if (size == 0 && pending.isEmpty()) {
+				sleeping = true;
+				if (pending.isEmpty()) { // double check to avoid lost wake-up
+					LockSupport.park(this);
+				}
+				sleeping = false;
+				deadline = System.nanoTime();
+				continue;
+			}
+			deadline += TimeUnit.MILLISECONDS.toNanos(TICK_MS);
+			long delay;
+			while ((delay = deadline - System.nanoTime()) > 0L) {
+				LockSupport.parkNanos(this, delay);
+			}
+			tick++;
+			transfer();
+			expire();
+		}
+	}
+
+	// Moves newly armed deadlines into their bucket.
+	private void transfer() {
+		Deadline d;
+		while ((d = pending.poll()) != null) {
+			if (!d.cancelled) {
+				insert(d, d.timeout);
+			}
+		}
+	}
+
+	// Checks the deadlines of the current bucket and moves those still armed to the bucket of their next check.
+	private void expire() {
+		final int idx = (int) (tick % WHEEL_SIZE);
+		Deadline d = buckets[idx];
+		buckets[idx] = null;
+		final long now = System.nanoTime();
+		while (d != null) {
+			final Deadline next = d.next;
+			d.next = null;
+			size--;
+			if (!d.cancelled) {
+				long delay;
+				try {
+					delay = d.check(now);
+				} catch (RuntimeException e) {
+					SQLite.sqlite3_log(-1, "error while interrupting a query: " + e);
+					delay = d.timeout;
+				}
+				insert(d, delay);
+			}
+			d = next;
+		}
+	}
+
+	private void insert(Deadline d, long delay) {
+		final long ticks = (TimeUnit.NANOSECONDS.toMillis(delay) + TICK_MS - 1) / TICK_MS;
+		// at most one revolution ahead so that thread interruption is noticed
+		final int idx = (int) ((tick + Math.max(1L, Math.min(ticks, WHEEL_SIZE - 1))) % WHEEL_SIZE);
+		d.next = buckets[idx];
+		buckets[idx] = d;
+		size++;
+	}
+}
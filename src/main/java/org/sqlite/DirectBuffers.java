@@ -0,0 +1,53 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of direct buffers used to transfer BLOB content (see {@link BlobChannel}).
+ * <p>
+ * A heap buffer passed to <code>sqlite3_blob_read/write</code> is copied by JNA through a temporary native buffer,
+ * and file or socket channels also copy heap buffers into a direct one before any I/O.
+ */
+final class DirectBuffers {
+	/** Capacity of pooled buffers */
+	static final int SIZE = 64 * 1024;
+	private static final int MAX_POOLED = 16;
+
+	private static final ConcurrentLinkedQueue<ByteBuffer> POOL = new ConcurrentLinkedQueue<>();
+	private static final AtomicInteger pooled = new AtomicInteger();
+
+	private DirectBuffers() {
+	}
+
+	/**
+	 * @return a cleared direct buffer of {@link #SIZE} bytes, to be released after use
+	 */
+	static ByteBuffer acquire() {
+		final ByteBuffer buffer = POOL.poll();
+		if (buffer == null) {
+			return ByteBuffer.allocateDirect(SIZE);
+		}
+		pooled.decrementAndGet();
+		((Buffer) buffer).clear();
+		return buffer;
+	}
+
+	static void release(ByteBuffer buffer) {
+		if (pooled.incrementAndGet() <= MAX_POOLED) {
+			POOL.offer(buffer);
+		} else {
+			pooled.decrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,29 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+/**
+ * Status Parameters for the SQLite library (process-wide)
+ * @see Conn#status(GlobalStatus, boolean)
+ * @see <a href="http://sqlite.org/c3ref/c_status_malloc_count.html">Status Parameters</a>
+ */
+public enum GlobalStatus {
+	SQLITE_STATUS_MEMORY_USED(0),
+	SQLITE_STATUS_PAGECACHE_USED(1),
+	SQLITE_STATUS_PAGECACHE_OVERFLOW(2),
+	SQLITE_STATUS_MALLOC_SIZE(5),
+	SQLITE_STATUS_PARSER_STACK(6),
+	SQLITE_STATUS_PAGECACHE_SIZE(7),
+	SQLITE_STATUS_MALLOC_COUNT(9);
+	final int value;
+
+	GlobalStatus(int value) {
+		this.value = value;
+	}
+}
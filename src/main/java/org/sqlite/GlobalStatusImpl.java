@@ -0,0 +1,71 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import static org.sqlite.GlobalStatus.*;
+
+// MBean registered by Conn.registerGlobalMBean
+final class GlobalStatusImpl implements GlobalStatusMXBean {
+	private static long current(GlobalStatus op) {
+		final long[] status = Conn.statusNoCheck(op, false);
+		return status == null ? -1L : status[0];
+	}
+	private static long highwater(GlobalStatus op) {
+		final long[] status = Conn.statusNoCheck(op, false);
+		return status == null ? -1L : status[1];
+	}
+
+	@Override
+	public long getMemoryUsed() {
+		return current(SQLITE_STATUS_MEMORY_USED);
+	}
+	@Override
+	public long getMemoryHighwater() {
+		return highwater(SQLITE_STATUS_MEMORY_USED);
+	}
+	@Override
+	public long getMallocCount() {
+		return current(SQLITE_STATUS_MALLOC_COUNT);
+	}
+	@Override
+	public long getMallocCountHighwater() {
+		return highwater(SQLITE_STATUS_MALLOC_COUNT);
+	}
+	@Override
+	public long getMallocSizeHighwater() {
+		return highwater(SQLITE_STATUS_MALLOC_SIZE);
+	}
+	@Override
+	public long getPageCacheUsed() {
+		return current(SQLITE_STATUS_PAGECACHE_USED);
+	}
+	@Override
+	public long getPageCacheUsedHighwater() {
+		return highwater(SQLITE_STATUS_PAGECACHE_USED);
+	}
+	@Override
+	public long getPageCacheOverflow() {
+		return current(SQLITE_STATUS_PAGECACHE_OVERFLOW);
+	}
+	@Override
+	public long getPageCacheOverflowHighwater() {
+		return highwater(SQLITE_STATUS_PAGECACHE_OVERFLOW);
+	}
+	@Override
+	public long getPageCacheSizeHighwater() {
+		return highwater(SQLITE_STATUS_PAGECACHE_SIZE);
+	}
+
+	@Override
+	public void reset() {
+		for (GlobalStatus op : GlobalStatus.values()) {
+			Conn.statusNoCheck(op, true);
+		}
+	}
+}
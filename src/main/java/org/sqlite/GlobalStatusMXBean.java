@@ -0,0 +1,40 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+/**
+ * Management interface exposing the process-wide status of the SQLite library.
+ * <p>
+ * Memory statistics are available only when <code>SQLITE_CONFIG_MEMSTATUS</code> is enabled (the default).
+ * @see Conn#registerGlobalMBean()
+ * @see Conn#status(GlobalStatus, boolean)
+ */
+public interface GlobalStatusMXBean {
+	/** @return number of bytes of memory currently outstanding (malloced but not freed) */
+	long getMemoryUsed();
+	long getMemoryHighwater();
+	/** @return number of separate memory allocations currently checked out */
+	long getMallocCount();
+	long getMallocCountHighwater();
+	/** @return largest memory allocation request (high-water mark only) */
+	long getMallocSizeHighwater();
+	/** @return number of pages used out of the pagecache memory allocator */
+	long getPageCacheUsed();
+	long getPageCacheUsedHighwater();
+	/** @return number of bytes of page cache allocation which could not be satisfied by the pagecache allocator */
+	long getPageCacheOverflow();
+	long getPageCacheOverflowHighwater();
+	/** @return largest memory allocation request handed to the pagecache allocator (high-water mark only) */
+	long getPageCacheSizeHighwater();
+
+	/**
+	 * Reset all high-water marks.
+	 */
+	void reset();
+}
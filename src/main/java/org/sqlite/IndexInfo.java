@@ -0,0 +1,175 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+/**
+ * Query planner inputs and outputs given to {@link VirtualTable#bestIndex(IndexInfo)}.
+ * Only valid during this call.
+ * <pre>
+ * WHERE constraints: {@link #getConstraintCount()}, {@link #getConstraintColumn(int)}, {@link #getConstraintOp(int)},
+ *   {@link #isConstraintUsable(int)} =&gt; {@link #setConstraintUsage(int, int, boolean)}
+ * ORDER BY terms: {@link #getOrderByCount()}, {@link #getOrderByColumn(int)}, {@link #isOrderByDesc(int)}
+ *   =&gt; {@link #setOrderByConsumed(boolean)}
+ * plan: {@link #setIdxNum(int)} (given to {@link VirtualCursor#filter(int, RawValues)}), {@link #setEstimatedCost(double)},
+ *   {@link #setEstimatedRows(long)}
+ * </pre>
+ * @see <a href="https://sqlite.org/c3ref/index_info.html">sqlite3_index_info</a>
+ */
+public final class IndexInfo {
+	public static final int SQLITE_INDEX_CONSTRAINT_EQ = 2;
+	public static final int SQLITE_INDEX_CONSTRAINT_GT = 4;
+	public static final int SQLITE_INDEX_CONSTRAINT_LE = 8;
+	public static final int SQLITE_INDEX_CONSTRAINT_LT = 16;
+	public static final int SQLITE_INDEX_CONSTRAINT_GE = 32;
+	public static final int SQLITE_INDEX_CONSTRAINT_MATCH = 64;
+	public static final int SQLITE_INDEX_CONSTRAINT_LIKE = 65;
+	public static final int SQLITE_INDEX_CONSTRAINT_GLOB = 66;
+	public static final int SQLITE_INDEX_CONSTRAINT_REGEXP = 67;
+	public static final int SQLITE_INDEX_CONSTRAINT_NE = 68;
+	public static final int SQLITE_INDEX_CONSTRAINT_ISNOT = 69;
+	public static final int SQLITE_INDEX_CONSTRAINT_ISNOTNULL = 70;
+	public static final int SQLITE_INDEX_CONSTRAINT_ISNULL = 71;
+	public static final int SQLITE_INDEX_CONSTRAINT_IS = 72;
+	/** Scan visits at most one row */
+	public static final int SQLITE_INDEX_SCAN_UNIQUE = 1;
+
+	// struct sqlite3_index_info offsets (64-bit)
+	private static final int N_CONSTRAINT = 0, A_CONSTRAINT = 8, N_ORDER_BY = 16, A_ORDER_BY = 24,
+			A_CONSTRAINT_USAGE = 32, IDX_NUM = 40, ORDER_BY_CONSUMED = 60, ESTIMATED_COST = 64,
+			ESTIMATED_ROWS = 72, IDX_FLAGS = 80, COL_USED = 88;
+	// sizeof(struct sqlite3_index_constraint), sizeof(struct sqlite3_index_orderby), sizeof(struct sqlite3_index_constraint_usage)
+	private static final int CONSTRAINT_SIZE = 12, ORDER_BY_SIZE = 8, CONSTRAINT_USAGE_SIZE = 8;
+
+	private final PointerView info = new PointerView();
+	private final PointerView array = new PointerView();
+
+	IndexInfo() {
+	}
+
+	IndexInfo moveTo(long pInfo) {
+		info.moveTo(pInfo);
+		return this;
+	}
+
+	private static void checkIndex(int i, int count) {
+		if (i < 0 || i >= count) {
+			throw new IndexOutOfBoundsException(String.format("invalid index: %d (count: %d)", i, count));
+		}
+	}
+
+	/**
+	 * @return number of WHERE clause constraints
+	 */
+	public int getConstraintCount() {
+		return info.getInt(N_CONSTRAINT);
+	}
+	private PointerView constraint(int i) {
+		checkIndex(i, getConstraintCount());
+		return array.moveTo(info.getLong(A_CONSTRAINT) + (long) i * CONSTRAINT_SIZE);
+	}
+	/**
+	 * @param i 0...
+	 * @return constrained column index (-1 for rowid)
+	 */
+	public int getConstraintColumn(int i) {
+		return constraint(i).getInt(0);
+	}
+	/**
+	 * @param i 0...
+	 * @return SQLITE_INDEX_CONSTRAINT_*
+	 */
+	public int getConstraintOp(int i) {
+		return constraint(i).getByte(4) & 0xFF;
+	}
+	/**
+	 * @param i 0...
+	 * @return <code>false</code> when the constraint cannot be used by this plan
+	 */
+	public boolean isConstraintUsable(int i) {
+		return constraint(i).getByte(5) != 0;
+	}
+	/**
+	 * @param i constraint index
+	 * @param argvIndex 1-based index of the constraint right-hand value in {@link VirtualCursor#filter(int, RawValues)} args
+	 * (0 when not used)
+	 * @param omit <code>true</code> when the cursor fully checks the constraint
+	 */
+	public void setConstraintUsage(int i, int argvIndex, boolean omit) {
+		checkIndex(i, getConstraintCount());
+		final PointerView usage = array.moveTo(info.getLong(A_CONSTRAINT_USAGE) + (long) i * CONSTRAINT_USAGE_SIZE);
+		usage.setInt(0, argvIndex);
+		usage.setByte(4, (byte) (omit ? 1 : 0));
+	}
+
+	/**
+	 * @return number of ORDER BY terms
+	 */
+	public int getOrderByCount() {
+		return info.getInt(N_ORDER_BY);
+	}
+	private PointerView orderBy(int i) {
+		checkIndex(i, getOrderByCount());
+		return array.moveTo(info.getLong(A_ORDER_BY) + (long) i * ORDER_BY_SIZE);
+	}
+	/**
+	 * @param i 0...
+	 * @return column index (-1 for rowid)
+	 */
+	public int getOrderByColumn(int i) {
+		return orderBy(i).getInt(0);
+	}
+	/**
+	 * @param i 0...
+	 */
+	public boolean isOrderByDesc(int i) {
+		return orderBy(i).getByte(4) != 0;
+	}
+	/**
+	 * @param consumed <code>true</code> when the cursor returns rows in the ORDER BY order
+	 */
+	public void setOrderByConsumed(boolean consumed) {
+		info.setInt(ORDER_BY_CONSUMED, consumed ? 1 : 0);
+	}
+
+	/**
+	 * @param idxNum plan number given back to {@link VirtualCursor#filter(int, RawValues)}
+	 */
+	public void setIdxNum(int idxNum) {
+		info.setInt(IDX_NUM, idxNum);
+	}
+	public void setEstimatedCost(double cost) {
+		info.setDouble(ESTIMATED_COST, cost);
+	}
+	/**
+	 * Ignored by SQLite versions older than 3.8.2.
+	 */
+	public void setEstimatedRows(long rows) {
+		if (Conn.libversionNumber() >= 3008002) {
+			info.setLong(ESTIMATED_ROWS, rows);
+		}
+	}
+	/**
+	 * @param flags {@link #SQLITE_INDEX_SCAN_UNIQUE} (ignored by SQLite versions older than 3.9.0)
+	 */
+	public void setIdxFlags(int flags) {
+		if (Conn.libversionNumber() >= 3009000) {
+			info.setInt(IDX_FLAGS, flags);
+		}
+	}
+	/**
+	 * @return mask of the columns used by the statement (bit 63 for all columns after the 63rd),
+	 * or -1 with SQLite versions older than 3.10.0
+	 */
+	public long getColumnsUsed() {
+		if (Conn.libversionNumber() >= 3010000) {
+			return info.getLong(COL_USED);
+		}
+		return -1L;
+	}
+}
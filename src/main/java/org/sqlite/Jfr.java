@@ -0,0 +1,70 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+/**
+ * Java Flight Recorder events (SQLitePrepare, SQLiteStep, SQLiteCommit and SQLiteBusyWait).
+ * <p>
+ * Events are only emitted when the JVM provides <code>jdk.jfr</code> (Java 11+, 8u262+) and the event is enabled in a recording:
+ * otherwise {@link #begin(int)} returns <code>null</code> and all other methods do nothing.
+ * Event handles are opaque so that <code>jdk.jfr</code> classes are never loaded when unavailable.
+ */
+final class Jfr {
+	static final int PREPARE = 0, STEP = 1, COMMIT = 2, BUSY_WAIT = 3;
+
+	private static final boolean AVAILABLE = isAvailable();
+
+	private static boolean isAvailable() {
+		try {
+			Class.forName("jdk.jfr.Event");
+			return true;
+		} catch (ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+
+	private Jfr() {
+	}
+
+	/**
+	 * @param type event type
+	 * @return event handle or <code>null</code> when the event is disabled (nothing is allocated then)
+	 */
+	static Object begin(int type) {
+		return AVAILABLE ? JfrEvents.begin(type) : null;
+	}
+
+	static void prepare(Object event, String sql, boolean cacheHit) {
+		if (event != null) {
+			JfrEvents.prepare(event, sql, cacheHit);
+		}
+	}
+
+	static void step(Object event, String sql, int rc, int rows) {
+		if (event != null) {
+			JfrEvents.step(event, sql, rc, rows);
+		}
+	}
+
+	/**
+	 * @param event handle returned by {@link #begin(int)}
+	 * @param rollback whether or not the transaction was rolled back
+	 */
+	static void commit(Object event, boolean rollback) {
+		if (event != null) {
+			JfrEvents.commit(event, rollback);
+		}
+	}
+
+	static void busyWait(Object event, int count, boolean retry) {
+		if (event != null) {
+			JfrEvents.busyWait(event, count, retry);
+		}
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// Only loaded when jdk.jfr is available (see Jfr)
+final class JfrEvents {
+	// isEnabled() is checked on the type so that no event is allocated when not recording
+	private static final EventType PREPARE = EventType.getEventType(Prepare.class);
+	private static final EventType STEP = EventType.getEventType(Step.class);
+	private static final EventType COMMIT = EventType.getEventType(Commit.class);
+	private static final EventType BUSY_WAIT = EventType.getEventType(BusyWait.class);
+
+	private JfrEvents() {
+	}
+
+	static Object begin(int type) {
+		final Event event;
+		switch (type) {
+			case Jfr.PREPARE:
+				if (!PREPARE.isEnabled()) {
+					return null;
+				}
+				event = new Prepare();
+				break;
+			case Jfr.STEP:
+				if (!STEP.isEnabled()) {
+					return null;
+				}
+				event = new Step();
+				break;
+			case Jfr.COMMIT:
+				if (!COMMIT.isEnabled()) {
+					return null;
+				}
+				event = new Commit();
+				break;
+			case Jfr.BUSY_WAIT:
+				if (!BUSY_WAIT.isEnabled()) {
+					return null;
+				}
+				event = new BusyWait();
+				break;
+			default:
+				throw new IllegalArgumentException("unknown event type: " + type);
+		}
+		event.begin();
+		return event;
+	}
+
+	static void prepare(Object o, String sql, boolean cacheHit) {
+		final Prepare event = (Prepare) o;
+		event.end();
+		if (event.shouldCommit()) {
+			event.sql = sql;
+			event.cacheHit = cacheHit;
+			event.commit();
+		}
+	}
+
+	static void step(Object o, String sql, int rc, int rows) {
+		final Step event = (Step) o;
+		event.end();
+		if (event.shouldCommit()) {
+			event.sql = sql;
+			event.resultCode = rc;
+			event.rows = rows;
+			event.commit();
+		}
+	}
+
+	static void commit(Object o, boolean rollback) {
+		final Commit event = (Commit) o;
+		event.end();
+		if (event.shouldCommit()) {
+			event.rollback = rollback;
+			event.commit();
+		}
+	}
+
+	static void busyWait(Object o, int count, boolean retry) {
+		final BusyWait event = (BusyWait) o;
+		event.end();
+		if (event.shouldCommit()) {
+			event.count = count;
+			event.retry = retry;
+			event.commit();
+		}
+	}
+
+	@Name("org.sqlite.SQLitePrepare")
+	@Label("SQLite Prepare")
+	@Category("SQLite")
+	@Description("Statement compilation (or lookup in the prepared statements cache)")
+	static final class Prepare extends Event {
+		@Label("SQL")
+		String sql;
+		@Label("Cache Hit")
+		boolean cacheHit;
+	}
+
+	@Name("org.sqlite.SQLiteStep")
+	@Label("SQLite Step")
+	@Category("SQLite")
+	@Description("One sqlite3_step call (SQLITE_ROW: a row is available, SQLITE_DONE: end of execution)")
+	static final class Step extends Event {
+		@Label("SQL")
+		String sql;
+		@Label("Result Code")
+		int resultCode;
+		@Label("Rows")
+		@Description("Rows returned by the statement execution so far (the total on SQLITE_DONE)")
+		int rows;
+	}
+
+	@Name("org.sqlite.SQLiteCommit")
+	@Label("SQLite Commit")
+	@Category("SQLite")
+	@Description("Transaction commit or rollback")
+	static final class Commit extends Event {
+		@Label("Rollback")
+		boolean rollback;
+	}
+
+	@Name("org.sqlite.SQLiteBusyWait")
+	@Label("SQLite Busy Wait")
+	@Category("SQLite")
+	@Description("Busy handler invocation or wait for an unlock notification")
+	static final class BusyWait extends Event {
+		@Label("Count")
+		int count;
+		@Label("Retry")
+		boolean retry;
+	}
+}
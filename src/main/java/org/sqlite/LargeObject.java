@@ -0,0 +1,300 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Random-access channel over a chunked large object (see {@link LargeObjects#open}).
+ * <p>
+ * A single BLOB handle is opened on the chunk table and moved from chunk to chunk with
+ * <code>sqlite3_blob_reopen</code>. As with {@link BlobChannel}, the size is fixed.
+ */
+public class LargeObject implements SeekableByteChannel {
+	private final Conn c;
+	private final String dbName;
+	private final long oid;
+	private final long size;
+	private final int chunkSize;
+	private final boolean rw;
+
+	private Blob blob;
+	private long chunk = -1; // chunk the blob handle is opened on
+	private long position;
+	private boolean closed;
+
+	LargeObject(Conn c, String dbName, long oid, long size, int chunkSize, boolean rw) {
+		this.c = c;
+		this.dbName = dbName;
+		this.oid = oid;
+		this.size = size;
+		this.chunkSize = chunkSize;
+		this.rw = rw;
+	}
+
+	public long getOid() {
+		return oid;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	long chunkCount() {
+		return (size + chunkSize - 1) / chunkSize;
+	}
+
+	private Blob blob(long n) throws SQLiteException {
+		if (blob == null) {
+			blob = c.open(dbName, LargeObjects.CHUNK_TABLE, "data", LargeObjects.chunkId(oid, n), rw);
+		} else if (chunk != n) {
+			try {
+				blob.reopen(LargeObjects.chunkId(oid, n));
+			} catch (SQLiteException e) { // the handle is aborted
+				blob.closeNoCheck();
+				blob = null;
+				chunk = -1;
+				throw e;
+			}
+		}
+		chunk = n;
+		return blob;
+	}
+
+	/**
+	 * Reads or writes <code>b.remaining()</code> bytes at <code>offset</code>, within a single chunk
+	 * (<code>b</code> position is not changed).
+	 * @return number of bytes transferred
+	 */
+	private int io(ByteBuffer b, long offset, boolean write) throws IOException {
+		final long n = offset / chunkSize;
+		final int chunkOffset = (int) (offset % chunkSize);
+		final int len = Math.min(b.remaining(), chunkSize - chunkOffset);
+		final int limit = b.limit();
+		((Buffer) b).limit(b.position() + len);
+		try {
+			if (write) {
+				blob(n).write(b, chunkOffset);
+			} else {
+				blob(n).read(b, chunkOffset);
+			}
+		} catch (SQLiteException e) {
+			throw new IOException(e);
+		} finally {
+			((Buffer) b).limit(limit);
+		}
+		return len;
+	}
+
+	@Override
+	public int read(ByteBuffer dst) throws IOException {
+		checkOpen();
+		if (position >= size) {
+			return -1;
+		}
+		int count = 0;
+		while (dst.hasRemaining() && position < size) {
+			final int limit = dst.limit();
+			((Buffer) dst).limit((int) Math.min(limit, dst.position() + size - position));
+			final int n;
+			try {
+				n = io(dst, position, false);
+			} finally {
+				((Buffer) dst).limit(limit);
+			}
+			((Buffer) dst).position(dst.position() + n);
+			position += n;
+			count += n;
+		}
+		return count;
+	}
+
+	@Override
+	public int write(ByteBuffer src) throws IOException {
+		checkOpen();
+		if (!rw) {
+			throw new NonWritableChannelException();
+		}
+		final int count = src.remaining();
+		if (position + count > size) {
+			throw new IOException(String.format("cannot write %d bytes at %d: large object size is %d", count, position, size));
+		}
+		while (src.hasRemaining()) {
+			final int n = io(src, position, true);
+			((Buffer) src).position(src.position() + n);
+			position += n;
+		}
+		return count;
+	}
+
+	@Override
+	public long position() throws IOException {
+		checkOpen();
+		return position;
+	}
+
+	@Override
+	public LargeObject position(long newPosition) throws IOException {
+		if (newPosition < 0) {
+			throw new IllegalArgumentException(String.format("invalid position: %d < 0", newPosition));
+		}
+		checkOpen();
+		position = newPosition;
+		return this;
+	}
+
+	@Override
+	public long size() throws IOException {
+		checkOpen();
+		return size;
+	}
+
+	/**
+	 * A large object cannot be resized.
+	 * @throws IOException if <code>size</code> is less than the object size
+	 */
+	@Override
+	public LargeObject truncate(long size) throws IOException {
+		if (size < 0) {
+			throw new IllegalArgumentException(String.format("invalid size: %d < 0", size));
+		} else if (size < size()) {
+			throw new IOException("large object cannot be resized");
+		}
+		if (position > size) {
+			position = size;
+		}
+		return this;
+	}
+
+	/**
+	 * Transfers bytes from this object to <code>target</code> (this channel position is not modified).
+	 * @return number of bytes transferred (less than <code>count</code> when a non-blocking <code>target</code> is full)
+	 * @see FileChannel#transferTo(long, long, WritableByteChannel)
+	 */
+	public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+		if (position < 0 || count < 0) {
+			throw new IllegalArgumentException();
+		}
+		checkOpen();
+		final long end = Math.min(size, position + count);
+		final ByteBuffer buffer = DirectBuffers.acquire();
+		try {
+			long offset = position;
+			while (offset < end) {
+				((Buffer) buffer).clear().limit((int) Math.min(buffer.capacity(), end - offset));
+				final int n = io(buffer, offset, false);
+				((Buffer) buffer).limit(n);
+				offset += target.write(buffer);
+				if (buffer.hasRemaining()) { // non-blocking target
+					break;
+				}
+			}
+			return Math.max(0, offset - position);
+		} finally {
+			DirectBuffers.release(buffer);
+		}
+	}
+
+	/**
+	 * Transfers bytes from <code>src</code> into this object (this channel position is not modified).
+	 * @return number of bytes transferred (less than <code>count</code> when <code>src</code> reaches its end
+	 * or when a non-blocking <code>src</code> has no byte available)
+	 * @see FileChannel#transferFrom(ReadableByteChannel, long, long)
+	 */
+	public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+		if (position < 0 || count < 0) {
+			throw new IllegalArgumentException();
+		}
+		checkOpen();
+		if (!rw) {
+			throw new NonWritableChannelException();
+		}
+		final long end = Math.min(size, position + count);
+		final ByteBuffer buffer = DirectBuffers.acquire();
+		try {
+			long offset = position;
+			while (offset < end) {
+				((Buffer) buffer).clear().limit((int) Math.min(buffer.capacity(), end - offset));
+				if (src.read(buffer) <= 0) { // end of stream or non-blocking source
+					break;
+				}
+				((Buffer) buffer).flip();
+				while (buffer.hasRemaining()) {
+					final int n = io(buffer, offset, true);
+					((Buffer) buffer).position(buffer.position() + n);
+					offset += n;
+				}
+			}
+			return Math.max(0, offset - position);
+		} finally {
+			DirectBuffers.release(buffer);
+		}
+	}
+
+	/**
+	 * Copies chunk <code>n</code> at the same offset in <code>target</code>, with positional writes
+	 * so that several objects can fill the same file concurrently (see {@link LargeObjects#transferTo}).
+	 */
+	void transferChunkTo(long n, FileChannel target) throws IOException {
+		checkOpen();
+		final long end = Math.min(size, (n + 1) * chunkSize);
+		final ByteBuffer buffer = DirectBuffers.acquire();
+		try {
+			long offset = n * chunkSize;
+			while (offset < end) {
+				((Buffer) buffer).clear().limit((int) Math.min(buffer.capacity(), end - offset));
+				io(buffer, offset, false);
+				while (buffer.hasRemaining()) {
+					offset += target.write(buffer, offset);
+				}
+			}
+		} finally {
+			DirectBuffers.release(buffer);
+		}
+	}
+
+	@Override
+	public boolean isOpen() {
+		return !closed;
+	}
+
+	/**
+	 * Closes the BLOB handle (the connection is not closed).
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (blob != null) {
+			try {
+				blob.close();
+			} catch (SQLiteException e) {
+				throw new IOException(e);
+			} finally {
+				blob = null;
+			}
+		}
+	}
+
+	private void checkOpen() throws ClosedChannelException {
+		if (closed) {
+			throw new ClosedChannelException();
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Large objects stored as fixed-size chunks across rows of two managed tables, so that the size of an object
+ * is limited neither by <code>SQLITE_LIMIT_LENGTH</code> nor by <code>int</code> BLOB offsets.
+ * <pre>
+ * CREATE TABLE large_object (oid INTEGER PRIMARY KEY, size INTEGER NOT NULL, chunk_size INTEGER NOT NULL);
+ * CREATE TABLE large_object_chunk (id INTEGER PRIMARY KEY, data BLOB NOT NULL); -- id: oid &lt;&lt; 24 | chunk number
+ * </pre>
+ * The rowid of a chunk is computed, so moving from one chunk to the next one is a {@link Blob#reopen(long)}.
+ * As with a BLOB, the size of an object is fixed when it is created.
+ * @see LargeObject
+ */
+public final class LargeObjects {
+	public static final String OBJECT_TABLE = "large_object";
+	public static final String CHUNK_TABLE = "large_object_chunk";
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+	static final int CHUNK_BITS = 24;
+
+	private LargeObjects() {
+	}
+
+	static long chunkId(long oid, long chunk) {
+		return oid << CHUNK_BITS | chunk;
+	}
+
+	private static String qualify(String dbName, String table) {
+		return '"' + SQLite.escapeIdentifier(dbName == null ? "main" : dbName) + "\".\"" + table + '"';
+	}
+
+	/**
+	 * Creates the managed tables if they do not exist.
+	 * @param dbName <code>null</code> for "main"
+	 */
+	public static void createTables(Conn c, String dbName) throws SQLiteException {
+		c.fastExec("CREATE TABLE IF NOT EXISTS " + qualify(dbName, OBJECT_TABLE) +
+				" (oid INTEGER PRIMARY KEY, size INTEGER NOT NULL, chunk_size INTEGER NOT NULL)");
+		c.fastExec("CREATE TABLE IF NOT EXISTS " + qualify(dbName, CHUNK_TABLE) + " (id INTEGER PRIMARY KEY, data BLOB NOT NULL)");
+	}
+
+	/**
+	 * Creates a zero-filled object.
+	 * @param size in bytes
+	 * @param chunkSize in bytes (see {@link #DEFAULT_CHUNK_SIZE})
+	 * @return the new object identifier
+	 */
+	public static long create(Conn c, String dbName, long size, int chunkSize) throws SQLiteException {
+		if (size < 0) {
+			throw new SQLiteException(String.format("invalid size: %d < 0", size), ErrCodes.WRAPPER_SPECIFIC);
+		} else if (chunkSize <= 0 || chunkSize > c.getLimit(SQLite.SQLITE_LIMIT_LENGTH)) {
+			throw new SQLiteException(String.format("invalid chunk size: %d", chunkSize), ErrCodes.WRAPPER_SPECIFIC);
+		}
+		final long chunks = (size + chunkSize - 1) / chunkSize;
+		if (chunks > 1L << CHUNK_BITS) {
+			throw new SQLiteException(String.format("too many chunks: %d > %d (increase chunk size)", chunks, 1L << CHUNK_BITS), ErrCodes.WRAPPER_SPECIFIC);
+		}
+		c.fastExec("SAVEPOINT large_object");
+		try {
+			final long oid;
+			try (Stmt insert = c.prepare("INSERT INTO " + qualify(dbName, OBJECT_TABLE) + " (size, chunk_size) VALUES (?, ?)", false)) {
+				oid = insert.insert(size, chunkSize);
+			}
+			if (oid >= 1L << (63 - CHUNK_BITS)) {
+				throw new SQLiteException(String.format("object identifier too big: %d", oid), ErrCodes.WRAPPER_SPECIFIC);
+			}
+			try (Stmt insert = c.prepare("INSERT INTO " + qualify(dbName, CHUNK_TABLE) + " (id, data) VALUES (?, ?)", false)) {
+				for (long n = 0; n < chunks; n++) {
+					insert.execDml(chunkId(oid, n), new ZeroBlob((int) Math.min(chunkSize, size - n * chunkSize)));
+				}
+			}
+			c.fastExec("RELEASE large_object");
+			return oid;
+		} catch (SQLiteException | RuntimeException e) {
+			c.fastExec("ROLLBACK TO large_object");
+			c.fastExec("RELEASE large_object");
+			throw e;
+		}
+	}
+
+	/**
+	 * @param rw <code>false</code> for read-only access
+	 * @return a channel positioned at the start of the object
+	 */
+	public static LargeObject open(Conn c, String dbName, long oid, boolean rw) throws SQLiteException {
+		try (Stmt select = c.prepare("SELECT size, chunk_size FROM " + qualify(dbName, OBJECT_TABLE) + " WHERE oid = ?", false)) {
+			select.bind(oid);
+			if (!select.step(0)) {
+				throw new SQLiteException(c, String.format("no such large object: %d", oid), ErrCodes.WRAPPER_SPECIFIC);
+			}
+			return new LargeObject(c, dbName == null ? "main" : dbName, oid, select.getColumnLong(0), select.getColumnInt(1), rw);
+		}
+	}
+
+	/**
+	 * @return <code>false</code> when the object does not exist
+	 */
+	public static boolean delete(Conn c, String dbName, long oid) throws SQLiteException {
+		c.fastExec("SAVEPOINT large_object");
+		try {
+			c.execDml("DELETE FROM " + qualify(dbName, CHUNK_TABLE) + " WHERE id BETWEEN ? AND ?", false,
+					chunkId(oid, 0), chunkId(oid, (1L << CHUNK_BITS) - 1));
+			final boolean deleted = c.execDml("DELETE FROM " + qualify(dbName, OBJECT_TABLE) + " WHERE oid = ?", false, oid) == 1;
+			c.fastExec("RELEASE large_object");
+			return deleted;
+		} catch (SQLiteException | RuntimeException e) {
+			c.fastExec("ROLLBACK TO large_object");
+			c.fastExec("RELEASE large_object");
+			throw e;
+		}
+	}
+
+	/**
+	 * Copies a whole object into <code>target</code>, the chunks being read in parallel:
+	 * each connection (one task per connection) reads every n-th chunk.
+	 * <p>
+	 * Connections must be distinct and opened on the same database. Only reads can be parallelized:
+	 * SQLite allows a single writer at a time, so an object should be written through one connection.
+	 * Each connection reads in its own implicit transactions, so the chunks are not read from the same snapshot:
+	 * if the object is modified during the copy, the result may mix old and new content.
+	 * @return number of bytes transferred
+	 */
+	public static long transferTo(List<Conn> conns, String dbName, long oid, FileChannel target, Executor executor) throws SQLiteException, IOException {
+		final int n = conns.size();
+		final LargeObject[] objects = new LargeObject[n];
+		try {
+			for (int i = 0; i < n; i++) {
+				objects[i] = open(conns.get(i), dbName, oid, false);
+			}
+			final long chunks = objects[0].chunkCount();
+			final CompletableFuture<?>[] tasks = new CompletableFuture<?>[n];
+			for (int i = 0; i < n; i++) {
+				final LargeObject object = objects[i];
+				final int first = i;
+				tasks[i] = CompletableFuture.runAsync(() -> {
+					try {
+						for (long chunk = first; chunk < chunks; chunk += n) {
+							object.transferChunkTo(chunk, target);
+						}
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}, executor);
+			}
+			try {
+				CompletableFuture.allOf(tasks).join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof UncheckedIOException) {
+					throw ((UncheckedIOException) e.getCause()).getCause();
+				}
+				throw e;
+			}
+			return objects[0].size();
+		} finally {
+			for (LargeObject object : objects) {
+				if (object != null) {
+					object.close();
+				}
+			}
+		}
+	}
+}
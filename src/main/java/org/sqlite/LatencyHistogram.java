@@ -0,0 +1,157 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram (in nanoseconds).
+ * <p>
+ * Buckets are log-linear (HDR style): values below 16 are exact, above, each power of two is split into 8 sub-buckets
+ * (relative error &lt; 12.5%). Values above 2^40 ns (about 18 minutes) are clamped.
+ * Counters are striped by thread to limit contention between concurrent writers.
+ * @see Metrics
+ */
+public final class LatencyHistogram {
+	private static final int SUB_BITS = 3;
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+	private static final int MAX_BIT = 40;
+	private static final int BUCKETS = bucket((1L << (MAX_BIT + 1)) - 1) + 1;
+	// buckets followed by sum
+	private static final int STRIDE = BUCKETS + 1;
+	private static final int STRIPES;
+	static {
+		final int cpus = Runtime.getRuntime().availableProcessors();
+		STRIPES = Math.min(8, Integer.highestOneBit(Math.max(1, cpus)));
+	}
+
+	private final AtomicLongArray counts = new AtomicLongArray(STRIPES * STRIDE);
+
+	static int bucket(long nanos) {
+		if (nanos < 2 * SUB_COUNT) {
+			return nanos < 0L ? 0 : (int) nanos;
+		}
+		final int msb = 63 - Long.numberOfLeadingZeros(nanos);
+		if (msb > MAX_BIT) {
+			return BUCKETS - 1;
+		}
+		final int shift = msb - SUB_BITS;
+		return SUB_COUNT * shift + (int) (nanos >>> shift);
+	}
+
+	// lowest value of the specified bucket
+	static long lowerBound(int bucket) {
+		if (bucket < 2 * SUB_COUNT) {
+			return bucket;
+		}
+		final int shift = bucket / SUB_COUNT - 1;
+		return (long) (bucket % SUB_COUNT + SUB_COUNT) << shift;
+	}
+
+	/**
+	 * @param nanos duration
+	 */
+	public void record(long nanos) {
+		final int offset = ((int) Thread.currentThread().getId() & (STRIPES - 1)) * STRIDE;
+		counts.incrementAndGet(offset + bucket(nanos));
+		counts.addAndGet(offset + BUCKETS, nanos);
+	}
+
+	/**
+	 * @return consistent-enough copy of the current counters
+	 */
+	public Snapshot snapshot() {
+		final long[] buckets = new long[BUCKETS];
+		long sum = 0L;
+		for (int s = 0; s < STRIPES; s++) {
+			final int offset = s * STRIDE;
+			for (int i = 0; i < BUCKETS; i++) {
+				buckets[i] += counts.get(offset + i);
+			}
+			sum += counts.get(offset + BUCKETS);
+		}
+		return new Snapshot(buckets, sum);
+	}
+
+	/**
+	 * Reset all counters (concurrent records may be lost).
+	 */
+	public void reset() {
+		for (int i = 0; i < counts.length(); i++) {
+			counts.set(i, 0L);
+		}
+	}
+
+	/**
+	 * Immutable histogram values.
+	 */
+	public static final class Snapshot {
+		private final long[] buckets;
+		private final long count;
+		private final long sum;
+
+		Snapshot(long[] buckets, long sum) {
+			this.buckets = buckets;
+			this.sum = sum;
+			long count = 0L;
+			for (long n : buckets) {
+				count += n;
+			}
+			this.count = count;
+		}
+
+		public long getCount() {
+			return count;
+		}
+		/**
+		 * @return total recorded time in nanoseconds
+		 */
+		public long getSum() {
+			return sum;
+		}
+		public double getMean() {
+			return count == 0L ? 0.0 : (double) sum / count;
+		}
+		/**
+		 * @return lower bound of the bucket holding the largest value
+		 */
+		public long getMax() {
+			for (int i = buckets.length - 1; i >= 0; i--) {
+				if (buckets[i] != 0L) {
+					return lowerBound(i);
+				}
+			}
+			return 0L;
+		}
+		/**
+		 * @param percentile between 0 and 100
+		 * @return lower bound of the bucket holding the value at the specified percentile
+		 */
+		public long getValueAtPercentile(double percentile) {
+			if (count == 0L) {
+				return 0L;
+			}
+			final long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * count));
+			long n = 0L;
+			for (int i = 0; i < buckets.length; i++) {
+				n += buckets[i];
+				if (n >= rank) {
+					return lowerBound(i);
+				}
+			}
+			return getMax();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("count=%d, mean=%.0fns, p50=%dns, p99=%dns, max=%dns", count, getMean(),
+					getValueAtPercentile(50), getValueAtPercentile(99), getMax());
+		}
+	}
+}
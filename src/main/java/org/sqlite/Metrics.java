@@ -0,0 +1,302 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional process-wide latency instrumentation of prepare, step and commit, keyed by normalized SQL.
+ * <p>
+ * Disabled by default: the instrumented paths then only read one volatile field.
+ * <pre>{@code
+ * Metrics metrics = Metrics.enable(1000);
+ * metrics.schedule(timers -> timers.forEach(System.out::println), 60_000);
+ * }</pre>
+ */
+public final class Metrics {
+	/**
+	 * Instrumented operations
+	 */
+	public enum Op {
+		PREPARE, STEP, COMMIT
+	}
+
+	/**
+	 * Key used once the maximum number of distinct statements is reached.
+	 */
+	public static final String OTHER = "(other)";
+
+	private static volatile Metrics current;
+
+	private final int maxKeys;
+	// by Op ordinal: normalized SQL => timer
+	private final List<ConcurrentMap<String, Timer>> timers;
+	// by Op ordinal: SQL text as given => timer (so that the same SQL is normalized only once)
+	private final List<ConcurrentMap<String, Timer>> rawTimers;
+	private ScheduledExecutorService scheduler; // guarded by this
+
+	private Metrics(int maxKeys) {
+		this.maxKeys = maxKeys;
+		final Op[] ops = Op.values();
+		timers = new ArrayList<>(ops.length);
+		rawTimers = new ArrayList<>(ops.length);
+		for (Op ignored : ops) {
+			timers.add(new ConcurrentHashMap<>());
+			rawTimers.add(new ConcurrentHashMap<>());
+		}
+	}
+
+	/**
+	 * Start collecting latencies (keeping the current metrics if already enabled).
+	 * @param maxKeys maximum number of distinct statements per operation
+	 * @return current metrics
+	 */
+	public static synchronized Metrics enable(int maxKeys) {
+		Metrics metrics = current;
+		if (metrics == null) {
+			metrics = new Metrics(maxKeys);
+			current = metrics;
+		}
+		return metrics;
+	}
+
+	/**
+	 * Stop collecting latencies (and cancel any scheduled report).
+	 */
+	public static synchronized void disable() {
+		final Metrics metrics = current;
+		if (metrics != null) {
+			current = null;
+			metrics.cancel();
+		}
+	}
+
+	/**
+	 * @return current metrics or <code>null</code> when disabled
+	 */
+	public static Metrics get() {
+		return current;
+	}
+
+	/**
+	 * @return start time to be given to {@link #record(Op, String, long)} or 0 when disabled
+	 */
+	public static long start() {
+		return current == null ? 0L : System.nanoTime();
+	}
+
+	/**
+	 * Record the latency of one operation (no-op when disabled).
+	 * @param op operation
+	 * @param sql SQL (normalized before being used as key)
+	 * @param start value returned by {@link #start()}
+	 */
+	public static void record(Op op, String sql, long start) {
+		final Metrics metrics = current;
+		if (metrics == null || start == 0L) {
+			return;
+		}
+		metrics.timer(op, sql).histogram.record(System.nanoTime() - start);
+	}
+
+	/**
+	 * @param op operation
+	 * @param sql SQL text
+	 * @return timer (created if needed)
+	 */
+	public Timer timer(Op op, String sql) {
+		final ConcurrentMap<String, Timer> raw = rawTimers.get(op.ordinal());
+		Timer timer = raw.get(sql);
+		if (timer != null) {
+			return timer;
+		}
+		final ConcurrentMap<String, Timer> map = timers.get(op.ordinal());
+		final String key = normalize(sql);
+		timer = map.get(key);
+		if (timer == null) {
+			timer = map.computeIfAbsent(map.size() < maxKeys ? key : OTHER, k -> new Timer(this, op, k));
+		}
+		if (raw.size() < 4 * maxKeys) { // bounded: many texts may have the same normalized form
+			raw.putIfAbsent(sql, timer);
+		}
+		return timer;
+	}
+
+	/**
+	 * @return all timers
+	 */
+	public List<Timer> timers() {
+		final List<Timer> list = new ArrayList<>();
+		for (ConcurrentMap<String, Timer> map : timers) {
+			list.addAll(map.values());
+		}
+		return list;
+	}
+
+	/**
+	 * Reset all histograms (timers are kept).
+	 */
+	public void reset() {
+		for (ConcurrentMap<String, Timer> map : timers) {
+			for (Timer timer : map.values()) {
+				timer.histogram.reset();
+			}
+		}
+	}
+
+	/**
+	 * Report all timers now.
+	 */
+	public void report(Reporter reporter) {
+		reporter.report(timers());
+	}
+
+	/**
+	 * Report all timers periodically on a daemon thread (replacing any previous schedule).
+	 * @param reporter destination
+	 * @param periodMillis period
+	 */
+	public synchronized void schedule(Reporter reporter, long periodMillis) {
+		cancel();
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			final Thread t = new Thread(r, "sqlite-metrics-reporter");
+			t.setDaemon(true);
+			return t;
+		});
+		scheduler.scheduleAtFixedRate(() -> {
+			try {
+				report(reporter);
+			} catch (RuntimeException e) {
+				SQLite.sqlite3_log(-1, "error while reporting metrics: " + e);
+			}
+		}, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Cancel the periodic report.
+	 */
+	public synchronized void cancel() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+	}
+
+	/**
+	 * Replace literals by '?' and collapse white spaces.
+	 * @param sql SQL text
+	 * @return normalized SQL text
+	 */
+	public static String normalize(String sql) {
+		final int len = sql.length();
+		final StringBuilder sb = new StringBuilder(len);
+		boolean space = false;
+		for (int i = 0; i < len; i++) {
+			char ch = sql.charAt(i);
+			if (Character.isWhitespace(ch)) {
+				space = sb.length() > 0;
+				continue;
+			}
+			if (space) {
+				sb.append(' ');
+				space = false;
+			}
+			final boolean identChar = sb.length() > 0 && isIdentChar(sb.charAt(sb.length() - 1));
+			if (ch == '\'' || (ch == 'x' || ch == 'X') && !identChar && i + 1 < len && sql.charAt(i + 1) == '\'') {
+				if (ch != '\'') {
+					i++;
+				}
+				// string or blob literal
+				for (i++; i < len; i++) {
+					if (sql.charAt(i) == '\'') {
+						if (i + 1 < len && sql.charAt(i + 1) == '\'') {
+							i++;
+						} else {
+							break;
+						}
+					}
+				}
+				sb.append('?');
+			} else if (Character.isDigit(ch) && !identChar) {
+				// numeric literal
+				while (i + 1 < len && (isIdentChar(ch = sql.charAt(i + 1)) || ch == '.')) {
+					i++;
+				}
+				sb.append('?');
+			} else if (ch == '"' || ch == '`' || ch == '[') {
+				// quoted identifier
+				final char end = ch == '[' ? ']' : ch;
+				sb.append(ch);
+				for (i++; i < len; i++) {
+					ch = sql.charAt(i);
+					sb.append(ch);
+					if (ch == end) {
+						break;
+					}
+				}
+			} else {
+				sb.append(ch);
+			}
+		}
+		return sb.toString();
+	}
+
+	private static boolean isIdentChar(char ch) {
+		return Character.isLetterOrDigit(ch) || ch == '_' || ch == '$';
+	}
+
+	/**
+	 * Latencies of one operation for one (normalized) statement.
+	 */
+	public static final class Timer {
+		final Metrics owner;
+		private final Op op;
+		private final String sql;
+		private final LatencyHistogram histogram = new LatencyHistogram();
+
+		Timer(Metrics owner, Op op, String sql) {
+			this.owner = owner;
+			this.op = op;
+			this.sql = sql;
+		}
+
+		public Op getOp() {
+			return op;
+		}
+		/**
+		 * @return normalized SQL
+		 */
+		public String getSql() {
+			return sql;
+		}
+		public LatencyHistogram getHistogram() {
+			return histogram;
+		}
+
+		@Override
+		public String toString() {
+			return op + " " + sql + ": " + histogram.snapshot();
+		}
+	}
+
+	/**
+	 * Pluggable metrics exporter.
+	 */
+	@FunctionalInterface
+	public interface Reporter {
+		void report(Collection<Timer> timers);
+	}
+}
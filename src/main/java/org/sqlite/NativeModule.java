@@ -0,0 +1,311 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import com.sun.jna.Callback;
+import com.sun.jna.CallbackReference;
+import com.sun.jna.Memory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.sqlite.SQLite.SQLITE_OK;
+import static org.sqlite.SQLite.sqlite3_declare_vtab;
+import static org.sqlite.SQLite.sqlite3_free;
+import static org.sqlite.SQLite.sqlite3_malloc;
+
+/**
+ * Native <code>sqlite3_module</code> whose methods delegate to a {@link VirtualTableModule}
+ * (see {@link Conn#createModule(String, VirtualTableModule)}).
+ * <p>
+ * Native pointers are received as raw addresses (64-bit platforms only). <code>sqlite3_vtab</code> and
+ * <code>sqlite3_vtab_cursor</code> structures are extended with the index of the Java table or cursor
+ * in a handle table, so that per-row callbacks find their cursor without creating any Java object
+ * (JNA still boxes the callback arguments on each invocation).
+ * The cursor structure also holds the result of {@link VirtualCursor#eof()}, computed by <code>xFilter</code>
+ * and <code>xNext</code>, because <code>xEof</code> cannot report an error.
+ */
+final class NativeModule {
+	// sqlite3_module version 1: iVersion followed by 19 methods (xCreate...xRename)
+	private static final int MODULE_SIZE = 8 + 19 * 8;
+	private static final int X_CREATE = 8, X_CONNECT = 16, X_BEST_INDEX = 24, X_DISCONNECT = 32, X_DESTROY = 40,
+			X_OPEN = 48, X_CLOSE = 56, X_FILTER = 64, X_NEXT = 72, X_EOF = 80, X_COLUMN = 88, X_ROWID = 96;
+	// sqlite3_vtab {pModule, nRef, zErrMsg} + table handle
+	private static final int VTAB_SIZE = 32, VTAB_ERR_MSG = 16, VTAB_HANDLE = 24;
+	// sqlite3_vtab_cursor {pVtab} + cursor handle + eof
+	private static final int CURSOR_SIZE = 16, CURSOR_HANDLE = 8, CURSOR_EOF = 12;
+
+	//int (*xCreate/xConnect)(sqlite3*, void *pAux, int argc, const char *const*argv, sqlite3_vtab **ppVTab, char **pzErr);
+	interface XConnect extends Callback {
+		int callback(long pDb, long pAux, int argc, long argv, long ppVTab, long pzErr);
+	}
+	//int (*xBestIndex)(sqlite3_vtab *pVTab, sqlite3_index_info*);
+	interface XBestIndex extends Callback {
+		int callback(long pVTab, long pInfo);
+	}
+	//int (*xDisconnect/xDestroy)(sqlite3_vtab *pVTab);
+	interface XDisconnect extends Callback {
+		int callback(long pVTab);
+	}
+	//int (*xOpen)(sqlite3_vtab *pVTab, sqlite3_vtab_cursor **ppCursor);
+	interface XOpen extends Callback {
+		int callback(long pVTab, long ppCursor);
+	}
+	//int (*xClose/xNext/xEof)(sqlite3_vtab_cursor*);
+	interface XCursor extends Callback {
+		int callback(long pCursor);
+	}
+	//int (*xFilter)(sqlite3_vtab_cursor*, int idxNum, const char *idxStr, int argc, sqlite3_value **argv);
+	interface XFilter extends Callback {
+		int callback(long pCursor, int idxNum, long idxStr, int argc, long argv);
+	}
+	//int (*xColumn)(sqlite3_vtab_cursor*, sqlite3_context*, int);
+	interface XColumn extends Callback {
+		int callback(long pCursor, long pCtx, int i);
+	}
+	//int (*xRowid)(sqlite3_vtab_cursor*, sqlite3_int64 *pRowid);
+	interface XRowid extends Callback {
+		int callback(long pCursor, long pRowid);
+	}
+
+	final Memory module = new Memory(MODULE_SIZE);
+	private final VirtualTableModule impl;
+	// handle tables
+	private VirtualTable[] tables = new VirtualTable[2];
+	private VirtualCursor[] cursors = new VirtualCursor[4];
+	// reused by all invocations
+	private final PointerView view = new PointerView();
+	private final IndexInfo indexInfo = new IndexInfo();
+	private final RawValues args = new RawValues();
+	private final ColumnResult result = new ColumnResult();
+
+	// retained to prevent the native callbacks from being garbage collected
+	private final XConnect xConnect = this::connect;
+	private final XBestIndex xBestIndex = this::bestIndex;
+	private final XDisconnect xDisconnect = this::disconnect;
+	private final XOpen xOpen = this::open;
+	private final XCursor xClose = this::close;
+	private final XFilter xFilter = this::filter;
+	private final XCursor xNext = this::next;
+	private final XCursor xEof = this::eof;
+	private final XColumn xColumn = this::column;
+	private final XRowid xRowid = this::rowId;
+
+	NativeModule(VirtualTableModule impl) {
+		this.impl = impl;
+		module.clear();
+		module.setInt(0, 1); // iVersion
+		// same xCreate and xConnect: the module can also be used as an eponymous virtual table
+		module.setPointer(X_CREATE, CallbackReference.getFunctionPointer(xConnect));
+		module.setPointer(X_CONNECT, CallbackReference.getFunctionPointer(xConnect));
+		module.setPointer(X_BEST_INDEX, CallbackReference.getFunctionPointer(xBestIndex));
+		module.setPointer(X_DISCONNECT, CallbackReference.getFunctionPointer(xDisconnect));
+		module.setPointer(X_DESTROY, CallbackReference.getFunctionPointer(xDisconnect));
+		module.setPointer(X_OPEN, CallbackReference.getFunctionPointer(xOpen));
+		module.setPointer(X_CLOSE, CallbackReference.getFunctionPointer(xClose));
+		module.setPointer(X_FILTER, CallbackReference.getFunctionPointer(xFilter));
+		module.setPointer(X_NEXT, CallbackReference.getFunctionPointer(xNext));
+		module.setPointer(X_EOF, CallbackReference.getFunctionPointer(xEof));
+		module.setPointer(X_COLUMN, CallbackReference.getFunctionPointer(xColumn));
+		module.setPointer(X_ROWID, CallbackReference.getFunctionPointer(xRowid));
+		// no xUpdate: read-only
+	}
+
+	private int connect(long pDb, long pAux, int argc, long argv, long ppVTab, long pzErr) {
+		try {
+			final String[] arguments = new String[argc];
+			for (int i = 0; i < argc; i++) {
+				arguments[i] = view.moveTo(argv).getPointer((long) i << 3).getString(0, "UTF-8");
+			}
+			// argv[0]: module name, argv[1]: database name, argv[2]: table name
+			final VirtualTable table = impl.connect(arguments[1], arguments[2], Arrays.copyOfRange(arguments, 3, argc));
+			final String declaration = table.getDeclaration();
+			final int res = sqlite3_declare_vtab(pDb, declaration);
+			if (res != SQLITE_OK) {
+				table.disconnect();
+				view.moveTo(pzErr).setLong(0, copy(String.format("invalid virtual table declaration: %s", declaration)));
+				return res;
+			}
+			final long pVTab = sqlite3_malloc(VTAB_SIZE);
+			if (pVTab == 0) {
+				table.disconnect();
+				return ErrCodes.SQLITE_NOMEM;
+			}
+			view.moveTo(pVTab).clear(VTAB_SIZE);
+			view.setInt(VTAB_HANDLE, register(table));
+			view.moveTo(ppVTab).setLong(0, pVTab);
+			return SQLITE_OK;
+		} catch (SQLiteException | RuntimeException e) {
+			view.moveTo(pzErr).setLong(0, copy(e.getMessage()));
+			return ErrCodes.SQLITE_ERROR;
+		}
+	}
+
+	private int bestIndex(long pVTab, long pInfo) {
+		try {
+			table(pVTab).bestIndex(indexInfo.moveTo(pInfo));
+			return SQLITE_OK;
+		} catch (SQLiteException | RuntimeException e) {
+			return error(pVTab, e);
+		}
+	}
+
+	private int disconnect(long pVTab) {
+		final int i = view.moveTo(pVTab).getInt(VTAB_HANDLE);
+		final VirtualTable table = tables[i];
+		tables[i] = null;
+		sqlite3_free(pVTab);
+		try {
+			table.disconnect();
+		} catch (RuntimeException e) {
+			// the table is disconnected anyway
+		}
+		return SQLITE_OK;
+	}
+
+	private int open(long pVTab, long ppCursor) {
+		try {
+			final VirtualCursor cursor = table(pVTab).open();
+			final long pCursor = sqlite3_malloc(CURSOR_SIZE);
+			if (pCursor == 0) {
+				cursor.close();
+				return ErrCodes.SQLITE_NOMEM;
+			}
+			view.moveTo(pCursor).clear(CURSOR_SIZE);
+			view.setInt(CURSOR_HANDLE, register(cursor));
+			view.moveTo(ppCursor).setLong(0, pCursor);
+			return SQLITE_OK;
+		} catch (SQLiteException | RuntimeException e) {
+			return error(pVTab, e);
+		}
+	}
+
+	private int close(long pCursor) {
+		final int i = view.moveTo(pCursor).getInt(CURSOR_HANDLE);
+		final VirtualCursor cursor = cursors[i];
+		cursors[i] = null;
+		sqlite3_free(pCursor);
+		try {
+			cursor.close();
+		} catch (RuntimeException e) {
+			// the cursor is closed anyway
+		}
+		return SQLITE_OK;
+	}
+
+	private int filter(long pCursor, int idxNum, long idxStr, int argc, long argv) {
+		try {
+			final VirtualCursor cursor = cursor(pCursor);
+			cursor.filter(idxNum, args.moveTo(argc, argv));
+			return setEof(pCursor, cursor);
+		} catch (SQLiteException | RuntimeException e) {
+			return cursorError(pCursor, e);
+		}
+	}
+
+	private int next(long pCursor) {
+		try {
+			final VirtualCursor cursor = cursor(pCursor);
+			cursor.next();
+			return setEof(pCursor, cursor);
+		} catch (SQLiteException | RuntimeException e) {
+			return cursorError(pCursor, e);
+		}
+	}
+
+	// computed by filter or next, where an error can be reported
+	private int eof(long pCursor) {
+		return view.moveTo(pCursor).getInt(CURSOR_EOF);
+	}
+
+	private int setEof(long pCursor, VirtualCursor cursor) {
+		view.moveTo(pCursor).setInt(CURSOR_EOF, cursor.eof() ? 1 : 0);
+		return SQLITE_OK;
+	}
+
+	private int column(long pCursor, long pCtx, int i) {
+		try {
+			cursor(pCursor).column(i, result.moveTo(pCtx));
+			return SQLITE_OK;
+		} catch (SQLiteException | RuntimeException e) {
+			return cursorError(pCursor, e);
+		}
+	}
+
+	private int rowId(long pCursor, long pRowid) {
+		try {
+			final long rowId = cursor(pCursor).rowId();
+			view.moveTo(pRowid).setLong(0, rowId);
+			return SQLITE_OK;
+		} catch (SQLiteException | RuntimeException e) {
+			return cursorError(pCursor, e);
+		}
+	}
+
+	private VirtualTable table(long pVTab) {
+		return tables[view.moveTo(pVTab).getInt(VTAB_HANDLE)];
+	}
+
+	private VirtualCursor cursor(long pCursor) {
+		return cursors[view.moveTo(pCursor).getInt(CURSOR_HANDLE)];
+	}
+
+	private int register(VirtualTable table) {
+		int i = free(tables);
+		if (i == tables.length) {
+			tables = Arrays.copyOf(tables, i * 2);
+		}
+		tables[i] = table;
+		return i;
+	}
+
+	private int register(VirtualCursor cursor) {
+		int i = free(cursors);
+		if (i == cursors.length) {
+			cursors = Arrays.copyOf(cursors, i * 2);
+		}
+		cursors[i] = cursor;
+		return i;
+	}
+
+	private static int free(Object[] handles) {
+		for (int i = 0; i < handles.length; i++) {
+			if (handles[i] == null) {
+				return i;
+			}
+		}
+		return handles.length;
+	}
+
+	private int cursorError(long pCursor, Exception e) {
+		return error(view.moveTo(pCursor).getLong(0), e); // pVtab
+	}
+
+	// Error message reported by SQLite (sqlite3_vtab.zErrMsg)
+	private int error(long pVTab, Exception e) {
+		final long zErrMsg = view.moveTo(pVTab).getLong(VTAB_ERR_MSG);
+		if (zErrMsg != 0) {
+			sqlite3_free(zErrMsg);
+		}
+		view.moveTo(pVTab).setLong(VTAB_ERR_MSG, copy(e.getMessage()));
+		return ErrCodes.SQLITE_ERROR;
+	}
+
+	// sqlite3_malloc'd copy of msg
+	private static long copy(String msg) {
+		final byte[] bytes = String.valueOf(msg).getBytes(StandardCharsets.UTF_8);
+		final long p = sqlite3_malloc(bytes.length + 1);
+		if (p != 0) {
+			final PointerView dst = new PointerView().moveTo(p);
+			dst.write(0, bytes, 0, bytes.length);
+			dst.setByte(bytes.length, (byte) 0);
+		}
+		return p;
+	}
+}
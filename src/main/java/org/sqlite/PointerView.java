@@ -0,0 +1,26 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import com.sun.jna.Pointer;
+
+/**
+ * Pointer whose address is moved instead of allocating a new Pointer for each native address
+ * received by a callback (see {@link PrimitiveFunction}).
+ */
+final class PointerView extends Pointer {
+	PointerView() {
+		super(0);
+	}
+
+	PointerView moveTo(long address) {
+		peer = address;
+		return this;
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.PointerByReference;
+import org.sqlite.SQLite.SQLite3;
+import org.sqlite.SQLite.SQLite3Values;
+
+import static org.sqlite.SQLite.PreUpdateApi.*;
+
+/**
+ * Old and new column values of the row being changed.
+ * Only valid during the {@link PreUpdateHook} call.
+ * @see <a href="http://sqlite.org/c3ref/preupdate_count.html">sqlite3_preupdate_old</a>
+ */
+public final class PreUpdate {
+	private final SQLite3 pDb;
+	private final int actionCode;
+
+	PreUpdate(SQLite3 pDb, int actionCode) {
+		this.pDb = pDb;
+		this.actionCode = actionCode;
+	}
+
+	/**
+	 * @return number of columns in the row being changed
+	 * @see <a href="http://sqlite.org/c3ref/preupdate_count.html">sqlite3_preupdate_count</a>
+	 */
+	public int getCount() {
+		return sqlite3_preupdate_count(pDb);
+	}
+
+	/**
+	 * @return 0 for a direct change, 1 for a change made by a top-level trigger...
+	 * @see <a href="http://sqlite.org/c3ref/preupdate_count.html">sqlite3_preupdate_depth</a>
+	 */
+	public int getDepth() {
+		return sqlite3_preupdate_depth(pDb);
+	}
+
+	/**
+	 * @return column values before the change (<code>null</code> for INSERT)
+	 */
+	public SQLite3Values getOld() throws SQLiteException {
+		if (actionCode == ActionCodes.SQLITE_INSERT) {
+			return null;
+		}
+		return values(false);
+	}
+
+	/**
+	 * @return column values after the change (<code>null</code> for DELETE)
+	 */
+	public SQLite3Values getNew() throws SQLiteException {
+		if (actionCode == ActionCodes.SQLITE_DELETE) {
+			return null;
+		}
+		return values(true);
+	}
+
+	private SQLite3Values values(boolean after) throws SQLiteException {
+		final int n = getCount();
+		final Pointer[] values = new Pointer[n];
+		final PointerByReference ppValue = new PointerByReference();
+		for (int i = 0; i < n; i++) {
+			final int res = after ? sqlite3_preupdate_new(pDb, i, ppValue) : sqlite3_preupdate_old(pDb, i, ppValue);
+			if (res != SQLite.SQLITE_OK) {
+				throw new SQLiteException(String.format("error while reading %s value of column %d", after ? "new" : "old", i), res);
+			}
+			values[i] = ppValue.getValue();
+		}
+		return new SQLite3Values(values);
+	}
+}
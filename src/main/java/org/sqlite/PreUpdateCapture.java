@@ -0,0 +1,274 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import org.sqlite.SQLite.SQLite3Values;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Replication capture built on the pre-update, commit and rollback hooks.
+ * <p>
+ * Before and after images of each changed row are copied in a single pass (no re-query)
+ * and buffered per transaction.
+ * When the transaction commits, the batch is published asynchronously to all listeners (in commit order);
+ * when it is rolled back, the batch is dropped.
+ * Savepoints and failed statements are tracked like in {@link ChangeCapture}: row images undone by <code>ROLLBACK TO</code>
+ * or by the failure of their statement are dropped.
+ * <p>
+ * Only one capture ({@link ChangeCapture} or {@link PreUpdateCapture}) can be installed on a connection.
+ * If a row image cannot be read, the commit hook converts the COMMIT into a ROLLBACK
+ * (the statement fails with SQLITE_CONSTRAINT_COMMITHOOK): changes are never committed without being captured.
+ * A batch is published when the commit hook is invoked: a COMMIT which subsequently fails is not retracted.
+ * @see PreUpdateHook
+ */
+public final class PreUpdateCapture implements AutoCloseable {
+	/**
+	 * Committed row images listener.
+	 */
+	@FunctionalInterface
+	public interface Listener {
+		/**
+		 * Invoked on the publisher thread, never concurrently for the same connection.
+		 * @param rows committed changes (immutable)
+		 */
+		void onCommit(List<RowImage> rows);
+	}
+
+	private final Conn c;
+	private final boolean includeTriggers;
+	private final ExecutorService publisher;
+	private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+	// retained to prevent the native callbacks from being garbage collected
+	private final PreUpdateHook preUpdateHook = this::preUpdate;
+	private final CommitHook commitHook = this::commit;
+	private final RollbackHook rollbackHook = this::rollback;
+	// current transaction (accessed only by the thread using the connection)
+	private List<RowImage> rows = new ArrayList<>();
+	private SQLiteException failure;
+	private final Savepoints savepoints = new Savepoints(() -> rows.size(), size -> rows.subList(size, rows.size()).clear());
+
+	private PreUpdateCapture(Conn c, boolean includeTriggers) {
+		this.c = c;
+		this.includeTriggers = includeTriggers;
+		publisher = Executors.newSingleThreadExecutor(r -> {
+			final Thread t = new Thread(r, "sqlite-preupdate-capture");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	 * Install the pre-update, commit and rollback hooks on the specified connection and track savepoints.
+	 * The capture already installed on the connection, if any, is closed.
+	 * @param c connection
+	 * @param includeTriggers whether or not changes made by triggers are captured
+	 * @return capture to which listeners are added
+	 * @throws ConnException if the library is not compiled with SQLITE_ENABLE_PREUPDATE_HOOK
+	 */
+	public static PreUpdateCapture install(Conn c, boolean includeTriggers) throws ConnException {
+		if (!SQLite.PreUpdateApi.AVAILABLE) {
+			throw new ConnException(c, "pre-update hook not supported", ErrCodes.WRAPPER_SPECIFIC);
+		}
+		c.closeCapture();
+		final PreUpdateCapture pc = new PreUpdateCapture(c, includeTriggers);
+		c.preUpdateHook(pc.preUpdateHook);
+		c.commitHook(pc.commitHook);
+		c.rollbackHook(pc.rollbackHook);
+		c.savepoints(pc.savepoints);
+		c.capture = pc;
+		return pc;
+	}
+
+	public void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Uninstall the hooks (if the connection is still open) and stop the publisher thread once pending batches are published.
+	 */
+	@Override
+	public void close() throws ConnException {
+		try {
+			if (!c.isClosed() && c.capture == this) {
+				c.preUpdateHook(null);
+				c.commitHook(null);
+				c.rollbackHook(null);
+				c.savepoints(null);
+				c.capture = null;
+			}
+		} finally {
+			publisher.shutdown();
+		}
+	}
+
+	private void preUpdate(PreUpdate values, int actionCode, String dbName, String tblName, long oldRowId, long newRowId) {
+		final int depth = values.getDepth();
+		if (depth > 0 && !includeTriggers) {
+			return;
+		}
+		try {
+			rows.add(new RowImage(actionCode, dbName, tblName, oldRowId, newRowId, depth,
+					copy(values.getOld()), copy(values.getNew())));
+		} catch (SQLiteException e) {
+			SQLite.sqlite3_log(e.getErrorCode(), "error while capturing row image: " + e.getMessage());
+			if (failure == null) {
+				failure = e; // the transaction must not commit
+			}
+		}
+	}
+
+	// sqlite3_value objects are only valid during the hook
+	private static Object[] copy(SQLite3Values values) {
+		if (values == null) {
+			return null;
+		}
+		final Object[] copy = new Object[values.getCount()];
+		for (int i = 0; i < copy.length; i++) {
+			switch (values.getType(i)) {
+				case ColTypes.SQLITE_INTEGER:
+					copy[i] = values.getLong(i);
+					break;
+				case ColTypes.SQLITE_FLOAT:
+					copy[i] = values.getDouble(i);
+					break;
+				case ColTypes.SQLITE_TEXT:
+					copy[i] = values.getText(i);
+					break;
+				case ColTypes.SQLITE_BLOB:
+					copy[i] = values.getBlob(i);
+					break;
+				default:
+					copy[i] = null;
+			}
+		}
+		return copy;
+	}
+
+	private boolean commit() {
+		savepoints.clear();
+		if (failure != null) {
+			SQLite.sqlite3_log(failure.getErrorCode(), "commit vetoed, row images missing: " + failure.getMessage());
+			rows.clear();
+			failure = null;
+			return false;
+		}
+		if (!rows.isEmpty()) {
+			final List<RowImage> batch = Collections.unmodifiableList(rows);
+			rows = new ArrayList<>();
+			if (!listeners.isEmpty()) {
+				try {
+					publisher.execute(() -> publish(batch));
+				} catch (RuntimeException e) { // rejected after close
+					SQLite.sqlite3_log(-1, "pre-update capture closed: " + e);
+				}
+			}
+		}
+		return true;
+	}
+
+	private void rollback() {
+		rows.clear();
+		savepoints.clear();
+		failure = null;
+	}
+
+	private void publish(List<RowImage> batch) {
+		for (Listener listener : listeners) {
+			try {
+				listener.onCommit(batch);
+			} catch (RuntimeException e) {
+				SQLite.sqlite3_log(-1, "error in pre-update listener: " + e);
+			}
+		}
+	}
+
+	/**
+	 * Before and after images of one changed row.
+	 */
+	public static final class RowImage {
+		private final int action;
+		private final String dbName;
+		private final String table;
+		private final long oldRowId;
+		private final long newRowId;
+		private final int depth;
+		private final Object[] oldValues;
+		private final Object[] newValues;
+
+		RowImage(int action, String dbName, String table, long oldRowId, long newRowId, int depth, Object[] oldValues, Object[] newValues) {
+			this.action = action;
+			this.dbName = dbName;
+			this.table = table;
+			this.oldRowId = oldRowId;
+			this.newRowId = newRowId;
+			this.depth = depth;
+			this.oldValues = oldValues;
+			this.newValues = newValues;
+		}
+
+		/**
+		 * @return {@link ActionCodes#SQLITE_INSERT}, {@link ActionCodes#SQLITE_UPDATE} or {@link ActionCodes#SQLITE_DELETE}
+		 */
+		public int getAction() {
+			return action;
+		}
+		public String getDbName() {
+			return dbName;
+		}
+		public String getTable() {
+			return table;
+		}
+		/**
+		 * @return rowid before the change (undefined for INSERT)
+		 */
+		public long getOldRowId() {
+			return oldRowId;
+		}
+		/**
+		 * @return rowid after the change (undefined for DELETE)
+		 */
+		public long getNewRowId() {
+			return newRowId;
+		}
+		/**
+		 * @return 0 for a direct change, 1 for a change made by a top-level trigger...
+		 */
+		public int getDepth() {
+			return depth;
+		}
+		/**
+		 * @return column values (Long, Double, String, byte[] or null) before the change (<code>null</code> for INSERT)
+		 */
+		public Object[] getOldValues() {
+			return oldValues == null ? null : oldValues.clone();
+		}
+		/**
+		 * @return column values (Long, Double, String, byte[] or null) after the change (<code>null</code> for DELETE)
+		 */
+		public Object[] getNewValues() {
+			return newValues == null ? null : newValues.clone();
+		}
+
+		@Override
+		public String toString() {
+			return (action == ActionCodes.SQLITE_INSERT ? "INSERT" : action == ActionCodes.SQLITE_UPDATE ? "UPDATE" : "DELETE") +
+					' ' + table + ' ' + Arrays.deepToString(oldValues) + " -> " + Arrays.deepToString(newValues);
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package org.sqlite;
+
+import com.sun.jna.Callback;
+import com.sun.jna.Pointer;
+import org.sqlite.SQLite.SQLite3;
+
+/**
+ * Pre-update notification callback.
+ * <p>
+ * Invoked prior to each INSERT, UPDATE and DELETE on a rowid table (and prior to each DELETE/INSERT of a WITHOUT ROWID table, with
+ * rowids undefined), with access to the old and new column values.
+ * @see Conn#preUpdateHook(PreUpdateHook)
+ * @see <a href="http://sqlite.org/c3ref/preupdate_count.html">sqlite3_preupdate_hook</a>
+ */
+@FunctionalInterface
+public interface PreUpdateHook extends Callback {
+	/**
+	 * @param pArg <code>null</code>.
+	 * @param pDb database connection
+	 * @param actionCode org.sqlite.ActionCodes.SQLITE_INSERT | SQLITE_UPDATE | SQLITE_DELETE.
+	 * @param dbName database name containing the affected row.
+	 * @param tblName table name containing the affected row.
+	 * @param oldRowId rowid of the row before the change (undefined for INSERT)
+	 * @param newRowId rowid of the row after the change (undefined for DELETE)
+	 */
+	default void callback(Pointer pArg, SQLite3 pDb, int actionCode, String dbName, String tblName, long oldRowId, long newRowId) {
+		preUpdate(new PreUpdate(pDb, actionCode), actionCode, dbName, tblName, oldRowId, newRowId);
+	}
+
+	/**
+	 * @param values old and new column values: only valid during the call.
+	 * @param actionCode org.sqlite.ActionCodes.SQLITE_INSERT | SQLITE_UPDATE | SQLITE_DELETE.
+	 * @param dbName database name containing the affected row.
+	 * @param tblName table name containing the affected row.
+	 * @param oldRowId rowid of the row before the change (undefined for INSERT)
+	 * @param newRowId rowid of the row after the change (undefined for DELETE)
+	 */
+	void preUpdate(PreUpdate values, int actionCode, String dbName, String tblName, long oldRowId, long newRowId);
+}
@@ -0,0 +1,118 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import com.sun.jna.Callback;
+
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongUnaryOperator;
+
+import static org.sqlite.SQLite.sqlite3_result_double;
+import static org.sqlite.SQLite.sqlite3_result_error;
+import static org.sqlite.SQLite.sqlite3_result_int64;
+import static org.sqlite.SQLite.sqlite3_result_null;
+import static org.sqlite.SQLite.sqlite3_value_double;
+import static org.sqlite.SQLite.sqlite3_value_int64;
+import static org.sqlite.SQLite.sqlite3_value_type;
+
+/**
+ * Scalar SQL function over <code>long</code> or <code>double</code> values
+ * (see {@link Conn#createLongFunction(String, LongBinaryOperator)} and {@link Conn#createDoubleFunction(String, DoubleBinaryOperator)}).
+ * <p>
+ * Unlike {@link ScalarCallback}, <code>sqlite3_context*</code> and <code>sqlite3_value**</code> are received
+ * as raw addresses (64-bit platforms only) instead of JNA structures, arguments are read through a view
+ * reused by all invocations, and the result is set without any marshalling
+ * (JNA still boxes the callback arguments on each invocation).
+ * As usual for SQL functions, the result is NULL when an argument is NULL.
+ */
+abstract class PrimitiveFunction implements Callback {
+	private final PointerView argv = new PointerView();
+
+	//void (*)(sqlite3_context*,int,sqlite3_value**),
+	@SuppressWarnings("unused")
+	public void callback(long pCtx, int nArg, long args) {
+		argv.moveTo(args);
+		try {
+			apply(pCtx);
+		} catch (RuntimeException e) {
+			sqlite3_result_error(pCtx, String.valueOf(e.getMessage()), -1);
+		}
+	}
+
+	/**
+	 * @return <code>sqlite3_value*</code> of the i-th argument
+	 */
+	final long arg(int i) {
+		return argv.getLong((long) i << 3);
+	}
+
+	abstract void apply(long pCtx);
+
+	private static boolean isNull(long pValue) {
+		return sqlite3_value_type(pValue) == ColTypes.SQLITE_NULL;
+	}
+
+	static PrimitiveFunction ofLong(LongUnaryOperator f) {
+		return new PrimitiveFunction() {
+			@Override
+			void apply(long pCtx) {
+				final long a = arg(0);
+				if (isNull(a)) {
+					sqlite3_result_null(pCtx);
+				} else {
+					sqlite3_result_int64(pCtx, f.applyAsLong(sqlite3_value_int64(a)));
+				}
+			}
+		};
+	}
+
+	static PrimitiveFunction ofLong(LongBinaryOperator f) {
+		return new PrimitiveFunction() {
+			@Override
+			void apply(long pCtx) {
+				final long a = arg(0), b = arg(1);
+				if (isNull(a) || isNull(b)) {
+					sqlite3_result_null(pCtx);
+				} else {
+					sqlite3_result_int64(pCtx, f.applyAsLong(sqlite3_value_int64(a), sqlite3_value_int64(b)));
+				}
+			}
+		};
+	}
+
+	static PrimitiveFunction ofDouble(DoubleUnaryOperator f) {
+		return new PrimitiveFunction() {
+			@Override
+			void apply(long pCtx) {
+				final long a = arg(0);
+				if (isNull(a)) {
+					sqlite3_result_null(pCtx);
+				} else {
+					sqlite3_result_double(pCtx, f.applyAsDouble(sqlite3_value_double(a)));
+				}
+			}
+		};
+	}
+
+	static PrimitiveFunction ofDouble(DoubleBinaryOperator f) {
+		return new PrimitiveFunction() {
+			@Override
+			void apply(long pCtx) {
+				final long a = arg(0), b = arg(1);
+				if (isNull(a) || isNull(b)) {
+					sqlite3_result_null(pCtx);
+				} else {
+					sqlite3_result_double(pCtx, f.applyAsDouble(sqlite3_value_double(a), sqlite3_value_double(b)));
+				}
+			}
+		};
+	}
+}
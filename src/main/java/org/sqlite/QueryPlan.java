@@ -0,0 +1,146 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Query plan (<code>EXPLAIN QUERY PLAN</code> tree) of a prepared statement,
+ * annotated with actual vs estimated cardinalities when the library supports scan status.
+ * @see Stmt#getQueryPlan()
+ * @see <a href="https://sqlite.org/eqp.html">EXPLAIN QUERY PLAN</a>
+ * @see <a href="http://sqlite.org/c3ref/stmt_scanstatus.html">sqlite3_stmt_scanstatus</a>
+ */
+public final class QueryPlan {
+	private final List<Node> roots;
+	private final boolean scanStatus;
+
+	QueryPlan(List<Node> roots, boolean scanStatus) {
+		this.roots = Collections.unmodifiableList(roots);
+		this.scanStatus = scanStatus;
+	}
+
+	/**
+	 * @return top level plan nodes
+	 */
+	public List<Node> getRoots() {
+		return roots;
+	}
+
+	/**
+	 * @return <code>true</code> when nodes are annotated with scan status counters
+	 */
+	public boolean hasScanStatus() {
+		return scanStatus;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder("QUERY PLAN");
+		for (Node root : roots) {
+			root.append(sb, 1);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * One <code>EXPLAIN QUERY PLAN</code> row.
+	 */
+	public static final class Node {
+		private final int id;
+		private final int parent;
+		private final String detail;
+		private final List<Node> children = new ArrayList<>();
+		// scan status (-1 when not available)
+		long loops = -1L;
+		long visits = -1L;
+		double estimatedRows = -1.0;
+		String name;
+
+		Node(int id, int parent, String detail) {
+			this.id = id;
+			this.parent = parent;
+			this.detail = detail;
+		}
+
+		public int getId() {
+			return id;
+		}
+		public int getParent() {
+			return parent;
+		}
+		/**
+		 * @return human-readable description of the step (e.g. "SCAN t")
+		 */
+		public String getDetail() {
+			return detail;
+		}
+		public List<Node> getChildren() {
+			return Collections.unmodifiableList(children);
+		}
+		/**
+		 * @return name of the table or index scanned by this loop (may be null)
+		 */
+		public String getName() {
+			return name;
+		}
+		/**
+		 * @return number of times this loop has run (-1 when not available)
+		 */
+		public long getLoops() {
+			return loops;
+		}
+		/**
+		 * @return total number of rows visited by this loop (-1 when not available)
+		 */
+		public long getVisits() {
+			return visits;
+		}
+		/**
+		 * @return number of rows the query planner estimated this loop would output on each run (-1 when not available)
+		 */
+		public double getEstimatedRows() {
+			return estimatedRows;
+		}
+		/**
+		 * @return average number of rows actually visited on each run (-1 when not available)
+		 */
+		public double getActualRows() {
+			if (loops < 0L) {
+				return -1.0;
+			}
+			return loops == 0L ? 0.0 : (double) visits / loops;
+		}
+
+		void add(Node child) {
+			children.add(child);
+		}
+
+		private void append(StringBuilder sb, int depth) {
+			sb.append('\n');
+			for (int i = 1; i < depth; i++) {
+				sb.append("   ");
+			}
+			sb.append("|--").append(detail);
+			if (loops >= 0L) {
+				sb.append(String.format(" (loops=%d, rows=%d, actual=%.1f, est=%.1f)", loops, visits, getActualRows(), estimatedRows));
+			}
+			for (Node child : children) {
+				child.append(sb, depth + 1);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return detail;
+		}
+	}
+}
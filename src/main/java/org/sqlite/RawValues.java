@@ -0,0 +1,102 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import com.sun.jna.Pointer;
+
+import static org.sqlite.SQLite.sqlite3_value_blob;
+import static org.sqlite.SQLite.sqlite3_value_bytes;
+import static org.sqlite.SQLite.sqlite3_value_double;
+import static org.sqlite.SQLite.sqlite3_value_int;
+import static org.sqlite.SQLite.sqlite3_value_int64;
+import static org.sqlite.SQLite.sqlite3_value_text;
+import static org.sqlite.SQLite.sqlite3_value_type;
+
+/**
+ * Arguments of a native callback, reused by all invocations: unlike {@link SQLite.SQLite3Values},
+ * nothing is allocated to read a numeric value.
+ * Only valid during the callback it is given to.
+ * @see VirtualCursor#filter(int, RawValues)
+ */
+public final class RawValues {
+	private final PointerView argv = new PointerView();
+	private int count;
+
+	RawValues() {
+	}
+
+	RawValues moveTo(int count, long argv) {
+		this.count = count;
+		this.argv.moveTo(argv);
+		return this;
+	}
+
+	private long arg(int i) {
+		if (i < 0 || i >= count) {
+			throw new IndexOutOfBoundsException(String.format("invalid argument index: %d (count: %d)", i, count));
+		}
+		return argv.getLong((long) i << 3);
+	}
+
+	/**
+	 * @return arg count
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @param i 0...
+	 * @return {@link ColTypes}.*
+	 * @see <a href="http://sqlite.org/c3ref/value_blob.html">sqlite3_value_type</a>
+	 */
+	public int getType(int i) {
+		return sqlite3_value_type(arg(i));
+	}
+	/**
+	 * @param i 0...
+	 * @see <a href="http://sqlite.org/c3ref/value_blob.html">sqlite3_value_int</a>
+	 */
+	public int getInt(int i) {
+		return sqlite3_value_int(arg(i));
+	}
+	/**
+	 * @param i 0...
+	 * @see <a href="http://sqlite.org/c3ref/value_blob.html">sqlite3_value_int64</a>
+	 */
+	public long getLong(int i) {
+		return sqlite3_value_int64(arg(i));
+	}
+	/**
+	 * @param i 0...
+	 * @see <a href="http://sqlite.org/c3ref/value_blob.html">sqlite3_value_double</a>
+	 */
+	public double getDouble(int i) {
+		return sqlite3_value_double(arg(i));
+	}
+	/**
+	 * @param i 0...
+	 * @see <a href="http://sqlite.org/c3ref/value_blob.html">sqlite3_value_text</a>
+	 */
+	public String getText(int i) {
+		return sqlite3_value_text(arg(i));
+	}
+	/**
+	 * @param i 0...
+	 * @see <a href="http://sqlite.org/c3ref/value_blob.html">sqlite3_value_blob</a>
+	 */
+	public byte[] getBlob(int i) {
+		final long arg = arg(i);
+		final Pointer blob = sqlite3_value_blob(arg);
+		if (blob == null) {
+			return null;
+		}
+		return blob.getByteArray(0L, sqlite3_value_bytes(arg));
+	}
+}
@@ -0,0 +1,768 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import com.sun.jna.Pointer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import static org.sqlite.ColTypes.*;
+
+/**
+ * Opt-in cache of read-only query results, keyed by SQL and bound parameters.
+ * <p>
+ * Results are stored as compact row images in byte arrays, with LRU eviction bounded by size.
+ * The source tables of each query are learned when the query is first prepared (authorizer {@link ActionCodes#SQLITE_READ}
+ * callbacks and {@link Stmt#getColumnTableName(int)}) and entries are invalidated:
+ * <ul>
+ * <li>per table, from the update hook, for changes made by this connection,</li>
+ * <li>entirely, when this connection changes rows without the update hook being invoked
+ * (WITHOUT ROWID tables, truncate optimization), detected with {@link Conn#getTotalChanges()},</li>
+ * <li>entirely, when another connection commits (<code>PRAGMA data_version</code>) or the schema changes (<code>PRAGMA schema_version</code>)
+ * in the "main" database or in any database read by a cached query (including attached ones), or when such a database is detached.</li>
+ * </ul>
+ * Versions are checked by each call to {@link #query(String, Object...)}, with statements retained by the cache,
+ * except inside a transaction in which this connection has already written and checked them:
+ * the locks (or the WAL snapshot) held until the end of the transaction prevent other connections from committing.
+ * Results of tables changed by the current transaction are not cached (they would become stale on rollback).
+ * Queries calling a built-in non-deterministic function (random(), date('now'), changes()...) are never cached;
+ * application-defined functions are assumed to be deterministic.
+ * <p>
+ * The update, commit and rollback hooks are used: only one of {@link ChangeCapture}, {@link PreUpdateCapture} or {@link ResultCache}
+ * can be installed on a connection.
+ * Like the connection, a cache must not be used concurrently by multiple threads and must be closed before the connection.
+ * <pre>{@code
+ * ResultCache cache = ResultCache.install(c, 1 << 20);
+ * try (ResultCache.Rows rows = cache.query("SELECT code, label FROM country WHERE region = ?", region)) {
+ *   while (rows.next()) {
+ *     ...
+ *   }
+ * }
+ * }</pre>
+ */
+public final class ResultCache implements AutoCloseable {
+	private static final Set<String> VOLATILE_FUNCTIONS = new HashSet<>(Arrays.asList(
+			"random", "randomblob", "changes", "total_changes", "last_insert_rowid", "sqlite_offset",
+			"date", "time", "datetime", "julianday", "unixepoch", "strftime",
+			"current_date", "current_time", "current_timestamp"));
+	// per entry bookkeeping (key, map nodes, metadata...)
+	private static final int ENTRY_OVERHEAD = 256;
+	// sources of a query which cannot be cached
+	private static final String[] UNCACHEABLE = new String[0];
+
+	private final Conn c;
+	private final long maxBytes;
+	private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	// "db.table" => keys of the entries reading this table
+	private final Map<String, Set<Key>> byTable = new HashMap<>();
+	// SQL => source tables
+	private final Map<String, String[]> sources = new HashMap<>();
+	// tables changed by the current transaction
+	private final Set<String> txDirty = new HashSet<>();
+	// retained to prevent the native callbacks from being garbage collected
+	private final ChangeCapture.RawUpdateHook updateHook = this::update;
+	private final CommitHook commitHook = this::commit;
+	private final RollbackHook rollbackHook = this::rollback;
+	private long bytes;
+	// changes reported by the update hook since the last check
+	private int hookChanges;
+	private int totalChanges;
+	// database name => versions of the "main" database and of the databases read by a cached query
+	private final Map<String, Versions> versions = new HashMap<>();
+	// versions checked during the current write transaction
+	private boolean validated;
+	// last table reported by the update hook (pointers are only valid until the next schema change)
+	private long lastDbPtr;
+	private long lastTblPtr;
+	private long hits;
+	private long misses;
+	private long invalidations;
+
+	private ResultCache(Conn c, long maxBytes) {
+		this.c = c;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Install the update, commit and rollback hooks on the specified connection.
+	 * The capture already installed on the connection, if any, is closed.
+	 * @param c connection
+	 * @param maxBytes maximum size of the cached row images
+	 * @return empty cache
+	 */
+	public static ResultCache install(Conn c, long maxBytes) throws SQLiteException {
+		c.closeCapture();
+		final ResultCache rc = new ResultCache(c, maxBytes);
+		rc.watch("main");
+		c.updateHook(rc.updateHook);
+		c.commitHook(rc.commitHook);
+		c.rollbackHook(rc.rollbackHook);
+		c.capture = rc;
+		rc.totalChanges = c.getTotalChanges();
+		return rc;
+	}
+
+	/**
+	 * Execute a query or return its cached result.
+	 * Statements which are not read-only (or do not return any column) are executed but not cached.
+	 * @param sql a single SQL statement
+	 * @param params SQL statement parameters (Integer, Long, Double, String, byte[]...)
+	 * @return fully materialized rows
+	 */
+	public Rows query(String sql, Object... params) throws SQLiteException {
+		validate();
+		final Key key = new Key(sql, params);
+		final Entry entry = entries.get(key);
+		if (entry != null) {
+			hits++;
+			return new Rows(entry);
+		}
+		misses++;
+		String[] tables = sources.get(sql);
+		if (tables == null) {
+			tables = learn(sql);
+			sources.put(sql, tables);
+			for (String table : tables) {
+				watch(table.substring(0, table.indexOf('.')));
+			}
+		}
+		final Entry result;
+		try (Stmt s = c.prepare(sql, true)) {
+			s.bind(params);
+			result = materialize(s, tables);
+		}
+		if (tables != UNCACHEABLE && !dirty(tables)) {
+			store(key, result);
+		}
+		return new Rows(result);
+	}
+
+	/**
+	 * Drop all entries.
+	 */
+	public void clear() {
+		if (!entries.isEmpty()) {
+			invalidations++;
+		}
+		entries.clear();
+		byTable.clear();
+		bytes = 0L;
+	}
+
+	/**
+	 * Drop the entries reading the specified table.
+	 * @param dbName "main" or "temp" or attached database name
+	 * @param tblName table name
+	 */
+	public void invalidate(String dbName, String tblName) {
+		invalidate(tableKey(dbName, tblName));
+	}
+
+	public int size() {
+		return entries.size();
+	}
+	/**
+	 * @return size of the cached row images (in bytes, including an estimated overhead)
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+	public long getHits() {
+		return hits;
+	}
+	public long getMisses() {
+		return misses;
+	}
+	/**
+	 * @return number of (table or full) invalidations which dropped at least one entry
+	 */
+	public long getInvalidations() {
+		return invalidations;
+	}
+
+	/**
+	 * Uninstall the hooks (if the connection is still open), drop all entries and release the version statements.
+	 */
+	@Override
+	public void close() throws ConnException {
+		try {
+			if (!c.isClosed() && c.capture == this) {
+				c.updateHook((UpdateHook) null);
+				c.commitHook(null);
+				c.rollbackHook(null);
+				c.capture = null;
+			}
+		} finally {
+			clear();
+			sources.clear();
+			for (Versions v : versions.values()) {
+				v.close();
+			}
+			versions.clear();
+		}
+	}
+
+	private void update(Pointer pArg, int actionCode, Pointer dbName, Pointer tblName, long rowId) {
+		hookChanges++;
+		final long dbPtr = Pointer.nativeValue(dbName);
+		final long tblPtr = Pointer.nativeValue(tblName);
+		if (dbPtr == lastDbPtr && tblPtr == lastTblPtr) {
+			return; // already invalidated
+		}
+		lastDbPtr = dbPtr;
+		lastTblPtr = tblPtr;
+		final String table = tableKey(dbName.getString(0L, SQLite.UTF_8_ECONDING), tblName.getString(0L, SQLite.UTF_8_ECONDING));
+		txDirty.add(table);
+		invalidate(table);
+	}
+
+	// The transaction ends: the locks are released
+	private boolean commit() {
+		txDirty.clear();
+		validated = false;
+		return true;
+	}
+
+	private void rollback() {
+		txDirty.clear();
+		validated = false;
+	}
+
+	private void invalidate(String table) {
+		final Set<Key> keys = byTable.remove(table);
+		if (keys == null || keys.isEmpty()) {
+			return;
+		}
+		invalidations++;
+		for (Key key : keys) {
+			final Entry entry = entries.remove(key);
+			if (entry != null) {
+				unlink(key, entry);
+			}
+		}
+	}
+
+	// Drop everything that may have been changed without the update hook being notified.
+	private void validate() throws SQLiteException {
+		final boolean autoCommit = c.getAutoCommit();
+		if (autoCommit) {
+			txDirty.clear();
+			validated = false;
+		}
+		final int total = c.getTotalChanges();
+		if (total - totalChanges > hookChanges) {
+			clear();
+		}
+		totalChanges = total;
+		hookChanges = 0;
+		lastDbPtr = lastTblPtr = 0L;
+		if (validated) {
+			return;
+		}
+		boolean changed = false, schemaChanged = false;
+		final Iterator<Versions> it = versions.values().iterator();
+		while (it.hasNext()) {
+			final Versions v = it.next();
+			if (!v.filename.equals(c.getFilename(v.dbName))) { // detached or replaced
+				v.close();
+				it.remove();
+				changed = schemaChanged = true;
+				continue;
+			}
+			final long schema = v.schemaVersion;
+			if (v.check()) {
+				changed = true;
+				schemaChanged |= schema != v.schemaVersion;
+			}
+		}
+		if (changed) {
+			clear();
+			if (schemaChanged) {
+				sources.clear();
+			}
+		}
+		// only a write transaction is sure to end with the commit or rollback hook
+		validated = !autoCommit && !txDirty.isEmpty();
+	}
+
+	// Check the versions of the specified database from now on.
+	private void watch(String dbName) throws SQLiteException {
+		if (versions.containsKey(dbName)) {
+			return;
+		}
+		final String filename = c.getFilename(dbName);
+		if (filename == null) {
+			return;
+		}
+		final Versions v = new Versions(dbName, filename);
+		try {
+			v.data = c.prepare("PRAGMA \"" + dbName.replace("\"", "\"\"") + "\".data_version", false);
+			v.schema = c.prepare("PRAGMA \"" + dbName.replace("\"", "\"\"") + "\".schema_version", false);
+			v.check();
+		} catch (SQLiteException e) {
+			v.close();
+			throw e;
+		}
+		versions.put(dbName, v);
+	}
+
+	// Prepare the statement with an authorizer collecting the tables read (chained to the user's one).
+	private String[] learn(String sql) throws SQLiteException {
+		final Set<String> tables = new HashSet<>();
+		final boolean[] deterministic = {true};
+		final Authorizer user = c.getAuthorizer();
+		final Authorizer collector = (actionCode, arg1, arg2, dbName, triggerName) -> {
+			if (actionCode == ActionCodes.SQLITE_READ && arg1 != null) {
+				tables.add(tableKey(dbName, arg1));
+			} else if (actionCode == ActionCodes.SQLITE_FUNCTION && arg2 != null &&
+					VOLATILE_FUNCTIONS.contains(arg2.toLowerCase(Locale.ROOT))) {
+				deterministic[0] = false;
+			}
+			return user == null ? Authorizer.SQLITE_OK : user.authorize(actionCode, arg1, arg2, dbName, triggerName);
+		};
+		c.setAuhtorizer(collector);
+		try (Stmt s = c.prepare(sql, false)) {
+			if (!s.isReadOnly() || s.getColumnCount() == 0 || s.getTail() != null && !s.getTail().trim().isEmpty() || !deterministic[0]) {
+				return UNCACHEABLE;
+			}
+			for (int i = 0; i < s.getColumnCount(); i++) {
+				final String table = s.getColumnTableName(i);
+				if (table != null) {
+					tables.add(tableKey(s.getColumnDatabaseName(i), table));
+				}
+			}
+		} finally {
+			c.setAuhtorizer(user);
+		}
+		return tables.toArray(new String[0]);
+	}
+
+	private boolean dirty(String[] tables) {
+		if (txDirty.isEmpty()) {
+			return false;
+		}
+		for (String table : tables) {
+			if (txDirty.contains(table)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void store(Key key, Entry entry) {
+		final long size = entry.size();
+		if (size > maxBytes) {
+			return;
+		}
+		entries.put(key, entry);
+		for (String table : entry.tables) {
+			byTable.computeIfAbsent(table, k -> new HashSet<>()).add(key);
+		}
+		bytes += size;
+		final Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+		while (bytes > maxBytes && it.hasNext()) {
+			final Map.Entry<Key, Entry> eldest = it.next();
+			it.remove();
+			unlink(eldest.getKey(), eldest.getValue());
+		}
+	}
+
+	private void unlink(Key key, Entry entry) {
+		bytes -= entry.size();
+		for (String table : entry.tables) {
+			final Set<Key> keys = byTable.get(table);
+			if (keys != null) {
+				keys.remove(key);
+			}
+		}
+	}
+
+	private static String tableKey(String dbName, String tblName) {
+		return ((dbName == null ? "main" : dbName) + '.' + tblName).toLowerCase(Locale.ROOT);
+	}
+
+	private static Entry materialize(Stmt s, String[] tables) throws SQLiteException {
+		final int columnCount = s.getColumnCount();
+		final String[][] meta = new String[5][columnCount];
+		for (int i = 0; i < columnCount; i++) {
+			meta[0][i] = s.getColumnName(i);
+			meta[1][i] = s.getColumnDeclType(i);
+			meta[2][i] = s.getColumnOriginName(i);
+			meta[3][i] = s.getColumnTableName(i);
+			meta[4][i] = s.getColumnDatabaseName(i);
+		}
+		final Image image = new Image();
+		int rowCount = 0;
+		while (s.step(0)) {
+			rowCount++;
+			for (int i = 0; i < columnCount; i++) {
+				final int type = s.getColumnType(i);
+				image.put((byte) type);
+				switch (type) {
+					case SQLITE_INTEGER:
+						image.putLong(s.getColumnLong(i));
+						break;
+					case SQLITE_FLOAT:
+						image.putLong(Double.doubleToRawLongBits(s.getColumnDouble(i)));
+						break;
+					case SQLITE_TEXT:
+						image.putBytes(s.getColumnText(i).getBytes(StandardCharsets.UTF_8));
+						break;
+					case SQLITE_BLOB:
+						image.putBytes(s.getColumnBlob(i));
+						break;
+					default:
+				}
+			}
+		}
+		return new Entry(meta, rowCount, Arrays.copyOf(image.buf, image.size), tables);
+	}
+
+	// Growable row images buffer
+	private static final class Image {
+		private byte[] buf = new byte[256];
+		private int size;
+
+		private void ensure(int n) {
+			if (size + n > buf.length) {
+				buf = Arrays.copyOf(buf, Math.max(buf.length << 1, size + n));
+			}
+		}
+		void put(byte b) {
+			ensure(1);
+			buf[size++] = b;
+		}
+		void putLong(long v) {
+			ensure(8);
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				buf[size++] = (byte) (v >>> shift);
+			}
+		}
+		void putBytes(byte[] bytes) {
+			ensure(4 + bytes.length);
+			final int len = bytes.length;
+			buf[size++] = (byte) (len >>> 24);
+			buf[size++] = (byte) (len >>> 16);
+			buf[size++] = (byte) (len >>> 8);
+			buf[size++] = (byte) len;
+			System.arraycopy(bytes, 0, buf, size, len);
+			size += len;
+		}
+	}
+
+	// Versions of one database, read with retained statements
+	private static final class Versions {
+		private final String dbName;
+		private final String filename;
+		private Stmt data;
+		private Stmt schema;
+		private long dataVersion = -1L;
+		private long schemaVersion = -1L;
+
+		Versions(String dbName, String filename) {
+			this.dbName = dbName;
+			this.filename = filename;
+		}
+
+		/**
+		 * @return <code>true</code> if a version has changed
+		 */
+		boolean check() throws SQLiteException {
+			final long d = read(data);
+			final long s = read(schema);
+			final boolean changed = d != dataVersion || s != schemaVersion;
+			dataVersion = d;
+			schemaVersion = s;
+			return changed;
+		}
+
+		private static long read(Stmt pragma) throws SQLiteException {
+			try {
+				if (!pragma.step(0)) {
+					throw new StmtException(pragma, "no version", ErrCodes.WRAPPER_SPECIFIC);
+				}
+				return pragma.getColumnLong(0);
+			} finally {
+				pragma.reset();
+			}
+		}
+
+		void close() {
+			if (data != null) {
+				data.close(true);
+			}
+			if (schema != null) {
+				schema.close(true);
+			}
+		}
+	}
+
+	private static final class Key {
+		private final String sql;
+		private final Object[] params;
+		private final int hash;
+
+		Key(String sql, Object[] params) {
+			this.sql = sql;
+			this.params = params == null ? new Object[0] : params.clone();
+			for (int i = 0; i < this.params.length; i++) {
+				if (this.params[i] instanceof byte[]) {
+					this.params[i] = ((byte[]) this.params[i]).clone();
+				}
+			}
+			hash = 31 * sql.hashCode() + Arrays.deepHashCode(this.params);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			final Key key = (Key) o;
+			return hash == key.hash && sql.equals(key.sql) && Arrays.deepEquals(params, key.params);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	private static final class Entry {
+		// names, declared types, origin names, table names, database names
+		private final String[][] meta;
+		private final int rowCount;
+		private final byte[] data;
+		private final String[] tables;
+
+		Entry(String[][] meta, int rowCount, byte[] data, String[] tables) {
+			this.meta = meta;
+			this.rowCount = rowCount;
+			this.data = data;
+			this.tables = tables;
+		}
+
+		long size() {
+			return data.length + ENTRY_OVERHEAD;
+		}
+	}
+
+	/**
+	 * Forward-only cursor over a (cached) result.
+	 */
+	public static final class Rows implements Row, AutoCloseable {
+		private final Entry entry;
+		private final ByteBuffer data;
+		// current row: type and offset of each value
+		private final int[] types;
+		private final int[] offsets;
+		private int row = -1;
+
+		Rows(Entry entry) {
+			this.entry = entry;
+			data = ByteBuffer.wrap(entry.data);
+			types = new int[entry.meta[0].length];
+			offsets = new int[types.length];
+		}
+
+		/**
+		 * Move to the next row.
+		 * @return <code>false</code> when there is no more row
+		 */
+		public boolean next() {
+			if (row >= entry.rowCount - 1) {
+				row = entry.rowCount;
+				return false;
+			}
+			row++;
+			int pos = row == 0 ? 0 : end();
+			for (int i = 0; i < types.length; i++) {
+				types[i] = data.get(pos++);
+				offsets[i] = pos;
+				if (types[i] == SQLITE_INTEGER || types[i] == SQLITE_FLOAT) {
+					pos += 8;
+				} else if (types[i] == SQLITE_TEXT || types[i] == SQLITE_BLOB) {
+					pos += 4 + data.getInt(pos);
+				}
+			}
+			return true;
+		}
+
+		// offset of the current row end
+		private int end() {
+			final int last = types.length - 1;
+			if (last < 0) {
+				return 0;
+			}
+			final int type = types[last];
+			if (type == SQLITE_INTEGER || type == SQLITE_FLOAT) {
+				return offsets[last] + 8;
+			} else if (type == SQLITE_TEXT || type == SQLITE_BLOB) {
+				return offsets[last] + 4 + data.getInt(offsets[last]);
+			}
+			return offsets[last];
+		}
+
+		/**
+		 * @return number of rows
+		 */
+		public int getRowCount() {
+			return entry.rowCount;
+		}
+
+		@Override
+		public int getColumnCount() {
+			return types.length;
+		}
+		@Override
+		public int getColumnType(int iCol) throws StmtException {
+			checkRow(iCol);
+			return types[iCol];
+		}
+		@Override
+		public String getColumnDeclType(int iCol) throws StmtException {
+			return meta(1, iCol);
+		}
+		@Override
+		public int getColumnAffinity(int iCol) throws StmtException {
+			return SQLite.getAffinity(getColumnDeclType(iCol));
+		}
+		@Override
+		public String getColumnName(int iCol) throws StmtException {
+			return meta(0, iCol);
+		}
+		@Override
+		public String getColumnOriginName(int iCol) throws StmtException {
+			return meta(2, iCol);
+		}
+		@Override
+		public String getColumnTableName(int iCol) throws StmtException {
+			return meta(3, iCol);
+		}
+		@Override
+		public String getColumnDatabaseName(int iCol) throws StmtException {
+			return meta(4, iCol);
+		}
+
+		@Override
+		public byte[] getColumnBlob(int iCol) throws StmtException {
+			final int type = getColumnType(iCol);
+			if (type == SQLITE_NULL) {
+				return null;
+			} else if (type == SQLITE_TEXT || type == SQLITE_BLOB) {
+				return bytes(iCol);
+			}
+			return getColumnText(iCol).getBytes(StandardCharsets.UTF_8);
+		}
+		@Override
+		public int getColumnBytes(int iCol) throws StmtException {
+			final int type = getColumnType(iCol);
+			if (type == SQLITE_NULL) {
+				return 0;
+			} else if (type == SQLITE_TEXT || type == SQLITE_BLOB) {
+				return data.getInt(offsets[iCol]);
+			}
+			return getColumnText(iCol).length();
+		}
+		@Override
+		public double getColumnDouble(int iCol) throws StmtException {
+			switch (getColumnType(iCol)) {
+				case SQLITE_INTEGER:
+					return data.getLong(offsets[iCol]);
+				case SQLITE_FLOAT:
+					return Double.longBitsToDouble(data.getLong(offsets[iCol]));
+				case SQLITE_TEXT:
+					try {
+						return Double.parseDouble(getColumnText(iCol).trim());
+					} catch (NumberFormatException e) {
+						return 0.0;
+					}
+				default:
+					return 0.0;
+			}
+		}
+		@Override
+		public int getColumnInt(int iCol) throws StmtException {
+			return (int) getColumnLong(iCol);
+		}
+		@Override
+		public long getColumnLong(int iCol) throws StmtException {
+			switch (getColumnType(iCol)) {
+				case SQLITE_INTEGER:
+					return data.getLong(offsets[iCol]);
+				case SQLITE_FLOAT:
+					return (long) Double.longBitsToDouble(data.getLong(offsets[iCol]));
+				case SQLITE_TEXT:
+					try {
+						return Long.parseLong(getColumnText(iCol).trim());
+					} catch (NumberFormatException e) {
+						return (long) getColumnDouble(iCol);
+					}
+				default:
+					return 0L;
+			}
+		}
+		@Override
+		public String getColumnText(int iCol) throws StmtException {
+			switch (getColumnType(iCol)) {
+				case SQLITE_INTEGER:
+					return Long.toString(data.getLong(offsets[iCol]));
+				case SQLITE_FLOAT:
+					return Double.toString(Double.longBitsToDouble(data.getLong(offsets[iCol])));
+				case SQLITE_TEXT:
+				case SQLITE_BLOB:
+					return new String(bytes(iCol), StandardCharsets.UTF_8);
+				default:
+					return null;
+			}
+		}
+
+		private byte[] bytes(int iCol) {
+			final int offset = offsets[iCol] + 4;
+			return Arrays.copyOfRange(entry.data, offset, offset + data.getInt(offsets[iCol]));
+		}
+
+		private String meta(int kind, int iCol) throws StmtException {
+			checkColumnIndex(iCol);
+			return entry.meta[kind][iCol];
+		}
+
+		private void checkRow(int iCol) throws StmtException {
+			if (row < 0 || row >= entry.rowCount) {
+				throw new StmtException(null, "no current row", ErrCodes.WRAPPER_SPECIFIC);
+			}
+			checkColumnIndex(iCol);
+		}
+
+		private void checkColumnIndex(int iCol) throws StmtException {
+			if (iCol < 0 || iCol >= types.length) {
+				throw new StmtException(null, String.format("column index %d out of range [0,%d[.", iCol, types.length), ErrCodes.SQLITE_RANGE);
+			}
+		}
+
+		/**
+		 * No-op: the row images are shared with the cache.
+		 */
+		@Override
+		public void close() {
+		}
+	}
+}
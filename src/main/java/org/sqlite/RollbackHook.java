@@ -0,0 +1,24 @@
+package org.sqlite;
+
+import com.sun.jna.Callback;
+import com.sun.jna.Pointer;
+
+/**
+ * Rollback notification callback.
+ * @see Conn#rollbackHook(RollbackHook)
+ * @see <a href="http://sqlite.org/c3ref/commit_hook.html">sqlite3_rollback_hook</a>
+ */
+@FunctionalInterface
+public interface RollbackHook extends Callback {
+	/**
+	 * @param pArg <code>null</code>.
+	 */
+	default void callback(Pointer pArg) {
+		rollback();
+	}
+
+	/**
+	 * Invoked whenever a transaction is rolled back (but not when the connection is closed with a pending transaction).
+	 */
+	void rollback();
+}
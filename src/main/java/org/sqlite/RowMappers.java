@@ -0,0 +1,305 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Compiled {@link RowMapper}s to POJOs.
+ * <p>
+ * Columns are matched by name (ignoring case and underscores) to setters or fields of the target class.
+ * For each result shape (column names), a mapper is built once with {@link MethodHandle}s specialized by property type
+ * (<code>getColumnLong</code> into a <code>long</code>, <code>getColumnDouble</code> into a <code>double</code>...), so primitive values are never boxed.
+ * Compiled mappers are cached per target class (in a {@link ClassValue}, so class loaders are not retained) and column names.
+ * {@link Stmt#queryMap(RowMapper, Object...)} resolves the mapper once per execution, not for each row.
+ * Unmatched columns are ignored. SQL NULL is mapped to <code>null</code> for reference types and to 0 (false) for primitives.
+ * The target class must have a no-arg constructor.
+ * <pre>{@code
+ * Iterator<Country> countries = stmt.queryMap(RowMappers.of(Country.class));
+ * }</pre>
+ */
+public final class RowMappers {
+	// maximum number of result shapes cached per target class
+	private static final int MAX_SHAPES = 64;
+	// target class => column names => mapper
+	private static final ClassValue<ConcurrentMap<List<String>, Compiled<?>>> CACHE = new ClassValue<ConcurrentMap<List<String>, Compiled<?>>>() {
+		@Override
+		protected ConcurrentMap<List<String>, Compiled<?>> computeValue(Class<?> type) {
+			return new ConcurrentHashMap<>();
+		}
+	};
+
+	private RowMappers() {
+	}
+
+	/**
+	 * @param type target class (with a no-arg constructor)
+	 * @return a mapper compiled on first use for each result shape
+	 */
+	public static <T> RowMapper<T> of(Class<T> type) {
+		return new Mapper<>(type);
+	}
+
+	/**
+	 * @param mapper any mapper
+	 * @param row first row of an execution
+	 * @return the mapper compiled for the columns of <code>row</code> if <code>mapper</code> is returned by {@link #of(Class)},
+	 * otherwise <code>mapper</code> itself
+	 */
+	static <T> RowMapper<T> resolve(RowMapper<T> mapper, Row row) throws StmtException {
+		if (mapper instanceof Mapper) {
+			return compile(((Mapper<T>) mapper).type, row);
+		}
+		return mapper;
+	}
+
+	// Used outside of Stmt#queryMap: the column names are checked for each row
+	private static final class Mapper<T> implements RowMapper<T> {
+		private final Class<T> type;
+		private Compiled<T> last; // single-threaded like the statement
+
+		private Mapper(Class<T> type) {
+			this.type = type;
+		}
+
+		@Override
+		public T map(Row row) throws StmtException {
+			Compiled<T> compiled = last;
+			if (compiled == null || !compiled.matches(row)) {
+				compiled = compile(type, row);
+				last = compiled;
+			}
+			return compiled.map(row);
+		}
+	}
+
+	/**
+	 * @param type target class (with a no-arg constructor)
+	 * @param row current row (only column names are used)
+	 * @return mapper specialized for the columns of <code>row</code>
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> Compiled<T> compile(Class<T> type, Row row) throws StmtException {
+		final String[] names = new String[row.getColumnCount()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = row.getColumnName(i);
+		}
+		final ConcurrentMap<List<String>, Compiled<?>> shapes = CACHE.get(type);
+		final List<String> key = Arrays.asList(names);
+		Compiled<?> compiled = shapes.get(key);
+		if (compiled == null) {
+			if (shapes.size() >= MAX_SHAPES) {
+				shapes.clear();
+			}
+			compiled = shapes.computeIfAbsent(key, k -> build(type, names));
+		}
+		return (Compiled<T>) compiled;
+	}
+
+	private static Compiled<?> build(Class<?> type, String[] names) {
+		final MethodHandles.Lookup lookup = MethodHandles.lookup();
+		final MethodHandle constructor;
+		try {
+			final java.lang.reflect.Constructor<?> c = type.getDeclaredConstructor();
+			c.setAccessible(true);
+			constructor = lookup.unreflectConstructor(c).asType(MethodType.methodType(Object.class));
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			throw new IllegalArgumentException(String.format("no usable no-arg constructor in %s", type.getName()), e);
+		}
+		final Map<String, MethodHandle> setters = setters(type, lookup);
+		final Column[] columns = new Column[names.length];
+		int n = 0;
+		for (int i = 0; i < names.length; i++) {
+			final MethodHandle setter = setters.get(normalize(names[i]));
+			if (setter != null) {
+				columns[n++] = column(i, setter);
+			}
+		}
+		return new Compiled<>(names, constructor, Arrays.copyOf(columns, n));
+	}
+
+	// normalized property name => setter (Object, property type)void
+	private static Map<String, MethodHandle> setters(Class<?> type, MethodHandles.Lookup lookup) {
+		final Map<String, MethodHandle> setters = new HashMap<>();
+		for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+			for (Field field : c.getDeclaredFields()) {
+				final int modifiers = field.getModifiers();
+				if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers) || field.isSynthetic()) {
+					continue;
+				}
+				final String name = normalize(field.getName());
+				if (setters.containsKey(name)) {
+					continue; // shadowed
+				}
+				try {
+					field.setAccessible(true);
+					setters.put(name, lookup.unreflectSetter(field));
+				} catch (IllegalAccessException | RuntimeException e) {
+					// not accessible
+				}
+			}
+		}
+		// setters take precedence over fields
+		for (Method method : type.getMethods()) {
+			if (Modifier.isStatic(method.getModifiers()) || method.getParameterCount() != 1 ||
+					method.getName().length() <= 3 || !method.getName().startsWith("set")) {
+				continue;
+			}
+			try {
+				setters.put(normalize(method.getName().substring(3)), lookup.unreflect(method));
+			} catch (IllegalAccessException e) {
+				// not accessible
+			}
+		}
+		return setters;
+	}
+
+	private static String normalize(String name) {
+		return name.replace("_", "").toLowerCase(Locale.ROOT);
+	}
+
+	private static Column column(int iCol, MethodHandle setter) {
+		final Class<?> type = setter.type().parameterType(1);
+		final MethodHandle mh = setter.asType(MethodType.methodType(void.class, Object.class, type.isPrimitive() ? type : Object.class));
+		if (type == long.class) {
+			return (row, bean) -> {
+				mh.invokeExact(bean, row.getColumnLong(iCol));
+			};
+		} else if (type == int.class) {
+			return (row, bean) -> {
+				mh.invokeExact(bean, row.getColumnInt(iCol));
+			};
+		} else if (type == double.class) {
+			return (row, bean) -> {
+				mh.invokeExact(bean, row.getColumnDouble(iCol));
+			};
+		} else if (type == float.class) {
+			return (row, bean) -> {
+				mh.invokeExact(bean, (float) row.getColumnDouble(iCol));
+			};
+		} else if (type == short.class) {
+			return (row, bean) -> {
+				mh.invokeExact(bean, (short) row.getColumnInt(iCol));
+			};
+		} else if (type == byte.class) {
+			return (row, bean) -> {
+				mh.invokeExact(bean, (byte) row.getColumnInt(iCol));
+			};
+		} else if (type == boolean.class) {
+			return (row, bean) -> {
+				mh.invokeExact(bean, row.getColumnInt(iCol) != 0);
+			};
+		} else if (type == String.class) {
+			return (row, bean) -> {
+				mh.invokeExact(bean, (Object) row.getColumnText(iCol));
+			};
+		} else if (type == byte[].class) {
+			return (row, bean) -> {
+				mh.invokeExact(bean, (Object) row.getColumnBlob(iCol));
+			};
+		} else if (type == Long.class) {
+			return (row, bean) -> {
+				mh.invokeExact(bean, isNull(row, iCol) ? null : (Object) row.getColumnLong(iCol));
+			};
+		} else if (type == Integer.class) {
+			return (row, bean) -> {
+				mh.invokeExact(bean, isNull(row, iCol) ? null : (Object) row.getColumnInt(iCol));
+			};
+		} else if (type == Double.class) {
+			return (row, bean) -> {
+				mh.invokeExact(bean, isNull(row, iCol) ? null : (Object) row.getColumnDouble(iCol));
+			};
+		} else if (type == Boolean.class) {
+			return (row, bean) -> {
+				mh.invokeExact(bean, isNull(row, iCol) ? null : (Object) (row.getColumnInt(iCol) != 0));
+			};
+		} else if (type == Object.class) {
+			return (row, bean) -> {
+				mh.invokeExact(bean, value(row, iCol));
+			};
+		}
+		throw new IllegalArgumentException(String.format("unsupported property type %s for column %d", type.getName(), iCol));
+	}
+
+	private static boolean isNull(Row row, int iCol) throws StmtException {
+		return row.getColumnType(iCol) == ColTypes.SQLITE_NULL;
+	}
+
+	private static Object value(Row row, int iCol) throws StmtException {
+		switch (row.getColumnType(iCol)) {
+			case ColTypes.SQLITE_INTEGER:
+				return row.getColumnLong(iCol);
+			case ColTypes.SQLITE_FLOAT:
+				return row.getColumnDouble(iCol);
+			case ColTypes.SQLITE_TEXT:
+				return row.getColumnText(iCol);
+			case ColTypes.SQLITE_BLOB:
+				return row.getColumnBlob(iCol);
+			default:
+				return null;
+		}
+	}
+
+	@FunctionalInterface
+	private interface Column {
+		void set(Row row, Object bean) throws Throwable;
+	}
+
+	static final class Compiled<T> implements RowMapper<T> {
+		private final String[] names;
+		private final MethodHandle constructor;
+		private final Column[] columns;
+
+		private Compiled(String[] names, MethodHandle constructor, Column[] columns) {
+			this.names = names;
+			this.constructor = constructor;
+			this.columns = columns;
+		}
+
+		boolean matches(Row row) throws StmtException {
+			if (row.getColumnCount() != names.length) {
+				return false;
+			}
+			for (int i = 0; i < names.length; i++) {
+				if (!names[i].equals(row.getColumnName(i))) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public T map(Row row) throws StmtException {
+			try {
+				final Object bean = (Object) constructor.invokeExact();
+				for (Column column : columns) {
+					column.set(row, bean);
+				}
+				return (T) bean;
+			} catch (StmtException | RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable t) {
+				throw new IllegalStateException(t);
+			}
+		}
+	}
+}
@@ -16,6 +16,7 @@ import com.sun.jna.NativeLibrary;
 import com.sun.jna.Pointer;
 import com.sun.jna.PointerType;
 import com.sun.jna.ptr.IntByReference;
+import com.sun.jna.ptr.LongByReference;
 import com.sun.jna.ptr.PointerByReference;
 
 import java.nio.ByteBuffer;
@@ -66,6 +67,8 @@ public final class SQLite implements Library {
 	static native int sqlite3_extended_result_codes(SQLite3 pDb, boolean onoff);
 	static native int sqlite3_extended_errcode(SQLite3 pDb);
 
+	static native int sqlite3_status64(int op, LongByReference pCurrent, LongByReference pHighwater, boolean resetFlag); // since 3.10.0
+
 	static native int sqlite3_initialize();
 	static native int sqlite3_shutdown();
 
@@ -118,6 +121,16 @@ public final class SQLite implements Library {
 			PointerByReference pTail);
 	static native String sqlite3_sql(SQLite3Stmt pStmt); // no copy needed
 	static native Pointer sqlite3_expanded_sql(SQLite3Stmt pStmt); // sqlite3_free
+
+	static String expandedSql(SQLite3Stmt pStmt) {
+		final Pointer ptr = sqlite3_expanded_sql(pStmt);
+		if (ptr == null) {
+			return null;
+		}
+		final String sql = ptr.getString(0L, UTF_8_ECONDING);
+		sqlite3_free(ptr);
+		return sql;
+	}
 	static native int sqlite3_finalize(SQLite3Stmt pStmt);
 	static native int sqlite3_step(SQLite3Stmt pStmt);
 	static native int sqlite3_reset(SQLite3Stmt pStmt);
@@ -172,13 +185,104 @@ public final class SQLite implements Library {
 	//static native int sqlite3_bind_value(SQLite3Stmt pStmt, int i, const sqlite3_value*);
 	static native int sqlite3_bind_zeroblob(SQLite3Stmt pStmt, int i, int n);
 	static native int sqlite3_stmt_status(SQLite3Stmt pStmt, int op, boolean reset);
-	//#if mvn.project.property.sqlite.enable.stmt.scanstatus == "true"
-	// TODO https://sqlite.org/c3ref/c_scanstat_est.html constants
-	static native int sqlite3_stmt_scanstatus(SQLite3Stmt pStmt, int idx, int iScanStatusOp, PointerByReference pOut);
-	static native void sqlite3_stmt_scanstatus_reset(SQLite3Stmt pStmt);
-	//#endif
+	// https://sqlite.org/c3ref/c_scanstat_est.html
+	static final int SQLITE_SCANSTAT_NLOOP = 0, SQLITE_SCANSTAT_NVISIT = 1, SQLITE_SCANSTAT_EST = 2,
+			SQLITE_SCANSTAT_NAME = 3, SQLITE_SCANSTAT_EXPLAIN = 4, SQLITE_SCANSTAT_SELECTID = 5;
+
+	/**
+	 * Optional API: only available when the library is compiled with SQLITE_ENABLE_STMT_SCANSTATUS.
+	 * Bound separately so that a missing symbol does not prevent the main library from being registered.
+	 */
+	static final class ScanStatus {
+		static final boolean AVAILABLE = registerOptional(ScanStatus.class);
+
+		private ScanStatus() {
+		}
+
+		static native int sqlite3_stmt_scanstatus(SQLite3Stmt pStmt, int idx, int iScanStatusOp, Pointer pOut); // sqlite3_int64, double or char* (8 bytes at most)
+		static native void sqlite3_stmt_scanstatus_reset(SQLite3Stmt pStmt);
+	}
+
+	/**
+	 * Optional API: only available when the library is compiled with SQLITE_ENABLE_PREUPDATE_HOOK.
+	 */
+	static final class PreUpdateApi {
+		static final boolean AVAILABLE = registerOptional(PreUpdateApi.class);
+
+		private PreUpdateApi() {
+		}
+
+		static native Pointer sqlite3_preupdate_hook(SQLite3 pDb, PreUpdateHook xPreUpdate, Pointer pArg);
+		static native int sqlite3_preupdate_old(SQLite3 pDb, int i, PointerByReference ppValue);
+		static native int sqlite3_preupdate_new(SQLite3 pDb, int i, PointerByReference ppValue);
+		static native int sqlite3_preupdate_count(SQLite3 pDb);
+		static native int sqlite3_preupdate_depth(SQLite3 pDb);
+	}
+
+	/**
+	 * Optional API: only available when the library is compiled with SQLITE_ENABLE_SESSION (and SQLITE_ENABLE_PREUPDATE_HOOK).
+	 * @see <a href="https://sqlite.org/sessionintro.html">The Session Extension</a>
+	 */
+	static final class SessionApi {
+		static final boolean AVAILABLE = registerOptional(SessionApi.class);
+
+		private SessionApi() {
+		}
+
+		static native int sqlite3session_create(SQLite3 pDb, String zDb, PointerByReference ppSession); // no copy needed
+		static native void sqlite3session_delete(SQLite3Session pSession);
+		static native int sqlite3session_attach(SQLite3Session pSession, String zTab); // no copy needed
+		static native boolean sqlite3session_enable(SQLite3Session pSession, int bEnable);
+		static native boolean sqlite3session_isempty(SQLite3Session pSession);
+		static native int sqlite3session_changeset(SQLite3Session pSession, IntByReference pnChangeset, PointerByReference ppChangeset); // sqlite3_free
+		static native int sqlite3changeset_apply(SQLite3 pDb, int nChangeset, byte[] pChangeset, Pointer xFilter, ConflictHandler xConflict, Pointer pCtx);
+	}
+
+	/**
+	 * Optional API: only available since SQLite 3.25.0.
+	 * @see <a href="https://sqlite.org/windowfunctions.html#udfwinfunc">User-Defined Aggregate Window Functions</a>
+	 */
+	static final class WindowApi {
+		static final boolean AVAILABLE = registerOptional(WindowApi.class);
+
+		private WindowApi() {
+		}
+
+		static native int sqlite3_create_window_function(SQLite3 pDb, String functionName, int nArg, int eTextRep, Pointer pApp,
+				AggregateStepCallback xStep, AggregateFinalCallback xFinal, AggregateFinalCallback xValue, AggregateStepCallback xInverse,
+				Destructor xDestroy);
+	}
+
+	/**
+	 * Same as {@link SQLite#sqlite3_create_function_v2} but with raw pointers (see {@link PrimitiveFunction}).
+	 * Bound separately so that a <code>null</code> xFunc is not ambiguous.
+	 */
+	static final class PrimitiveApi {
+		static {
+			Native.register(PrimitiveApi.class, NativeLibrary.getInstance(JNA_LIBRARY_NAME, Collections.singletonMap(OPTION_STRING_ENCODING, "UTF-8")));
+		}
+
+		private PrimitiveApi() {
+		}
+
+		static native int sqlite3_create_function_v2(SQLite3 pDb, String functionName, int nArg, int eTextRep,
+				Pointer pApp, PrimitiveFunction xFunc, AggregateStepCallback xStep, AggregateFinalCallback xFinal, Destructor xDestroy);
+	}
+
+	// Register native methods declared by an optional API holder
+	private static boolean registerOptional(Class<?> cls) {
+		try {
+			Native.register(cls, NativeLibrary.getInstance(JNA_LIBRARY_NAME, Collections.singletonMap(OPTION_STRING_ENCODING, "UTF-8")));
+			return true;
+		} catch (UnsatisfiedLinkError e) {
+			return false;
+		}
+	}
 
 	static native void sqlite3_free(Pointer p);
+	// Same as above but with raw pointers (64-bit only)
+	static native long sqlite3_malloc(int n);
+	static native void sqlite3_free(long p);
 
 	static native int sqlite3_blob_open(SQLite3 pDb, String dbName, String tableName, String columnName,
 			long iRow, boolean flags, PointerByReference ppBlob); // no copy needed
@@ -199,9 +303,13 @@ public final class SQLite implements Library {
 	static native void sqlite3_progress_handler(SQLite3 pDb, int nOps, ProgressCallback xProgress, Pointer pArg);
 	static native void sqlite3_trace(SQLite3 pDb, TraceCallback xTrace, Pointer pArg);
 	static native void sqlite3_profile(SQLite3 pDb, ProfileCallback xProfile, Pointer pArg);
+	static native int sqlite3_trace_v2(SQLite3 pDb, int uMask, TraceV2Callback xCallback, Pointer pCtx); // since 3.14.0
 
-	// TODO sqlite3_commit_hook, sqlite3_rollback_hook
+	static native Pointer sqlite3_commit_hook(SQLite3 pDb, CommitHook xCallback, Pointer pArg);
+	static native Pointer sqlite3_rollback_hook(SQLite3 pDb, RollbackHook xCallback, Pointer pArg);
 	static native Pointer sqlite3_update_hook(SQLite3 pDb, UpdateHook xUpdate, Pointer pArg);
+	// Same as above but without String conversion
+	static native Pointer sqlite3_update_hook(SQLite3 pDb, ChangeCapture.RawUpdateHook xUpdate, Pointer pArg);
 	static native int sqlite3_set_authorizer(SQLite3 pDb, Authorizer authorizer, Pointer pUserData);
 
 	//#if mvn.project.property.sqlite.enable.unlock.notify == "true"
@@ -230,6 +338,14 @@ public final class SQLite implements Library {
 	static native void sqlite3_result_error_code(SQLite3Context pCtx, int errCode);
 	static native void sqlite3_result_error_nomem(SQLite3Context pCtx);
 	static native void sqlite3_result_error_toobig(SQLite3Context pCtx);
+	// Same as above but with raw pointers (64-bit only), no PointerType allocated by invocation
+	static native void sqlite3_result_null(long pCtx);
+	static native void sqlite3_result_double(long pCtx, double d);
+	static native void sqlite3_result_int64(long pCtx, long l);
+	static native void sqlite3_result_error(long pCtx, String err, int length);
+	static native void sqlite3_result_int(long pCtx, int i);
+	static native void sqlite3_result_text(long pCtx, String text, int n, long xDel);
+	static native void sqlite3_result_blob(long pCtx, byte[] blob, int n, long xDel);
 	//static native void sqlite3_result_subtype(SQLite3Context pCtx, /*unsigned*/ int subtype);
 
 	static native Pointer sqlite3_value_blob(Pointer pValue);
@@ -240,6 +356,17 @@ public final class SQLite implements Library {
 	static native String sqlite3_value_text(Pointer pValue);
 	static native int sqlite3_value_type(Pointer pValue);
 	static native int sqlite3_value_numeric_type(Pointer pValue);
+	static native double sqlite3_value_double(long pValue);
+	static native long sqlite3_value_int64(long pValue);
+	static native int sqlite3_value_type(long pValue);
+	static native int sqlite3_value_int(long pValue);
+	static native String sqlite3_value_text(long pValue);
+	static native Pointer sqlite3_value_blob(long pValue);
+	static native int sqlite3_value_bytes(long pValue);
+
+	// Virtual tables (see NativeModule)
+	static native int sqlite3_create_module_v2(SQLite3 pDb, String zName, Pointer pModule, Pointer pClientData, Destructor xDestroy);
+	static native int sqlite3_declare_vtab(long pDb, String zSQL);
 
 	static native Pointer sqlite3_get_auxdata(SQLite3Context pCtx, int n);
 	static native void sqlite3_set_auxdata(SQLite3Context pCtx, int n, Pointer p, Destructor free);
@@ -378,6 +505,18 @@ public final class SQLite implements Library {
 		}
 	}
 
+	/**
+	 * Session object
+	 * @see <a href="https://sqlite.org/session/session.html">sqlite3_session</a>
+	 */
+	public static class SQLite3Session extends PointerType {
+		public SQLite3Session() {
+		}
+		public SQLite3Session(Pointer p) {
+			super(p);
+		}
+	}
+
 	/**
 	 * SQL function context object
 	 * @see <a href="http://sqlite.org/c3ref/context.html">sqlite3_context</a>
@@ -501,7 +640,7 @@ public final class SQLite implements Library {
 			return new SQLite3Values(args.getPointerArray(0, nArg));
 		}
 
-		private SQLite3Values(Pointer[] args) {
+		SQLite3Values(Pointer[] args) {
 			this.args = args;
 		}
 
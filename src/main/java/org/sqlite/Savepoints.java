@@ -0,0 +1,173 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import com.sun.jna.Pointer;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Savepoints of the current transaction, tracked from the SQL text of the statements being executed
+ * (<code>SQLITE_TRACE_STMT</code>), for change captures:
+ * neither the rollback hook nor the update hooks are invoked by <code>ROLLBACK TO</code>,
+ * so the changes buffered since the savepoint are dropped here.
+ * Likewise, the changes buffered by a statement which fails without rolling back the transaction
+ * (ABORT conflict resolution, interruption...) are dropped when the failure is reported by {@link Conn} or {@link Stmt}.
+ * <p>
+ * Leading and trailing comments are skipped but <code>SAVEPOINT</code>, <code>RELEASE</code> and <code>ROLLBACK TO</code>
+ * statements with comments between their keywords are not recognized.
+ * Changes kept by a statement failing with the FAIL conflict resolution are dropped too.
+ * The tracing costs one native upcall per executed statement (and per trigger invocation).
+ * <p>
+ * Only the thread using the connection accesses this object.
+ */
+final class Savepoints {
+	private static final Pattern SAVEPOINT = Pattern.compile(
+			"\\s*(SAVEPOINT|RELEASE(?:\\s+SAVEPOINT)?|ROLLBACK(?:\\s+TRANSACTION)?\\s+TO(?:\\s+SAVEPOINT)?)\\s+" +
+			"(\"(?:[^\"]|\"\")*\"|'(?:[^']|'')*'|`(?:[^`]|``)*`|\\[[^\\]]*\\]|[^\\s;/-]+)(?:\\s|--[^\\n]*|/\\*(?s:.*?)\\*/|;)*",
+			Pattern.CASE_INSENSITIVE);
+
+	// number of buffered changes
+	private final IntSupplier size;
+	// drop the changes buffered after the specified number of changes
+	private final IntConsumer truncate;
+	// open savepoints (innermost last) and the number of changes buffered when each one was opened
+	private String[] names = new String[4];
+	private int[] marks = new int[4];
+	private int depth;
+	// last top-level statement started and the number of changes buffered before it
+	private long stmt;
+	private int stmtMark;
+
+	Savepoints(IntSupplier size, IntConsumer truncate) {
+		this.size = size;
+		this.truncate = truncate;
+	}
+
+	/**
+	 * @param pStmt statement being executed
+	 * @param sql unexpanded SQL text of the statement being executed
+	 */
+	void statement(Pointer pStmt, Pointer sql) {
+		// the text is converted only for statements starting with 'S' or 'R'
+		final long offset = skipComments(sql);
+		byte b = sql.getByte(offset);
+		if (b == 0) { // "-- trigger"
+			return;
+		}
+		stmt = Pointer.nativeValue(pStmt);
+		stmtMark = size.getAsInt();
+		b |= 0x20;
+		if (b != 's' && b != 'r') {
+			return;
+		}
+		final Matcher m = SAVEPOINT.matcher(sql.getString(offset, SQLite.UTF_8_ECONDING));
+		if (!m.matches()) {
+			return;
+		}
+		final String name = unquote(m.group(2));
+		final char kind = Character.toUpperCase(m.group(1).charAt(0));
+		if (kind == 'S') {
+			if (depth == names.length) {
+				names = Arrays.copyOf(names, depth << 1);
+				marks = Arrays.copyOf(marks, depth << 1);
+			}
+			names[depth] = name;
+			marks[depth++] = size.getAsInt();
+			return;
+		}
+		final int i = find(name);
+		if (i < 0) { // no such savepoint: the statement fails
+			return;
+		}
+		if (Character.toUpperCase(m.group(1).charAt(1)) == 'E') { // RELEASE
+			Arrays.fill(names, i, depth, null);
+			depth = i;
+		} else { // ROLLBACK TO: the savepoint remains open
+			Arrays.fill(names, i + 1, depth, null);
+			depth = i + 1;
+			truncate.accept(marks[i]);
+		}
+	}
+
+	/**
+	 * The specified statement has failed: SQLite has undone its changes.
+	 * @param pStmt failed statement or <code>null</code> for the last one started
+	 */
+	void failed(Pointer pStmt) {
+		if (pStmt != null && Pointer.nativeValue(pStmt) != stmt) { // interleaved statements
+			return;
+		}
+		if (stmtMark < size.getAsInt()) {
+			truncate.accept(stmtMark);
+		}
+	}
+
+	// end of transaction
+	void clear() {
+		Arrays.fill(names, 0, depth, null);
+		depth = 0;
+		stmt = 0L;
+		stmtMark = 0;
+	}
+
+	// offset of the first token (or of the terminating NUL)
+	private static long skipComments(Pointer sql) {
+		long offset = 0L;
+		for (; ; ) {
+			final byte b = sql.getByte(offset);
+			if (b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f') {
+				offset++;
+			} else if (b == '-' && sql.getByte(offset + 1) == '-') {
+				offset += 2;
+				while (sql.getByte(offset) != 0 && sql.getByte(offset) != '\n') {
+					offset++;
+				}
+			} else if (b == '/' && sql.getByte(offset + 1) == '*') {
+				offset += 2;
+				while (sql.getByte(offset) != 0 && !(sql.getByte(offset) == '*' && sql.getByte(offset + 1) == '/')) {
+					offset++;
+				}
+				if (sql.getByte(offset) != 0) {
+					offset += 2;
+				}
+			} else {
+				return offset;
+			}
+		}
+	}
+
+	// innermost savepoint with the specified name (case insensitive like SQLite)
+	private int find(String name) {
+		for (int i = depth - 1; i >= 0; i--) {
+			if (names[i].equalsIgnoreCase(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static String unquote(String name) {
+		if (name.length() < 2) {
+			return name;
+		}
+		final char first = name.charAt(0), last = name.charAt(name.length() - 1);
+		if (first == '"' || first == '\'' || first == '`') {
+			final String quote = String.valueOf(first);
+			return name.substring(1, name.length() - 1).replace(quote + quote, quote);
+		} else if (first == '[' && last == ']') {
+			return name.substring(1, name.length() - 1);
+		}
+		return name;
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.IntByReference;
+import com.sun.jna.ptr.PointerByReference;
+import org.sqlite.SQLite.SQLite3Session;
+
+import static org.sqlite.SQLite.SessionApi.*;
+import static org.sqlite.SQLite.sqlite3_free;
+import static org.sqlite.SQLite.sqlite3_log;
+
+/**
+ * Session: records changes made to the attached tables of a database as a changeset.
+ * <p>
+ * Only changes to tables with a PRIMARY KEY are recorded. DDL is not.
+ * @see Conn#openSession(String)
+ * @see <a href="https://sqlite.org/sessionintro.html">The Session Extension</a>
+ */
+public final class Session implements AutoCloseable {
+	private final Conn c;
+	private final String dbName;
+	private SQLite3Session pSession;
+
+	Session(Conn c, String dbName, SQLite3Session pSession) {
+		this.c = c;
+		this.dbName = dbName;
+		this.pSession = pSession;
+	}
+
+	/**
+	 * @return <code>true</code> when the library is compiled with SQLITE_ENABLE_SESSION
+	 */
+	public static boolean isAvailable() {
+		return AVAILABLE;
+	}
+
+	/**
+	 * @param tableName table to record or <code>null</code> for all tables
+	 * @see <a href="https://sqlite.org/session/sqlite3session_attach.html">sqlite3session_attach</a>
+	 */
+	public void attach(String tableName) throws ConnException {
+		checkOpen();
+		check(sqlite3session_attach(pSession, tableName), "error while attaching '%s'", tableName);
+	}
+
+	/**
+	 * @param enable whether or not changes are recorded
+	 * @see <a href="https://sqlite.org/session/sqlite3session_enable.html">sqlite3session_enable</a>
+	 */
+	public void setEnabled(boolean enable) throws ConnException {
+		checkOpen();
+		sqlite3session_enable(pSession, enable ? 1 : 0);
+	}
+
+	/**
+	 * @return <code>true</code> if no change has been recorded
+	 * @see <a href="https://sqlite.org/session/sqlite3session_isempty.html">sqlite3session_isempty</a>
+	 */
+	public boolean isEmpty() throws ConnException {
+		checkOpen();
+		return sqlite3session_isempty(pSession);
+	}
+
+	/**
+	 * @return changes recorded since the session was created (empty array if none)
+	 * @see <a href="https://sqlite.org/session/sqlite3session_changeset.html">sqlite3session_changeset</a>
+	 */
+	public byte[] changeset() throws ConnException {
+		checkOpen();
+		final IntByReference pnChangeset = new IntByReference();
+		final PointerByReference ppChangeset = new PointerByReference();
+		check(sqlite3session_changeset(pSession, pnChangeset, ppChangeset), "error while generating changeset on '%s'", dbName);
+		final Pointer p = ppChangeset.getValue();
+		if (p == null) {
+			return new byte[0];
+		}
+		try {
+			return p.getByteArray(0L, pnChangeset.getValue());
+		} finally {
+			sqlite3_free(p);
+		}
+	}
+
+	public Conn getConn() {
+		return c;
+	}
+
+	public boolean isClosed() {
+		return pSession == null;
+	}
+
+	/**
+	 * Delete this session (done by {@link Conn#close()} if still open).
+	 * @see <a href="https://sqlite.org/session/sqlite3session_delete.html">sqlite3session_delete</a>
+	 */
+	@Override
+	public void close() {
+		if (pSession != null) {
+			sqlite3session_delete(pSession);
+			pSession = null;
+			c.removeSession(this);
+		}
+	}
+
+	@Override
+	protected void finalize() throws Throwable {
+		if (pSession != null) {
+			sqlite3_log(-1, "dangling SQLite session.");
+		}
+		super.finalize();
+	}
+
+	private void checkOpen() throws ConnException {
+		if (pSession == null) {
+			throw new ConnException(c, "session closed", ErrCodes.WRAPPER_SPECIFIC);
+		}
+	}
+
+	private void check(int res, String format, String param) throws ConnException {
+		if (res != SQLite.SQLITE_OK) {
+			throw new ConnException(c, String.format(format, param), res);
+		}
+	}
+}
@@ -0,0 +1,217 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import com.sun.jna.Pointer;
+import org.sqlite.SQLite.SQLite3Stmt;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.sqlite.TraceV2Callback.*;
+
+/**
+ * Slow-query log built on <code>sqlite3_trace_v2</code>.
+ * <p>
+ * Statements whose execution time exceeds the threshold are sampled and their expanded SQL
+ * (with bound parameters) is captured and handed to a bounded queue drained by a daemon thread.
+ * Fast statements only cost one upcall (no string conversion).
+ * When the queue is full, entries are dropped (see {@link #getDropped()}).
+ * <pre>{@code
+ * SlowQueryLog log = new SlowQueryLog(100, 0.1, 1024, e -> logger.warning(e.toString()));
+ * log.install(conn, false);
+ * }</pre>
+ * @see Conn#trace(int, TraceV2Callback)
+ */
+public final class SlowQueryLog implements AutoCloseable {
+	private final long thresholdNanos;
+	private final double sampleRate;
+	private final BlockingQueue<Entry> queue;
+	private final Consumer<Entry> sink;
+	private final Thread worker;
+	private final AtomicLong logged = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private volatile boolean closed;
+
+	/**
+	 * @param thresholdMillis minimum execution time of logged statements
+	 * @param sampleRate fraction (between 0 and 1) of slow statements actually logged
+	 * @param capacity maximum number of pending entries
+	 * @param sink invoked sequentially on a dedicated daemon thread
+	 */
+	public SlowQueryLog(long thresholdMillis, double sampleRate, int capacity, Consumer<Entry> sink) {
+		if (thresholdMillis < 0L) {
+			throw new IllegalArgumentException("negative threshold: " + thresholdMillis);
+		}
+		if (sampleRate < 0.0 || sampleRate > 1.0) {
+			throw new IllegalArgumentException("sample rate out of range [0,1]: " + sampleRate);
+		}
+		if (sink == null) {
+			throw new NullPointerException("sink");
+		}
+		this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+		this.sampleRate = sampleRate;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		this.sink = sink;
+		worker = new Thread(this::drain, "sqlite-slow-query-log");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Register this log as the trace callback of the specified connection
+	 * (replacing any callback registered with {@link Conn#trace(int, TraceV2Callback)}).
+	 * @param c connection to trace
+	 * @param countRows whether or not rows are counted (one more upcall per row)
+	 */
+	public void install(Conn c, boolean countRows) throws ConnException {
+		c.trace(SQLITE_TRACE_PROFILE | SQLITE_TRACE_CLOSE | (countRows ? SQLITE_TRACE_ROW : 0), new Tracer(c));
+	}
+
+	/**
+	 * @return number of entries handed to the sink (or pending)
+	 */
+	public long getLogged() {
+		return logged.get();
+	}
+	/**
+	 * @return number of entries dropped because the queue was full (or the log closed)
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Stop the sink thread. Pending entries are discarded.
+	 * Connections on which this log is installed should be closed or untraced first.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		worker.interrupt();
+	}
+
+	private void drain() {
+		while (!closed) {
+			final Entry entry;
+			try {
+				entry = queue.take();
+			} catch (InterruptedException e) {
+				break;
+			}
+			try {
+				sink.accept(entry);
+			} catch (RuntimeException e) {
+				SQLite.sqlite3_log(-1, "error in slow query log sink: " + e);
+			}
+		}
+		queue.clear();
+	}
+
+	private boolean sampled() {
+		return sampleRate >= 1.0 || sampleRate > 0.0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+	}
+
+	private void offer(Entry entry) {
+		if (!closed && queue.offer(entry)) {
+			logged.incrementAndGet();
+		} else {
+			dropped.incrementAndGet();
+		}
+	}
+
+	// One per connection: invoked by the thread using the connection.
+	private final class Tracer implements TraceV2Callback {
+		private final Conn c;
+		// rows returned by running statements (only when SQLITE_TRACE_ROW is enabled)
+		private final Map<Long, long[]> rows = new HashMap<>();
+
+		private Tracer(Conn c) {
+			this.c = c;
+		}
+
+		@Override
+		public void trace(int type, Pointer p, Pointer x) {
+			if (type == SQLITE_TRACE_ROW) {
+				final long[] count = rows.computeIfAbsent(Pointer.nativeValue(p), k -> new long[1]);
+				count[0]++;
+			} else if (type == SQLITE_TRACE_PROFILE) {
+				final long[] count = rows.isEmpty() ? null : rows.remove(Pointer.nativeValue(p));
+				final long nanos = x.getLong(0L);
+				if (nanos < thresholdNanos || !sampled()) {
+					return;
+				}
+				final String sql = SQLite.expandedSql(new SQLite3Stmt(p));
+				offer(new Entry(c.getFilename(), sql, nanos, count == null ? -1L : count[0]));
+			} else if (type == SQLITE_TRACE_CLOSE) {
+				rows.clear();
+			}
+		}
+	}
+
+	/**
+	 * Slow statement execution.
+	 */
+	public static final class Entry {
+		private final long timestamp = System.currentTimeMillis();
+		private final String filename;
+		private final String sql;
+		private final long nanos;
+		private final long rows;
+
+		Entry(String filename, String sql, long nanos, long rows) {
+			this.filename = filename;
+			this.sql = sql;
+			this.nanos = nanos;
+			this.rows = rows;
+		}
+
+		/**
+		 * @return end of execution (in millis since epoch)
+		 */
+		public long getTimestamp() {
+			return timestamp;
+		}
+		/**
+		 * @return "main" database filename
+		 */
+		public String getFilename() {
+			return filename;
+		}
+		/**
+		 * @return SQL text with bound parameters expanded
+		 */
+		public String getSql() {
+			return sql;
+		}
+		/**
+		 * @return execution time in nanoseconds
+		 */
+		public long getNanos() {
+			return nanos;
+		}
+		/**
+		 * @return number of rows returned (-1 when rows are not counted)
+		 */
+		public long getRows() {
+			return rows;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%.3f ms, %d rows: %s", nanos / 1e6, rows, sql);
+		}
+	}
+}
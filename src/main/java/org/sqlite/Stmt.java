@@ -8,13 +8,18 @@
  */
 package org.sqlite;
 
+import com.sun.jna.Memory;
 import com.sun.jna.Pointer;
+import org.sqlite.QueryPlan.Node;
+import org.sqlite.SQLite.ScanStatus;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
 
 import static org.sqlite.ColTypes.SQLITE_NULL;
 import static org.sqlite.SQLite.*;
@@ -31,9 +36,18 @@ public class Stmt implements AutoCloseable, Row {
 	private Map<String, Integer> params;
 	// cached column count
 	private int columnCount = -1;
-	private String[] columnNames;
-	private int[] columnAffinities;
+	// shared column descriptor (see Conn#meta)
+	private StmtMeta meta;
+	// whether the statement has been stepped (and may have been re-prepared) since the descriptor was checked
+	private boolean stepped;
+	private int reprepares;
 	private boolean cacheable;
+	// step latencies (when metrics are enabled)
+	private Metrics.Timer stepTimer;
+	// rows returned by the current execution (see the SQLiteStep event)
+	private int rows;
+	// query timeout armed for the current execution
+	private DeadlineWheel.Deadline deadline;
 
 	Stmt(Conn c, String sql, SQLite3Stmt pStmt, Pointer tail, boolean cacheable) {
 		assert c != null;
@@ -56,13 +70,7 @@ public class Stmt implements AutoCloseable, Row {
 	}
 
 	public String getExpandedSql() {
-		final Pointer ptr = sqlite3_expanded_sql(pStmt);
-		if (ptr != null) {
-			final String sql = ptr.getString(0L, UTF_8_ECONDING);
-			sqlite3_free(ptr);
-			return sql;
-		}
-		return null;
+		return expandedSql(pStmt);
 	}
 
 	public String getErrMsg() {
@@ -85,6 +93,7 @@ public class Stmt implements AutoCloseable, Row {
 	}
 	public int close(boolean force) {
 		if (pStmt == null) return SQLITE_OK;
+		disarm();
 		if (!force && cacheable && (tail == null || tail.isEmpty()) && !isBusy()) {
 			if (sqlite3_reset(pStmt) == SQLITE_OK &&
 					sqlite3_clear_bindings(pStmt) == SQLITE_OK &&
@@ -144,6 +153,8 @@ public class Stmt implements AutoCloseable, Row {
 		bind(params);
 		return new Iterator<T>() {
 			private State state = State.NOT_READY;
+			// resolved on the first row: the columns cannot change during an execution
+			private RowMapper<T> resolved;
 			@Override
 			public boolean hasNext() {
 				if (State.FAILED == state) {
@@ -174,7 +185,10 @@ public class Stmt implements AutoCloseable, Row {
 				}
 				state = State.NOT_READY;
 				try {
-					return mapper.map(Stmt.this);
+					if (resolved == null) {
+						resolved = RowMappers.resolve(mapper, Stmt.this);
+					}
+					return resolved.map(Stmt.this);
 				} catch (StmtException e) {
 					throw new IllegalStateException(e);
 				}
@@ -200,17 +214,19 @@ public class Stmt implements AutoCloseable, Row {
 	}
 
 	/**
+	 * The timeout applies to this step only (not to the whole iteration).
+	 * The interruption of the current thread is checked before the step and,
+	 * only when a timeout is set, while the step is running (within one second).
 	 * @param timeout in seconds
 	 * @return true until finished.
 	 */
 	public boolean step(int timeout) throws SQLiteException {
-		c.setQueryTimeout(timeout);
-		final int res = blockingStep(c);
+		final int res = timedStep(timeout);
 		if (res == SQLITE_ROW) {
 			return true;
 		}
 		// Release implicit lock as soon as possible
-		sqlite3_reset(pStmt); // ok if pStmt is null
+		resetNoCheck();
 		if (res == SQLITE_DONE) {
 			return false;
 		}
@@ -218,23 +234,24 @@ public class Stmt implements AutoCloseable, Row {
 	}
 
 	/**
+	 * The timeout applies to this step only (not to the whole iteration).
+	 * The interruption of the current thread is checked before the step and,
+	 * only when a timeout is set, while the step is running (within one second).
 	 * @param timeout in seconds
 	 */
 	public int stepNoCheck(int timeout) throws SQLiteException {
-		c.setQueryTimeout(timeout);
-		final int res = blockingStep(c);
+		final int res = timedStep(timeout);
 		if (res == SQLITE_ROW) {
 			return res;
 		}
 		// Release implicit lock as soon as possible
-		sqlite3_reset(pStmt); // ok if pStmt is null
+		resetNoCheck();
 		return res;
 	}
 	public void exec() throws SQLiteException {
-		c.setQueryTimeout(0);
-		final int res = blockingStep(c);
+		final int res = timedStep(0);
 		// Release implicit lock as soon as possible
-		sqlite3_reset(pStmt); // ok if pStmt is null
+		resetNoCheck();
 		if (res == SQLITE_ROW) {
 			throw new StmtException(this, String.format("only non SELECT expected but got '%s'", getSql()), res);
 		}
@@ -243,6 +260,52 @@ public class Stmt implements AutoCloseable, Row {
 		}
 	}
 
+	private int timedStep(int timeout) throws SQLiteException {
+		if (Thread.currentThread().isInterrupted()) {
+			return ErrCodes.SQLITE_INTERRUPT;
+		}
+		stepped = true;
+		final Metrics metrics = Metrics.get();
+		// armed once per execution but effective only while sqlite3_step is running:
+		// sqlite3_interrupt must not hit another statement of this connection
+		final DeadlineWheel.Deadline deadline;
+		if (timeout > 0) {
+			if (this.deadline == null || this.deadline.timeout != TimeUnit.SECONDS.toNanos(timeout)) {
+				disarm();
+				this.deadline = DeadlineWheel.schedule(c, timeout * 1000L);
+			}
+			deadline = this.deadline;
+			deadline.enter();
+		} else {
+			deadline = null;
+		}
+		final Object event = Jfr.begin(Jfr.STEP);
+		final int res;
+		try {
+			if (metrics == null) {
+				res = blockingStep(c);
+			} else {
+				if (stepTimer == null || stepTimer.owner != metrics) {
+					stepTimer = metrics.timer(Metrics.Op.STEP, getSql());
+				}
+				final long start = System.nanoTime();
+				res = blockingStep(c);
+				stepTimer.getHistogram().record(System.nanoTime() - start);
+			}
+		} finally {
+			if (deadline != null) {
+				deadline.exit();
+			}
+		}
+		if (res == SQLITE_ROW) {
+			rows++;
+		} else if (res != SQLITE_DONE && pStmt != null) {
+			c.stepFailed(pStmt.getPointer());
+		}
+		Jfr.step(event, getSql(), res, rows);
+		return res;
+	}
+
 	// http://sqlite.org/unlock_notify.html
 	//#if mvn.project.property.sqlite.enable.unlock.notify == "true"
 	private int blockingStep(Conn unused) throws SQLiteException {
@@ -266,7 +329,21 @@ public class Stmt implements AutoCloseable, Row {
 	//#endif
 
 	public void reset() throws StmtException {
-		check(sqlite3_reset(pStmt), "Error while resetting '%s'"); // ok if pStmt is null
+		check(resetNoCheck(), "Error while resetting '%s'");
+	}
+
+	private int resetNoCheck() {
+		disarm();
+		rows = 0;
+		return sqlite3_reset(pStmt); // ok if pStmt is null
+	}
+
+	// end of execution
+	private void disarm() {
+		if (deadline != null) {
+			deadline.cancel();
+			deadline = null;
+		}
 	}
 
 	public boolean isBusy() {
@@ -313,58 +390,71 @@ public class Stmt implements AutoCloseable, Row {
 
 	@Override
 	public String getColumnDeclType(int iCol) throws StmtException {
-		checkOpen();
 		checkColumnIndex(iCol);
-		return sqlite3_column_decltype(pStmt, iCol); // ko if pStmt is null
+		return getMeta().getColumnDeclType(iCol);
 	}
 
 	@Override
 	public int getColumnAffinity(int iCol) throws StmtException {
 		checkColumnIndex(iCol);
-		if (null == columnAffinities) {
-			columnAffinities = new int[getColumnCount()];
-			Arrays.fill(columnAffinities, -1);
-		} else if (columnAffinities[iCol] != -1) {
-			return columnAffinities[iCol];
-		}
-		columnAffinities[iCol] = getAffinity(getColumnDeclType(iCol));
-		return columnAffinities[iCol];
+		return getMeta().getColumnAffinity(iCol);
 	}
 
 	@Override
 	public String getColumnName(int iCol) throws StmtException {
-		checkOpen();
 		checkColumnIndex(iCol);
-		if (null == columnNames) {
-			columnNames = new String[getColumnCount()];
-		} else if (columnNames[iCol] != null) {
-			return columnNames[iCol];
-		}
-		columnNames[iCol] = sqlite3_column_name(pStmt, iCol); // ko if pStmt is null
-		return columnNames[iCol];
+		return getMeta().getColumnName(iCol);
 	}
 	@Override
 	public String getColumnOriginName(int iCol) throws StmtException {
-		checkOpen();
 		checkColumnIndex(iCol);
-		return sqlite3_column_origin_name(pStmt, iCol); // ko if pStmt is null
+		return getMeta().getColumnOriginName(iCol);
 	}
 	@Override
 	public String getColumnTableName(int iCol) throws StmtException {
-		checkOpen();
 		checkColumnIndex(iCol);
-		return sqlite3_column_table_name(pStmt, iCol); // ko if pStmt is null
+		return getMeta().getColumnTableName(iCol);
 	}
 	@Override
 	public String getColumnDatabaseName(int iCol) throws StmtException {
-		checkOpen();
 		checkColumnIndex(iCol);
-		return sqlite3_column_database_name(pStmt, iCol); // ko if pStmt is null
+		return getMeta().getColumnDatabaseName(iCol);
+	}
+
+	/**
+	 * @return immutable column descriptor, shared by all statements with the same SQL (while the schema is unchanged)
+	 */
+	public StmtMeta getMeta() throws StmtException {
+		checkOpen();
+		boolean reprepared = false;
+		if (meta != null && stepped) {
+			stepped = false;
+			final int n = sqlite3_stmt_status(pStmt, StmtStatus.SQLITE_STMTSTATUS_REPREPARE.value, false);
+			if (n != reprepares) {
+				reprepares = n;
+				reprepared = true;
+			}
+		}
+		if (meta == null || reprepared) {
+			meta = c.meta(this, reprepared);
+		}
+		return meta;
+	}
+	SQLite3Stmt pStmt() {
+		return pStmt;
 	}
 
 	@Override
 	public byte[] getColumnBlob(int iCol) throws StmtException {
-		final int type = getColumnType(iCol);
+		return getColumnBlob(iCol, getColumnType(iCol));
+	}
+	/**
+	 * Same as {@link #getColumnBlob(int)} but without querying the column type again.
+	 * @param iCol The leftmost column is number 0.
+	 * @param type column type previously returned by {@link #getColumnType(int)} for the current row
+	 */
+	public byte[] getColumnBlob(int iCol, int type) throws StmtException {
+		checkColumnIndex(iCol);
 		if (type == SQLITE_NULL) {
 			return null;
 		}
@@ -405,7 +495,15 @@ public class Stmt implements AutoCloseable, Row {
 	}
 	@Override
 	public String getColumnText(int iCol) throws StmtException {
-		final int type = getColumnType(iCol);
+		return getColumnText(iCol, getColumnType(iCol));
+	}
+	/**
+	 * Same as {@link #getColumnText(int)} but without querying the column type again.
+	 * @param iCol The leftmost column is number 0.
+	 * @param type column type previously returned by {@link #getColumnType(int)} for the current row
+	 */
+	public String getColumnText(int iCol, int type) throws StmtException {
+		checkColumnIndex(iCol);
 		if (type == SQLITE_NULL) {
 			return null;
 		}
@@ -571,14 +669,13 @@ public class Stmt implements AutoCloseable, Row {
 		checkBind(sqlite3_bind_zeroblob(pStmt, i, n), "sqlite3_bind_zeroblob", i);
 	}
 
-	private static final boolean[] UNKNOWN = new boolean[3];
+	/**
+	 * @param iCol The leftmost column is number 0.
+	 * @return not null, primary key, auto-increment flags (all <code>false</code> for expressions)
+	 */
 	public boolean[] getMetadata(int iCol) throws StmtException, ConnException {
-		final String colName = getColumnOriginName(iCol);
-		if (colName != null) {
-			return c.getTableColumnMetadata(
-					getColumnDatabaseName(iCol), getColumnTableName(iCol), colName);
-		}
-		return UNKNOWN;
+		checkColumnIndex(iCol);
+		return getMeta().getFlags(c, iCol).clone();
 	}
 
 	void check(int res, String format) throws StmtException {
@@ -644,6 +741,91 @@ public class Stmt implements AutoCloseable, Row {
 		return sqlite3_stmt_status(pStmt, op.value, reset);
 	}
 
+	/**
+	 * @return <code>true</code> when the library is compiled with SQLITE_ENABLE_STMT_SCANSTATUS
+	 * @see #getQueryPlan()
+	 */
+	public static boolean isScanStatusAvailable() {
+		return ScanStatus.AVAILABLE;
+	}
+
+	/**
+	 * Build the <code>EXPLAIN QUERY PLAN</code> tree of this statement.
+	 * <p>
+	 * When scan status is available, each loop is annotated with the number of times it has run,
+	 * the number of rows visited and the planner estimate,
+	 * accumulated since the statement was prepared or {@link #resetScanStatus()} was called.
+	 * So the plan should be retrieved after the statement has been executed.
+	 * @return query plan
+	 * @see <a href="http://sqlite.org/c3ref/stmt_scanstatus.html">sqlite3_stmt_scanstatus</a>
+	 */
+	public QueryPlan getQueryPlan() throws SQLiteException {
+		checkOpen();
+		final Map<Integer, Node> nodes = new HashMap<>();
+		final List<Node> roots = new ArrayList<>();
+		final List<Node> unmatched = new ArrayList<>();
+		try (Stmt eqp = c.prepare("EXPLAIN QUERY PLAN " + getSql(), false)) {
+			while (eqp.step(0)) {
+				final Node node = new Node(eqp.getColumnInt(0), eqp.getColumnInt(1), eqp.getColumnText(3));
+				final Node parent = nodes.get(node.getParent());
+				if (parent == null) {
+					roots.add(node);
+				} else {
+					parent.add(node);
+				}
+				nodes.put(node.getId(), node);
+				unmatched.add(node);
+			}
+		}
+		if (!ScanStatus.AVAILABLE) {
+			return new QueryPlan(roots, false);
+		}
+		// large enough for a sqlite3_int64 or a double, even on 32-bit platforms
+		final Memory pOut = new Memory(8L);
+		for (int idx = 0; ScanStatus.sqlite3_stmt_scanstatus(pStmt, idx, SQLITE_SCANSTAT_EXPLAIN, pOut) == SQLITE_OK; idx++) {
+			final String explain = getString(pOut);
+			// loops are reported in EXPLAIN QUERY PLAN order
+			Node node = null;
+			for (Iterator<Node> it = unmatched.iterator(); it.hasNext(); ) {
+				final Node n = it.next();
+				if (n.getDetail().equals(explain)) {
+					node = n;
+					it.remove();
+					break;
+				}
+			}
+			if (node == null) {
+				continue;
+			}
+			ScanStatus.sqlite3_stmt_scanstatus(pStmt, idx, SQLITE_SCANSTAT_NLOOP, pOut);
+			node.loops = pOut.getLong(0L);
+			ScanStatus.sqlite3_stmt_scanstatus(pStmt, idx, SQLITE_SCANSTAT_NVISIT, pOut);
+			node.visits = pOut.getLong(0L);
+			ScanStatus.sqlite3_stmt_scanstatus(pStmt, idx, SQLITE_SCANSTAT_EST, pOut);
+			node.estimatedRows = pOut.getDouble(0L);
+			ScanStatus.sqlite3_stmt_scanstatus(pStmt, idx, SQLITE_SCANSTAT_NAME, pOut);
+			node.name = getString(pOut);
+		}
+		return new QueryPlan(roots, true);
+	}
+
+	// const char* output
+	private static String getString(Pointer pOut) {
+		final Pointer p = pOut.getPointer(0L);
+		return p == null ? null : p.getString(0L, UTF_8_ECONDING);
+	}
+
+	/**
+	 * Zero all scan status counters (no-op when scan status is not available).
+	 * @see <a href="http://sqlite.org/c3ref/stmt_scanstatus_reset.html">sqlite3_stmt_scanstatus_reset</a>
+	 */
+	public void resetScanStatus() throws StmtException {
+		checkOpen();
+		if (ScanStatus.AVAILABLE) {
+			ScanStatus.sqlite3_stmt_scanstatus_reset(pStmt);
+		}
+	}
+
 	private void checkColumnIndex(int iCol) throws StmtException {
 		if (iCol < 0 || iCol >= getColumnCount()) {
 			throw new StmtException(this, String.format("column index %d out of range [0,%d[.", iCol, getColumnCount()), ErrCodes.SQLITE_RANGE);
@@ -0,0 +1,154 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.sqlite.SQLite.*;
+
+/**
+ * Immutable description of the columns returned by a prepared statement.
+ * <p>
+ * Computed once per SQL text and shared by all statements of the same connection
+ * (see {@link Stmt#getMeta()}), so metadata probing does not cost any native call.
+ * A shared descriptor is checked against the column names and types of each newly prepared statement
+ * and replaced when a statement is re-prepared (schema change).
+ */
+public final class StmtMeta {
+	private static final boolean[] UNKNOWN = new boolean[3];
+
+	private final String[] names;
+	private final String[] declTypes;
+	private final int[] affinities;
+	private final String[] originNames;
+	private final String[] tableNames;
+	private final String[] dbNames;
+	// lower-cased label => leftmost column index
+	private final Map<String, Integer> indexByLabel;
+	// not null, primary key, auto-increment flags (lazily computed, idempotent)
+	private volatile boolean[][] flags;
+
+	private StmtMeta(String[] names, String[] declTypes, String[] originNames, String[] tableNames, String[] dbNames) {
+		this.names = names;
+		this.declTypes = declTypes;
+		this.originNames = originNames;
+		this.tableNames = tableNames;
+		this.dbNames = dbNames;
+		affinities = new int[names.length];
+		indexByLabel = new HashMap<>(names.length * 2);
+		for (int i = names.length - 1; i >= 0; i--) {
+			affinities[i] = getAffinity(declTypes[i]);
+			if (names[i] != null) {
+				indexByLabel.put(names[i].toLowerCase(Locale.ROOT), i);
+			}
+		}
+	}
+
+	static StmtMeta of(Stmt s) throws StmtException {
+		s.checkOpen();
+		final SQLite3Stmt pStmt = s.pStmt();
+		final int columnCount = s.getColumnCount();
+		final String[] names = new String[columnCount];
+		final String[] declTypes = new String[columnCount];
+		final String[] originNames = new String[columnCount];
+		final String[] tableNames = new String[columnCount];
+		final String[] dbNames = new String[columnCount];
+		for (int i = 0; i < columnCount; i++) {
+			names[i] = sqlite3_column_name(pStmt, i);
+			declTypes[i] = sqlite3_column_decltype(pStmt, i);
+			try {
+				originNames[i] = sqlite3_column_origin_name(pStmt, i);
+				tableNames[i] = sqlite3_column_table_name(pStmt, i);
+				dbNames[i] = sqlite3_column_database_name(pStmt, i);
+			} catch (UnsupportedOperationException e) { // SQLITE_ENABLE_COLUMN_METADATA not activated
+				break;
+			}
+		}
+		return new StmtMeta(names, declTypes, originNames, tableNames, dbNames);
+	}
+
+	/**
+	 * @return <code>true</code> if the columns of <code>s</code> have the same names, declared types and tables (TEMP tables may shadow main ones)
+	 */
+	boolean matches(Stmt s) throws StmtException {
+		s.checkOpen();
+		final SQLite3Stmt pStmt = s.pStmt();
+		if (s.getColumnCount() != names.length) {
+			return false;
+		}
+		for (int i = 0; i < names.length; i++) {
+			if (!Objects.equals(names[i], sqlite3_column_name(pStmt, i)) ||
+					!Objects.equals(declTypes[i], sqlite3_column_decltype(pStmt, i))) {
+				return false;
+			}
+			if (tableNames[i] != null && (!tableNames[i].equals(sqlite3_column_table_name(pStmt, i)) ||
+					!dbNames[i].equals(sqlite3_column_database_name(pStmt, i)))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public int getColumnCount() {
+		return names.length;
+	}
+	/**
+	 * @param label column name (case insensitive)
+	 * @return the leftmost column index (0-based) or -1
+	 */
+	public int getColumnIndex(String label) {
+		final Integer index = indexByLabel.get(label.toLowerCase(Locale.ROOT));
+		return index == null ? -1 : index;
+	}
+	/**
+	 * @param iCol The leftmost column is number 0.
+	 */
+	public String getColumnName(int iCol) {
+		return names[iCol];
+	}
+	public String getColumnDeclType(int iCol) {
+		return declTypes[iCol];
+	}
+	/**
+	 * @return {@link ColAffinities}.*
+	 */
+	public int getColumnAffinity(int iCol) {
+		return affinities[iCol];
+	}
+	public String getColumnOriginName(int iCol) {
+		return originNames[iCol];
+	}
+	public String getColumnTableName(int iCol) {
+		return tableNames[iCol];
+	}
+	public String getColumnDatabaseName(int iCol) {
+		return dbNames[iCol];
+	}
+
+	/**
+	 * @param c connection used to compute the flags on first access
+	 * @param iCol The leftmost column is number 0.
+	 * @return not null, primary key, auto-increment flags (all <code>false</code> for expressions)
+	 * @see Conn#getTableColumnMetadata(String, String, String)
+	 */
+	boolean[] getFlags(Conn c, int iCol) throws ConnException {
+		boolean[][] flags = this.flags;
+		if (flags == null) {
+			flags = new boolean[names.length][];
+			for (int i = 0; i < flags.length; i++) {
+				flags[i] = originNames[i] == null ? UNKNOWN : c.getTableColumnMetadata(dbNames[i], tableNames[i], originNames[i]);
+			}
+			this.flags = flags;
+		}
+		return flags[iCol];
+	}
+}
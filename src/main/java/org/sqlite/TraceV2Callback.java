@@ -0,0 +1,48 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import com.sun.jna.Callback;
+import com.sun.jna.Pointer;
+
+/**
+ * Tracing callback.
+ * @see Conn#trace(int, TraceV2Callback)
+ * @see <a href="http://sqlite.org/c3ref/trace_v2.html">sqlite3_trace_v2</a>
+ */
+@FunctionalInterface
+public interface TraceV2Callback extends Callback {
+	/**
+	 * Trace event codes
+	 * @see <a href="http://sqlite.org/c3ref/c_trace.html">SQL Trace Event Codes</a>
+	 */
+	int SQLITE_TRACE_STMT = 0x01, SQLITE_TRACE_PROFILE = 0x02, SQLITE_TRACE_ROW = 0x04, SQLITE_TRACE_CLOSE = 0x08;
+
+	/**
+	 * @param type event code
+	 * @param ctx unused
+	 * @param p statement handle (connection handle for {@link #SQLITE_TRACE_CLOSE})
+	 * @param x unexpanded SQL text for {@link #SQLITE_TRACE_STMT}, pointer to the elapsed time in nanoseconds for {@link #SQLITE_TRACE_PROFILE}
+	 * @return ignored (must be zero)
+	 */
+	@SuppressWarnings("unused")
+	default int callback(int type, Pointer ctx, Pointer p, Pointer x) {
+		trace(type, p, x);
+		return 0;
+	}
+
+	/**
+	 * Raw pointers are given so that no conversion is done unless needed.
+	 * They are only valid during the call.
+	 * @param type event code
+	 * @param p statement handle (connection handle for {@link #SQLITE_TRACE_CLOSE})
+	 * @param x unexpanded SQL text for {@link #SQLITE_TRACE_STMT}, pointer to the elapsed time in nanoseconds for {@link #SQLITE_TRACE_PROFILE}
+	 */
+	void trace(int type, Pointer p, Pointer x);
+}
@@ -0,0 +1,56 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+/**
+ * Cursor over the rows of a {@link VirtualTable}.
+ * <p>
+ * {@link #next()}, {@link #eof()}, {@link #column(int, ColumnResult)} and {@link #rowId()} are invoked for each row:
+ * the binding creates no Java object to call them, besides the boxing of the callback arguments by JNA.
+ * An exception thrown by any method is reported as an SQL error.
+ * @see <a href="https://sqlite.org/vtab.html#the_xfilter_method">xFilter</a>
+ */
+public abstract class VirtualCursor {
+	/**
+	 * Starts a new scan.
+	 * @param idxNum plan number chosen by {@link VirtualTable#bestIndex(IndexInfo)}
+	 * @param args constraint values, in <code>argvIndex</code> order (see {@link IndexInfo#setConstraintUsage(int, int, boolean)})
+	 */
+	public abstract void filter(int idxNum, RawValues args) throws SQLiteException;
+
+	/**
+	 * Moves to the next row.
+	 */
+	public abstract void next() throws SQLiteException;
+
+	/**
+	 * Invoked right after {@link #filter(int, RawValues)} and {@link #next()}
+	 * (an exception thrown here fails the statement instead of ending the scan).
+	 * @return <code>true</code> when there is no current row
+	 */
+	public abstract boolean eof();
+
+	/**
+	 * Sets the value of the i-th column of the current row.
+	 * @param i 0-based column index
+	 * @param result reused by all invocations
+	 */
+	public abstract void column(int i, ColumnResult result) throws SQLiteException;
+
+	/**
+	 * @return the rowid of the current row
+	 */
+	public abstract long rowId() throws SQLiteException;
+
+	/**
+	 * Releases resources used by this cursor (<code>xClose</code>).
+	 */
+	public void close() {
+	}
+}
@@ -0,0 +1,43 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+/**
+ * Virtual table instance (see {@link VirtualTableModule}).
+ * <p>
+ * An exception thrown by any method is reported as an SQL error.
+ * @see <a href="https://sqlite.org/vtab.html">The Virtual Table Mechanism Of SQLite</a>
+ */
+public abstract class VirtualTable {
+	/**
+	 * @return a <code>CREATE TABLE</code> statement declaring the columns of this table
+	 * (the table name is ignored and columns can be <code>HIDDEN</code>)
+	 * @see <a href="https://sqlite.org/c3ref/declare_vtab.html">sqlite3_declare_vtab</a>
+	 */
+	public abstract String getDeclaration();
+
+	/**
+	 * Chooses how the rows matching a query are found: which constraints are checked by the cursor,
+	 * whether rows are returned in the requested order, and the cost of this plan.
+	 * @see <a href="https://sqlite.org/vtab.html#the_xbestindex_method">xBestIndex</a>
+	 */
+	public abstract void bestIndex(IndexInfo info) throws SQLiteException;
+
+	/**
+	 * @return a new cursor
+	 * @see <a href="https://sqlite.org/vtab.html#the_xopen_method">xOpen</a>
+	 */
+	public abstract VirtualCursor open() throws SQLiteException;
+
+	/**
+	 * Invoked when the connection stops using this table (<code>xDisconnect</code> or <code>xDestroy</code>).
+	 */
+	public void disconnect() {
+	}
+}
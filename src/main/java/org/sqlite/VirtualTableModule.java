@@ -0,0 +1,32 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+/**
+ * Read-only virtual table module implemented in Java.
+ * <pre>{@code
+ * c.createModule("series", (dbName, tableName, args) -> new SeriesTable(values));
+ * c.fastExec("CREATE VIRTUAL TABLE temp.s USING series");
+ * // or, as an eponymous virtual table:
+ * c.prepare("SELECT * FROM series", false);
+ * }</pre>
+ * @see Conn#createModule(String, VirtualTableModule)
+ * @see <a href="https://sqlite.org/vtab.html">The Virtual Table Mechanism Of SQLite</a>
+ */
+@FunctionalInterface
+public interface VirtualTableModule {
+	/**
+	 * Invoked by <code>CREATE VIRTUAL TABLE</code> and each time the table is used by a new connection
+	 * (<code>xCreate</code> and <code>xConnect</code>).
+	 * @param dbName "main", "temp" or attached database name
+	 * @param tableName virtual table name (module name for an eponymous virtual table)
+	 * @param args module arguments (<code>CREATE VIRTUAL TABLE ... USING module(args)</code>)
+	 */
+	VirtualTable connect(String dbName, String tableName, String[] args) throws SQLiteException;
+}
@@ -0,0 +1,29 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite;
+
+import org.sqlite.SQLite.SQLite3Values;
+
+/**
+ * User defined aggregate window function.
+ * <p>
+ * When a row leaves the window frame, it is removed from the state by {@link #inverse} instead of
+ * the whole frame being aggregated again, so a sliding window is computed in O(n) rather than O(n²).
+ * @see Conn#createWindowFunction(String, int, int, WindowAggregate)
+ * @see <a href="https://sqlite.org/windowfunctions.html#udfwinfunc">User-Defined Aggregate Window Functions</a>
+ */
+public interface WindowAggregate<S, R> extends Aggregate<S, R> {
+	/**
+	 * Removes the oldest row of the current window.
+	 * @param state current state
+	 * @param args function arguments of the row previously added by {@link #step}
+	 * @return new state (may be <code>state</code> itself)
+	 */
+	S inverse(S state, SQLite3Values args);
+}
@@ -0,0 +1,230 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite.driver;
+
+import org.sqlite.ColTypes;
+import org.sqlite.StmtException;
+import org.sqlite.ZeroBlob;
+
+import java.util.Arrays;
+
+/**
+ * Parameter values of a batched {@link java.sql.PreparedStatement} (see {@link PrepStmt#addBatch()}).
+ * <p>
+ * Values are stored by parameter in primitive columns: a type tag per row in a <code>byte[]</code>,
+ * INTEGER values (FLOAT bits, zeroblob length) in a <code>long[]</code>, and TEXT/BLOB values in an
+ * <code>Object[]</code> only allocated for parameters which need it. So no value is boxed and
+ * rebinding a row does not need any <code>instanceof</code> test.
+ * The row at index {@link #size()} is the one being bound; as with JDBC parameters, its values are
+ * initialized from the previous row.
+ */
+final class Batch {
+	private static final byte ZEROBLOB = 6;
+
+	private final int parameterCount;
+	private final byte[][] types; // parameter => row => ColTypes.* or ZEROBLOB (0: not bound)
+	private final long[][] numbers;
+	private final Object[][] objects; // String or byte[]
+	private int capacity;
+	private int size;
+
+	Batch(int parameterCount) {
+		this.parameterCount = parameterCount;
+		types = new byte[parameterCount][];
+		numbers = new long[parameterCount][];
+		objects = new Object[parameterCount][];
+		capacity = 16;
+		for (int p = 0; p < parameterCount; p++) {
+			types[p] = new byte[capacity];
+			numbers[p] = new long[capacity];
+		}
+	}
+
+	/**
+	 * @return the number of rows added
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @param p The leftmost parameter is number 0.
+	 */
+	void setNull(int p) {
+		types[p][size] = ColTypes.SQLITE_NULL;
+		if (objects[p] != null) {
+			objects[p][size] = null;
+		}
+	}
+	void setLong(int p, long value) {
+		setNumber(p, ColTypes.SQLITE_INTEGER, value);
+	}
+	void setDouble(int p, double value) {
+		setNumber(p, ColTypes.SQLITE_FLOAT, Double.doubleToRawLongBits(value));
+	}
+	void setZeroBlob(int p, int n) {
+		setNumber(p, ZEROBLOB, n);
+	}
+	private void setNumber(int p, int type, long value) {
+		types[p][size] = (byte) type;
+		numbers[p][size] = value;
+		if (objects[p] != null) {
+			objects[p][size] = null;
+		}
+	}
+	void setText(int p, String value) {
+		setObject(p, ColTypes.SQLITE_TEXT, value);
+	}
+	void setBlob(int p, byte[] value) {
+		setObject(p, ColTypes.SQLITE_BLOB, value);
+	}
+	private void setObject(int p, int type, Object value) {
+		if (value == null) {
+			setNull(p);
+			return;
+		}
+		if (objects[p] == null) {
+			objects[p] = new Object[capacity];
+		}
+		types[p][size] = (byte) type;
+		objects[p][size] = value;
+	}
+
+	/**
+	 * Initializes the current row from values bound outside batch mode.
+	 */
+	void set(Object[] bindings) {
+		if (bindings == null) {
+			return;
+		}
+		for (int p = 0; p < parameterCount; p++) {
+			final Object value = bindings[p];
+			if (value == null) {
+				setNull(p);
+			} else if (value instanceof String) {
+				setText(p, (String) value);
+			} else if (value instanceof Integer || value instanceof Long) {
+				setLong(p, ((Number) value).longValue());
+			} else if (value instanceof Double) {
+				setDouble(p, (Double) value);
+			} else if (value instanceof byte[]) {
+				setBlob(p, (byte[]) value);
+			} else if (value instanceof ZeroBlob) {
+				setZeroBlob(p, ((ZeroBlob) value).n);
+			} else {
+				throw new IllegalStateException(String.format("unexpected binding: %s", value.getClass().getName()));
+			}
+		}
+	}
+
+	/**
+	 * Copies the values of the current row into <code>bindings</code> (boxing them).
+	 */
+	void get(Object[] bindings) {
+		if (bindings == null) {
+			return;
+		}
+		for (int p = 0; p < parameterCount; p++) {
+			switch (types[p][size]) {
+				case ColTypes.SQLITE_INTEGER:
+					bindings[p] = numbers[p][size];
+					break;
+				case ColTypes.SQLITE_FLOAT:
+					bindings[p] = Double.longBitsToDouble(numbers[p][size]);
+					break;
+				case ColTypes.SQLITE_TEXT:
+				case ColTypes.SQLITE_BLOB:
+					bindings[p] = objects[p][size];
+					break;
+				case ZEROBLOB:
+					bindings[p] = new ZeroBlob((int) numbers[p][size]);
+					break;
+				default:
+					bindings[p] = null;
+			}
+		}
+	}
+
+	/**
+	 * Adds the current row to the batch. The next row starts with the same values.
+	 */
+	void add() {
+		final int row = size++;
+		if (size == capacity) {
+			capacity *= 2;
+			for (int p = 0; p < parameterCount; p++) {
+				types[p] = Arrays.copyOf(types[p], capacity);
+				numbers[p] = Arrays.copyOf(numbers[p], capacity);
+				if (objects[p] != null) {
+					objects[p] = Arrays.copyOf(objects[p], capacity);
+				}
+			}
+		}
+		for (int p = 0; p < parameterCount; p++) {
+			types[p][size] = types[p][row];
+			numbers[p][size] = numbers[p][row];
+			if (objects[p] != null) {
+				objects[p][size] = objects[p][row];
+			}
+		}
+	}
+
+	/**
+	 * Binds the values of <code>row</code> to <code>stmt</code>.
+	 */
+	void bind(int row, org.sqlite.Stmt stmt) throws StmtException {
+		bind(row, stmt, 0);
+	}
+	/**
+	 * Binds the values of <code>row</code> to <code>stmt</code> parameters following <code>offset</code>
+	 * (see {@link MultiRowInsert}).
+	 */
+	void bind(int row, org.sqlite.Stmt stmt, int offset) throws StmtException {
+		for (int p = 0; p < parameterCount; p++) {
+			final int i = offset + p + 1;
+			switch (types[p][row]) {
+				case ColTypes.SQLITE_INTEGER:
+					stmt.bindLong(i, numbers[p][row]);
+					break;
+				case ColTypes.SQLITE_FLOAT:
+					stmt.bindDouble(i, Double.longBitsToDouble(numbers[p][row]));
+					break;
+				case ColTypes.SQLITE_TEXT:
+					stmt.bindText(i, (String) objects[p][row]);
+					break;
+				case ColTypes.SQLITE_BLOB:
+					stmt.bindBlob(i, (byte[]) objects[p][row]);
+					break;
+				case ZEROBLOB:
+					stmt.bindZeroblob(i, (int) numbers[p][row]);
+					break;
+				default:
+					stmt.bindNull(i);
+			}
+		}
+	}
+
+	/**
+	 * Removes all rows, keeping the values of the current row.
+	 */
+	void clear() {
+		if (size == 0) {
+			return;
+		}
+		for (int p = 0; p < parameterCount; p++) {
+			types[p][0] = types[p][size];
+			numbers[p][0] = numbers[p][size];
+			if (objects[p] != null) {
+				objects[p][0] = objects[p][size];
+				Arrays.fill(objects[p], 1, size + 1, null);
+			}
+		}
+		size = 0;
+	}
+}
@@ -10,6 +10,11 @@ package org.sqlite.driver;
 
 import org.sqlite.ConnException;
 import org.sqlite.ErrCodes;
+import org.sqlite.Metrics;
+import org.sqlite.SQLite;
+import org.sqlite.parser.Parser;
+import org.sqlite.parser.ast.Cmd;
+import org.sqlite.parser.ast.Insert;
 import org.sqlite.parser.ast.Release;
 import org.sqlite.parser.ast.Rollback;
 
@@ -30,6 +35,7 @@ import java.sql.SQLXML;
 import java.sql.Savepoint;
 import java.sql.Statement;
 import java.sql.Struct;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.Executor;
@@ -37,6 +43,19 @@ import java.util.concurrent.Executor;
 class Conn implements Connection {
 	private org.sqlite.Conn c;
 	final String[] dateTimeConfig;
+	final boolean rewriteBatchedInserts;
+
+	/** Key returned when {@link Statement#RETURN_GENERATED_KEYS} is requested (see {@link #prepareReturning}) */
+	static final String[] ROWID = {"rowid"};
+	// SQL with a RETURNING clause by original SQL and requested keys (see prepareReturning)
+	private static final int RETURNING_CACHE_SIZE = 64;
+	private static final String NO_RETURNING = "";
+	private final Map<String, String> returningSql = new LinkedHashMap<String, String>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+			return size() > RETURNING_CACHE_SIZE;
+		}
+	};
 
 	private DbMeta meta;
 	PreparedStatement getGeneratedKeys;
@@ -46,9 +65,10 @@ class Conn implements Connection {
 	private SQLWarning warnings;
 	private int transactionIsolation = TRANSACTION_SERIALIZABLE;
 
-	Conn(org.sqlite.Conn c, String[] dateTimeConfig, SQLWarning warnings) {
+	Conn(org.sqlite.Conn c, String[] dateTimeConfig, boolean rewriteBatchedInserts, SQLWarning warnings) {
 		this.c = c;
 		this.dateTimeConfig = dateTimeConfig;
+		this.rewriteBatchedInserts = rewriteBatchedInserts;
 		this.warnings = warnings;
 	}
 
@@ -103,7 +123,11 @@ class Conn implements Connection {
 	public void setAutoCommit(boolean autoCommit) throws SQLException {
 		final org.sqlite.Conn c = getConn();
 		if (c.getAutoCommit() == autoCommit) return;
-		c.fastExec(autoCommit ? "COMMIT" : "BEGIN");
+		if (autoCommit) {
+			c.endTransaction(false, false);
+		} else {
+			c.fastExec("BEGIN");
+		}
 	}
 
 	@Override
@@ -115,14 +139,16 @@ class Conn implements Connection {
 	public void commit() throws SQLException {
 		final org.sqlite.Conn c = getConn();
 		if (c.getAutoCommit()) throw new ConnException(c, "database in auto-commit mode", ErrCodes.WRAPPER_SPECIFIC);
-		c.fastExec("COMMIT; BEGIN");
+		final long start = Metrics.start();
+		c.endTransaction(false, true);
+		Metrics.record(Metrics.Op.COMMIT, "COMMIT", start);
 	}
 
 	@Override
 	public void rollback() throws SQLException {
 		final org.sqlite.Conn c = getConn();
 		if (getAutoCommit()) throw new ConnException(c, "database in auto-commit mode", ErrCodes.WRAPPER_SPECIFIC);
-		c.fastExec("ROLLBACK; BEGIN");
+		c.endTransaction(true, true);
 	}
 
 	@Override
@@ -336,14 +362,14 @@ class Conn implements Connection {
 	public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
 		checkOpen();
 		checkCursor(resultSetType, resultSetConcurrency, resultSetHoldability);
-		return new Stmt(this);
+		return new Stmt(this, resultSetType);
 	}
 
 	@Override
 	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
 		final org.sqlite.Conn c = getConn();
 		checkCursor(resultSetType, resultSetConcurrency, resultSetHoldability);
-		return new PrepStmt(this, c.prepare(sql, true));
+		return new PrepStmt(this, c.prepare(sql, true), resultSetType);
 	}
 
 	@Override
@@ -355,6 +381,12 @@ class Conn implements Connection {
 	@Override
 	public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
 		checkAutoGeneratedKeys(autoGeneratedKeys);
+		if (Statement.RETURN_GENERATED_KEYS == autoGeneratedKeys) {
+			final org.sqlite.Stmt stmt = prepareReturning(sql, ROWID, true);
+			if (stmt != null) {
+				return new PrepStmt(this, stmt, ResultSet.TYPE_FORWARD_ONLY, ROWID);
+			}
+		}
 		return prepareStatement(sql);
 	}
 
@@ -373,7 +405,74 @@ class Conn implements Connection {
 		if (columnNames == null || columnNames.length == 0) {
 			return prepareStatement(sql);
 		}
-		throw Util.unsupported("Connection.prepareStatement(String,String[])");
+		final org.sqlite.Stmt stmt = prepareReturning(sql, columnNames, true);
+		if (stmt == null) {
+			throw Util.unsupported("Connection.prepareStatement(String,String[]) for this statement");
+		}
+		return new PrepStmt(this, stmt, ResultSet.TYPE_FORWARD_ONLY, columnNames);
+	}
+
+	/**
+	 * Appends a <code>RETURNING</code> clause to an <code>INSERT</code> statement (SQLite 3.35 or later)
+	 * so that generated keys are returned by the statement itself, even in batch mode.
+	 * An existing <code>RETURNING</code> clause is kept as is.
+	 * The rewritten SQL is cached (by original SQL and keys) so that the statement is parsed only once.
+	 * @param columnNames {@link #ROWID} when the key is not specified
+	 * @return <code>null</code> when <code>sql</code> is not an INSERT or when RETURNING is not supported
+	 */
+	org.sqlite.Stmt prepareReturning(String sql, String[] columnNames, boolean cacheable) throws SQLException {
+		final org.sqlite.Conn c = getConn();
+		if (org.sqlite.Conn.libversionNumber() < 3035000) {
+			return null;
+		}
+		final String key = columnNames == ROWID ? sql : sql + '\0' + String.join("\0", columnNames);
+		String returning = returningSql.get(key);
+		if (returning == null) {
+			returning = rewriteReturning(c, sql, columnNames);
+			returningSql.put(key, returning);
+		}
+		if (NO_RETURNING.equals(returning)) {
+			return null;
+		}
+		try {
+			return c.prepare(returning, cacheable);
+		} catch (ConnException e) {
+			if (columnNames == ROWID) { // WITHOUT ROWID table
+				returningSql.put(key, NO_RETURNING);
+				return null;
+			}
+			throw e;
+		}
+	}
+
+	// INSERT ... RETURNING columnNames or NO_RETURNING
+	private static String rewriteReturning(org.sqlite.Conn c, String sql, String[] columnNames) throws SQLException {
+		final Cmd cmd;
+		try {
+			cmd = Parser.parse(sql);
+		} catch (SQLException | RuntimeException e) { // unsupported syntax
+			return hasReturning(c, sql) ? sql : NO_RETURNING;
+		}
+		if (cmd == null || cmd.explain != null || !(cmd.stmt instanceof Insert)) {
+			return NO_RETURNING;
+		}
+		final StringBuilder returning = new StringBuilder(cmd.stmt.toSql()).append(" RETURNING ");
+		for (int i = 0; i < columnNames.length; i++) {
+			if (i > 0) {
+				returning.append(", ");
+			}
+			returning.append('"').append(SQLite.escapeIdentifier(columnNames[i])).append('"');
+		}
+		return returning.toString();
+	}
+
+	// RETURNING is not supported by the parser: a data change statement returning columns already has a RETURNING clause.
+	private static boolean hasReturning(org.sqlite.Conn c, String sql) {
+		try (org.sqlite.Stmt stmt = c.prepare(sql, true)) {
+			return !stmt.isReadOnly() && stmt.getColumnCount() > 0;
+		} catch (SQLException e) {
+			return false;
+		}
 	}
 
 	@Override
@@ -497,8 +596,8 @@ class Conn implements Connection {
 
 	private static void checkCursor(int resultSetType, int resultSetConcurrency, int resultSetHoldability)
 			throws SQLFeatureNotSupportedException {
-		if (resultSetType != ResultSet.TYPE_FORWARD_ONLY) throw Util.caseUnsupported(
-				"SQLite only supports TYPE_FORWARD_ONLY cursors");
+		if (resultSetType != ResultSet.TYPE_FORWARD_ONLY && resultSetType != ResultSet.TYPE_SCROLL_INSENSITIVE) throw Util.caseUnsupported(
+				"SQLite only supports TYPE_FORWARD_ONLY and TYPE_SCROLL_INSENSITIVE cursors");
 		if (resultSetConcurrency != ResultSet.CONCUR_READ_ONLY) throw Util.caseUnsupported(
 				"SQLite only supports CONCUR_READ_ONLY cursors");
 		if (resultSetHoldability != ResultSet.CLOSE_CURSORS_AT_COMMIT) throw Util.caseUnsupported(
@@ -14,14 +14,28 @@ import java.sql.Timestamp;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.Temporal;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
 import java.util.TimeZone;
 
+/**
+ * Date/time codec.
+ * <p>
+ * The ISO-8601 layouts (YYYY-MM-DD, HH:MM[:SS[.SSS]], YYYY-MM-DD[T ]HH:MM[:SS[.SSS]][Z|+hh:mm]) are parsed and formatted by hand,
+ * without any lock nor intermediate object. Other layouts, and dates before the Gregorian cutover (Julian calendar),
+ * are handled by {@link SimpleDateFormat}.
+ */
 final class DateUtil {
 	public static final String DATE_FORMAT = "date_format";
 	public static final String TIME_FORMAT = "time_format";
@@ -33,7 +47,24 @@ final class DateUtil {
 	public static final String DEFAULT_FORMAT = "yyyy-MM-dd'T'HH:mm:ss.SSSXXX"; // ISO-8601
 
 	private static final ThreadLocal<Map<String, DateFormat>> DATE_FORMATS = ThreadLocal.withInitial(HashMap::new);
-	private static final Calendar UTC = GregorianCalendar.getInstance(TimeZone.getTimeZone("GMT"));
+	private static final ThreadLocal<Fields> FIELDS = ThreadLocal.withInitial(Fields::new);
+
+	private static final long MILLIS_PER_DAY = 86_400_000L;
+	private static final int DAYS_PER_CYCLE = 146_097;
+	private static final long DAYS_0000_TO_1970 = (DAYS_PER_CYCLE * 5L) - (30L * 365L + 7L);
+	// 0000-01-01 and 9999-12-31
+	private static final long MIN_EPOCH_DAY = -DAYS_0000_TO_1970;
+	private static final long MAX_EPOCH_DAY = 2_932_896L;
+	// 1582-10-15T00:00:00Z: SimpleDateFormat switches to the Julian calendar before
+	private static final long GREGORIAN_CUTOVER = -12_219_292_800_000L;
+
+	// layout flags
+	private static final int DATE = 1;
+	private static final int MINUTES = 2;
+	private static final int SECONDS = 4;
+	private static final int MILLIS = 8;
+	private static final int OFFSET = 16;
+	private static final int SPACE = 32; // date/time separator is ' ' instead of 'T'
 
 	private DateUtil() {
 	}
@@ -62,6 +93,308 @@ final class DateUtil {
 		return (ms + adj) / 86400000.0 + 2440587.5;
 	}
 
+	// Parsed text fields (one scratch instance per thread)
+	private static final class Fields {
+		private int year = 1970, month = 1, day = 1;
+		private int hour, minute, second, nanos;
+		private int offset; // in seconds
+		private boolean hasDate, hasTime, hasOffset;
+
+		private void reset() {
+			year = 1970;
+			month = day = 1;
+			hour = minute = second = nanos = offset = 0;
+			hasDate = hasTime = hasOffset = false;
+		}
+
+		// local date-time in milliseconds
+		private long localMillis() {
+			return epochDay(year, month, day) * MILLIS_PER_DAY + ((hour * 60L + minute) * 60L + second) * 1000L + nanos / 1_000_000;
+		}
+
+		private long epochMillis(Calendar cal) {
+			final long local = localMillis();
+			if (hasOffset) {
+				return local - offset * 1000L;
+			}
+			final TimeZone tz = cal == null ? TimeZone.getDefault() : cal.getTimeZone();
+			return local - tz.getOffset(local - tz.getRawOffset());
+		}
+	}
+
+	/**
+	 * @return parsed fields or <code>null</code> if <code>txt</code> does not match any ISO-8601 layout
+	 * or is before the Gregorian cutover
+	 */
+	private static Fields parse(CharSequence txt) {
+		final Fields f = FIELDS.get();
+		f.reset();
+		final int len = txt.length();
+		int i = 0;
+		if (len >= 10 && txt.charAt(4) == '-') {
+			final int year = digits(txt, 0, 4);
+			final int month = digits(txt, 5, 2);
+			final int day = digits(txt, 8, 2);
+			if (year < 1583 || txt.charAt(7) != '-' || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+				return null;
+			}
+			f.year = year;
+			f.month = month;
+			f.day = day;
+			f.hasDate = true;
+			i = 10;
+			if (i == len) {
+				return f;
+			}
+			final char sep = txt.charAt(i++);
+			if (sep != 'T' && sep != ' ') {
+				return null;
+			}
+		}
+		// HH:MM[:SS[.S{1,9}]]
+		if (len - i < 5 || txt.charAt(i + 2) != ':') {
+			return null;
+		}
+		f.hour = digits(txt, i, 2);
+		f.minute = digits(txt, i + 3, 2);
+		if (f.hour < 0 || f.hour > 23 || f.minute < 0 || f.minute > 59) {
+			return null;
+		}
+		f.hasTime = true;
+		i += 5;
+		if (i < len && txt.charAt(i) == ':') {
+			f.second = digits(txt, i + 1, 2);
+			if (f.second < 0 || f.second > 59) {
+				return null;
+			}
+			i += 3;
+			if (i < len && txt.charAt(i) == '.') {
+				int n = 0;
+				int nanos = 0;
+				for (i++; i < len && n < 9; i++, n++) {
+					final char ch = txt.charAt(i);
+					if (ch < '0' || ch > '9') {
+						break;
+					}
+					nanos = nanos * 10 + (ch - '0');
+				}
+				if (n == 0) {
+					return null;
+				}
+				for (; n < 9; n++) {
+					nanos *= 10;
+				}
+				f.nanos = nanos;
+			}
+		}
+		if (i == len) {
+			return f;
+		}
+		// Z or +hh:mm
+		final char sign = txt.charAt(i);
+		if (sign == 'Z' && i + 1 == len) {
+			f.hasOffset = true;
+			return f;
+		}
+		if ((sign == '+' || sign == '-') && len - i == 6 && txt.charAt(i + 3) == ':') {
+			final int hh = digits(txt, i + 1, 2);
+			final int mm = digits(txt, i + 4, 2);
+			if (hh < 0 || hh > 18 || mm < 0 || mm > 59) {
+				return null;
+			}
+			f.offset = (sign == '-' ? -1 : 1) * (hh * 3600 + mm * 60);
+			f.hasOffset = true;
+			return f;
+		}
+		return null;
+	}
+
+	// -1 if not a digit
+	private static int digits(CharSequence txt, int start, int n) {
+		if (start + n > txt.length()) {
+			return -1;
+		}
+		int value = 0;
+		for (int i = start; i < start + n; i++) {
+			final char ch = txt.charAt(i);
+			if (ch < '0' || ch > '9') {
+				return -1;
+			}
+			value = value * 10 + (ch - '0');
+		}
+		return value;
+	}
+
+	private static boolean isLeapYear(long year) {
+		return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+	}
+
+	private static int lengthOfMonth(int year, int month) {
+		switch (month) {
+			case 2:
+				return isLeapYear(year) ? 29 : 28;
+			case 4:
+			case 6:
+			case 9:
+			case 11:
+				return 30;
+			default:
+				return 31;
+		}
+	}
+
+	// proleptic Gregorian calendar (see LocalDate.toEpochDay)
+	private static long epochDay(long year, int month, int day) {
+		long total = 365 * year;
+		if (year >= 0) {
+			total += (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+		} else {
+			total -= year / -4 - year / -100 + year / -400;
+		}
+		total += (367 * month - 362) / 12;
+		total += day - 1;
+		if (month > 2) {
+			total--;
+			if (!isLeapYear(year)) {
+				total--;
+			}
+		}
+		return total - DAYS_0000_TO_1970;
+	}
+
+	/**
+	 * @return year * 10000 + month * 100 + day (see LocalDate.ofEpochDay)
+	 */
+	private static long civil(long epochDay) {
+		long zeroDay = epochDay + DAYS_0000_TO_1970 - 60; // March-based year
+		long adjust = 0;
+		if (zeroDay < 0) {
+			final long adjustCycles = (zeroDay + 1) / DAYS_PER_CYCLE - 1;
+			adjust = adjustCycles * 400;
+			zeroDay += -adjustCycles * DAYS_PER_CYCLE;
+		}
+		long yearEst = (400 * zeroDay + 591) / DAYS_PER_CYCLE;
+		long doyEst = zeroDay - (365 * yearEst + yearEst / 4 - yearEst / 100 + yearEst / 400);
+		if (doyEst < 0) {
+			yearEst--;
+			doyEst = zeroDay - (365 * yearEst + yearEst / 4 - yearEst / 100 + yearEst / 400);
+		}
+		yearEst += adjust;
+		final int marchDoy0 = (int) doyEst;
+		final int marchMonth0 = (marchDoy0 * 5 + 2) / 153;
+		final int month = (marchMonth0 + 2) % 12 + 1;
+		final int dom = marchDoy0 - (marchMonth0 * 306 + 5) / 10 + 1;
+		yearEst += marchMonth0 / 10;
+		return yearEst * 10000 + month * 100 + dom;
+	}
+
+	private static int layout(String layout) {
+		switch (layout) {
+			case "HH:mm":
+				return MINUTES;
+			case HH_MM_SS:
+				return SECONDS;
+			case "HH:mm:ss.SSS":
+				return MILLIS;
+			case YYYY_MM_DD:
+				return DATE;
+			case "yyyy-MM-dd'T'HH:mm":
+				return DATE | MINUTES;
+			case "yyyy-MM-dd'T'HH:mm:ss":
+				return DATE | SECONDS;
+			case "yyyy-MM-dd'T'HH:mm:ss.SSS":
+				return DATE | MILLIS;
+			case DEFAULT_FORMAT:
+				return DATE | MILLIS | OFFSET;
+			case "yyyy-MM-dd HH:mm":
+				return DATE | MINUTES | SPACE;
+			case "yyyy-MM-dd HH:mm:ss":
+				return DATE | SECONDS | SPACE;
+			case "yyyy-MM-dd HH:mm:ss.SSS":
+				return DATE | MILLIS | SPACE;
+			case "yyyy-MM-dd HH:mm:ss.SSSXXX":
+				return DATE | MILLIS | OFFSET | SPACE;
+			default:
+				return -1;
+		}
+	}
+
+	/**
+	 * @param epochDay days since 1970-01-01
+	 * @param nanoOfDay nanoseconds since midnight
+	 * @param fractionDigits 0 (no fraction), 3, 6 or 9
+	 * @param offset in seconds or {@link Integer#MIN_VALUE} for none
+	 * @return <code>null</code> if the year is not in [0000, 9999]
+	 */
+	private static String format(long epochDay, long nanoOfDay, int flags, int fractionDigits, int offset) {
+		if ((flags & DATE) != 0 && (epochDay < MIN_EPOCH_DAY || epochDay > MAX_EPOCH_DAY)) {
+			return null;
+		}
+		final char[] buf = new char[35];
+		int i = 0;
+		if ((flags & DATE) != 0) {
+			final long ymd = civil(epochDay);
+			i = put(buf, i, (int) (ymd / 10000), 4);
+			buf[i++] = '-';
+			i = put(buf, i, (int) (ymd / 100 % 100), 2);
+			buf[i++] = '-';
+			i = put(buf, i, (int) (ymd % 100), 2);
+			if ((flags & (MINUTES | SECONDS | MILLIS)) != 0) {
+				buf[i++] = (flags & SPACE) != 0 ? ' ' : 'T';
+			}
+		}
+		if ((flags & (MINUTES | SECONDS | MILLIS)) != 0) {
+			final long secondOfDay = nanoOfDay / 1_000_000_000L;
+			i = put(buf, i, (int) (secondOfDay / 3600), 2);
+			buf[i++] = ':';
+			i = put(buf, i, (int) (secondOfDay / 60 % 60), 2);
+			if ((flags & (SECONDS | MILLIS)) != 0) {
+				buf[i++] = ':';
+				i = put(buf, i, (int) (secondOfDay % 60), 2);
+				if (fractionDigits > 0) {
+					buf[i++] = '.';
+					long fraction = nanoOfDay % 1_000_000_000L;
+					for (int n = 9; n > fractionDigits; n--) {
+						fraction /= 10;
+					}
+					i = put(buf, i, (int) fraction, fractionDigits);
+				}
+			}
+		}
+		if ((flags & OFFSET) != 0 && offset != Integer.MIN_VALUE) {
+			if (offset == 0) {
+				buf[i++] = 'Z';
+			} else {
+				buf[i++] = offset < 0 ? '-' : '+';
+				final int abs = Math.abs(offset);
+				i = put(buf, i, abs / 3600, 2);
+				buf[i++] = ':';
+				i = put(buf, i, abs / 60 % 60, 2);
+			}
+		}
+		return new String(buf, 0, i);
+	}
+
+	private static int put(char[] buf, int i, int value, int width) {
+		for (int j = i + width - 1; j >= i; j--) {
+			buf[j] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+		return i + width;
+	}
+
+	// 0, 3, 6 or 9 digits like java.time toString
+	private static int fractionDigits(int nanos) {
+		if (nanos == 0) {
+			return 0;
+		} else if (nanos % 1_000_000 == 0) {
+			return 3;
+		} else if (nanos % 1_000 == 0) {
+			return 6;
+		}
+		return 9;
+	}
+
 	private static class ParsedDate {
 		private final Date value;
 		private final boolean tz;
@@ -71,6 +404,7 @@ final class DateUtil {
 		}
 	}
 
+	// SimpleDateFormat fallback
 	private static ParsedDate parseDate(String txt, Calendar cal) throws SQLException {
 		boolean tz = false;
 		final String layout;
@@ -141,6 +475,18 @@ final class DateUtil {
 	}
 
 	static String formatDate(Date date, String layout, Calendar cal) {
+		final int flags = layout(layout);
+		final long ms = date.getTime();
+		if (flags >= 0 && ms >= GREGORIAN_CUTOVER) {
+			final TimeZone tz = cal == null ? TimeZone.getDefault() : cal.getTimeZone();
+			final int offset = tz.getOffset(ms);
+			final long local = ms + offset;
+			final String txt = format(Math.floorDiv(local, MILLIS_PER_DAY), Math.floorMod(local, MILLIS_PER_DAY) * 1_000_000L,
+					flags, (flags & MILLIS) != 0 ? 3 : 0, offset / 1000);
+			if (txt != null) {
+				return txt;
+			}
+		}
 		return getDateFormat(layout, cal).format(date);
 	}
 
@@ -155,9 +501,16 @@ final class DateUtil {
 		return df;
 	}
 
+	private static long toEpochMillis(String txt, Calendar cal) throws SQLException {
+		final Fields f = parse(txt);
+		if (f != null) {
+			return f.epochMillis(cal);
+		}
+		return parseDate(txt, cal).value.getTime();
+	}
+
 	static java.sql.Date toDate(String txt, Calendar cal) throws SQLException {
-		final ParsedDate date = parseDate(txt, cal);
-		return new java.sql.Date(/*normalizeDate(*/date.value.getTime()/*)*/);
+		return new java.sql.Date(/*normalizeDate(*/toEpochMillis(txt, cal)/*)*/);
 	}
 	static java.sql.Date toDate(long unixepoch, Calendar cal) {
 		return new java.sql.Date(normalizeDate(unixepoch, cal));
@@ -167,8 +520,7 @@ final class DateUtil {
 	}
 
 	static Time toTime(String txt, Calendar cal) throws SQLException {
-		final ParsedDate date = parseDate(txt, cal);
-		return new Time(date.value.getTime());
+		return new Time(toEpochMillis(txt, cal));
 	}
 	static Time toTime(long unixepoch) {
 		return new Time(unixepoch);
@@ -178,8 +530,13 @@ final class DateUtil {
 	}
 
 	static Timestamp toTimestamp(String txt, Calendar cal) throws SQLException {
-		final ParsedDate date = parseDate(txt, cal);
-		return new Timestamp(date.value.getTime());
+		final Fields f = parse(txt);
+		if (f != null) {
+			final Timestamp ts = new Timestamp(f.epochMillis(cal));
+			ts.setNanos(f.nanos);
+			return ts;
+		}
+		return new Timestamp(parseDate(txt, cal).value.getTime());
 	}
 	static Timestamp toTimestamp(long unixepoch) {
 		return new Timestamp(unixepoch);
@@ -189,22 +546,113 @@ final class DateUtil {
 	}
 
 	// must be 'normalized' by setting the hours, minutes, seconds, and milliseconds to zero in the particular time zone with which the instance is associated.
+	// (always done in UTC)
 	static long normalizeDate(long unixepoch, Calendar cal) {
-		if (cal == null) {
-			synchronized (UTC) {
-				return normalize(unixepoch, UTC);
+		return unixepoch - Math.floorMod(unixepoch, MILLIS_PER_DAY);
+	}
+
+	// java.time fast paths
+
+	static LocalDate toLocalDate(String txt) throws SQLException {
+		final Fields f = parse(txt);
+		if (f != null && f.hasDate && !f.hasTime) {
+			return LocalDate.of(f.year, f.month, f.day);
+		}
+		try {
+			return LocalDate.parse(txt);
+		} catch (DateTimeParseException e) {
+			throw new SQLException(String.format("Unsupported date format: '%s'", txt), e);
+		}
+	}
+	static LocalDateTime toLocalDateTime(String txt) throws SQLException {
+		final Fields f = parse(txt);
+		if (f != null && f.hasDate && f.hasTime && !f.hasOffset) {
+			return LocalDateTime.of(f.year, f.month, f.day, f.hour, f.minute, f.second, f.nanos);
+		}
+		try {
+			return LocalDateTime.parse(txt);
+		} catch (DateTimeParseException e) {
+			throw new SQLException(String.format("Unsupported timestamp format: '%s'", txt), e);
+		}
+	}
+	static LocalTime toLocalTime(String txt) throws SQLException {
+		final Fields f = parse(txt);
+		if (f != null && !f.hasDate && f.hasTime && !f.hasOffset) {
+			return LocalTime.of(f.hour, f.minute, f.second, f.nanos);
+		}
+		try {
+			return LocalTime.parse(txt);
+		} catch (DateTimeParseException e) {
+			throw new SQLException(String.format("Unsupported time format: '%s'", txt), e);
+		}
+	}
+	static OffsetDateTime toOffsetDateTime(String txt) throws SQLException {
+		final Fields f = parse(txt);
+		if (f != null && f.hasDate && f.hasTime && f.hasOffset) {
+			return OffsetDateTime.of(f.year, f.month, f.day, f.hour, f.minute, f.second, f.nanos, ZoneOffset.ofTotalSeconds(f.offset));
+		}
+		try {
+			return OffsetDateTime.parse(txt);
+		} catch (DateTimeParseException e) {
+			throw new SQLException(String.format("Unsupported timestamp format: '%s'", txt), e);
+		}
+	}
+	/**
+	 * @param txt timestamp, interpreted in the default time zone if there is no offset
+	 */
+	static Instant toInstant(String txt) throws SQLException {
+		final Fields f = parse(txt);
+		if (f != null && f.hasDate) {
+			final long ms = f.epochMillis(null);
+			return Instant.ofEpochSecond(Math.floorDiv(ms, 1000L), f.nanos);
+		}
+		try {
+			return Instant.parse(txt);
+		} catch (DateTimeParseException e) {
+			throw new SQLException(String.format("Unsupported timestamp format: '%s'", txt), e);
+		}
+	}
+	static Instant toInstant(long unixepoch) {
+		return Instant.ofEpochMilli(unixepoch);
+	}
+	static Instant toInstant(double jd) {
+		return Instant.ofEpochMilli(fromJulianDay(jd));
+	}
+
+	/**
+	 * @return same text as <code>toString</code> (ISO-8601, seconds and fraction omitted when zero)
+	 */
+	static String format(Temporal temporal) {
+		String txt = null;
+		if (temporal instanceof LocalDate) {
+			txt = format(((LocalDate) temporal).toEpochDay(), 0L, DATE, 0, Integer.MIN_VALUE);
+		} else if (temporal instanceof LocalDateTime) {
+			final LocalDateTime ldt = (LocalDateTime) temporal;
+			final long nanoOfDay = ldt.toLocalTime().toNanoOfDay();
+			txt = format(ldt.toLocalDate().toEpochDay(), nanoOfDay, DATE | timeFlags(nanoOfDay), fractionDigits(ldt.getNano()), Integer.MIN_VALUE);
+		} else if (temporal instanceof LocalTime) {
+			final LocalTime lt = (LocalTime) temporal;
+			final long nanoOfDay = lt.toNanoOfDay();
+			txt = format(0L, nanoOfDay, timeFlags(nanoOfDay), fractionDigits(lt.getNano()), Integer.MIN_VALUE);
+		} else if (temporal instanceof OffsetDateTime) {
+			final OffsetDateTime odt = (OffsetDateTime) temporal;
+			final long nanoOfDay = odt.toLocalTime().toNanoOfDay();
+			final int offset = odt.getOffset().getTotalSeconds();
+			if (offset % 60 == 0) { // "+hh:mm:ss" otherwise
+				txt = format(odt.toLocalDate().toEpochDay(), nanoOfDay, DATE | timeFlags(nanoOfDay) | OFFSET, fractionDigits(odt.getNano()), offset);
 			}
-		} else {
-			return normalize(unixepoch, UTC);
+		} else if (temporal instanceof Instant) { // seconds always present
+			final Instant instant = (Instant) temporal;
+			final long epochSecond = instant.getEpochSecond();
+			txt = format(Math.floorDiv(epochSecond, 86400L), Math.floorMod(epochSecond, 86400L) * 1_000_000_000L + instant.getNano(),
+					DATE | SECONDS | OFFSET, fractionDigits(instant.getNano()), 0);
 		}
+		return txt == null ? temporal.toString() : txt;
 	}
-	private static long normalize(long unixepoch, Calendar cal) {
-		cal.setTimeInMillis(unixepoch);
-		cal.set(Calendar.HOUR_OF_DAY, 0);
-		cal.set(Calendar.MINUTE, 0);
-		cal.set(Calendar.SECOND, 0);
-		cal.set(Calendar.MILLISECOND, 0);
-		return cal.getTimeInMillis();
+
+	// like java.time toString: seconds omitted when seconds and fraction are zero
+	private static int timeFlags(long nanoOfDay) {
+		return nanoOfDay % 60_000_000_000L == 0L ? MINUTES : SECONDS;
 	}
 
 	public static void main(String[] args) throws ParseException {
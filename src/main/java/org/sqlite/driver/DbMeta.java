@@ -1263,14 +1263,14 @@ class DbMeta implements DatabaseMetaData {
 	 * @see Rows#getType() */
 	@Override
 	public boolean supportsResultSetType(int type) {
-		return type == ResultSet.TYPE_FORWARD_ONLY;
+		return type == ResultSet.TYPE_FORWARD_ONLY || type == ResultSet.TYPE_SCROLL_INSENSITIVE;
 	}
 
 	/** @see Stmt#getResultSetConcurrency()
 	 * @see Rows#getConcurrency() */
 	@Override
 	public boolean supportsResultSetConcurrency(int type, int concurrency) {
-		return type == ResultSet.TYPE_FORWARD_ONLY && concurrency == ResultSet.CONCUR_READ_ONLY;
+		return supportsResultSetType(type) && concurrency == ResultSet.CONCUR_READ_ONLY;
 	}
 
 	@Override
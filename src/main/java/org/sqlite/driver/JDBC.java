@@ -49,6 +49,8 @@ public class JDBC implements Driver {
 	public static final String VFS = "vfs";
 	public static final String MODE = "mode";
 	public static final String CACHE = "cache";
+	/** Insert batched rows of a single-row <code>INSERT ... VALUES</code> with multi-row statements ("on" or "off" (default)). */
+	public static final String REWRITE_BATCHED_INSERTS = "rewrite_batched_inserts";
 
 	@Override
 	public Connection connect(String url, Properties info) throws SQLException {
@@ -67,7 +69,8 @@ public class JDBC implements Driver {
 			conn.closeNoCheck();
 			throw t;
 		}
-		return new Conn(conn, DateUtil.config(info), warnings);
+		final boolean rewriteBatchedInserts = info != null && "on".equals(info.getProperty(REWRITE_BATCHED_INSERTS));
+		return new Conn(conn, DateUtil.config(info), rewriteBatchedInserts, warnings);
 	}
 
 	private static int getOpenFlags(String mode, String cache) {
@@ -131,7 +134,12 @@ public class JDBC implements Driver {
 		final DriverPropertyInfo tsf = new DriverPropertyInfo(DateUtil.TIMESTAMP_FORMAT, info == null ? null : info.getProperty(DateUtil.TIMESTAMP_FORMAT));
 		tsf.description = "Specify the format used to persist timestamp ('" + DateUtil.JULIANDAY + "', '" + DateUtil.UNIXEPOCH + "', 'yyyy-MM-dd HH:mm:ss.SSSXXX', '...').";
 
-		return new DriverPropertyInfo[]{vfs, mode, cache, fks, triggers, ele, encoding, df, tf, tsf}; // TODO locking_mode, recursive_triggers, synchronous
+		final DriverPropertyInfo rbi = new DriverPropertyInfo(REWRITE_BATCHED_INSERTS, info == null ? null : info.getProperty(REWRITE_BATCHED_INSERTS));
+		rbi.description = "Insert batched rows of a single-row INSERT ... VALUES with multi-row statements.";
+		rbi.choices = new String[]{"on", "off"};
+		if (rbi.value == null) rbi.value = "off"; // default
+
+		return new DriverPropertyInfo[]{vfs, mode, cache, fks, triggers, ele, encoding, df, tf, tsf, rbi}; // TODO locking_mode, recursive_triggers, synchronous
 	}
 
 	private static SQLWarning setup(org.sqlite.Conn conn, Properties info) throws ConnException {
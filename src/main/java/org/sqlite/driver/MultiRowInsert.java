@@ -0,0 +1,135 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite.driver;
+
+import org.sqlite.SQLite;
+import org.sqlite.SQLiteException;
+import org.sqlite.parser.Parser;
+import org.sqlite.parser.ast.Cmd;
+import org.sqlite.parser.ast.Expr;
+import org.sqlite.parser.ast.Insert;
+import org.sqlite.parser.ast.LiteralExpr;
+import org.sqlite.parser.ast.OneSelect;
+import org.sqlite.parser.ast.Select;
+import org.sqlite.parser.ast.VariableExpr;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Batched rows of a single-row <code>INSERT INTO ... VALUES (?, ...)</code> inserted by chunks
+ * with one multi-row <code>INSERT INTO ... VALUES (?, ...), (?, ...), ...</code> statement
+ * (see {@link JDBC#REWRITE_BATCHED_INSERTS}).
+ * <p>
+ * Chunk sizes are powers of two bounded by <code>SQLITE_LIMIT_VARIABLE_NUMBER</code> so that only
+ * a few distinct statements are prepared, and they are kept in the connection statement cache.
+ * Only statements where the rewrite cannot change the result are eligible: no <code>WITH</code>,
+ * no conflict clause, no upsert, and values which are only anonymous parameters or literals.
+ */
+final class MultiRowInsert {
+	/** Upper bound of rows per statement */
+	static final int MAX_ROWS = 1024;
+
+	private final Insert insert;
+	private final List<Expr> row;
+	private final int parameterCount;
+	private final int maxRows;
+	private final String[] sqls; // log2(rows) => SQL
+
+	private MultiRowInsert(Insert insert, List<Expr> row, int parameterCount, int maxRows) {
+		this.insert = insert;
+		this.row = row;
+		this.parameterCount = parameterCount;
+		this.maxRows = maxRows;
+		sqls = new String[Integer.numberOfTrailingZeros(maxRows) + 1];
+	}
+
+	/**
+	 * @return <code>null</code> when <code>stmt</code> cannot be rewritten
+	 */
+	static MultiRowInsert of(org.sqlite.Conn c, org.sqlite.Stmt stmt) throws SQLiteException {
+		final int parameterCount = stmt.getBindParameterCount();
+		if (parameterCount == 0) {
+			return null;
+		}
+		for (int i = 1; i <= parameterCount; i++) {
+			if (stmt.getBindParameterName(i) != null) { // only anonymous parameters are renumbered by position
+				return null;
+			}
+		}
+		final Cmd cmd;
+		try {
+			cmd = Parser.parse(stmt.getSql());
+		} catch (SQLException | RuntimeException e) { // unsupported syntax
+			return null;
+		}
+		if (cmd == null || cmd.explain != null || !(cmd.stmt instanceof Insert)) {
+			return null;
+		}
+		final Insert insert = (Insert) cmd.stmt;
+		if (insert.with != null || insert.orConflict != null || insert.upsert != null) {
+			return null;
+		}
+		final Select select = insert.select;
+		if (select == null || select.with != null || select.orderBy != null || select.limit != null ||
+				select.body.compounds != null && !select.body.compounds.isEmpty()) {
+			return null;
+		}
+		final List<List<Expr>> values = select.body.select.values;
+		if (values == null || values.size() != 1) {
+			return null;
+		}
+		for (Expr expr : values.get(0)) {
+			if (!(expr instanceof VariableExpr) && !(expr instanceof LiteralExpr)) { // e.g. a subquery may read the table
+				return null;
+			}
+		}
+		final int rows = Math.min(MAX_ROWS, c.getLimit(SQLite.SQLITE_LIMIT_VARIABLE_NUMBER) / parameterCount);
+		if (rows < 2) {
+			return null;
+		}
+		return new MultiRowInsert(insert, values.get(0), parameterCount, Integer.highestOneBit(rows));
+	}
+
+	/**
+	 * @param remaining number of batched rows not yet inserted
+	 * @return number of rows of the next chunk or 0 when the remaining rows should be inserted one by one
+	 */
+	int chunk(int remaining) {
+		if (remaining < 2) {
+			return 0;
+		}
+		return Integer.highestOneBit(Math.min(remaining, maxRows));
+	}
+
+	/**
+	 * Inserts <code>rows</code> batched rows starting at <code>from</code>.
+	 * @param rows as returned by {@link #chunk(int)}
+	 * @return number of rows inserted
+	 */
+	int execute(org.sqlite.Conn c, Batch batch, int from, int rows, int timeout) throws SQLiteException {
+		try (org.sqlite.Stmt stmt = c.prepare(sql(rows), true)) {
+			for (int r = 0; r < rows; r++) {
+				batch.bind(from + r, stmt, r * parameterCount);
+			}
+			stmt.step(timeout);
+			return c.getChanges();
+		}
+	}
+
+	String sql(int rows) {
+		final int i = Integer.numberOfTrailingZeros(rows);
+		if (sqls[i] == null) {
+			final Select select = Select.from(new OneSelect(Collections.nCopies(rows, row)));
+			sqls[i] = new Insert(null, null, insert.tblName, insert.columns, select, null).toSql();
+		}
+		return sqls[i];
+	}
+}
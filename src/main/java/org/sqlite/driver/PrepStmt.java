@@ -11,6 +11,13 @@ package org.sqlite.driver;
 import org.sqlite.ErrCodes;
 import org.sqlite.StmtException;
 import org.sqlite.ZeroBlob;
+import org.sqlite.parser.Parser;
+import org.sqlite.parser.ast.Cmd;
+import org.sqlite.parser.ast.Expr;
+import org.sqlite.parser.ast.Insert;
+import org.sqlite.parser.ast.LiteralExpr;
+import org.sqlite.parser.ast.QualifiedName;
+import org.sqlite.parser.ast.VariableExpr;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -18,8 +25,8 @@ import java.io.InputStream;
 import java.io.Reader;
 import java.math.BigDecimal;
 import java.net.URL;
+import java.nio.channels.Channels;
 import java.sql.Array;
-import java.sql.BatchUpdateException;
 import java.sql.Blob;
 import java.sql.Clob;
 import java.sql.Date;
@@ -39,7 +46,6 @@ import java.sql.Timestamp;
 import java.sql.Types;
 import java.time.LocalDate;
 import java.time.temporal.Temporal;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
@@ -95,10 +101,24 @@ class PrepStmt extends Stmt implements ParameterMetaData, SQLitePreparedStatemen
 	private Object[] bindings;
 	private boolean[] bound;
 	private boolean boundChecked;
-	private List<Object[]> batch; // list of bindings
-
-	PrepStmt(Conn c, org.sqlite.Stmt stmt) {
-		super(c, stmt);
+	private Batch batch; // batched bindings
+	private MultiRowInsert multiRowInsert; // see JDBC.REWRITE_BATCHED_INSERTS
+	private boolean multiRowChecked;
+	// streams written into zeroblobs after execution (see setBinaryStream)
+	private Map<Integer, InputStream> streams = Collections.emptyMap();
+	private QualifiedName insertTable;
+	private String insertDbName; // database of insertTable
+	private String[] insertColumns; // parameter => INSERT column (null when unknown)
+	private boolean insertChecked;
+
+	PrepStmt(Conn c, org.sqlite.Stmt stmt, int resultSetType) {
+		this(c, stmt, resultSetType, null);
+	}
+	/**
+	 * @param keyColumns columns returned by RETURNING when generated keys are requested
+	 */
+	PrepStmt(Conn c, org.sqlite.Stmt stmt, int resultSetType, String[] keyColumns) {
+		super(c, stmt, resultSetType, keyColumns);
 	}
 
 	@Override
@@ -125,6 +145,11 @@ class PrepStmt extends Stmt implements ParameterMetaData, SQLitePreparedStatemen
 		if (!boundChecked) {
 			checkParameters(stmt);
 		}
+		if (!streams.isEmpty()) {
+			return executeStreams();
+		} else if (returnsGeneratedKeys()) {
+			return executeReturning(batching);
+		}
 		step(true);
 		return getConn().getChanges();
 	}
@@ -298,16 +323,20 @@ class PrepStmt extends Stmt implements ParameterMetaData, SQLitePreparedStatemen
 	public void setBinaryStream(int parameterIndex, InputStream x, int length) throws SQLException {
 		if (x == null) {
 			bindNull(parameterIndex);
+			return;
 		}
-		if (rowId == null) { // No streaming mode...
-			// throw new SQLException("You must set the associated RowId before opening a Blob");
-			final ByteArrayOutputStream output = new ByteArrayOutputStream();
-			try {
-				org.sqlite.Blob.copy(x, output, length);
-			} catch (IOException e) {
-				throw new SQLException("Error while reading binary stream", e);
+		if (rowId == null) {
+			if (!batching && length != Integer.MAX_VALUE && insertColumn(parameterIndex) != null) {
+				// The row is inserted with a zeroblob which is then filled (see executeStreams)
+				bindZeroBlob(parameterIndex, new ZeroBlob(length));
+				if (streams.isEmpty() && !(streams instanceof TreeMap)) {
+					streams = new TreeMap<>();
+				}
+				streams.put(parameterIndex, x);
+				return;
 			}
-			setBytes(parameterIndex, output.toByteArray());
+			// No streaming mode...
+			setBytes(parameterIndex, readBytes(x, length));
 			return;
 		}
 		org.sqlite.Blob blob = blobByParamIndex.get(parameterIndex);
@@ -327,7 +356,7 @@ class PrepStmt extends Stmt implements ParameterMetaData, SQLitePreparedStatemen
 
 		// The data will be read from the stream as needed until end-of-file is reached.
 		try {
-			org.sqlite.Blob.copy(x, blob.getOutputStream(), length);
+			blob.getChannel().transferFrom(Channels.newChannel(x), 0, length);
 		} catch (IOException e) {
 			throw new SQLException("Error while reading binary stream", e);
 		} finally {
@@ -343,6 +372,7 @@ class PrepStmt extends Stmt implements ParameterMetaData, SQLitePreparedStatemen
 	@Override
 	public void clearParameters() throws SQLException {
 		getStmt().clearBindings();
+		streams.clear();
 		if (bindings != null) {
 			Arrays.fill(bindings, null);
 			Arrays.fill(bound, false);
@@ -414,7 +444,7 @@ class PrepStmt extends Stmt implements ParameterMetaData, SQLitePreparedStatemen
 		} else if (x instanceof Array) {
 			setArray(parameterIndex, (Array) x);
 		} else if (x instanceof Temporal) {
-			setString(parameterIndex, x.toString());
+			setString(parameterIndex, DateUtil.format((Temporal) x));
 		} else {
 			throw new StmtException(getStmt(), String.format("Unsupported type: %s", x.getClass().getName()), ErrCodes.WRAPPER_SPECIFIC);
 		}
@@ -431,31 +461,39 @@ class PrepStmt extends Stmt implements ParameterMetaData, SQLitePreparedStatemen
 		if (!boundChecked) {
 			checkParameters(stmt);
 		}
+		if (!streams.isEmpty()) {
+			executeStreams();
+			return updateCount();
+		}
 		return exec();
 	}
 
 	@Override
 	public void addBatch() throws SQLException {
-		if (!batching) {
-			batching = true;
+		final org.sqlite.Stmt stmt = getStmt();
+		if (!boundChecked) {
+			checkParameters(stmt);
 		}
 		if (batch == null) {
-			batch = new ArrayList<>();
-		}
-		if (!boundChecked) {
-			checkParameters(getStmt());
+			batch = new Batch(stmt.getBindParameterCount());
 		}
-		if (bindings == null) { // parameterCount == 0
-			batch.add(null);
-		} else {
-			batch.add(Arrays.copyOf(bindings, bindings.length));
+		if (!batching) {
+			for (Map.Entry<Integer, InputStream> stream : streams.entrySet()) { // batched values are not streamed
+				final int i = stream.getKey() - 1;
+				bindings[i] = readBytes(stream.getValue(), ((ZeroBlob) bindings[i]).n);
+			}
+			streams.clear();
+			batching = true;
+			batch.set(bindings); // values bound before batch mode
 		}
+		batch.add();
 	}
 
 	@Override
 	public void clearBatch() throws SQLException {
 		checkOpen();
-		if (batch != null) {
+		if (batching) {
+			batch.get(bindings); // values bound in batch mode are kept
 			batch.clear();
 		}
 		batching = false;
@@ -464,41 +502,63 @@ class PrepStmt extends Stmt implements ParameterMetaData, SQLitePreparedStatemen
 	@Override
 	public int[] executeBatch() throws SQLException {
 		final org.sqlite.Stmt stmt = getStmt();
-		batching = false;
-		if (batch == null) {
-			return new int[0]; // FIXME
+		if (!batching) {
+			return new int[0];
 		}
-		final int size = batch.size();
-		SQLException cause = null;
-		Object[] params;
-		final int[] changes = new int[size];
-		for (int i = 0; i < size; ++i) {
-			try {
-				params = batch.get(i);
-				if (params != null) {
-					for (int j = 0; j < params.length; j++) {
-						stmt.bindByIndex(j + 1, params[j]);
-					}
+		final MultiRowInsert multiRow = multiRowInsert();
+		clearGeneratedKeys(); // keys of all rows are accumulated
+		try {
+			return executeBatch(batch.size(), isDml(stmt.getSql()), new BatchItem() {
+				private int fallback; // rows of a failed chunk are retried one by one to report which one fails
+
+				@Override
+				public int execute(int i) throws SQLException {
+					batch.bind(i, stmt);
+					return executeUpdate();
 				}
-				changes[i] = executeUpdate();
-			} catch (SQLException e) {
-				if (cause != null) {
-					e.setNextException(cause);
+
+				@Override
+				public int executeChunk(int i, int remaining, int[] changes) throws SQLException {
+					if (multiRow == null || i < fallback) {
+						return 0;
+					}
+					final int n = multiRow.chunk(remaining);
+					if (n == 0) {
+						return 0;
+					}
+					final org.sqlite.Conn c = getConn();
+					final boolean autoCommit = c.getAutoCommit();
+					try {
+						final int count = multiRow.execute(c, batch, i, n, getQueryTimeout());
+						Arrays.fill(changes, i, i + n, count == n ? 1 : SUCCESS_NO_INFO);
+						return n;
+					} catch (SQLException e) {
+						fallback = i + n;
+						if (c.getAutoCommit() != autoCommit) { // transaction rolled back
+							throw e;
+						}
+						return 0;
+					}
 				}
-				cause = e;
-				changes[i] = EXECUTE_FAILED;
-			}
+			});
+		} finally {
+			clearBatch();
 		}
-		clearBatch();
-		if (cause != null) {
-			throw new BatchUpdateException("batch failed", changes, cause);
+	}
+
+	private MultiRowInsert multiRowInsert() throws SQLException {
+		if (!multiRowChecked) {
+			multiRowChecked = true;
+			if (conn().rewriteBatchedInserts && !returnsGeneratedKeys()) { // the order of rows returned by RETURNING is arbitrary
+				multiRowInsert = MultiRowInsert.of(getConn(), getStmt());
+			}
 		}
-		return changes;
+		return multiRowInsert;
 	}
 
 	@Override
 	public void setCharacterStream(int parameterIndex, Reader reader, int length) throws SQLException {
-		throw Util.unsupported("PreparedStatement.setCharacterStream");
+		bindReader(parameterIndex, reader, length);
 	}
 	@Override
 	public void setCharacterStream(String parameterName, Reader reader, int length) throws SQLException {
@@ -525,7 +585,7 @@ class PrepStmt extends Stmt implements ParameterMetaData, SQLitePreparedStatemen
 
 	@Override
 	public void setClob(int parameterIndex, Clob x) throws SQLException {
-		throw Util.unsupported("PreparedStatement.setClob");
+		bindReader(parameterIndex, x == null ? null : x.getCharacterStream(), -1);
 	}
 	@Override
 	public void setClob(String parameterName, Clob x) throws SQLException {
@@ -632,7 +692,7 @@ class PrepStmt extends Stmt implements ParameterMetaData, SQLitePreparedStatemen
 
 	@Override
 	public void setNCharacterStream(int parameterIndex, Reader value, long length) throws SQLException {
-		throw Util.unsupported("PreparedStatement.setNCharacterStream");
+		bindReader(parameterIndex, value, length);
 	}
 	@Override
 	public void setNCharacterStream(String parameterName, Reader value, long length) throws SQLException {
@@ -641,7 +701,7 @@ class PrepStmt extends Stmt implements ParameterMetaData, SQLitePreparedStatemen
 
 	@Override
 	public void setNClob(int parameterIndex, NClob value) throws SQLException {
-		throw Util.unsupported("PreparedStatement.setNClob");
+		setClob(parameterIndex, value);
 	}
 	@Override
 	public void setNClob(String parameterName, NClob value) throws SQLException {
@@ -650,7 +710,7 @@ class PrepStmt extends Stmt implements ParameterMetaData, SQLitePreparedStatemen
 
 	@Override
 	public void setClob(int parameterIndex, Reader reader, long length) throws SQLException {
-		throw Util.unsupported("PreparedStatement.setClob");
+		bindReader(parameterIndex, reader, length);
 	}
 	@Override
 	public void setClob(String parameterName, Reader reader, long length) throws SQLException {
@@ -668,7 +728,7 @@ class PrepStmt extends Stmt implements ParameterMetaData, SQLitePreparedStatemen
 
 	@Override
 	public void setNClob(int parameterIndex, Reader reader, long length) throws SQLException {
-		throw Util.unsupported("PreparedStatement.setNClob");
+		bindReader(parameterIndex, reader, length);
 	}
 	@Override
 	public void setNClob(String parameterName, Reader reader, long length) throws SQLException {
@@ -699,7 +759,7 @@ class PrepStmt extends Stmt implements ParameterMetaData, SQLitePreparedStatemen
 				setString(parameterIndex, DateUtil.formatDate((java.util.Date) x, scaleOrLength, null));
 				return;
 			} else if (x instanceof Temporal) {
-				setString(parameterIndex, x.toString());
+				setString(parameterIndex, DateUtil.format((Temporal) x));
 				return;
 			}
 		} else if (Types.INTEGER == targetSqlType) {
@@ -769,7 +829,7 @@ class PrepStmt extends Stmt implements ParameterMetaData, SQLitePreparedStatemen
 
 	@Override
 	public void setCharacterStream(int parameterIndex, Reader reader, long length) throws SQLException {
-		throw Util.unsupported("PreparedStatement.setCharacterStream");
+		bindReader(parameterIndex, reader, length);
 	}
 	@Override
 	public void setCharacterStream(String parameterName, Reader reader, long length) throws SQLException {
@@ -796,7 +856,7 @@ class PrepStmt extends Stmt implements ParameterMetaData, SQLitePreparedStatemen
 
 	@Override
 	public void setCharacterStream(int parameterIndex, Reader reader) throws SQLException {
-		throw Util.unsupported("PreparedStatement.setCharacterStream");
+		bindReader(parameterIndex, reader, -1);
 	}
 	@Override
 	public void setCharacterStream(String parameterName, Reader reader) throws SQLException {
@@ -805,7 +865,7 @@ class PrepStmt extends Stmt implements ParameterMetaData, SQLitePreparedStatemen
 
 	@Override
 	public void setNCharacterStream(int parameterIndex, Reader value) throws SQLException {
-		throw Util.unsupported("PreparedStatement.setNCharacterStream");
+		bindReader(parameterIndex, value, -1);
 	}
 	@Override
 	public void setNCharacterStream(String parameterName, Reader value) throws SQLException {
@@ -814,7 +874,7 @@ class PrepStmt extends Stmt implements ParameterMetaData, SQLitePreparedStatemen
 
 	@Override
 	public void setClob(int parameterIndex, Reader reader) throws SQLException {
-		throw Util.unsupported("PreparedStatement.setClob");
+		bindReader(parameterIndex, reader, -1);
 	}
 	@Override
 	public void setClob(String parameterName, Reader reader) throws SQLException {
@@ -832,7 +892,7 @@ class PrepStmt extends Stmt implements ParameterMetaData, SQLitePreparedStatemen
 
 	@Override
 	public void setNClob(int parameterIndex, Reader reader) throws SQLException {
-		throw Util.unsupported("PreparedStatement.setNClob");
+		bindReader(parameterIndex, reader, -1);
 	}
 	@Override
 	public void setNClob(String parameterName, Reader reader) throws SQLException {
@@ -884,62 +944,232 @@ class PrepStmt extends Stmt implements ParameterMetaData, SQLitePreparedStatemen
 		return parameterModeIn;
 	}
 
+	// In batch mode, values are only stored (unboxed) in the batch.
 	private void bindNull(int parameterIndex) throws SQLException {
-		if (!batching) {
+		if (batching) {
+			batch.setNull(bound(parameterIndex));
+		} else {
 			getStmt().bindNull(parameterIndex);
+			bind(parameterIndex, null);
 		}
-		bind(parameterIndex, null);
 	}
 
 	private void bindInt(int parameterIndex, int x) throws SQLException {
-		if (!batching) {
+		if (batching) {
+			batch.setLong(bound(parameterIndex), x);
+		} else {
 			getStmt().bindInt(parameterIndex, x);
+			bind(parameterIndex, x);
 		}
-		bind(parameterIndex, x);
 	}
 
 	private void bindLong(int parameterIndex, long x) throws SQLException {
-		if (!batching) {
+		if (batching) {
+			batch.setLong(bound(parameterIndex), x);
+		} else {
 			getStmt().bindLong(parameterIndex, x);
+			bind(parameterIndex, x);
 		}
-		bind(parameterIndex, x);
 	}
 
 	private void bindDouble(int parameterIndex, double x) throws SQLException {
-		if (!batching) {
+		if (batching) {
+			batch.setDouble(bound(parameterIndex), x);
+		} else {
 			getStmt().bindDouble(parameterIndex, x);
+			bind(parameterIndex, x);
 		}
-		bind(parameterIndex, x);
 	}
 
 	private void bindText(int parameterIndex, String x) throws SQLException {
-		if (!batching) {
+		if (batching) {
+			batch.setText(bound(parameterIndex), x);
+		} else {
 			getStmt().bindText(parameterIndex, x);
+			bind(parameterIndex, x);
 		}
-		bind(parameterIndex, x);
 	}
 
 	private void bindBlob(int parameterIndex, byte[] x) throws SQLException {
-		if (!batching) {
+		if (batching) {
+			batch.setBlob(bound(parameterIndex), x);
+		} else {
 			getStmt().bindBlob(parameterIndex, x);
+			bind(parameterIndex, x);
 		}
-		bind(parameterIndex, x);
 	}
 
 	private void bindZeroBlob(int parameterIndex, ZeroBlob x) throws SQLException {
-		if (!batching) {
+		if (batching) {
+			batch.setZeroBlob(bound(parameterIndex), x.n);
+		} else {
 			getStmt().bindZeroblob(parameterIndex, x.n);
+			bind(parameterIndex, x);
 		}
-		bind(parameterIndex, x);
 	}
 
 	private void bind(int parameterIndex, Object x) throws SQLException {
+		final int i = bound(parameterIndex); // allocates bindings
+		bindings[i] = x;
+		if (!streams.isEmpty()) {
+			streams.remove(parameterIndex);
+		}
+	}
+
+	private static byte[] readBytes(InputStream x, int length) throws SQLException {
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try {
+			org.sqlite.Blob.copy(x, output, length);
+		} catch (IOException e) {
+			throw new SQLException("Error while reading binary stream", e);
+		}
+		return output.toByteArray();
+	}
+
+	// Text cannot be written incrementally (only BLOBs can), so it is read once.
+	private void bindReader(int parameterIndex, Reader reader, long length) throws SQLException {
+		if (reader == null) {
+			bindNull(parameterIndex);
+			return;
+		}
+		final StringBuilder text = new StringBuilder(length < 0 ? 1024 : (int) Math.min(length, 1 << 20));
+		final char[] buffer = new char[4096];
+		long remaining = length < 0 ? Long.MAX_VALUE : length;
+		try {
+			int n;
+			while (remaining > 0 && (n = reader.read(buffer, 0, (int) Math.min(remaining, buffer.length))) >= 0) {
+				text.append(buffer, 0, n);
+				remaining -= n;
+			}
+		} catch (IOException e) {
+			throw new SQLException("Error while reading character stream", e);
+		}
+		bindText(parameterIndex, text.toString());
+	}
+
+	/**
+	 * Inserts the row (with zeroblobs) and then writes each pending stream into its zeroblob
+	 * through incremental BLOB I/O, inside a savepoint so that the whole operation is atomic.
+	 * <p>
+	 * Only used for rowid tables whose database is known (see {@link #insertColumn(int)}).
+	 * CHECK constraints, triggers and update/pre-update hooks (change captures, sessions) see the zeroblob, not the stream content.
+	 */
+	private int executeStreams() throws SQLException {
+		final org.sqlite.Conn c = getConn();
+		c.fastExec("SAVEPOINT streams");
+		try {
+			final int changes;
+			if (returnsGeneratedKeys()) {
+				changes = executeReturning(false);
+			} else {
+				step(true);
+				changes = c.getChanges();
+			}
+			if (changes == 1) { // not ignored
+				final long rowid = c.getLastInsertRowid();
+				for (Map.Entry<Integer, InputStream> stream : streams.entrySet()) {
+					final int length = ((ZeroBlob) bindings[stream.getKey() - 1]).n;
+					try (org.sqlite.Blob blob = c.open(insertDbName, insertTable.name, insertColumns[stream.getKey() - 1], rowid, true)) {
+						final long n = blob.getChannel().transferFrom(Channels.newChannel(stream.getValue()), 0, length);
+						if (n != length) {
+							throw new SQLException(String.format("binary stream shorter than the specified length: %d < %d", n, length));
+						}
+					} catch (IOException e) {
+						throw new SQLException("Error while reading binary stream", e);
+					}
+				}
+			}
+			c.fastExec("RELEASE streams");
+			return changes;
+		} catch (SQLException | RuntimeException e) {
+			try {
+				c.fastExec("ROLLBACK TO streams");
+				c.fastExec("RELEASE streams");
+			} catch (SQLException ignored) {
+				// the original error is reported
+			}
+			throw e;
+		} finally {
+			streams.clear(); // streams are consumed
+		}
+	}
+
+	/**
+	 * @return the column to which the parameter value is assigned by an <code>INSERT ... (column, ...) VALUES (?, ...)</code>
+	 * into a rowid table or <code>null</code> (the inserted row is then unknown)
+	 */
+	private String insertColumn(int parameterIndex) throws SQLException {
+		if (!insertChecked) {
+			insertChecked = true;
+			final org.sqlite.Stmt stmt = getStmt();
+			final Cmd cmd;
+			try {
+				cmd = Parser.parse(stmt.getSql());
+			} catch (SQLException | RuntimeException e) { // unsupported syntax
+				return null;
+			}
+			if (cmd == null || cmd.explain != null || !(cmd.stmt instanceof Insert)) {
+				return null;
+			}
+			final Insert insert = (Insert) cmd.stmt;
+			if (insert.upsert != null || insert.columns == null || insert.select == null ||
+					insert.select.body.compounds != null && !insert.select.body.compounds.isEmpty()) { // the inserted rowid is unknown
+				return null;
+			}
+			if (insert.with != null || insert.select.with != null) { // parameters in a CTE would shift the numbering
+				return null;
+			}
+			final List<List<Expr>> values = insert.select.body.select.values;
+			if (values == null || values.size() != 1 || values.get(0).size() != insert.columns.size()) {
+				return null;
+			}
+			final String[] columns = new String[stmt.getBindParameterCount()];
+			final boolean[] assigned = new boolean[columns.length];
+			int max = 0;
+			for (int k = 0; k < insert.columns.size(); k++) {
+				final Expr value = values.get(0).get(k);
+				if (value instanceof LiteralExpr) {
+					continue;
+				} else if (!(value instanceof VariableExpr)) { // parameters would not be numbered by position
+					return null;
+				}
+				final String variable = ((VariableExpr) value).variable;
+				final int i;
+				if (variable.isEmpty()) {
+					i = max + 1;
+				} else if (Character.isDigit(variable.charAt(0))) {
+					i = Integer.parseInt(variable);
+				} else {
+					i = stmt.getBindParameterIndex(variable);
+				}
+				if (i < 1 || i > columns.length) {
+					return null;
+				}
+				max = Math.max(max, i);
+				columns[i - 1] = assigned[i - 1] ? null : insert.columns.get(k); // a parameter assigned twice is not streamed
+				assigned[i - 1] = true;
+			}
+			// an unqualified name may refer to a TEMP table
+			insertDbName = getConn().getRowIdTableSchema(insert.tblName.dbName, insert.tblName.name);
+			if (insertDbName == null) { // WITHOUT ROWID table, view, attached database...
+				return null;
+			}
+			insertTable = insert.tblName;
+			insertColumns = columns;
+		}
+		return insertColumns == null ? null : insertColumns[parameterIndex - 1];
+	}
+
+	/**
+	 * @return the parameter index (0-based)
+	 */
+	private int bound(int parameterIndex) throws SQLException {
 		if (bindings == null) {
 			bindings = new Object[getParameterCount()];
 			bound = new boolean[bindings.length];
 		}
-		bindings[parameterIndex - 1] = x;
 		bound[parameterIndex - 1] = true;
+		return parameterIndex - 1;
 	}
 
 	/*
@@ -0,0 +1,235 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite.driver;
+
+import org.sqlite.ColTypes;
+import org.sqlite.Stmt;
+import org.sqlite.StmtException;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Columnar buffer of rows prefetched from a statement (see {@link java.sql.ResultSet#setFetchSize(int)}).
+ * <p>
+ * Values are copied once: INTEGER and FLOAT values into a <code>long[]</code> (raw bits for FLOAT),
+ * TEXT and BLOB values into an <code>Object[]</code>, so that reading a column of the current row is an array load.
+ * Arrays are indexed by <code>iCol * capacity + row</code> and reused from one batch to the next.
+ */
+final class RowBuffer {
+	private final int columnCount;
+	private int capacity;
+	private byte[] types;
+	private long[] numbers; // INTEGER value or FLOAT bits
+	private Object[] objects; // String or byte[]
+	private int size;
+	private int pos = -1; // current row
+
+	RowBuffer(int columnCount, int capacity) {
+		this.columnCount = columnCount;
+		alloc(capacity);
+	}
+
+	private void alloc(int capacity) {
+		this.capacity = capacity;
+		final int n = columnCount * capacity;
+		types = new byte[n];
+		numbers = new long[n];
+		objects = new Object[n];
+	}
+
+	/**
+	 * Empties the buffer so that up to <code>capacity</code> rows can be added.
+	 */
+	void clear(int capacity) {
+		if (capacity > this.capacity) {
+			alloc(capacity);
+		} else {
+			for (int iCol = 0; iCol < columnCount; iCol++) {
+				final int from = iCol * this.capacity;
+				Arrays.fill(objects, from, from + size, null);
+			}
+		}
+		size = 0;
+		pos = -1;
+	}
+
+	int size() {
+		return size;
+	}
+	boolean isFull() {
+		return size == capacity;
+	}
+
+	/**
+	 * Copies the current row of <code>stmt</code>.
+	 */
+	void add(Stmt stmt) throws StmtException {
+		final int row = size++;
+		for (int iCol = 0; iCol < columnCount; iCol++) {
+			final int i = iCol * capacity + row;
+			final int type = stmt.getColumnType(iCol);
+			types[i] = (byte) type;
+			switch (type) {
+				case ColTypes.SQLITE_INTEGER:
+					numbers[i] = stmt.getColumnLong(iCol);
+					break;
+				case ColTypes.SQLITE_FLOAT:
+					numbers[i] = Double.doubleToRawLongBits(stmt.getColumnDouble(iCol));
+					break;
+				case ColTypes.SQLITE_TEXT:
+					objects[i] = stmt.getColumnText(iCol, type);
+					break;
+				case ColTypes.SQLITE_BLOB:
+					objects[i] = stmt.getColumnBlob(iCol, type);
+					break;
+			}
+		}
+	}
+
+	/**
+	 * Decodes a row image written by {@link RowStore}.
+	 */
+	void add(ByteBuffer image) {
+		final int row = size++;
+		for (int iCol = 0; iCol < columnCount; iCol++) {
+			final int i = iCol * capacity + row;
+			final byte type = image.get();
+			types[i] = type;
+			switch (type) {
+				case ColTypes.SQLITE_INTEGER:
+				case ColTypes.SQLITE_FLOAT:
+					numbers[i] = image.getLong();
+					break;
+				case ColTypes.SQLITE_TEXT:
+				case ColTypes.SQLITE_BLOB:
+					final byte[] bytes = new byte[image.getInt()];
+					image.get(bytes);
+					objects[i] = type == ColTypes.SQLITE_TEXT ? new String(bytes, StandardCharsets.UTF_8) : bytes;
+					break;
+			}
+		}
+	}
+
+	/**
+	 * Moves to the next buffered row.
+	 * @return <code>false</code> when all buffered rows have been read
+	 */
+	boolean next() {
+		if (pos < size) {
+			pos++;
+		}
+		return pos < size;
+	}
+	boolean isLast() {
+		return pos == size - 1;
+	}
+
+	/**
+	 * @param iCol The leftmost column is number 0.
+	 * @return {@link ColTypes}.* of the column in the current row
+	 */
+	int getColumnType(int iCol) {
+		return types[iCol * capacity + pos];
+	}
+	long getColumnLong(int iCol) {
+		final int i = iCol * capacity + pos;
+		if (types[i] == ColTypes.SQLITE_FLOAT) {
+			return (long) Double.longBitsToDouble(numbers[i]);
+		}
+		return numbers[i];
+	}
+	double getColumnDouble(int iCol) {
+		final int i = iCol * capacity + pos;
+		if (types[i] == ColTypes.SQLITE_INTEGER) {
+			return numbers[i];
+		}
+		return Double.longBitsToDouble(numbers[i]);
+	}
+	/**
+	 * FLOAT and BLOB values are converted as <code>sqlite3_column_text</code> does.
+	 */
+	String getColumnText(int iCol) {
+		final int i = iCol * capacity + pos;
+		switch (types[i]) {
+			case ColTypes.SQLITE_TEXT:
+				return (String) objects[i];
+			case ColTypes.SQLITE_INTEGER:
+				return Long.toString(numbers[i]);
+			case ColTypes.SQLITE_FLOAT:
+				return toText(Double.longBitsToDouble(numbers[i]));
+			case ColTypes.SQLITE_BLOB:
+				final byte[] blob = (byte[]) objects[i];
+				int len = 0;
+				while (len < blob.length && blob[len] != 0) { // NUL-terminated
+					len++;
+				}
+				return new String(blob, 0, len, StandardCharsets.UTF_8);
+			default:
+				return null;
+		}
+	}
+	/**
+	 * INTEGER, FLOAT and TEXT values are converted as <code>sqlite3_column_blob</code> does.
+	 */
+	byte[] getColumnBlob(int iCol) {
+		final int i = iCol * capacity + pos;
+		switch (types[i]) {
+			case ColTypes.SQLITE_BLOB:
+				return (byte[]) objects[i];
+			case ColTypes.SQLITE_NULL:
+				return null;
+			default:
+				return getColumnText(iCol).getBytes(StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * @return <code>d</code> formatted like SQLite does (<code>"%!.15g"</code>): 15 significant digits,
+	 * no trailing zero but at least one digit after the decimal point
+	 */
+	static String toText(double d) {
+		if (Double.isInfinite(d)) {
+			return d > 0 ? "Inf" : "-Inf";
+		} else if (d == 0) {
+			return "0.0";
+		}
+		final BigDecimal bd = new BigDecimal(d).round(new MathContext(15, RoundingMode.HALF_UP)).stripTrailingZeros();
+		final int exponent = bd.precision() - bd.scale() - 1;
+		final StringBuilder sb = new StringBuilder(24);
+		if (exponent < -4 || exponent >= 15) {
+			final String digits = bd.unscaledValue().abs().toString();
+			if (bd.signum() < 0) {
+				sb.append('-');
+			}
+			sb.append(digits.charAt(0)).append('.');
+			if (digits.length() == 1) {
+				sb.append('0');
+			} else {
+				sb.append(digits, 1, digits.length());
+			}
+			sb.append('e').append(exponent < 0 ? '-' : '+');
+			final int abs = Math.abs(exponent);
+			if (abs < 10) {
+				sb.append('0');
+			}
+			sb.append(abs);
+		} else {
+			sb.append(bd.toPlainString());
+			if (bd.scale() <= 0) {
+				sb.append(".0");
+			}
+		}
+		return sb.toString();
+	}
+}
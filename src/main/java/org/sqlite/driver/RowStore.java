@@ -0,0 +1,167 @@
+/*
+ * The author disclaims copyright to this source code.  In place of
+ * a legal notice, here is a blessing:
+ *
+ *    May you do good and not evil.
+ *    May you find forgiveness for yourself and forgive others.
+ *    May you share freely, never taking more than you give.
+ */
+package org.sqlite.driver;
+
+import org.sqlite.ColTypes;
+import org.sqlite.ErrCodes;
+import org.sqlite.Stmt;
+import org.sqlite.StmtException;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Materialized rows of a {@link java.sql.ResultSet#TYPE_SCROLL_INSENSITIVE} result set.
+ * <p>
+ * Each row is encoded as a compact image (for each column, a {@link ColTypes} tag followed by
+ * 8 bytes for INTEGER and FLOAT, or by a length and the bytes for TEXT (UTF-8) and BLOB).
+ * Images are kept on-heap until the memory budget is exceeded, then appended to a temporary file
+ * (deleted on close). The offset of each row is recorded so that positioning is O(1).
+ */
+final class RowStore implements AutoCloseable {
+	/** Default on-heap budget in bytes */
+	static final int MEMORY_BUDGET = 4 << 20;
+
+	private final int columnCount;
+	private final int budget;
+	private long[] offsets = new long[16]; // row => offset in heap or in file
+	private int size;
+	private byte[] heap = new byte[1024];
+	private int heapSize;
+	private int spilled = -1; // index of the first row stored in the file
+	private FileChannel file;
+	private long fileSize;
+	private ByteBuffer image = ByteBuffer.allocate(256); // row being encoded or decoded
+
+	RowStore(int columnCount, int budget) {
+		this.columnCount = columnCount;
+		this.budget = budget;
+	}
+
+	int size() {
+		return size;
+	}
+	boolean isSpilled() {
+		return spilled >= 0;
+	}
+
+	/**
+	 * Copies the current row of <code>stmt</code>.
+	 */
+	void add(Stmt stmt) throws StmtException {
+		((Buffer) image).clear();
+		for (int iCol = 0; iCol < columnCount; iCol++) {
+			final int type = stmt.getColumnType(iCol);
+			switch (type) {
+				case ColTypes.SQLITE_INTEGER:
+					ensure(9).put((byte) type).putLong(stmt.getColumnLong(iCol));
+					break;
+				case ColTypes.SQLITE_FLOAT:
+					ensure(9).put((byte) type).putDouble(stmt.getColumnDouble(iCol));
+					break;
+				case ColTypes.SQLITE_TEXT:
+					final byte[] text = stmt.getColumnText(iCol, type).getBytes(StandardCharsets.UTF_8);
+					ensure(5 + text.length).put((byte) type).putInt(text.length).put(text);
+					break;
+				case ColTypes.SQLITE_BLOB:
+					final byte[] blob = stmt.getColumnBlob(iCol, type);
+					ensure(5 + blob.length).put((byte) type).putInt(blob.length).put(blob);
+					break;
+				default:
+					ensure(1).put((byte) ColTypes.SQLITE_NULL);
+			}
+		}
+		((Buffer) image).flip();
+		if (size == offsets.length) {
+			offsets = Arrays.copyOf(offsets, size * 2);
+		}
+		final int length = image.remaining();
+		if (spilled < 0 && heapSize + length <= budget) {
+			if (heapSize + length > heap.length) {
+				heap = Arrays.copyOf(heap, Math.min(Math.max(heap.length * 2, heapSize + length), budget));
+			}
+			image.get(heap, heapSize, length);
+			offsets[size++] = heapSize;
+			heapSize += length;
+			return;
+		}
+		try {
+			if (spilled < 0) {
+				final Path path = Files.createTempFile("sqlite-rows", ".tmp");
+				file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+				spilled = size;
+			}
+			offsets[size++] = fileSize;
+			while (image.hasRemaining()) {
+				fileSize += file.write(image, fileSize);
+			}
+		} catch (IOException e) {
+			throw new StmtException(stmt, String.format("cannot spill rows to temporary file: %s", e.getMessage()), ErrCodes.WRAPPER_SPECIFIC);
+		}
+	}
+
+	private ByteBuffer ensure(int n) {
+		if (image.remaining() < n) {
+			final ByteBuffer bigger = ByteBuffer.allocate(Math.max(image.capacity() * 2, image.position() + n));
+			((Buffer) image).flip();
+			image = bigger.put(image);
+		}
+		return image;
+	}
+
+	/**
+	 * Decodes the row at <code>index</code> (0-based) into <code>buffer</code> (which then holds only this row, as its current row).
+	 */
+	void load(int index, RowBuffer buffer) throws IOException {
+		final long offset = offsets[index];
+		final ByteBuffer row;
+		if (spilled < 0 || index < spilled) {
+			final int end = index + 1 == size || index + 1 == spilled ? heapSize : (int) offsets[index + 1];
+			row = ByteBuffer.wrap(heap, (int) offset, end - (int) offset);
+		} else {
+			final int length = (int) ((index + 1 == size ? fileSize : offsets[index + 1]) - offset);
+			if (image.capacity() < length) {
+				image = ByteBuffer.allocate(length);
+			}
+			((Buffer) image).clear().limit(length);
+			while (image.hasRemaining()) {
+				if (file.read(image, offset + image.position()) < 0) {
+					throw new IOException("unexpected end of file");
+				}
+			}
+			((Buffer) image).flip();
+			row = image;
+		}
+		buffer.clear(1);
+		buffer.add(row);
+		buffer.next();
+	}
+
+	@Override
+	public void close() {
+		heap = null;
+		offsets = null;
+		if (file != null) {
+			try {
+				file.close();
+			} catch (IOException e) {
+				// ignored
+			} finally {
+				file = null;
+			}
+		}
+	}
+}
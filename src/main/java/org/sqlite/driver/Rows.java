@@ -13,6 +13,7 @@ import org.sqlite.ErrCodes;
 import org.sqlite.StmtException;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
@@ -35,10 +36,12 @@ import java.sql.SQLXML;
 import java.sql.Statement;
 import java.sql.Time;
 import java.sql.Timestamp;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.OffsetDateTime;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Map;
@@ -49,14 +52,99 @@ class Rows implements ResultSet {
 	private org.sqlite.Stmt stmt;
 	private RowsMeta meta;
 	private int row; // -1: no data, 0: before first, 1: first, ..., -2: after last
-	private Boolean wasNull;
+	private boolean wasNull;
+	private boolean columnRead; // whether a column of the current row has been read
+	// column types of the current row (0: not read yet)
+	private int[] types;
 	private RowIdImpl rowId;
+	private int fetchSize;
+	// rows prefetched when fetchSize > 1
+	private RowBuffer buffer;
+	private boolean buffered; // whether the current row is read from the buffer
+	private boolean pending; // whether the statement is positioned on a row not returned yet
+	private boolean done; // whether the statement has been reset after its last row has been buffered
+	private boolean scrollable; // TYPE_SCROLL_INSENSITIVE
+	private RowStore store; // all rows when scrollable
+	private boolean detached; // rows not read from the statement cursor (generated keys)
 	private Map<Integer, org.sqlite.Blob> blobByColIndex = Collections.emptyMap();
 
 	Rows(Stmt s, boolean hasRow) throws SQLException {
 		this.s = s;
 		stmt = s.getStmt();
 		row = hasRow ? 0 : -1; // Initialized at -1 when there is no result otherwise 0
+		pending = hasRow;
+		fetchSize = s.getFetchSize();
+		scrollable = s.getResultSetType() == TYPE_SCROLL_INSENSITIVE;
+		if (hasRow && scrollable) {
+			materialize();
+		}
+	}
+
+	/**
+	 * Rows already copied by the statement (see {@link Stmt#getGeneratedKeys()}):
+	 * neither the statement nor the store are reset or closed by this result set.
+	 */
+	Rows(Stmt s, RowStore store) throws SQLException {
+		this.s = s;
+		stmt = s.getStmt();
+		this.store = store;
+		row = store.size() > 0 ? 0 : -1;
+		scrollable = true;
+		detached = true;
+		buffer = new RowBuffer(stmt.getColumnCount(), 1);
+		done = true;
+	}
+
+	/**
+	 * Copies all rows (up to maxRows) into the row store and resets the statement.
+	 */
+	private void materialize() throws SQLException {
+		store = new RowStore(stmt.getColumnCount(), RowStore.MEMORY_BUDGET);
+		final int maxRows = s.getMaxRows();
+		try {
+			boolean hasRow = true;
+			while (hasRow && (maxRows == 0 || store.size() < maxRows)) {
+				store.add(stmt);
+				hasRow = s.step(false);
+			}
+			stmt.reset();
+		} catch (SQLException | RuntimeException e) {
+			store.close();
+			store = null;
+			throw e;
+		}
+		buffer = new RowBuffer(stmt.getColumnCount(), 1);
+		pending = false;
+		done = true;
+	}
+
+	/**
+	 * @param r 1-based row number (<= 0: before first, > size: after last)
+	 */
+	private boolean moveTo(int r) throws SQLException {
+		checkOpen();
+		if (!scrollable) {
+			throw typeForwardOnly();
+		} else if (store == null) { // no rows
+			return false;
+		}
+		clearRow();
+		buffered = false;
+		if (r <= 0) {
+			row = 0;
+			return false;
+		} else if (r > store.size()) {
+			row = -2;
+			return false;
+		}
+		try {
+			store.load(r - 1, buffer);
+		} catch (IOException e) {
+			throw new StmtException(stmt, String.format("cannot read rows from temporary file: %s", e.getMessage()), ErrCodes.WRAPPER_SPECIFIC);
+		}
+		buffered = true;
+		row = r;
+		return true;
 	}
 
 	private org.sqlite.Stmt getStmt() throws SQLException {
@@ -76,18 +164,33 @@ class Rows implements ResultSet {
 		if (row < 0) { // no result or after last
 			return false;
 		}
-		if (row == 0) {
-			row++;
-			return true;
+		if (store != null) {
+			return moveTo(row + 1);
 		}
 		final int maxRows = s.getMaxRows();
 		if (maxRows != 0 && row >= maxRows) {
 			row = -2;
+			buffered = false;
 			stmt.reset();
 			return false;
 		}
 
-		final boolean hasRow = s.step(false);
+		final boolean hasRow;
+		if (buffered && buffer.next()) {
+			hasRow = true;
+		} else if (done) {
+			buffered = false;
+			hasRow = false;
+		} else if (fetchSize > 1) {
+			hasRow = prefetch(maxRows == 0 ? fetchSize : Math.min(fetchSize, maxRows - row));
+		} else if (pending) {
+			buffered = false;
+			pending = false;
+			hasRow = true;
+		} else {
+			buffered = false;
+			hasRow = s.step(false);
+		}
 		if (hasRow) {
 			row++;
 		} else {
@@ -96,6 +199,29 @@ class Rows implements ResultSet {
 		return hasRow;
 	}
 
+	/**
+	 * Copies up to <code>n</code> rows into the buffer, and then steps once more
+	 * so that the statement can be reset as soon as the last row has been read (releasing the read lock).
+	 */
+	private boolean prefetch(int n) throws SQLException {
+		if (buffer == null) {
+			buffer = new RowBuffer(stmt.getColumnCount(), n);
+		}
+		buffer.clear(n);
+		boolean hasRow = pending || s.step(false);
+		while (hasRow && buffer.size() < n) {
+			buffer.add(stmt);
+			hasRow = s.step(false);
+		}
+		pending = hasRow;
+		if (!hasRow) {
+			done = true;
+			stmt.reset();
+		}
+		buffered = buffer.next();
+		return buffered;
+	}
+
 	private int fixCol(int columnIndex) throws StmtException {
 		if (row < 0) {
 			throw new StmtException(stmt, "No data available", ErrCodes.WRAPPER_SPECIFIC);
@@ -105,18 +231,70 @@ class Rows implements ResultSet {
 		return columnIndex - 1;
 	}
 
+	/**
+	 * Reads the type of the column in the current row at most once:
+	 * after a type conversion, the value returned by sqlite3_column_type() is undefined,
+	 * and each getter then needs only the native call which returns the value.
+	 * @param iCol The leftmost column is number 0.
+	 */
+	private int sourceType(int iCol) throws SQLException {
+		checkOpen();
+		int[] types = this.types;
+		if (types == null) {
+			this.types = types = new int[stmt.getColumnCount()];
+		}
+		if (iCol < 0 || iCol >= types.length) {
+			return stmt.getColumnType(iCol); // throws StmtException(SQLITE_RANGE)
+		}
+		columnRead = true;
+		if (buffered) {
+			return buffer.getColumnType(iCol);
+		}
+		int type = types[iCol];
+		if (type == 0) {
+			types[iCol] = type = stmt.getColumnType(iCol);
+		}
+		return type;
+	}
+
+	private int columnInt(int iCol) throws StmtException {
+		return buffered ? (int) buffer.getColumnLong(iCol) : stmt.getColumnInt(iCol);
+	}
+	private long columnLong(int iCol) throws StmtException {
+		return buffered ? buffer.getColumnLong(iCol) : stmt.getColumnLong(iCol);
+	}
+	private double columnDouble(int iCol) throws StmtException {
+		return buffered ? buffer.getColumnDouble(iCol) : stmt.getColumnDouble(iCol);
+	}
+	private String columnText(int iCol, int type) throws SQLException {
+		return buffered ? buffer.getColumnText(iCol) : stmt.getColumnText(iCol, type);
+	}
+	private byte[] columnBlob(int iCol, int type) throws SQLException {
+		return buffered ? buffer.getColumnBlob(iCol) : stmt.getColumnBlob(iCol, type);
+	}
+
 	@Override
 	public boolean next() throws SQLException {
-		wasNull = null;
-		rowId = null;
+		clearRow();
 		return step();
 	}
 
+	private void clearRow() {
+		wasNull = false;
+		columnRead = false;
+		if (types != null) {
+			Arrays.fill(types, 0);
+		}
+		rowId = null;
+	}
+
 	@Override
 	public void close() throws SQLException {
 		//Util.trace("ResultSet.close");
 		if (stmt != null) {
-			if (!stmt.isClosed()) {
+			if (detached) {
+				store = null;
+			} else if (!stmt.isClosed()) {
 				if (s.isCloseOnCompletion()) {
 					s.close();
 				} else {
@@ -126,6 +304,12 @@ class Rows implements ResultSet {
 			s = null;
 			stmt = null;
 			meta = null;
+			buffer = null;
+			buffered = false;
+			if (store != null) {
+				store.close();
+				store = null;
+			}
 			for (org.sqlite.Blob blob : blobByColIndex.values()) {
 				blob.closeNoCheck();
 			}
@@ -135,7 +319,7 @@ class Rows implements ResultSet {
 
 	@Override
 	public boolean wasNull() throws SQLException {
-		if (wasNull == null) {
+		if (!columnRead) {
 			throw new SQLException("no column has been read");
 		}
 		return wasNull;
@@ -143,9 +327,11 @@ class Rows implements ResultSet {
 
 	@Override
 	public String getString(int columnIndex) throws SQLException {
-		final String str = getStmt().getColumnText(fixCol(columnIndex));
-		wasNull = str == null;
-		return str;
+		final org.sqlite.Stmt stmt = getStmt();
+		final int iCol = fixCol(columnIndex);
+		final int sourceType = sourceType(iCol);
+		wasNull = sourceType == ColTypes.SQLITE_NULL;
+		return wasNull ? null : columnText(iCol, sourceType);
 	}
 
 	@Override
@@ -166,28 +352,28 @@ class Rows implements ResultSet {
 	@Override
 	public int getInt(int columnIndex) throws SQLException {
 		final org.sqlite.Stmt stmt = getStmt();
-		// After a type conversion, the value returned by sqlite3_column_type() is undefined.
-		final int sourceType = stmt.getColumnType(fixCol(columnIndex));
-		stmt.checkTypeMismatch(fixCol(columnIndex), sourceType, ColTypes.SQLITE_INTEGER);
+		final int iCol = fixCol(columnIndex);
+		final int sourceType = sourceType(iCol);
+		stmt.checkTypeMismatch(iCol, sourceType, ColTypes.SQLITE_INTEGER);
 		wasNull = sourceType == ColTypes.SQLITE_NULL;
 		if (wasNull) {
 			return 0;
 		} else {
-			return stmt.getColumnInt(fixCol(columnIndex));
+			return columnInt(iCol);
 		}
 	}
 
 	@Override
 	public long getLong(int columnIndex) throws SQLException {
 		final org.sqlite.Stmt stmt = getStmt();
-		// After a type conversion, the value returned by sqlite3_column_type() is undefined.
-		final int sourceType = stmt.getColumnType(fixCol(columnIndex));
-		stmt.checkTypeMismatch(fixCol(columnIndex), sourceType, ColTypes.SQLITE_INTEGER);
+		final int iCol = fixCol(columnIndex);
+		final int sourceType = sourceType(iCol);
+		stmt.checkTypeMismatch(iCol, sourceType, ColTypes.SQLITE_INTEGER);
 		wasNull = sourceType == ColTypes.SQLITE_NULL;
 		if (wasNull) {
 			return 0L;
 		} else {
-			return stmt.getColumnLong(fixCol(columnIndex));
+			return columnLong(iCol);
 		}
 	}
 
@@ -199,14 +385,14 @@ class Rows implements ResultSet {
 	@Override
 	public double getDouble(int columnIndex) throws SQLException {
 		final org.sqlite.Stmt stmt = getStmt();
-		// After a type conversion, the value returned by sqlite3_column_type() is undefined.
-		final int sourceType = stmt.getColumnType(fixCol(columnIndex));
-		stmt.checkTypeMismatch(fixCol(columnIndex), sourceType, ColTypes.SQLITE_FLOAT);
+		final int iCol = fixCol(columnIndex);
+		final int sourceType = sourceType(iCol);
+		stmt.checkTypeMismatch(iCol, sourceType, ColTypes.SQLITE_FLOAT);
 		wasNull = sourceType == ColTypes.SQLITE_NULL;
 		if (wasNull) {
 			return 0.0;
 		} else {
-			return stmt.getColumnDouble(fixCol(columnIndex));
+			return columnDouble(iCol);
 		}
 	}
 
@@ -218,9 +404,11 @@ class Rows implements ResultSet {
 
 	@Override
 	public byte[] getBytes(int columnIndex) throws SQLException {
-		final byte[] blob = getStmt().getColumnBlob(fixCol(columnIndex));
-		wasNull = blob == null;
-		return blob;
+		final org.sqlite.Stmt stmt = getStmt();
+		final int iCol = fixCol(columnIndex);
+		final int sourceType = sourceType(iCol);
+		wasNull = sourceType == ColTypes.SQLITE_NULL;
+		return wasNull ? null : columnBlob(iCol, sourceType);
 	}
 
 	@Override
@@ -375,8 +563,8 @@ class Rows implements ResultSet {
 	@Override
 	public Object getObject(int columnIndex) throws SQLException {
 		final org.sqlite.Stmt stmt = getStmt();
-		// After a type conversion, the value returned by sqlite3_column_type() is undefined.
-		final int sourceType = stmt.getColumnType(fixCol(columnIndex));
+		final int iCol = fixCol(columnIndex);
+		final int sourceType = sourceType(iCol);
 		switch (sourceType) {
 			case ColTypes.SQLITE_TEXT:
 				return getString(columnIndex);
@@ -479,28 +667,45 @@ class Rows implements ResultSet {
 		final int maxRows = s.getMaxRows();
 		if (maxRows != 0 && row == maxRows) {
 			return true;
+		} else if (store != null) {
+			return row > 0 && row == store.size();
+		} else if (row <= 0) {
+			return false;
 		}
-		return false; // TODO
+		if (!buffered) { // step ahead: the current row is copied first
+			if (buffer == null) {
+				buffer = new RowBuffer(stmt.getColumnCount(), 1);
+			}
+			buffer.clear(1);
+			buffer.add(stmt);
+			pending = s.step(false);
+			if (!pending) {
+				done = true;
+				stmt.reset();
+			}
+			buffered = buffer.next();
+		}
+		return buffer.isLast() && !pending;
 	}
 
 	@Override
 	public void beforeFirst() throws SQLException {
-		throw typeForwardOnly();
+		moveTo(0);
 	}
 
 	@Override
 	public void afterLast() throws SQLException {
-		throw typeForwardOnly();
+		moveTo(Integer.MAX_VALUE);
 	}
 
 	@Override
 	public boolean first() throws SQLException {
-		throw typeForwardOnly();
+		return absolute(1);
 	}
 
 	@Override
 	public boolean last() throws SQLException {
-		throw typeForwardOnly();
+		return absolute(-1);
 	}
 
 	@Override
@@ -511,17 +716,24 @@ class Rows implements ResultSet {
 
 	@Override
 	public boolean absolute(int row) throws SQLException {
-		throw typeForwardOnly();
+		if (row >= 0 || store == null) {
+			return moveTo(row);
+		}
+		return moveTo(store.size() + 1 + row);
 	}
 
 	@Override
 	public boolean relative(int rows) throws SQLException {
-		throw typeForwardOnly();
+		if (store == null) {
+			return moveTo(rows);
+		}
+		final long r = (row == -2 ? store.size() + 1L : row) + rows;
+		return moveTo((int) Math.max(Math.min(r, Integer.MAX_VALUE), Integer.MIN_VALUE));
 	}
 
 	@Override
 	public boolean previous() throws SQLException {
-		throw typeForwardOnly();
+		return relative(-1);
 	}
 
 	@Override
@@ -545,22 +757,19 @@ class Rows implements ResultSet {
 		if (rows == 0) {
 			return;
 		}
-		//noinspection StatementWithEmptyBody
-		if (rows != 1) {
-			//throw Util.caseUnsupported("SQLite does not support setting fetch size");
-		}
+		fetchSize = rows; // used by the next prefetch
 	}
 
 	@Override
 	public int getFetchSize() throws SQLException {
 		checkOpen();
-		return 1;
+		return fetchSize;
 	}
 
 	@Override
 	public int getType() throws SQLException {
 		checkOpen();
-		return TYPE_FORWARD_ONLY;
+		return scrollable ? TYPE_SCROLL_INSENSITIVE : TYPE_FORWARD_ONLY;
 	}
 
 	@Override
@@ -837,14 +1046,15 @@ class Rows implements ResultSet {
 		if (rowId == null) { // FIXME check PrepStmt.rowId as well...
 			throw new SQLException("You must read the associated RowId before opening a Blob");
 		}
-		final int sourceType = stmt.getColumnType(fixCol(columnIndex));
+		final int iCol = fixCol(columnIndex);
+		final int sourceType = sourceType(iCol);
 		wasNull = sourceType == ColTypes.SQLITE_NULL;
 		if (wasNull) {
 			return null;
 		}
 		org.sqlite.Blob blob = blobByColIndex.get(columnIndex);
 		if (blob == null || blob.isClosed()) {
-			blob = getStmt().open(fixCol(columnIndex), rowId.value, false);
+			blob = getStmt().open(iCol, rowId.value, false);
 			if (blob != null) {
 				if (blobByColIndex.isEmpty() && !(blobByColIndex instanceof TreeMap)) {
 					blobByColIndex = new TreeMap<>();
@@ -895,20 +1105,20 @@ class Rows implements ResultSet {
 	@Override
 	public Date getDate(int columnIndex, Calendar cal) throws SQLException {
 		final org.sqlite.Stmt stmt = getStmt();
-		// After a type conversion, the value returned by sqlite3_column_type() is undefined.
-		final int sourceType = stmt.getColumnType(fixCol(columnIndex));
+		final int iCol = fixCol(columnIndex);
+		final int sourceType = sourceType(iCol);
 		wasNull = sourceType == ColTypes.SQLITE_NULL;
 		switch (sourceType) {
 			case ColTypes.SQLITE_NULL:
 				return null;
 			case ColTypes.SQLITE_TEXT: // does not work as expected if column type affinity is TEXT but inserted value was a numeric
-				final String txt = stmt.getColumnText(fixCol(columnIndex));
+				final String txt = columnText(iCol, sourceType);
 				return DateUtil.toDate(txt, cal);
 			case ColTypes.SQLITE_INTEGER:
-				final long unixepoch = stmt.getColumnLong(fixCol(columnIndex));
+				final long unixepoch = columnLong(iCol);
 				return DateUtil.toDate(unixepoch, cal);
 			case ColTypes.SQLITE_FLOAT: // does not work as expected if column affinity is REAL but inserted value was an integer
-				final double jd = stmt.getColumnDouble(fixCol(columnIndex));
+				final double jd = columnDouble(iCol);
 				return DateUtil.toDate(jd, cal);
 			default:
 				throw new SQLException("The column type is not one of SQLITE_INTEGER, SQLITE_FLOAT, SQLITE_TEXT, or SQLITE_NULL");
@@ -923,20 +1133,20 @@ class Rows implements ResultSet {
 	@Override
 	public Time getTime(int columnIndex, Calendar cal) throws SQLException {
 		final org.sqlite.Stmt stmt = getStmt();
-		// After a type conversion, the value returned by sqlite3_column_type() is undefined.
-		final int sourceType = stmt.getColumnType(fixCol(columnIndex));
+		final int iCol = fixCol(columnIndex);
+		final int sourceType = sourceType(iCol);
 		wasNull = sourceType == ColTypes.SQLITE_NULL;
 		switch (sourceType) {
 			case ColTypes.SQLITE_NULL:
 				return null;
 			case ColTypes.SQLITE_TEXT: // does not work as expected if column type affinity is TEXT but inserted value was a numeric
-				final String txt = stmt.getColumnText(fixCol(columnIndex));
+				final String txt = columnText(iCol, sourceType);
 				return DateUtil.toTime(txt, cal);
 			case ColTypes.SQLITE_INTEGER:
-				final long unixepoch = stmt.getColumnLong(fixCol(columnIndex));
+				final long unixepoch = columnLong(iCol);
 				return DateUtil.toTime(unixepoch);
 			case ColTypes.SQLITE_FLOAT: // does not work as expected if column affinity is REAL but inserted value was an integer
-				final double jd = stmt.getColumnDouble(fixCol(columnIndex));
+				final double jd = columnDouble(iCol);
 				return DateUtil.toTime(jd);
 			default:
 				throw new SQLException("The column type is not one of SQLITE_INTEGER, SQLITE_FLOAT, SQLITE_TEXT, or SQLITE_NULL");
@@ -951,20 +1161,20 @@ class Rows implements ResultSet {
 	@Override
 	public Timestamp getTimestamp(int columnIndex, Calendar cal) throws SQLException {
 		final org.sqlite.Stmt stmt = getStmt();
-		// After a type conversion, the value returned by sqlite3_column_type() is undefined.
-		final int sourceType = stmt.getColumnType(fixCol(columnIndex));
+		final int iCol = fixCol(columnIndex);
+		final int sourceType = sourceType(iCol);
 		wasNull = sourceType == ColTypes.SQLITE_NULL;
 		switch (sourceType) {
 			case ColTypes.SQLITE_NULL:
 				return null;
 			case ColTypes.SQLITE_TEXT: // does not work as expected if column type affinity is TEXT but inserted value was a numeric
-				final String txt = stmt.getColumnText(fixCol(columnIndex));
+				final String txt = columnText(iCol, sourceType);
 				return DateUtil.toTimestamp(txt, cal);
 			case ColTypes.SQLITE_INTEGER:
-				final long unixepoch = stmt.getColumnLong(fixCol(columnIndex));
+				final long unixepoch = columnLong(iCol);
 				return DateUtil.toTimestamp(unixepoch);
 			case ColTypes.SQLITE_FLOAT: // does not work as expected if column affinity is REAL but inserted value was an integer
-				final double jd = stmt.getColumnDouble(fixCol(columnIndex));
+				final double jd = columnDouble(iCol);
 				return DateUtil.toTimestamp(jd);
 			default:
 				throw new SQLException("The column type is not one of SQLITE_INTEGER, SQLITE_FLOAT, SQLITE_TEXT, or SQLITE_NULL");
@@ -1089,7 +1299,8 @@ class Rows implements ResultSet {
 
 	@Override
 	public SQLXML getSQLXML(int columnIndex) throws SQLException {
-		final int sourceType = stmt.getColumnType(fixCol(columnIndex));
+		final int iCol = fixCol(columnIndex);
+		final int sourceType = sourceType(iCol);
 		wasNull = sourceType == ColTypes.SQLITE_NULL;
 		if (wasNull) {
 			return null;
@@ -1278,19 +1489,20 @@ class Rows implements ResultSet {
 		if (type == null) {
 			throw Util.error("Null type specified");
 		}
-		final int sourceType = stmt.getColumnType(fixCol(columnIndex));
+		final int iCol = fixCol(columnIndex);
+		final int sourceType = sourceType(iCol);
 		wasNull = sourceType == ColTypes.SQLITE_NULL;
 		switch (sourceType) {
 			case ColTypes.SQLITE_NULL:
 				return null;
 			case ColTypes.SQLITE_TEXT:
-				final String txt = stmt.getColumnText(fixCol(columnIndex));
+				final String txt = columnText(iCol, sourceType);
 				return convert(txt, type);
 			case ColTypes.SQLITE_INTEGER:
-				final long l = stmt.getColumnLong(fixCol(columnIndex));
+				final long l = columnLong(iCol);
 				return convert(l, type);
 			case ColTypes.SQLITE_FLOAT:
-				final double d = stmt.getColumnDouble(fixCol(columnIndex));
+				final double d = columnDouble(iCol);
 				return convert(d, type);
 			default:
 				throw new SQLException("The column type is not one of SQLITE_INTEGER, SQLITE_FLOAT, SQLITE_TEXT, or SQLITE_NULL");
@@ -1299,25 +1511,32 @@ class Rows implements ResultSet {
 
 	private <T> T convert(String txt, Class<T> type) throws SQLException {
 		if (LocalDate.class.equals(type)) {
-			return (T)LocalDate.parse(txt); // TODO wrap DateTimeParseException into SQLException
+			return type.cast(DateUtil.toLocalDate(txt));
 		} else if (LocalDateTime.class.equals(type)) {
-			return (T)LocalDateTime.parse(txt);
+			return type.cast(DateUtil.toLocalDateTime(txt));
 		} else if (OffsetDateTime.class.equals(type)) {
-			return (T)OffsetDateTime.parse(txt);
+			return type.cast(DateUtil.toOffsetDateTime(txt));
 		} else if (LocalTime.class.equals(type)) {
-			return (T)LocalTime.parse(txt);
+			return type.cast(DateUtil.toLocalTime(txt));
+		} else if (Instant.class.equals(type)) {
+			return type.cast(DateUtil.toInstant(txt));
 		}
 		throw new SQLException("Conversion from text to " + type + "is not supported");
 	}
 
 	private <T> T convert(long l, Class<T> type) throws SQLException {
 		if (LocalDate.class.equals(type)) {
-			return (T)LocalDate.ofEpochDay(l);
+			return type.cast(LocalDate.ofEpochDay(l));
+		} else if (Instant.class.equals(type)) {
+			return type.cast(DateUtil.toInstant(l));
 		}
 		throw new SQLException("Conversion from long to " + type + "is not supported");
 	}
 
 	private <T> T convert(double d, Class<T> type) throws SQLException {
+		if (Instant.class.equals(type)) {
+			return type.cast(DateUtil.toInstant(d));
+		}
 		throw new SQLException("Conversion from double to " + type + "is not supported");
 	}
 
@@ -21,9 +21,8 @@ import java.sql.SQLTimeoutException;
 import java.sql.SQLWarning;
 import java.sql.Statement;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 // There is no "not prepared" statement in SQLite!
 class Stmt implements Statement {
@@ -31,23 +30,31 @@ class Stmt implements Statement {
 	private final boolean prepared;
 	private org.sqlite.Stmt stmt;
 
-	// cached columns' index by name
-	private Map<String, Integer> colIndexByName;
 	private boolean isCloseOnCompletion;
 	private int maxRows;
+	// number of rows prefetched by each ResultSet step when > 1
+	private int fetchSize = 1;
+	private final int resultSetType;
 	private int status = -1; // -1: unknown, 0: not a select, 1: select with row, 2: select without row
 	private List<String> batch; // sql queries (see addBatch)
 	private int queryTimeout; // in seconds
+	// columns returned by RETURNING when generated keys are requested (see Conn#prepareReturning)
+	private String[] keyColumns;
+	private RowStore keys; // rows returned by RETURNING
+	private Rows keysRows; // last result set over keys
 
-	Stmt(Conn c) {
+	Stmt(Conn c, int resultSetType) {
 		this.c = c;
 		prepared = false;
+		this.resultSetType = resultSetType;
 	}
 
-	Stmt(Conn c, org.sqlite.Stmt stmt) {
+	Stmt(Conn c, org.sqlite.Stmt stmt, int resultSetType, String[] keyColumns) {
 		this.c = c;
 		this.stmt = stmt;
 		prepared = true;
+		this.resultSetType = resultSetType;
+		this.keyColumns = keyColumns;
 	}
 
 	org.sqlite.Stmt getStmt() throws SQLException {
@@ -78,36 +85,14 @@ class Stmt implements Statement {
 
 	int findCol(String col) throws SQLException {
 		final org.sqlite.Stmt stmt = getStmt();
-		if (this == c.getGeneratedKeys) { // We don't know the table's name nor the column's name but there is only one possible.
+		if (this == c.getGeneratedKeys || keyColumns == Conn.ROWID) { // We don't know the table's name nor the column's name but there is only one possible.
 			return 1;
 		}
-		final Integer index = findColIndexInCache(col);
-		if (null != index) {
-			return index;
+		final int index = stmt.getMeta().getColumnIndex(col);
+		if (index < 0) {
+			throw new StmtException(stmt, "no such column: '" + col + "'", ErrCodes.WRAPPER_SPECIFIC);
 		}
-		final int columnCount = stmt.getColumnCount();
-		for (int i = 0; i < columnCount; i++) {
-			if (col.equalsIgnoreCase(stmt.getColumnName(i))) {
-				addColIndexInCache(col, i + 1, columnCount);
-				return i + 1;
-			}
-		}
-		throw new StmtException(stmt, "no such column: '" + col + "'", ErrCodes.WRAPPER_SPECIFIC);
-	}
-
-	private Integer findColIndexInCache(String col) {
-		if (null == colIndexByName) {
-			return null;
-		} else {
-			return colIndexByName.get(col);
-		}
-	}
-
-	private void addColIndexInCache(String col, int index, int columnCount) {
-		if (null == colIndexByName) {
-			colIndexByName = new HashMap<>(columnCount);
-		}
-		colIndexByName.put(col, index);
+		return index + 1;
 	}
 
 	@Override
@@ -153,10 +138,13 @@ class Stmt implements Statement {
 	private void _close() throws SQLException {
 		if (stmt != null) {
 			stmt.close();
-			if (colIndexByName != null) colIndexByName.clear();
 			stmt = null;
 			status = -1;
 		}
+		clearGeneratedKeys();
+		if (!prepared) {
+			keyColumns = null;
+		}
 	}
 
 	@Override
@@ -249,12 +237,19 @@ class Stmt implements Statement {
 		} else if ((res&0xFF) == ErrCodes.SQLITE_CONSTRAINT) {
 			throw new SQLIntegrityConstraintViolationException(stmt.getErrMsg(), null, res);
 		} else if (res == ErrCodes.SQLITE_INTERRUPT) {
+			if (Thread.currentThread().isInterrupted()) {
+				throw new SQLException("statement cancelled: thread interrupted", null, res);
+			}
 			throw new SQLTimeoutException(stmt.getErrMsg(), null, res);
 		}
 		throw new StmtException(stmt, String.format("error while stepping '%s'", stmt.getSql()), res);
 	}
 
 	protected boolean exec() throws SQLException {
+		if (keyColumns != null) { // rows returned by RETURNING are only available as generated keys
+			executeReturning(false);
+			return updateCount();
+		}
 		if (step(false)) {
 			status = 1;
 		} else if (stmt.getColumnCount() != 0) {
@@ -265,6 +260,12 @@ class Stmt implements Statement {
 		return status != 0;
 	}
 
+	// The current result is an update count (see getUpdateCount)
+	final boolean updateCount() {
+		status = 0;
+		return false;
+	}
+
 	// Works only with execute (not executeQuery)
 	@Override
 	public ResultSet getResultSet() throws SQLException {
@@ -329,16 +330,13 @@ class Stmt implements Statement {
 		if (rows == 0) {
 			return;
 		}
-		//noinspection StatementWithEmptyBody
-		if (rows != 1) {
-			//Util.trace(String.format("SQLite does not support setting fetch size to %d", rows));
-		}
+		fetchSize = rows;
 	}
 
 	@Override
 	public int getFetchSize() throws SQLException {
 		checkOpen();
-		return 1;
+		return fetchSize;
 	}
 
 	@Override
@@ -350,7 +348,7 @@ class Stmt implements Statement {
 	@Override
 	public int getResultSetType() throws SQLException {
 		checkOpen();
-		return ResultSet.TYPE_FORWARD_ONLY;
+		return resultSetType;
 	}
 
 	@Override
@@ -380,27 +378,113 @@ class Stmt implements Statement {
 		if (batch == null) {
 			return new int[0]; // FIXME
 		}
-		final int size = batch.size();
+		try {
+			// no implicit transaction: the batch may contain BEGIN, COMMIT, VACUUM, ATTACH...
+			return executeBatch(batch.size(), false, i -> executeUpdate(batch.get(i)));
+		} finally {
+			clearBatch();
+		}
+	}
+
+	@FunctionalInterface
+	interface BatchItem {
+		/**
+		 * @param i item index
+		 * @return update count
+		 */
+		int execute(int i) throws SQLException;
+		/**
+		 * Executes several items at once.
+		 * @param i first item index
+		 * @param remaining number of items not yet executed
+		 * @param changes where the update count of each executed item is stored
+		 * @return number of items executed or 0 when item <code>i</code> must be executed alone
+		 */
+		default int executeChunk(int i, int remaining, int[] changes) throws SQLException {
+			return 0;
+		}
+	}
+
+	/**
+	 * Executes <code>size</code> batch items, inside one implicit transaction when <code>dml</code> is true and
+	 * the connection is in autocommit mode (one journal sync instead of one per item). As without transaction,
+	 * a failed item is reported as {@link #EXECUTE_FAILED} and the following items are still executed and committed.
+	 * @param dml whether all items are INSERT, UPDATE, DELETE or REPLACE statements:
+	 * they cannot end the implicit transaction, except by an error which rolls it back
+	 * @throws BatchUpdateException if at least one item has failed
+	 */
+	int[] executeBatch(int size, boolean dml, BatchItem item) throws SQLException {
+		final org.sqlite.Conn c = getConn();
+		boolean implicitTx = dml && size > 1 && c.getAutoCommit(); // whether our transaction is active
+		if (implicitTx) {
+			c.fastExec("BEGIN");
+		}
 		SQLException cause = null;
 		final int[] changes = new int[size];
+		int first = 0; // first item of the current implicit transaction
 		for (int i = 0; i < size; ++i) {
 			try {
-				changes[i] = executeUpdate(batch.get(i));
+				final int n = item.executeChunk(i, size - i, changes);
+				if (n > 0) {
+					i += n - 1;
+					continue;
+				}
+				changes[i] = item.execute(i);
 			} catch (SQLException e) {
 				if (cause != null) {
 					e.setNextException(cause);
 				}
 				cause = e;
 				changes[i] = EXECUTE_FAILED;
+				if (implicitTx && c.getAutoCommit()) { // some errors (SQLITE_FULL, ON CONFLICT ROLLBACK...) roll back our transaction
+					Arrays.fill(changes, first, i, EXECUTE_FAILED);
+					first = i + 1;
+					implicitTx = first < size;
+					if (implicitTx) {
+						c.fastExec("BEGIN");
+					}
+				}
+			}
+		}
+		if (implicitTx) {
+			try {
+				c.fastExec("COMMIT");
+			} catch (SQLException e) {
+				try {
+					c.fastExec("ROLLBACK");
+				} catch (SQLException ignored) {
+					// the original error is reported
+				}
+				Arrays.fill(changes, first, size, EXECUTE_FAILED);
+				if (cause != null) {
+					e.setNextException(cause);
+				}
+				cause = e;
 			}
 		}
-		clearBatch();
 		if (cause != null) {
 			throw new BatchUpdateException("batch failed", changes, cause);
 		}
 		return changes;
 	}
 
+	private static final String[] DML = {"INSERT", "UPDATE", "DELETE", "REPLACE"};
+	/**
+	 * @return <code>true</code> if <code>sql</code> starts with INSERT, UPDATE, DELETE or REPLACE
+	 */
+	static boolean isDml(String sql) {
+		int i = 0;
+		while (i < sql.length() && Character.isWhitespace(sql.charAt(i))) {
+			i++;
+		}
+		for (String keyword : DML) {
+			if (sql.regionMatches(true, i, keyword, 0, keyword.length())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	@Override
 	public Connection getConnection() throws SQLException {
 		checkOpen();
@@ -416,19 +500,78 @@ class Stmt implements Statement {
 		return getMoreResults();
 	}
 
-	// Limitations:
+	// Keys are returned by the statement itself (INSERT ... RETURNING) when they have been requested (SQLite 3.35 or later)
+	// and then are accumulated in batch mode.
+	// Otherwise, limitations:
 	//  - only primary keys defined as rowid's alias work.
 	//  - doesn't work in batch mode.
-	// With the rowid (ok) and the associated table (ko) we can fix these limitations...
 	@Override
 	public ResultSet getGeneratedKeys() throws SQLException { // Used by hibernate
 		checkOpen();
+		if (keyColumns != null && stmt != null) {
+			if (keys == null) {
+				keys = new RowStore(stmt.getColumnCount(), RowStore.MEMORY_BUDGET);
+			}
+			if (keysRows != null) {
+				keysRows.close();
+			}
+			keysRows = new Rows(this, keys);
+			return keysRows;
+		}
 		return c.getGeneratedKeys();
 	}
 
+	boolean returnsGeneratedKeys() {
+		return keyColumns != null;
+	}
+	void clearGeneratedKeys() throws SQLException {
+		if (keysRows != null) { // reads from keys
+			keysRows.close();
+			keysRows = null;
+		}
+		if (keys != null) {
+			keys.close();
+			keys = null;
+		}
+	}
+
+	/**
+	 * Executes an <code>INSERT ... RETURNING</code> statement, copying the returned rows into the generated keys.
+	 * @param append whether the keys returned by previous executions are kept (batch mode)
+	 * @return update count
+	 */
+	int executeReturning(boolean append) throws SQLException {
+		if (!append) {
+			clearGeneratedKeys();
+		}
+		if (keys == null) {
+			keys = new RowStore(stmt.getColumnCount(), RowStore.MEMORY_BUDGET);
+		}
+		while (step(false)) {
+			keys.add(stmt);
+		}
+		return getConn().getChanges();
+	}
+
+	private boolean prepareReturning(String sql, String[] columnNames) throws SQLException {
+		if (prepared) {
+			throw new SQLException("method not supported by PreparedStatement");
+		}
+		_close();
+		stmt = conn().prepareReturning(sql, columnNames, false);
+		if (stmt == null) {
+			return false;
+		}
+		keyColumns = columnNames;
+		return true;
+	}
+
 	@Override
 	public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
 		Conn.checkAutoGeneratedKeys(autoGeneratedKeys);
+		if (RETURN_GENERATED_KEYS == autoGeneratedKeys && prepareReturning(sql, Conn.ROWID)) {
+			return executeReturning(false);
+		}
 		return executeUpdate(sql);
 	}
 
@@ -439,12 +582,20 @@ class Stmt implements Statement {
 
 	@Override
 	public int executeUpdate(String sql, String[] columnNames) throws SQLException {
-		throw Util.unsupported("Statement.executeUpdate(String, String[])");
+		if (columnNames == null || columnNames.length == 0) {
+			return executeUpdate(sql);
+		} else if (!prepareReturning(sql, columnNames)) {
+			throw Util.unsupported("Statement.executeUpdate(String, String[]) for this statement");
+		}
+		return executeReturning(false);
 	}
 
 	@Override
 	public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
 		Conn.checkAutoGeneratedKeys(autoGeneratedKeys);
+		if (RETURN_GENERATED_KEYS == autoGeneratedKeys && prepareReturning(sql, Conn.ROWID)) {
+			return exec();
+		}
 		return execute(sql);
 	}
 
@@ -455,7 +606,12 @@ class Stmt implements Statement {
 
 	@Override
 	public boolean execute(String sql, String[] columnNames) throws SQLException {
-		throw Util.unsupported("Statement.execute(String, String[])");
+		if (columnNames == null || columnNames.length == 0) {
+			return execute(sql);
+		} else if (!prepareReturning(sql, columnNames)) {
+			throw Util.unsupported("Statement.execute(String, String[]) for this statement");
+		}
+		return exec();
 	}
 
 	@Override
@@ -9,11 +9,32 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.sqlite.SQLite.SQLite3Context;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.Pipe;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 import static org.junit.Assert.*;
 import static org.sqlite.SQLite.*;
 
@@ -201,6 +222,49 @@ public class ConnTest {
 		assertArrayEquals("profiles", new String[]{sql}, profiles);
 	}
 
+	@Test
+	public void traceV2() throws SQLiteException {
+		final Conn c = open();
+		final List<Integer> events = new ArrayList<>();
+		c.trace(TraceV2Callback.SQLITE_TRACE_STMT | TraceV2Callback.SQLITE_TRACE_PROFILE | TraceV2Callback.SQLITE_TRACE_ROW | TraceV2Callback.SQLITE_TRACE_CLOSE,
+				(type, p, x) -> events.add(type));
+		try (Stmt s = c.prepare("SELECT 1 UNION ALL SELECT 2", false)) {
+			while (s.step(0)) {
+			}
+		}
+		c.close();
+		assertEquals(Arrays.asList(TraceV2Callback.SQLITE_TRACE_STMT, TraceV2Callback.SQLITE_TRACE_ROW, TraceV2Callback.SQLITE_TRACE_ROW,
+				TraceV2Callback.SQLITE_TRACE_PROFILE, TraceV2Callback.SQLITE_TRACE_CLOSE), events);
+	}
+
+	@Test
+	public void slowQueryLog() throws Exception {
+		final BlockingQueue<SlowQueryLog.Entry> entries = new LinkedBlockingQueue<>();
+		try (SlowQueryLog log = new SlowQueryLog(0L, 1.0, 16, entries::add)) {
+			final Conn c = open();
+			log.install(c, true);
+			try (Stmt s = c.prepare("SELECT ? UNION ALL SELECT 2", false)) {
+				s.bind(1);
+				while (s.step(0)) {
+				}
+			}
+			final SlowQueryLog.Entry entry = entries.poll(5, TimeUnit.SECONDS);
+			assertNotNull(entry);
+			assertEquals("SELECT 1 UNION ALL SELECT 2", entry.getSql());
+			assertEquals(2L, entry.getRows());
+			assertTrue(entry.getNanos() >= 0L);
+			assertEquals(1L, log.getLogged());
+			c.close();
+		}
+		try (SlowQueryLog log = new SlowQueryLog(60_000L, 1.0, 16, entries::add)) {
+			final Conn c = open();
+			log.install(c, false);
+			c.fastExec("SELECT 1");
+			assertEquals(0L, log.getLogged());
+			c.close();
+		}
+	}
+
 	@Test
 	public void setBusyHandler() throws SQLiteException {
 		final Conn c = open();
@@ -252,6 +316,42 @@ public class ConnTest {
 		c.close();
 	}
 
+	@Test
+	public void createTypedScalarFunction() throws SQLiteException {
+		Assume.assumeTrue(Native.POINTER_SIZE == 8);
+		try (Conn c = open()) {
+			c.createLongFunction("lneg", a -> -a);
+			c.createLongFunction("lmul", (a, b) -> a * b);
+			c.createDoubleFunction("dsqrt", Math::sqrt);
+			c.createDoubleFunction("dpow", Math::pow);
+			c.createLongFunction("ldiv", (a, b) -> a / b);
+			c.createLongFunction("linc", x -> x + 1);
+			try (Stmt stmt = c.prepare("SELECT lneg(3), lmul(1 << 40, 3), dsqrt(2.25), dpow(2, 0.5), lmul(NULL, 2), linc(41)", false)) {
+				assertTrue(stmt.step(0));
+				assertEquals(-3L, stmt.getColumnLong(0));
+				assertEquals(3L << 40, stmt.getColumnLong(1));
+				assertEquals(1.5, stmt.getColumnDouble(2), 0.0);
+				assertEquals(Math.sqrt(2), stmt.getColumnDouble(3), 1e-15);
+				assertEquals(ColTypes.SQLITE_NULL, stmt.getColumnType(4));
+				assertEquals(42L, stmt.getColumnLong(5));
+			}
+			c.fastExec("CREATE TABLE test (x INTEGER)");
+			c.fastExec("CREATE INDEX test_neg ON test (lneg(x))");
+			c.fastExec("INSERT INTO test (x) VALUES (1), (2), (3)");
+			try (Stmt stmt = c.prepare("SELECT x FROM test WHERE lneg(x) = -2", false)) {
+				assertTrue(stmt.step(0));
+				assertEquals(2, stmt.getColumnInt(0));
+				assertFalse(stmt.step(0));
+			}
+			try {
+				c.fastExec("SELECT ldiv(1, 0)");
+				fail("division by zero");
+			} catch (SQLiteException e) {
+				assertTrue(e.getMessage(), e.getMessage().contains("/ by zero"));
+			}
+		}
+	}
+
 	@Test
 	public void createAggregateFunction() throws SQLiteException {
 		final Conn c = open();
@@ -300,6 +400,123 @@ public class ConnTest {
 		c.close();
 	}
 
+	@Test
+	public void createObjectAggregateFunction() throws SQLiteException {
+		try (Conn c = open()) {
+			c.createAggregateFunction("concat", 1, FunctionFlags.SQLITE_UTF8 | FunctionFlags.SQLITE_DETERMINISTIC, new Aggregate<StringBuilder, String>() {
+				@Override
+				public StringBuilder init() {
+					return new StringBuilder();
+				}
+				@Override
+				public StringBuilder step(StringBuilder sb, SQLite3Values args) {
+					return sb.append(args.getText(0));
+				}
+				@Override
+				public String result(StringBuilder sb) {
+					return sb.length() == 0 ? null : sb.toString();
+				}
+			});
+			try (Stmt stmt = c.prepare("SELECT g, concat(s) FROM (SELECT 1 AS g, 'a' AS s UNION ALL SELECT 2, 'b' UNION ALL SELECT 1, 'c') GROUP BY g ORDER BY g", false)) {
+				assertTrue(stmt.step(0));
+				assertEquals("ac", stmt.getColumnText(1));
+				assertTrue(stmt.step(0));
+				assertEquals("b", stmt.getColumnText(1));
+				assertFalse(stmt.step(0));
+			}
+			try (Stmt stmt = c.prepare("SELECT concat(1) WHERE 1 <> 1", false)) {
+				assertTrue(stmt.step(0));
+				assertEquals(ColTypes.SQLITE_NULL, stmt.getColumnType(0));
+			}
+		}
+	}
+
+	@Test
+	public void createWindowFunction() throws SQLiteException {
+		Assume.assumeTrue(Conn.libversionNumber() >= 3025000);
+		try (Conn c = open()) {
+			final AtomicInteger steps = new AtomicInteger();
+			c.createWindowFunction("wsum", 1, FunctionFlags.SQLITE_UTF8 | FunctionFlags.SQLITE_DETERMINISTIC, new WindowAggregate<long[], Long>() {
+				@Override
+				public long[] init() {
+					return new long[1];
+				}
+				@Override
+				public long[] step(long[] sum, SQLite3Values args) {
+					steps.incrementAndGet();
+					sum[0] += args.getLong(0);
+					return sum;
+				}
+				@Override
+				public long[] inverse(long[] sum, SQLite3Values args) {
+					sum[0] -= args.getLong(0);
+					return sum;
+				}
+				@Override
+				public Long result(long[] sum) {
+					return sum[0];
+				}
+			});
+			final long[] expected = {3, 6, 9, 12, 9};
+			try (Stmt stmt = c.prepare("WITH RECURSIVE cnt(x) AS (SELECT 1 UNION ALL SELECT x + 1 FROM cnt WHERE x < 5) " +
+					"SELECT wsum(x) OVER (ORDER BY x ROWS BETWEEN 1 PRECEDING AND 1 FOLLOWING) FROM cnt", false)) {
+				for (long e : expected) {
+					assertTrue(stmt.step(0));
+					assertEquals(e, stmt.getColumnLong(0));
+				}
+				assertFalse(stmt.step(0));
+			}
+			assertEquals("each row is added once", 5, steps.get());
+			try (Stmt stmt = c.prepare("SELECT wsum(x) FROM (SELECT 1 AS x UNION ALL SELECT 2)", false)) {
+				assertTrue(stmt.step(0));
+				assertEquals(3L, stmt.getColumnLong(0));
+			}
+		}
+	}
+
+	@Test
+	public void status() throws SQLiteException {
+		final Conn c = open();
+		c.fastExec("CREATE TABLE test (data TEXT)");
+		final int[] schemaUsed = c.status(DbStatus.SQLITE_DBSTATUS_SCHEMA_USED, false);
+		assertTrue(schemaUsed[0] > 0);
+		assertTrue(c.status(DbStatus.SQLITE_DBSTATUS_CACHE_USED, false)[0] > 0);
+
+		final long[] memoryUsed = Conn.status(GlobalStatus.SQLITE_STATUS_MEMORY_USED, false);
+		assertTrue(memoryUsed[0] > 0);
+		assertTrue(memoryUsed[1] >= memoryUsed[0]);
+
+		c.setMaxCacheSize(1);
+		c.prepare("SELECT 1", true).close();
+		c.prepare("SELECT 1", true).close();
+		c.prepare("SELECT 2", true).close();
+		assertEquals(1L, c.getCacheHits());
+		assertEquals(2L, c.getCacheMisses());
+		assertEquals(1L, c.getCacheEvictions());
+		c.close();
+	}
+
+	@Test
+	public void mbeans() throws Exception {
+		final MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+		final Conn c = open();
+		final ObjectName name = c.registerMBean();
+		assertSame(name, c.registerMBean());
+		assertTrue(mbs.isRegistered(name));
+		c.prepare("SELECT 1", true).close();
+		c.prepare("SELECT 1", true).close();
+		assertEquals(1L, mbs.getAttribute(name, "StmtCacheHits"));
+		assertTrue((Long) mbs.getAttribute(name, "SchemaUsed") >= 0L);
+
+		final ObjectName global = Conn.registerGlobalMBean();
+		assertEquals(global, Conn.registerGlobalMBean());
+		assertTrue((Long) mbs.getAttribute(global, "MemoryUsed") > 0L);
+		mbs.invoke(global, "reset", null, null);
+
+		c.close();
+		assertFalse(mbs.isRegistered(name));
+	}
+
 	@Test(expected = ConnException.class)
 	public void closedConn() throws SQLiteException {
 		final Conn c = open();
@@ -331,6 +548,411 @@ public class ConnTest {
 		assertEquals(1, count.get());
 	}
 
+	@Test
+	public void commitAndRollbackHooks() throws SQLiteException {
+		final Conn c = open();
+		final AtomicInteger commits = new AtomicInteger();
+		final AtomicInteger rollbacks = new AtomicInteger();
+		c.commitHook(() -> commits.incrementAndGet() > 1);
+		c.rollbackHook(rollbacks::incrementAndGet);
+		try {
+			c.fastExec("CREATE TABLE test (x INTEGER)"); // vetoed
+			fail("commit hook veto expected");
+		} catch (ConnException e) {
+			assertEquals(ErrCodes.SQLITE_CONSTRAINT, e.getErrorCode());
+		}
+		assertEquals(1, commits.get());
+		assertEquals(1, rollbacks.get());
+		c.fastExec("CREATE TABLE test (x INTEGER)");
+		c.fastExec("BEGIN; INSERT INTO test VALUES (1); ROLLBACK");
+		assertEquals(2, commits.get());
+		assertEquals(2, rollbacks.get());
+		c.close();
+	}
+
+	@Test
+	public void changeCapture() throws Exception {
+		final Conn c = open();
+		final BlockingQueue<ChangeCapture.Changes> batches = new LinkedBlockingQueue<>();
+		try (ChangeCapture cc = ChangeCapture.install(c)) {
+			cc.addListener(batches::add);
+			c.fastExec("CREATE TABLE test (x INTEGER); CREATE TABLE other (y INTEGER)");
+			c.fastExec("BEGIN; INSERT INTO test VALUES (1); INSERT INTO test VALUES (2); INSERT INTO other VALUES (3); COMMIT");
+			c.fastExec("BEGIN; DELETE FROM test; ROLLBACK");
+			c.fastExec("UPDATE test SET x = 0 WHERE rowid = 2");
+			ChangeCapture.Changes changes = batches.poll(5, TimeUnit.SECONDS);
+			assertNotNull(changes);
+			assertEquals(3, changes.size());
+			assertEquals(ActionCodes.SQLITE_INSERT, changes.getAction(0));
+			assertEquals("test", changes.getTable(0));
+			assertEquals(1L, changes.getRowId(0));
+			assertSame(changes.getTable(0), changes.getTable(1));
+			assertEquals("other", changes.getTable(2));
+			changes = batches.poll(5, TimeUnit.SECONDS);
+			assertNotNull(changes);
+			assertEquals("[UPDATE test 2]", changes.toString());
+		}
+		assertNull(batches.poll(100, TimeUnit.MILLISECONDS));
+		c.close();
+	}
+
+	@Test
+	public void changeCaptureSavepoint() throws Exception {
+		final Conn c = open();
+		final AtomicInteger traced = new AtomicInteger();
+		c.trace(TraceV2Callback.SQLITE_TRACE_PROFILE, (type, p, x) -> traced.incrementAndGet());
+		final BlockingQueue<ChangeCapture.Changes> batches = new LinkedBlockingQueue<>();
+		try (ChangeCapture cc = ChangeCapture.install(c)) {
+			cc.addListener(batches::add);
+			c.fastExec("CREATE TABLE test (x INTEGER)");
+			c.fastExec("BEGIN; INSERT INTO test VALUES (1); SAVEPOINT sp; INSERT INTO test VALUES (2); " +
+					"SAVEPOINT \"my sp\"; INSERT INTO test VALUES (3); RELEASE [my sp]; " +
+					"ROLLBACK TO SAVEPOINT SP; INSERT INTO test VALUES (4); RELEASE sp; COMMIT");
+			ChangeCapture.Changes changes = batches.poll(5, TimeUnit.SECONDS);
+			assertNotNull(changes);
+			assertEquals("[INSERT test 1, INSERT test 2]", changes.toString());
+			// table names are not cached by address
+			c.fastExec("DROP TABLE test; CREATE TABLE other (y INTEGER); INSERT INTO other VALUES (5)");
+			changes = batches.poll(5, TimeUnit.SECONDS);
+			assertNotNull(changes);
+			assertEquals("[INSERT other 1]", changes.toString());
+		}
+		assertTrue(traced.get() > 0); // user trace callback still invoked
+		c.close();
+	}
+
+	@Test
+	public void changeCaptureFailedStatement() throws Exception {
+		final Conn c = open();
+		final BlockingQueue<ChangeCapture.Changes> batches = new LinkedBlockingQueue<>();
+		try (ChangeCapture cc = ChangeCapture.install(c)) {
+			cc.addListener(batches::add);
+			c.fastExec("CREATE TABLE test (id INTEGER PRIMARY KEY, x UNIQUE)");
+			c.fastExec("BEGIN; INSERT INTO test VALUES (1, 1); /* leading */ SAVEPOINT sp; INSERT INTO test VALUES (2, 2); " +
+					"-- comments\nROLLBACK TO sp /* trailing */");
+			try {
+				c.fastExec("INSERT INTO test VALUES (3, 3), (4, 1)"); // ABORT: the transaction is kept
+				fail("ConnException expected");
+			} catch (ConnException e) {
+				assertFalse(c.getAutoCommit());
+			}
+			try (Stmt s = c.prepare("INSERT INTO test VALUES (6, 6), (7, 1)", false)) {
+				s.exec();
+				fail("StmtException expected");
+			} catch (StmtException e) {
+				assertFalse(c.getAutoCommit());
+			}
+			c.fastExec("INSERT INTO test VALUES (5, 5); COMMIT");
+			final ChangeCapture.Changes changes = batches.poll(5, TimeUnit.SECONDS);
+			assertNotNull(changes);
+			assertEquals("[INSERT test 1, INSERT test 5]", changes.toString());
+		}
+		c.close();
+	}
+
+	@Test
+	public void preUpdateCapture() throws Exception {
+		final Conn c = open();
+		final BlockingQueue<List<PreUpdateCapture.RowImage>> batches = new LinkedBlockingQueue<>();
+		try (PreUpdateCapture pc = PreUpdateCapture.install(c, false)) {
+			pc.addListener(batches::add);
+			c.fastExec("CREATE TABLE test (id INTEGER PRIMARY KEY, name TEXT, data BLOB, score REAL)");
+			c.fastExec("BEGIN; INSERT INTO test VALUES (1, 'one', x'0102', 1.5); UPDATE test SET name = 'uno' WHERE id = 1; COMMIT");
+			c.fastExec("BEGIN; DELETE FROM test; ROLLBACK");
+			c.fastExec("DELETE FROM test");
+			List<PreUpdateCapture.RowImage> rows = batches.poll(5, TimeUnit.SECONDS);
+			assertNotNull(rows);
+			assertEquals(2, rows.size());
+			PreUpdateCapture.RowImage insert = rows.get(0);
+			assertEquals(ActionCodes.SQLITE_INSERT, insert.getAction());
+			assertEquals("test", insert.getTable());
+			assertEquals("main", insert.getDbName());
+			assertNull(insert.getOldValues());
+			assertArrayEquals(new Object[]{1L, "one", new byte[]{1, 2}, 1.5}, insert.getNewValues());
+			PreUpdateCapture.RowImage update = rows.get(1);
+			assertEquals(ActionCodes.SQLITE_UPDATE, update.getAction());
+			assertEquals("one", update.getOldValues()[1]);
+			assertEquals("uno", update.getNewValues()[1]);
+			assertEquals(1L, update.getOldRowId());
+			rows = batches.poll(5, TimeUnit.SECONDS);
+			assertNotNull(rows);
+			assertEquals(1, rows.size());
+			assertEquals(ActionCodes.SQLITE_DELETE, rows.get(0).getAction());
+			assertNull(rows.get(0).getNewValues());
+		}
+		c.close();
+	}
+
+	@Test
+	public void captureReplaced() throws Exception {
+		final Conn c = open();
+		c.fastExec("CREATE TABLE test (id INTEGER PRIMARY KEY, name TEXT)");
+		final BlockingQueue<ChangeCapture.Changes> changes = new LinkedBlockingQueue<>();
+		final BlockingQueue<List<PreUpdateCapture.RowImage>> batches = new LinkedBlockingQueue<>();
+		try (ChangeCapture cc = ChangeCapture.install(c)) {
+			cc.addListener(changes::add);
+			try (PreUpdateCapture pc = PreUpdateCapture.install(c, false)) { // closes cc
+				pc.addListener(batches::add);
+				assertSame(pc, c.capture);
+				c.fastExec("INSERT INTO test VALUES (1, 'one')");
+				assertNotNull(batches.poll(5, TimeUnit.SECONDS));
+			}
+		}
+		assertNull(c.capture);
+		assertTrue(changes.isEmpty());
+		c.close();
+	}
+
+	@Test
+	public void preUpdateCaptureSavepoint() throws Exception {
+		final Conn c = open();
+		final BlockingQueue<List<PreUpdateCapture.RowImage>> batches = new LinkedBlockingQueue<>();
+		try (PreUpdateCapture pc = PreUpdateCapture.install(c, false)) {
+			pc.addListener(batches::add);
+			c.fastExec("CREATE TABLE test (id INTEGER PRIMARY KEY, name TEXT)");
+			c.fastExec("BEGIN; INSERT INTO test VALUES (1, 'one'); SAVEPOINT sp; UPDATE test SET name = 'uno'; " +
+					"ROLLBACK TO sp; INSERT INTO test VALUES (2, 'two'); COMMIT");
+			final List<PreUpdateCapture.RowImage> rows = batches.poll(5, TimeUnit.SECONDS);
+			assertNotNull(rows);
+			assertEquals(2, rows.size());
+			assertArrayEquals(new Object[]{1L, "one"}, rows.get(0).getNewValues());
+			assertArrayEquals(new Object[]{2L, "two"}, rows.get(1).getNewValues());
+		}
+		c.close();
+	}
+
+	@Test
+	public void changesetReplication() throws Exception {
+		Assume.assumeTrue(Session.isAvailable());
+		final String ddl = "CREATE TABLE test (id INTEGER PRIMARY KEY, name TEXT)";
+		final Conn primary = open();
+		primary.fastExec(ddl);
+		final Conn follower = open();
+		follower.fastExec(ddl);
+
+		final ByteArrayOutputStream log = new ByteArrayOutputStream();
+		try (ChangesetReplicator.Primary p = new ChangesetReplicator.Primary(primary, "main", new ChangesetReplicator.StreamTransport(null, log))) {
+			assertEquals(0, p.publish());
+			primary.fastExec("BEGIN; INSERT INTO test VALUES (1, 'one'); INSERT INTO test VALUES (2, 'two'); COMMIT");
+			assertTrue(p.publish() > 0);
+			primary.fastExec("UPDATE test SET name = 'uno' WHERE id = 1; DELETE FROM test WHERE id = 2");
+			assertTrue(p.publish() > 0);
+		}
+
+		final ChangesetReplicator.Follower f = new ChangesetReplicator.Follower(follower,
+				new ChangesetReplicator.StreamTransport(new ByteArrayInputStream(log.toByteArray()), null), ConflictHandler.REPLACE);
+		assertEquals(2L, f.run(10));
+		try (Stmt s = follower.prepare("SELECT id, name FROM test", false)) {
+			assertTrue(s.step(0));
+			assertEquals(1L, s.getColumnLong(0));
+			assertEquals("uno", s.getColumnText(1));
+			assertFalse(s.step(0));
+		}
+		primary.close();
+		follower.close();
+	}
+
+	@Test
+	public void changesetReplicationRetry() throws Exception {
+		Assume.assumeTrue(Session.isAvailable());
+		final Conn primary = open();
+		primary.fastExec("CREATE TABLE test (id INTEGER PRIMARY KEY, name TEXT)");
+		final List<byte[]> sent = new ArrayList<>();
+		final ChangesetReplicator.Transport transport = new ChangesetReplicator.Transport() {
+			private boolean failed;
+			@Override
+			public void send(byte[] changeset) throws IOException {
+				if (!failed) {
+					failed = true;
+					throw new IOException("unreachable");
+				}
+				sent.add(changeset);
+			}
+			@Override
+			public byte[] receive() {
+				return null;
+			}
+			@Override
+			public boolean ready() {
+				return false;
+			}
+			@Override
+			public void close() {
+			}
+		};
+		try (ChangesetReplicator.Primary p = new ChangesetReplicator.Primary(primary, "main", transport)) {
+			primary.fastExec("INSERT INTO test VALUES (1, 'one')");
+			try {
+				p.publish();
+				fail("IOException expected");
+			} catch (IOException e) {
+				// changes are kept
+			}
+			primary.fastExec("BEGIN; INSERT INTO test VALUES (2, 'two')");
+			try {
+				p.publish();
+				fail("ConnException expected");
+			} catch (ConnException e) {
+				// uncommitted
+			}
+			primary.fastExec("COMMIT");
+			assertTrue(p.publish() > 0);
+		}
+		assertEquals(1, sent.size());
+		final Conn follower = open();
+		follower.fastExec("CREATE TABLE test (id INTEGER PRIMARY KEY, name TEXT)");
+		follower.applyChangeset(sent.get(0), ConflictHandler.REPLACE);
+		try (Stmt s = follower.prepare("SELECT count(*) FROM test", false)) {
+			assertTrue(s.step(0));
+			assertEquals(2L, s.getColumnLong(0));
+		}
+		primary.close();
+		follower.close();
+	}
+
+	@Test
+	public void changesetReplicationFailures() throws Exception {
+		Assume.assumeTrue(Session.isAvailable());
+		final String ddl = "CREATE TABLE test (id INTEGER PRIMARY KEY, name TEXT)";
+		final Conn primary = open();
+		primary.fastExec(ddl);
+		final Session session = primary.openSession("main");
+		session.attach(null);
+		primary.fastExec("INSERT INTO test VALUES (1, 'one')");
+		final byte[] insert = session.changeset();
+		session.close();
+		final Session dangling = primary.openSession("main");
+		primary.close();
+		assertTrue(dangling.isClosed()); // deleted with the connection
+
+		final Conn follower = open();
+		follower.fastExec(ddl);
+		// truncated frame
+		final ByteArrayOutputStream log = new ByteArrayOutputStream();
+		new ChangesetReplicator.StreamTransport(null, log).send(insert);
+		final byte[] frame = log.toByteArray();
+		final ChangesetReplicator.StreamTransport transport = new ChangesetReplicator.StreamTransport(
+				new ByteArrayInputStream(Arrays.copyOf(frame, frame.length - 1)), null);
+		final ChangesetReplicator.Follower f = new ChangesetReplicator.Follower(follower, transport, ConflictHandler.REPLACE);
+		try {
+			f.apply(10);
+			fail("IOException expected");
+		} catch (IOException e) {
+			// truncated
+		}
+		try {
+			f.apply(10);
+			fail("IOException expected");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("previous failure"));
+		}
+		// missing row
+		final Conn other = open();
+		other.fastExec(ddl + "; INSERT INTO test VALUES (1, 'one')");
+		final Session update = other.openSession("main");
+		update.attach(null);
+		other.fastExec("UPDATE test SET name = 'uno' WHERE id = 1");
+		final byte[] lost = update.changeset();
+		other.close();
+		follower.applyChangeset(lost, ConflictHandler.REPLACE); // silently omitted
+		try {
+			follower.applyChangeset(lost, ConflictHandler.STRICT);
+			fail("ConnException expected");
+		} catch (ConnException e) {
+			// reported
+		}
+		follower.close();
+	}
+
+	@Test
+	public void resultCache() throws Exception {
+		final String path = folder.newFile().getPath();
+		final Conn c = Conn.open(path, OpenFlags.SQLITE_OPEN_READWRITE, null);
+		c.fastExec("CREATE TABLE country (code TEXT PRIMARY KEY, label TEXT, region INT);" +
+				"CREATE TABLE other (id INTEGER PRIMARY KEY);" +
+				"INSERT INTO country VALUES ('FR', 'France', 1), ('DE', 'Germany', 1), ('JP', 'Japan', 2)");
+		final String sql = "SELECT code, label FROM country WHERE region = ? ORDER BY code";
+		try (ResultCache cache = ResultCache.install(c, 1 << 16)) {
+			try (ResultCache.Rows rows = cache.query(sql, 1)) {
+				assertEquals(2, rows.getColumnCount());
+				assertEquals("code", rows.getColumnName(0));
+				assertEquals("country", rows.getColumnTableName(1));
+				assertTrue(rows.next());
+				assertEquals("DE", rows.getColumnText(0));
+				assertEquals("Germany", rows.getColumnText(1));
+				assertTrue(rows.next());
+				assertEquals("FR", rows.getColumnText(0));
+				assertFalse(rows.next());
+			}
+			assertEquals(1, cache.size());
+			assertEquals(2, cache.query(sql, 1).getRowCount());
+			assertEquals(1L, cache.getHits());
+			assertEquals(1, cache.query(sql, 2).getRowCount());
+			assertEquals(2, cache.size());
+
+			// unrelated table
+			c.fastExec("INSERT INTO other VALUES (1)");
+			assertEquals(2, cache.size());
+			// source table
+			c.fastExec("INSERT INTO country VALUES ('IT', 'Italy', 1)");
+			assertEquals(0, cache.size());
+			assertEquals(3, cache.query(sql, 1).getRowCount());
+
+			// truncate optimization (no update hook)
+			c.fastExec("DELETE FROM country");
+			assertEquals(0, cache.query(sql, 1).getRowCount());
+
+			// rolled back changes are never cached
+			c.fastExec("BEGIN; INSERT INTO country VALUES ('FR', 'France', 1)");
+			assertEquals(1, cache.query(sql, 1).getRowCount());
+			c.fastExec("ROLLBACK");
+			assertEquals(0, cache.query(sql, 1).getRowCount());
+
+			// another connection
+			final Conn other = Conn.open(path, OpenFlags.SQLITE_OPEN_READWRITE, null);
+			other.fastExec("INSERT INTO country VALUES ('ES', 'Spain', 1)");
+			other.close();
+			try (ResultCache.Rows rows = cache.query(sql, 1)) {
+				assertTrue(rows.next());
+				assertEquals("ES", rows.getColumnText(0));
+			}
+
+			// non-deterministic and non read-only statements
+			cache.query("SELECT random() FROM country");
+			cache.query("SELECT count(*) FROM country").close();
+			final int size = cache.size();
+			cache.query("SELECT random() FROM country");
+			assertEquals(size, cache.size());
+
+			// attached database changed by another connection
+			final String auxPath = folder.newFile().getPath();
+			c.fastExec("ATTACH DATABASE '" + auxPath + "' AS aux; CREATE TABLE aux.city (name TEXT)");
+			final String city = "SELECT count(*) FROM aux.city";
+			assertEquals(0L, firstLong(cache.query(city)));
+			assertEquals(0L, firstLong(cache.query(city)));
+			final long hits = cache.getHits();
+			final Conn auxOther = Conn.open(auxPath, OpenFlags.SQLITE_OPEN_READWRITE, null);
+			auxOther.fastExec("INSERT INTO city VALUES ('Paris')");
+			auxOther.close();
+			assertEquals(1L, firstLong(cache.query(city)));
+			assertEquals(hits, cache.getHits());
+			// detached
+			c.fastExec("DETACH DATABASE aux");
+			try {
+				cache.query(city);
+				fail("SQLiteException expected");
+			} catch (SQLiteException e) {
+				// no such table
+			}
+		}
+		c.close();
+	}
+
+	private static long firstLong(ResultCache.Rows rows) throws StmtException {
+		assertTrue(rows.next());
+		return rows.getColumnLong(0);
+	}
+
 	private static class ConnState {
 		private boolean triggersEnabled = true;
 		private String encoding = UTF_8_ECONDING;
@@ -411,6 +1033,242 @@ public class ConnTest {
 		}
 	}
 
+	@Test
+	public void blobChannel() throws SQLiteException, IOException {
+		final byte[] data = new byte[200 * 1024];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i * 31);
+		}
+		final File in = folder.newFile();
+		final File out = folder.newFile();
+		Files.write(in.toPath(), data);
+		try (Conn c = open()) {
+			c.fastExec("CREATE TABLE test (data BLOB)");
+			c.fastExec("INSERT INTO test (data) VALUES (zeroblob(" + data.length + "))");
+			try (Blob blob = c.open("main", "test", "data", c.getLastInsertRowid(), true);
+					FileChannel src = FileChannel.open(in.toPath())) {
+				final BlobChannel channel = blob.getChannel();
+				assertEquals(data.length, channel.size());
+				assertEquals(data.length, channel.transferFrom(src, 0, Long.MAX_VALUE));
+				// heap and direct buffers
+				final ByteBuffer heap = ByteBuffer.allocate(10);
+				final ByteBuffer direct = ByteBuffer.allocateDirect(10);
+				channel.position(data.length - 15);
+				assertEquals(15, channel.read(new ByteBuffer[]{heap, direct}, 0, 2));
+				assertEquals(5, direct.position());
+				assertEquals(-1, channel.read(direct));
+				heap.flip();
+				direct.flip();
+				for (int i = 0; i < 10; i++) {
+					assertEquals(data[data.length - 15 + i], heap.get(i));
+				}
+				for (int i = 0; i < 5; i++) {
+					assertEquals(data[data.length - 5 + i], direct.get(i));
+				}
+				channel.position(1);
+				assertEquals(1, channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xFF})));
+				data[1] = (byte) 0xFF;
+				try {
+					channel.position(data.length);
+					channel.write(ByteBuffer.allocate(1));
+					fail("BLOB cannot be resized");
+				} catch (IOException e) {
+					// expected
+				}
+				try (FileChannel dst = FileChannel.open(out.toPath(), StandardOpenOption.WRITE)) {
+					assertEquals(data.length, channel.transferTo(0, Long.MAX_VALUE, dst));
+				}
+				// non-blocking channels: no busy loop
+				final Pipe pipe = Pipe.open();
+				try (Pipe.SinkChannel sink = pipe.sink(); Pipe.SourceChannel source = pipe.source()) {
+					sink.configureBlocking(false);
+					source.configureBlocking(false);
+					assertEquals(0, channel.transferFrom(source, 0, Long.MAX_VALUE)); // empty
+					final long n = channel.transferTo(0, Long.MAX_VALUE, sink);
+					assertTrue(n > 0 && n < data.length);
+					assertEquals(0, channel.transferTo(0, Long.MAX_VALUE, sink)); // full
+				}
+				final InputStream input = blob.getInputStream();
+				assertEquals(data[0] & 0xFF, input.read());
+				assertEquals(0xFF, input.read());
+			}
+		}
+		assertArrayEquals(data, Files.readAllBytes(out.toPath()));
+	}
+
+	@Test
+	public void largeObject() throws SQLiteException, IOException {
+		final byte[] data = new byte[100 * 1024 + 7];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i * 31);
+		}
+		final String path = folder.newFile().getPath();
+		final File out = folder.newFile();
+		final long oid;
+		try (Conn c = Conn.open(path, OpenFlags.SQLITE_OPEN_READWRITE, null)) {
+			LargeObjects.createTables(c, null);
+			oid = LargeObjects.create(c, null, data.length, 16 * 1024);
+			try (LargeObject lo = LargeObjects.open(c, null, oid, true)) {
+				assertEquals(data.length, lo.size());
+				assertEquals(data.length, lo.transferFrom(Channels.newChannel(new ByteArrayInputStream(data)), 0, Long.MAX_VALUE));
+				final Pipe pipe = Pipe.open();
+				try (Pipe.SinkChannel sink = pipe.sink(); Pipe.SourceChannel source = pipe.source()) {
+					sink.configureBlocking(false);
+					source.configureBlocking(false);
+					assertEquals(0, lo.transferFrom(source, 0, Long.MAX_VALUE)); // empty
+					final long n = lo.transferTo(0, Long.MAX_VALUE, sink);
+					assertTrue(n > 0 && n < data.length);
+				}
+				// across chunks
+				lo.position(16 * 1024 - 3);
+				final ByteBuffer buffer = ByteBuffer.allocate(6);
+				assertEquals(6, lo.read(buffer));
+				for (int i = 0; i < 6; i++) {
+					assertEquals(data[16 * 1024 - 3 + i], buffer.get(i));
+				}
+				lo.position(32 * 1024 - 1);
+				assertEquals(2, lo.write(ByteBuffer.wrap(new byte[]{1, 2})));
+				data[32 * 1024 - 1] = 1;
+				data[32 * 1024] = 2;
+				lo.position(data.length);
+				assertEquals(-1, lo.read(buffer));
+				try {
+					lo.write(ByteBuffer.allocate(1));
+					fail("large object cannot be resized");
+				} catch (IOException e) {
+					// expected
+				}
+			}
+		}
+		final List<Conn> conns = new ArrayList<>();
+		final ExecutorService executor = Executors.newFixedThreadPool(3);
+		try (FileChannel dst = FileChannel.open(out.toPath(), StandardOpenOption.WRITE)) {
+			for (int i = 0; i < 3; i++) {
+				conns.add(Conn.open(path, OpenFlags.SQLITE_OPEN_READONLY, null));
+			}
+			assertEquals(data.length, LargeObjects.transferTo(conns, null, oid, dst, executor));
+		} finally {
+			executor.shutdown();
+			for (Conn c : conns) {
+				c.close();
+			}
+		}
+		assertArrayEquals(data, Files.readAllBytes(out.toPath()));
+		try (Conn c = Conn.open(path, OpenFlags.SQLITE_OPEN_READWRITE, null)) {
+			assertTrue(LargeObjects.delete(c, null, oid));
+			assertFalse(LargeObjects.delete(c, null, oid));
+			try {
+				LargeObjects.open(c, null, oid, false);
+				fail("no such large object");
+			} catch (SQLiteException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void javaVirtualTable() throws SQLiteException {
+		Assume.assumeTrue(Native.POINTER_SIZE == 8);
+		final double[] values = {1.5, 2.5, 3.5, 4.5};
+		final AtomicInteger lookups = new AtomicInteger();
+		final boolean[] broken = {false};
+		try (Conn c = open()) {
+			c.createModule("series", (dbName, tableName, args) -> new VirtualTable() {
+				@Override
+				public String getDeclaration() {
+					return "CREATE TABLE x(value REAL)";
+				}
+				@Override
+				public void bestIndex(IndexInfo info) {
+					for (int i = 0; i < info.getConstraintCount(); i++) {
+						if (info.isConstraintUsable(i) && info.getConstraintColumn(i) == -1 &&
+								info.getConstraintOp(i) == IndexInfo.SQLITE_INDEX_CONSTRAINT_EQ) {
+							info.setConstraintUsage(i, 1, true);
+							info.setIdxNum(1);
+							info.setEstimatedCost(1);
+							info.setEstimatedRows(1);
+							info.setIdxFlags(IndexInfo.SQLITE_INDEX_SCAN_UNIQUE);
+							return;
+						}
+					}
+					if (info.getOrderByCount() == 1 && info.getOrderByColumn(0) == -1 && !info.isOrderByDesc(0)) {
+						info.setOrderByConsumed(true);
+					}
+					info.setEstimatedCost(values.length);
+					info.setEstimatedRows(values.length);
+				}
+				@Override
+				public VirtualCursor open() {
+					return new VirtualCursor() {
+						private int row, end;
+						@Override
+						public void filter(int idxNum, RawValues args) {
+							if (idxNum == 1) {
+								lookups.incrementAndGet();
+								final long rowId = args.getLong(0);
+								row = rowId < 1 || rowId > values.length ? values.length : (int) rowId - 1;
+								end = Math.min(row + 1, values.length);
+							} else {
+								row = 0;
+								end = values.length;
+							}
+						}
+						@Override
+						public void next() {
+							row++;
+						}
+						@Override
+						public boolean eof() {
+							if (broken[0] && row == 2) {
+								throw new IllegalStateException("broken cursor");
+							}
+							return row >= end;
+						}
+						@Override
+						public void column(int i, ColumnResult result) {
+							result.setDouble(values[row]);
+						}
+						@Override
+						public long rowId() {
+							return row + 1;
+						}
+					};
+				}
+			});
+			c.fastExec("CREATE VIRTUAL TABLE temp.live USING series");
+			try (Stmt stmt = c.prepare("SELECT sum(value), count(*) FROM live", false)) {
+				assertTrue(stmt.step(0));
+				assertEquals(12.0, stmt.getColumnDouble(0), 0.0);
+				assertEquals(4, stmt.getColumnInt(1));
+			}
+			try (Stmt stmt = c.prepare("SELECT value FROM series WHERE rowid = ?", false)) { // eponymous
+				stmt.bind(3);
+				assertTrue(stmt.step(0));
+				assertEquals(3.5, stmt.getColumnDouble(0), 0.0);
+				assertFalse(stmt.step(0));
+			}
+			values[2] = 10.0; // live data
+			c.fastExec("CREATE TABLE ids (id INTEGER)");
+			c.fastExec("INSERT INTO ids VALUES (3), (1), (9)");
+			lookups.set(0);
+			try (Stmt stmt = c.prepare("SELECT sum(value) FROM ids CROSS JOIN live ON live.rowid = ids.id", false)) {
+				assertTrue(stmt.step(0));
+				assertEquals(11.5, stmt.getColumnDouble(0), 0.0);
+			}
+			assertEquals(3, lookups.get());
+			// not a short result
+			broken[0] = true;
+			try (Stmt stmt = c.prepare("SELECT count(*) FROM live", false)) {
+				stmt.step(0);
+				fail("cursor error expected");
+			} catch (StmtException e) {
+				assertTrue(e.getMessage(), e.getMessage().contains("broken cursor"));
+			}
+			broken[0] = false;
+			c.fastExec("DROP TABLE temp.live");
+		}
+	}
+
 	private static void check(ConnState state, Conn c) throws SQLiteException {
 		assertEquals("triggersEnabled", state.triggersEnabled, c.areTriggersEnabled());
 		assertEquals("encoding", state.encoding, c.encoding(null));
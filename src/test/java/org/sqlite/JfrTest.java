@@ -0,0 +1,79 @@
+package org.sqlite;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class JfrTest {
+	@Test
+	public void events() throws Exception {
+		Assume.assumeTrue(jfrAvailable());
+		final List<RecordedEvent> events;
+		try (Recording recording = new Recording()) {
+			recording.enable("org.sqlite.SQLitePrepare").withoutThreshold();
+			recording.enable("org.sqlite.SQLiteStep").withoutThreshold();
+			recording.enable("org.sqlite.SQLiteCommit").withoutThreshold();
+			recording.start();
+			try (Conn c = ConnTest.open()) {
+				try (Stmt s = c.prepare("SELECT 1 UNION ALL SELECT 2", true)) {
+					while (s.step(0)) {
+					}
+				}
+				c.prepare("SELECT 1 UNION ALL SELECT 2", true).close();
+				c.fastExec("BEGIN");
+				c.endTransaction(true, false);
+			}
+			recording.stop();
+			final Path file = Files.createTempFile("sqlite", ".jfr");
+			try {
+				recording.dump(file);
+				events = RecordingFile.readAllEvents(file);
+			} finally {
+				Files.delete(file);
+			}
+		}
+		int prepares = 0, cacheHits = 0, steps = 0, rows = 0, commits = 0;
+		for (RecordedEvent event : events) {
+			final String name = event.getEventType().getName();
+			if ("org.sqlite.SQLitePrepare".equals(name)) {
+				prepares++;
+				if (event.getBoolean("cacheHit")) {
+					cacheHits++;
+				}
+			} else if ("org.sqlite.SQLiteStep".equals(name)) {
+				steps++;
+				assertEquals("SELECT 1 UNION ALL SELECT 2", event.getString("sql"));
+				if (event.getInt("resultCode") == SQLite.SQLITE_ROW) {
+					rows++;
+				} else {
+					assertEquals(2, event.getInt("rows")); // total
+				}
+			} else if ("org.sqlite.SQLiteCommit".equals(name)) {
+				commits++;
+				assertTrue(event.getBoolean("rollback"));
+			}
+		}
+		assertEquals(2, prepares);
+		assertEquals(1, cacheHits);
+		assertEquals(3, steps); // one by sqlite3_step call
+		assertEquals(2, rows);
+		assertEquals(1, commits);
+	}
+
+	private static boolean jfrAvailable() {
+		try {
+			Class.forName("jdk.jfr.Recording");
+			return true;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package org.sqlite;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MetricsTest {
+	@After
+	public void disable() {
+		Metrics.disable();
+	}
+
+	@Test
+	public void buckets() {
+		for (long v = 0; v < (1L << 42); v = v * 3 / 2 + 1) {
+			final int bucket = LatencyHistogram.bucket(v);
+			final long lower = LatencyHistogram.lowerBound(bucket);
+			assertTrue(v + " " + lower, lower <= v);
+			if (v < (1L << 41)) {
+				assertTrue(v + " " + lower, v - lower <= lower / 8);
+				assertEquals(bucket, LatencyHistogram.bucket(lower));
+			}
+		}
+	}
+
+	@Test
+	public void histogram() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 100; i++) {
+			histogram.record(i * 1000L);
+		}
+		final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		assertEquals(100L, snapshot.getCount());
+		assertEquals(5050000L, snapshot.getSum());
+		assertEquals(50500.0, snapshot.getMean(), 0.0);
+		final long p50 = snapshot.getValueAtPercentile(50);
+		assertTrue(String.valueOf(p50), p50 <= 50000L && p50 > 50000L * 7 / 8);
+		final long max = snapshot.getMax();
+		assertTrue(String.valueOf(max), max <= 100000L && max > 100000L * 7 / 8);
+		histogram.reset();
+		assertEquals(0L, histogram.snapshot().getCount());
+	}
+
+	@Test
+	public void normalize() {
+		assertEquals("SELECT * FROM t WHERE a = ? AND b IN (?, ?) AND c = ? AND d = ? AND \"e 1\" = x1",
+				Metrics.normalize("SELECT *\n  FROM t WHERE a = 'it''s' AND b IN (1, 2.5e3) AND c = X'ABCD' AND d = ? AND \"e 1\" = x1 "));
+	}
+
+	@Test
+	public void timers() throws SQLiteException {
+		assertNull(Metrics.get());
+		final Metrics metrics = Metrics.enable(100);
+		assertSame(metrics, Metrics.enable(10));
+		try (Conn c = ConnTest.open()) {
+			for (int i = 0; i < 3; i++) {
+				try (Stmt s = c.prepare("SELECT " + i, false)) {
+					assertTrue(s.step(0));
+					assertFalse(s.step(0));
+				}
+			}
+		}
+		final List<Metrics.Timer> reported = new ArrayList<>();
+		metrics.report(reported::addAll);
+		Metrics.Timer prepare = null, step = null;
+		for (Metrics.Timer timer : reported) {
+			if ("SELECT ?".equals(timer.getSql())) {
+				if (timer.getOp() == Metrics.Op.PREPARE) {
+					prepare = timer;
+				} else if (timer.getOp() == Metrics.Op.STEP) {
+					step = timer;
+				}
+			}
+		}
+		assertNotNull(prepare);
+		assertEquals(3L, prepare.getHistogram().snapshot().getCount());
+		assertNotNull(step);
+		assertEquals(6L, step.getHistogram().snapshot().getCount());
+		metrics.reset();
+		assertEquals(0L, step.getHistogram().snapshot().getCount());
+	}
+}
@@ -4,6 +4,7 @@ import org.junit.Assume;
 import org.junit.Test;
 
 import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
 
 import static org.junit.Assert.*;
 
@@ -146,6 +147,196 @@ public class StmtTest {
 		c.close();
 	}
 
+	@Test
+	public void queryTimeout() throws Exception {
+		final Conn c = ConnTest.open();
+		final Stmt s = c.prepare("WITH RECURSIVE cnt(x) AS (SELECT 1 UNION ALL SELECT x+1 FROM cnt) SELECT count(*) FROM cnt", false);
+		final long start = System.currentTimeMillis();
+		try {
+			s.step(1);
+			fail("Expected a timeout");
+		} catch (StmtException e) {
+			assertEquals(ErrCodes.SQLITE_INTERRUPT, e.getErrorCode());
+		}
+		assertTrue(System.currentTimeMillis() - start >= 1000L);
+		assertFalse(s.isBusy());
+		// the connection is still usable
+		final Stmt sel = c.prepare("SELECT 1", false);
+		assertTrue(sel.step(1));
+		assertEquals(1, sel.getColumnInt(0));
+		sel.close();
+		s.close();
+		c.close();
+	}
+
+	@Test
+	public void queryTimeoutPerStep() throws Exception {
+		final Conn c = ConnTest.open();
+		final Stmt s = c.prepare("SELECT 1 UNION ALL SELECT 2", false);
+		assertTrue(s.step(1));
+		Thread.sleep(1200L); // application time between rows does not count
+		final Stmt nested = c.prepare("WITH RECURSIVE cnt(x) AS (SELECT 1 UNION ALL SELECT x+1 FROM cnt WHERE x < 100000) SELECT count(*) FROM cnt", false);
+		assertTrue(nested.step(0));
+		assertEquals(100000, nested.getColumnInt(0));
+		nested.close();
+		assertTrue(s.step(1));
+		assertEquals(2, s.getColumnInt(0));
+		assertFalse(s.step(1));
+		s.close();
+		c.close();
+	}
+
+	@Test
+	public void threadInterrupted() throws Exception {
+		final Conn c = ConnTest.open();
+		final Stmt s = c.prepare("SELECT 1", false);
+		Thread.currentThread().interrupt();
+		try {
+			assertEquals(ErrCodes.SQLITE_INTERRUPT, s.stepNoCheck(0));
+		} finally {
+			assertTrue(Thread.interrupted());
+		}
+		assertTrue(s.step(0));
+		s.close();
+		c.close();
+	}
+
+	@Test
+	public void threadInterruptedWhileStepping() throws Exception {
+		final Conn c = ConnTest.open();
+		final Stmt s = c.prepare("WITH RECURSIVE cnt(x) AS (SELECT 1 UNION ALL SELECT x+1 FROM cnt) SELECT count(*) FROM cnt", false);
+		final int[] res = new int[1];
+		final Thread t = new Thread(() -> {
+			try {
+				res[0] = s.stepNoCheck(60);
+			} catch (SQLiteException e) {
+				res[0] = e.getErrorCode();
+			}
+		});
+		t.start();
+		Thread.sleep(100L);
+		t.interrupt();
+		t.join(10_000L);
+		assertFalse(t.isAlive());
+		assertEquals(ErrCodes.SQLITE_INTERRUPT, res[0]);
+		s.close();
+		c.close();
+	}
+
+	@Test
+	public void queryPlan() throws SQLiteException {
+		final Conn c = ConnTest.open();
+		c.fastExec("CREATE TABLE parent (id INTEGER PRIMARY KEY, name TEXT); CREATE TABLE child (id INTEGER PRIMARY KEY, parent_id INTEGER, name TEXT);" +
+				"INSERT INTO parent VALUES (1, 'p1'), (2, 'p2'); INSERT INTO child (parent_id, name) VALUES (1, 'c1'), (1, 'c2'), (2, 'c3')");
+		final Stmt s = c.prepare("SELECT p.name, c.name FROM parent p JOIN child c ON c.parent_id = p.id WHERE p.name = ?", false);
+		s.bind("p1");
+		int n = 0;
+		while (s.step(0)) {
+			n++;
+		}
+		assertEquals(2, n);
+		final QueryPlan plan = s.getQueryPlan();
+		assertEquals(2, plan.getRoots().size());
+		assertTrue(plan.toString().startsWith("QUERY PLAN"));
+		assertEquals(Stmt.isScanStatusAvailable(), plan.hasScanStatus());
+		for (QueryPlan.Node node : plan.getRoots()) {
+			assertTrue(node.getDetail(), node.getDetail().startsWith("SCAN") || node.getDetail().startsWith("SEARCH"));
+			if (plan.hasScanStatus()) {
+				assertTrue(node.getLoops() > 0L);
+				assertTrue(node.getEstimatedRows() > 0.0);
+			} else {
+				assertEquals(-1L, node.getLoops());
+				assertEquals(-1.0, node.getActualRows(), 0.0);
+			}
+		}
+		s.resetScanStatus();
+		s.close();
+		c.close();
+	}
+
+	public static class Item {
+		private long id;
+		private String name;
+		private Double price;
+		boolean active;
+		private int ignoredSetterValue;
+
+		public void setIgnoredSetter(int value) {
+			ignoredSetterValue = value + 1;
+		}
+	}
+
+	@Test
+	public void rowMappers() throws SQLiteException {
+		final Conn c = ConnTest.open();
+		c.fastExec("CREATE TABLE item (id INTEGER PRIMARY KEY, name TEXT, price REAL, active INT, ignored_setter INT, extra TEXT);" +
+				"INSERT INTO item VALUES (1, 'one', 1.5, 1, 10, 'x'), (2, NULL, NULL, 0, 20, 'y')");
+		final RowMapper<Item> mapper = RowMappers.of(Item.class);
+		try (Stmt s = c.prepare("SELECT * FROM item ORDER BY id", false)) {
+			final Iterator<Item> items = s.queryMap(mapper);
+			Item item = items.next();
+			assertEquals(1L, item.id);
+			assertEquals("one", item.name);
+			assertEquals(1.5, item.price, 0.0);
+			assertTrue(item.active);
+			assertEquals(11, item.ignoredSetterValue);
+			item = items.next();
+			assertEquals(2L, item.id);
+			assertNull(item.name);
+			assertNull(item.price);
+			assertFalse(item.active);
+			assertFalse(items.hasNext());
+		}
+		// another shape with the same mapper
+		try (Stmt s = c.prepare("SELECT name, id FROM item WHERE id = 1", false)) {
+			final Item item = s.queryMap(mapper).next();
+			assertEquals(1L, item.id);
+			assertEquals("one", item.name);
+			assertNull(item.price);
+			// outside of queryMap (current row)
+			assertEquals("one", mapper.map(s).name);
+		}
+		// compiled mappers are shared
+		try (Stmt s = c.prepare("SELECT id FROM item", false)) {
+			assertTrue(s.step(0));
+			assertSame(RowMappers.compile(Item.class, s), RowMappers.compile(Item.class, s));
+		}
+		c.close();
+	}
+
+	@Test
+	public void sharedMeta() throws SQLiteException {
+		final Conn c = ConnTest.open();
+		c.fastExec("CREATE TABLE test (id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT NOT NULL)");
+		final String sql = "SELECT id, name AS Label FROM test";
+		final Stmt s1 = c.prepare(sql, false);
+		final Stmt s2 = c.prepare(sql, false);
+		final StmtMeta meta = s1.getMeta();
+		assertSame(meta, s2.getMeta());
+		assertEquals(1, meta.getColumnIndex("label"));
+		assertEquals(-1, meta.getColumnIndex("unknown"));
+		assertEquals(ColAffinities.TEXT, meta.getColumnAffinity(1));
+		assertEquals("name", meta.getColumnOriginName(1));
+		assertTrue(s1.getMetadata(0)[2]);
+		assertTrue(s2.getMetadata(1)[0]);
+		s2.close();
+
+		c.fastExec("ALTER TABLE test ADD COLUMN other INT");
+		final Stmt s3 = c.prepare(sql, false);
+		assertSame(meta, s3.getMeta()); // same columns
+		s3.close();
+		c.fastExec("CREATE TEMP TABLE test (id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT NOT NULL)");
+		final Stmt s4 = c.prepare(sql, false);
+		assertNotSame(meta, s4.getMeta());
+		assertEquals("temp", s4.getColumnDatabaseName(1));
+		s4.close();
+		c.fastExec("DROP TABLE temp.test; DROP TABLE main.test; CREATE TABLE test (id INTEGER PRIMARY KEY, name BLOB)");
+		assertFalse(s1.step(0)); // re-prepared
+		assertEquals(ColAffinities.NONE, s1.getMeta().getColumnAffinity(1));
+		s1.close();
+		c.close();
+	}
+
 	static void checkResult(int res) {
 		assertEquals(0, res);
 	}
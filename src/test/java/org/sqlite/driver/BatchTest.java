@@ -6,14 +6,18 @@ package org.sqlite.driver;
 
 import org.junit.After;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Properties;
 
 public class BatchTest {
 	private Connection conn;
@@ -49,6 +53,158 @@ public class BatchTest {
 		}
 	}
 
+	@Test
+	public void failedItemsShouldBeReported() throws Exception {
+		try (PreparedStatement stmt = conn.prepareStatement("insert into test(id, stuff) values (?, ?)")) {
+			stmt.setString(2, "same"); // kept for each row
+			for (int id : new int[]{1, 1, 2}) {
+				stmt.setInt(1, id);
+				stmt.addBatch();
+			}
+			try {
+				stmt.executeBatch();
+				Assert.fail("BatchUpdateException expected");
+			} catch (BatchUpdateException e) {
+				Assert.assertArrayEquals(new int[]{1, Statement.EXECUTE_FAILED, 1}, e.getUpdateCounts());
+			}
+			Assert.assertTrue(conn.getAutoCommit());
+			assertRowCount();
+			// parameters are kept after the batch
+			stmt.setInt(1, 3);
+			Assert.assertEquals(1, stmt.executeUpdate());
+		}
+		try (Statement select = conn.createStatement();
+				ResultSet results = select.executeQuery("select count(*) from test where stuff = 'same'")) {
+			Assert.assertTrue(results.next());
+			Assert.assertEquals(3, results.getInt(1));
+		}
+	}
+
+	@Test
+	public void transactionControlInStatementBatch() throws Exception {
+		try (Statement stmt = conn.createStatement()) {
+			stmt.addBatch("begin");
+			stmt.addBatch("insert into test(id, stuff) values (1, 'one')");
+			stmt.addBatch("commit");
+			stmt.addBatch("insert into test(id, stuff) values (1, 'dup')");
+			stmt.addBatch("insert into test(id, stuff) values (2, 'two')");
+			stmt.addBatch("vacuum");
+			try {
+				stmt.executeBatch();
+				Assert.fail("BatchUpdateException expected");
+			} catch (BatchUpdateException e) {
+				Assert.assertArrayEquals(new int[]{0, 1, 0, Statement.EXECUTE_FAILED, 1, 0}, e.getUpdateCounts());
+			}
+			Assert.assertTrue(conn.getAutoCommit());
+			assertRowCount();
+		}
+	}
+
+	@Test
+	public void insertsShouldBeRewritten() throws Exception {
+		final Properties info = new Properties();
+		info.setProperty(JDBC.REWRITE_BATCHED_INSERTS, "on");
+		try (Connection c = DriverManager.getConnection(JDBC.MEMORY, info)) {
+			try (Statement stmt = c.createStatement()) {
+				stmt.executeUpdate("create table test (id integer primary key, stuff text, n integer)");
+			}
+			try (PreparedStatement stmt = c.prepareStatement("insert into test(id, stuff, n) values (?, ?, 0)")) {
+				for (int id = 1; id <= 7; id++) {
+					stmt.setInt(1, id);
+					stmt.setString(2, "test" + id);
+					stmt.addBatch();
+				}
+				Assert.assertArrayEquals(new int[]{1, 1, 1, 1, 1, 1, 1}, stmt.executeBatch());
+				// a failed row in a chunk
+				for (int id : new int[]{8, 9, 1, 10}) {
+					stmt.setInt(1, id);
+					stmt.addBatch();
+				}
+				try {
+					stmt.executeBatch();
+					Assert.fail("BatchUpdateException expected");
+				} catch (BatchUpdateException e) {
+					Assert.assertArrayEquals(new int[]{1, 1, Statement.EXECUTE_FAILED, 1}, e.getUpdateCounts());
+				}
+			}
+			try (Statement select = c.createStatement();
+					ResultSet results = select.executeQuery("select count(*), sum(id), min(stuff) from test")) {
+				Assert.assertTrue(results.next());
+				Assert.assertEquals(10, results.getInt(1));
+				Assert.assertEquals(55, results.getInt(2));
+				Assert.assertEquals("test1", results.getString(3));
+			}
+		}
+	}
+
+	@Test
+	public void generatedKeysShouldBeAccumulated() throws Exception {
+		Assume.assumeTrue(org.sqlite.Conn.libversionNumber() >= 3035000);
+		try (PreparedStatement stmt = conn.prepareStatement("insert into test(stuff) values (?)", Statement.RETURN_GENERATED_KEYS)) {
+			for (int i = 0; i < 3; i++) {
+				stmt.setString(1, "test" + i);
+				stmt.addBatch();
+			}
+			Assert.assertArrayEquals(new int[]{1, 1, 1}, stmt.executeBatch());
+			try (ResultSet keys = stmt.getGeneratedKeys()) {
+				for (int id = 1; id <= 3; id++) {
+					Assert.assertTrue(keys.next());
+					Assert.assertEquals(id, keys.getLong("id"));
+				}
+				Assert.assertFalse(keys.next());
+			}
+			stmt.setString(1, "test3");
+			Assert.assertEquals(1, stmt.executeUpdate());
+			try (ResultSet keys = stmt.getGeneratedKeys()) {
+				Assert.assertTrue(keys.next());
+				Assert.assertEquals(4, keys.getLong(1));
+				Assert.assertFalse(keys.next());
+			}
+		}
+		try (PreparedStatement stmt = conn.prepareStatement("insert into test(stuff) values (upper(?))", new String[]{"id", "stuff"})) {
+			stmt.setString(1, "test");
+			Assert.assertFalse(stmt.execute());
+			Assert.assertEquals(1, stmt.getUpdateCount());
+			try (ResultSet keys = stmt.getGeneratedKeys()) {
+				Assert.assertTrue(keys.next());
+				Assert.assertEquals(5, keys.getLong("id"));
+				Assert.assertEquals("TEST", keys.getString("stuff"));
+			}
+		}
+		try (Statement stmt = conn.createStatement()) {
+			Assert.assertEquals(2, stmt.executeUpdate("insert into test(stuff) values ('a'), ('b')", new String[]{"id"}));
+			try (ResultSet keys = stmt.getGeneratedKeys()) {
+				Assert.assertTrue(keys.last());
+				Assert.assertEquals(2, keys.getRow());
+			}
+		}
+		try (PreparedStatement stmt = conn.prepareStatement("insert into test(stuff) values (?)", Statement.RETURN_GENERATED_KEYS)) {
+			stmt.setString(1, "c");
+			stmt.executeUpdate();
+			final ResultSet keys = stmt.getGeneratedKeys();
+			stmt.setString(1, "d");
+			stmt.executeUpdate(); // closes the previous keys
+			Assert.assertTrue(keys.isClosed());
+			try {
+				keys.next();
+				Assert.fail("closed result set");
+			} catch (SQLException e) {
+				// expected
+			}
+		}
+		// existing RETURNING clause is reused
+		try (PreparedStatement stmt = conn.prepareStatement("insert into test(stuff) values (?) returning id, stuff", new String[]{"id"})) {
+			stmt.setString(1, "e");
+			Assert.assertEquals(1, stmt.executeUpdate());
+			try (ResultSet keys = stmt.getGeneratedKeys()) {
+				Assert.assertTrue(keys.next());
+				Assert.assertEquals(10, keys.getLong("id"));
+				Assert.assertEquals("e", keys.getString("stuff"));
+				Assert.assertFalse(keys.next());
+			}
+		}
+	}
+
 	private void assertRowCount() throws Exception {
 		try (Statement select = conn.createStatement()) {
 			select.execute("select count(*) from test");
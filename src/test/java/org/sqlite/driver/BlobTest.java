@@ -3,7 +3,9 @@ package org.sqlite.driver;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
 import java.sql.Blob;
 import java.sql.Connection;
 import java.sql.DriverManager;
@@ -81,6 +83,109 @@ public class BlobTest {
 		}
 	}
 
+	@Test
+	public void streamInsertedBlob() throws SQLException {
+		try (Connection c = DriverManager.getConnection(JDBC.MEMORY)) {
+			try (Statement stmt = c.createStatement()) {
+				stmt.execute("CREATE TABLE test (id INTEGER PRIMARY KEY, name TEXT, data BLOB)");
+			}
+			final byte[] data = new byte[300 * 1024];
+			for (int i = 0; i < data.length; i++) {
+				data[i] = (byte) i;
+			}
+			try (PreparedStatement pstmt = c.prepareStatement("INSERT INTO \"test\" (name, data) VALUES (?, ?)")) {
+				pstmt.setCharacterStream(1, new StringReader("streamed"));
+				pstmt.setBinaryStream(2, new ByteArrayInputStream(data), data.length);
+				assertEquals(1, pstmt.executeUpdate());
+				// a failing stream does not leave a zero-filled row
+				pstmt.setBinaryStream(2, new InputStream() {
+					@Override
+					public int read() throws IOException {
+						throw new IOException("broken");
+					}
+				}, 10);
+				try {
+					pstmt.executeUpdate();
+					fail("SQLException expected");
+				} catch (SQLException e) {
+					assertTrue(e.getCause() instanceof IOException);
+				}
+			}
+			try (Statement stmt = c.createStatement();
+					ResultSet rs = stmt.executeQuery("SELECT name, data FROM test")) {
+				assertTrue(rs.next());
+				assertEquals("streamed", rs.getString(1));
+				assertArrayEquals(data, rs.getBytes(2));
+				assertFalse(rs.next());
+			}
+		}
+	}
+
+	@Test
+	public void streamIntoAnyTable() throws SQLException {
+		try (Connection c = DriverManager.getConnection(JDBC.MEMORY)) {
+			try (Statement stmt = c.createStatement()) {
+				stmt.execute("CREATE TABLE test (id INTEGER PRIMARY KEY, data BLOB)");
+				stmt.execute("CREATE TEMP TABLE test (id INTEGER PRIMARY KEY, data BLOB)"); // shadows main.test
+				stmt.execute("CREATE TABLE nrt (id TEXT PRIMARY KEY, data BLOB) WITHOUT ROWID");
+			}
+			final byte[] data = {1, 2, 3};
+			try (PreparedStatement pstmt = c.prepareStatement("INSERT INTO test (data) VALUES (?)")) {
+				pstmt.setBinaryStream(1, new ByteArrayInputStream(data), data.length);
+				assertEquals(1, pstmt.executeUpdate());
+				// shorter than the specified length
+				pstmt.setBinaryStream(1, new ByteArrayInputStream(data), 10);
+				try {
+					pstmt.executeUpdate();
+					fail("SQLException expected");
+				} catch (SQLException e) {
+					assertTrue(e.getMessage().contains("shorter"));
+				}
+			}
+			try (PreparedStatement pstmt = c.prepareStatement("INSERT INTO nrt (id, data) VALUES ('a', ?)")) {
+				pstmt.setBinaryStream(1, new ByteArrayInputStream(data), data.length);
+				assertEquals(1, pstmt.executeUpdate());
+			}
+			try (Statement stmt = c.createStatement()) {
+				try (ResultSet rs = stmt.executeQuery("SELECT data FROM temp.test")) {
+					assertTrue(rs.next());
+					assertArrayEquals(data, rs.getBytes(1));
+					assertFalse(rs.next());
+				}
+				try (ResultSet rs = stmt.executeQuery("SELECT count(*) FROM main.test")) {
+					assertTrue(rs.next());
+					assertEquals(0, rs.getInt(1));
+				}
+				try (ResultSet rs = stmt.executeQuery("SELECT data FROM nrt")) {
+					assertTrue(rs.next());
+					assertArrayEquals(data, rs.getBytes(1));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void streamWithCte() throws SQLException {
+		try (Connection c = DriverManager.getConnection(JDBC.MEMORY)) {
+			try (Statement stmt = c.createStatement()) {
+				stmt.execute("CREATE TABLE test (id INTEGER PRIMARY KEY, data BLOB)");
+			}
+			final byte[] data = {1, 2, 3};
+			// the first parameter is in the CTE, not in VALUES
+			try (PreparedStatement pstmt = c.prepareStatement("WITH c (x) AS (SELECT ?) INSERT INTO test (data) VALUES (?)")) {
+				pstmt.setBinaryStream(1, new ByteArrayInputStream(new byte[]{9}), 1);
+				pstmt.setBytes(2, data);
+				assertEquals(1, pstmt.executeUpdate());
+			}
+			try (Statement stmt = c.createStatement();
+					ResultSet rs = stmt.executeQuery("SELECT data FROM test")) {
+				assertTrue(rs.next());
+				assertArrayEquals(data, rs.getBytes(1));
+				assertFalse(rs.next());
+			}
+		}
+	}
+
 	//@Test
 	public void setBinaryStream() throws SQLException {
 		Connection c = null;
@@ -0,0 +1,89 @@
+package org.sqlite.driver;
+
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class DateUtilTest {
+	private static final String[] LAYOUTS = {
+			"HH:mm", DateUtil.HH_MM_SS, "HH:mm:ss.SSS", DateUtil.YYYY_MM_DD,
+			"yyyy-MM-dd'T'HH:mm", "yyyy-MM-dd'T'HH:mm:ss", "yyyy-MM-dd'T'HH:mm:ss.SSS", DateUtil.DEFAULT_FORMAT,
+			"yyyy-MM-dd HH:mm:ss.SSS", "yyyy-MM-dd HH:mm:ss.SSSXXX"
+	};
+
+	@Test
+	public void formatLikeSimpleDateFormat() {
+		final Calendar paris = Calendar.getInstance(TimeZone.getTimeZone("Europe/Paris"));
+		final long[] instants = {0L, 1092941466123L, -1092941466123L, 1414012345678L, 253402300799999L, -12219292800000L};
+		for (String layout : LAYOUTS) {
+			for (long ms : instants) {
+				for (Calendar cal : new Calendar[]{null, paris}) {
+					final SimpleDateFormat df = new SimpleDateFormat(layout);
+					df.setTimeZone(cal == null ? TimeZone.getDefault() : cal.getTimeZone());
+					final Date date = new Date(ms);
+					assertEquals(layout + " " + ms, df.format(date), DateUtil.formatDate(date, layout, cal));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void parse() throws SQLException {
+		final Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+		assertEquals(1092941466123L, DateUtil.toTimestamp("2004-08-19T18:51:06.123", utc).getTime());
+		assertEquals(1092941466123L, DateUtil.toTimestamp("2004-08-19 20:51:06.123+02:00", null).getTime());
+		assertEquals(1092941466000L, DateUtil.toTimestamp("2004-08-19T18:51:06Z", null).getTime());
+		assertEquals(123456789, DateUtil.toTimestamp("2004-08-19T18:51:06.123456789Z", null).getNanos());
+		assertEquals(1092873600000L, DateUtil.toDate("2004-08-19", utc).getTime());
+		assertEquals(67866000L, DateUtil.toTime("18:51:06", utc).getTime());
+		final Calendar paris = Calendar.getInstance(TimeZone.getTimeZone("Europe/Paris"));
+		assertEquals(1092934266000L, DateUtil.toTimestamp("2004-08-19 18:51:06", paris).getTime());
+		try {
+			DateUtil.toDate("2004-02-30", utc);
+			fail("SQLException expected");
+		} catch (SQLException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void temporal() throws SQLException {
+		// same text as toString
+		final LocalDateTime ldt = LocalDateTime.of(2004, 8, 19, 18, 51);
+		assertEquals("2004-08-19T18:51", DateUtil.format(ldt));
+		assertEquals(ldt, DateUtil.toLocalDateTime(DateUtil.format(ldt)));
+		assertEquals("2004-08-19T18:51:07", DateUtil.format(ldt.withSecond(7)));
+		assertEquals("2004-08-19T18:51:00.100", DateUtil.format(ldt.withNano(100_000_000)));
+		final LocalDateTime micros = ldt.withNano(123456000);
+		assertEquals("2004-08-19T18:51:00.123456", DateUtil.format(micros));
+		assertEquals(micros, DateUtil.toLocalDateTime(DateUtil.format(micros)));
+		assertEquals("2004-08-19", DateUtil.format(LocalDate.of(2004, 8, 19)));
+		assertEquals(LocalDate.of(2004, 8, 19), DateUtil.toLocalDate(DateUtil.format(LocalDate.of(2004, 8, 19))));
+		assertEquals("01:02:03.000000004", DateUtil.format(LocalTime.of(1, 2, 3, 4)));
+		assertEquals(LocalTime.of(1, 2, 3, 4), DateUtil.toLocalTime(DateUtil.format(LocalTime.of(1, 2, 3, 4))));
+		assertEquals("00:00", DateUtil.format(LocalTime.MIDNIGHT));
+		final OffsetDateTime odt = OffsetDateTime.of(ldt, ZoneOffset.ofHours(-5));
+		assertEquals("2004-08-19T18:51-05:00", DateUtil.format(odt));
+		assertEquals(odt, DateUtil.toOffsetDateTime(DateUtil.format(odt)));
+		assertEquals("2004-08-19T18:51Z", DateUtil.format(odt.withOffsetSameLocal(ZoneOffset.UTC)));
+		final OffsetDateTime lmt = OffsetDateTime.of(ldt, ZoneOffset.ofHoursMinutesSeconds(0, 9, 21));
+		assertEquals(lmt.toString(), DateUtil.format(lmt));
+		assertEquals("1970-01-01T00:00:00Z", DateUtil.format(Instant.EPOCH));
+		final Instant instant = Instant.ofEpochSecond(-1092941466L, 5000);
+		assertEquals(instant.toString(), DateUtil.format(instant));
+		assertEquals(instant, DateUtil.toInstant(DateUtil.format(instant)));
+		assertEquals(LocalDate.of(-5, 1, 1).toString(), DateUtil.format(LocalDate.of(-5, 1, 1)));
+	}
+}
@@ -833,6 +833,12 @@ public class PrepStmtTest {
 			check(stmt, LocalDateTime.class, LocalDateTime.now());
 			check(stmt, OffsetDateTime.class, OffsetDateTime.now());
 			check(stmt, LocalTime.class, LocalTime.now());
+			// stored text is the toString() form
+			stmt.setObject(1, LocalDateTime.of(2020, 1, 1, 10, 0));
+			try (ResultSet rs = stmt.executeQuery()) {
+				assertTrue(rs.next());
+				assertEquals("2020-01-01T10:00", rs.getString(1));
+			}
 		}
 	}
 
@@ -13,8 +13,13 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class ResultSetTest {
@@ -140,4 +145,152 @@ public class ResultSetTest {
 		Timestamp expected = Timestamp.valueOf("2016-01-01 00:00:00");
 		assertEquals(expected, resultSet.getTimestamp(1));
 	}
+
+	@Test
+	public void testColumnTypeSnapshot()
+			throws SQLException {
+		ResultSet resultSet = stat.executeQuery("select id, null from test");
+		assertTrue(resultSet.next());
+		// the INTEGER type is kept after the value has been converted to text
+		assertEquals("1", resultSet.getString(1));
+		assertEquals(1L, resultSet.getLong(1));
+		assertEquals(1, resultSet.getObject(1));
+		assertFalse(resultSet.wasNull());
+		assertEquals(0, resultSet.getInt(2));
+		assertTrue(resultSet.wasNull());
+		assertFalse(resultSet.next());
+	}
+
+	@Test
+	public void testFetchSize()
+			throws SQLException {
+		stat.executeUpdate("insert into test values (2, null, 'baz', 0.5)");
+		stat.executeUpdate("insert into test values (3, x'00', 'qux', 1e20)");
+		stat.setFetchSize(2);
+		ResultSet resultSet = stat.executeQuery("select id, description, some_date from test order by id");
+		assertEquals(2, resultSet.getFetchSize());
+		assertTrue(resultSet.next());
+		assertEquals(1, resultSet.getInt(1));
+		assertEquals("description", resultSet.getString(2));
+		assertFalse(resultSet.isLast());
+		assertTrue(resultSet.next());
+		assertNull(resultSet.getString(2));
+		assertTrue(resultSet.wasNull());
+		assertEquals(0.5, resultSet.getDouble(3), 0.0);
+		assertTrue(resultSet.next());
+		// the statement has been reset: the table can be dropped while the last rows are read
+		try (Statement other = conn.createStatement()) {
+			other.executeUpdate("drop table test");
+		}
+		assertTrue(resultSet.isLast());
+		assertEquals(3L, resultSet.getLong(1));
+		assertArrayEquals(new byte[]{0}, resultSet.getBytes(2));
+		assertEquals("1.0e+20", resultSet.getString(3));
+		assertFalse(resultSet.next());
+		assertTrue(resultSet.isAfterLast());
+	}
+
+	@Test
+	public void testIsLast()
+			throws SQLException {
+		stat.executeUpdate("insert into test values (2, null, 'baz', 0.5)");
+		ResultSet resultSet = stat.executeQuery("select id, description from test order by id");
+		assertFalse(resultSet.isLast());
+		assertTrue(resultSet.next());
+		assertFalse(resultSet.isLast());
+		assertFalse(resultSet.isLast());
+		assertEquals(1, resultSet.getInt(1));
+		assertEquals("description", resultSet.getString(2));
+		assertTrue(resultSet.next());
+		assertTrue(resultSet.isLast());
+		assertEquals(2, resultSet.getInt(1));
+		assertNull(resultSet.getString(2));
+		assertTrue(resultSet.wasNull());
+		assertFalse(resultSet.next());
+		assertFalse(resultSet.isLast());
+		assertTrue(resultSet.isAfterLast());
+	}
+
+	@Test
+	public void testScrollInsensitive()
+			throws SQLException {
+		stat.executeUpdate("insert into test values (2, null, 'baz', 0.5)");
+		stat.executeUpdate("insert into test values (3, x'00', 'qux', 1e20)");
+		try (Statement scroll = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY)) {
+			ResultSet resultSet = scroll.executeQuery("select id, description from test order by id");
+			assertEquals(ResultSet.TYPE_SCROLL_INSENSITIVE, resultSet.getType());
+			// rows are materialized: later changes are not visible
+			stat.executeUpdate("delete from test");
+			assertTrue(resultSet.last());
+			assertEquals(3, resultSet.getRow());
+			assertArrayEquals(new byte[]{0}, resultSet.getBytes(2));
+			assertTrue(resultSet.previous());
+			assertNull(resultSet.getString(2));
+			assertTrue(resultSet.wasNull());
+			assertTrue(resultSet.absolute(-3));
+			assertTrue(resultSet.isFirst());
+			assertEquals("description", resultSet.getString(2));
+			assertTrue(resultSet.relative(2));
+			assertTrue(resultSet.isLast());
+			assertFalse(resultSet.next());
+			assertTrue(resultSet.isAfterLast());
+			assertTrue(resultSet.relative(-1));
+			assertEquals(3, resultSet.getInt(1));
+			assertFalse(resultSet.absolute(0));
+			assertTrue(resultSet.isBeforeFirst());
+			assertTrue(resultSet.next());
+			assertEquals(1, resultSet.getInt(1));
+			resultSet.afterLast();
+			assertFalse(resultSet.absolute(4));
+			assertTrue(resultSet.isAfterLast());
+		}
+	}
+
+	@Test
+	public void testRowStoreSpill()
+			throws SQLException {
+		final org.sqlite.Conn c = conn.unwrap(org.sqlite.Conn.class);
+		try (org.sqlite.Stmt s = c.prepare("with recursive n(i) as (select 1 union all select i + 1 from n where i < 100) select i, 'row ' || i, i / 2.0 from n", false);
+				RowStore store = new RowStore(s.getColumnCount(), 256)) {
+			while (s.step(0)) {
+				store.add(s);
+			}
+			assertEquals(100, store.size());
+			assertTrue(store.isSpilled());
+			final RowBuffer buffer = new RowBuffer(s.getColumnCount(), 1);
+			for (int i : new int[]{99, 0, 50, 3}) {
+				store.load(i, buffer);
+				assertEquals(i + 1, buffer.getColumnLong(0));
+				assertEquals("row " + (i + 1), buffer.getColumnText(1));
+				assertEquals((i + 1) / 2.0, buffer.getColumnDouble(2), 0.0);
+			}
+		} catch (java.io.IOException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	@Test
+	public void testFetchSizeConversions()
+			throws SQLException {
+		final String sql = "select column1 from (values (0.1), (1.0 / 3), (-2.5), (100.0), (1e14), (1e15), (-123456789012345678.0), " +
+				"(1e-4), (1e-5), (1.7976931348623157e308), (4.9e-324), (9.999999999999995), (0.5), (-0.0), (9e999), (-9e999), " +
+				"(9007199254740993.0), (1e100), (0.000123456789012345678), (42), (-7), ('t\u00e9xt'), (x'41004200'), (x''))";
+		final List<String> texts = new ArrayList<>();
+		final List<byte[]> blobs = new ArrayList<>();
+		try (ResultSet rs = stat.executeQuery(sql)) {
+			while (rs.next()) {
+				texts.add(rs.getString(1));
+				blobs.add(rs.getBytes(1));
+			}
+		}
+		stat.setFetchSize(100);
+		try (ResultSet rs = stat.executeQuery(sql)) {
+			for (int i = 0; i < texts.size(); i++) {
+				assertTrue(rs.next());
+				assertEquals(texts.get(i), rs.getString(1));
+				assertArrayEquals(blobs.get(i), rs.getBytes(1));
+			}
+			assertFalse(rs.next());
+		}
+	}
 }
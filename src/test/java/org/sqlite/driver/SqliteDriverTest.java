@@ -126,7 +126,7 @@ public class SqliteDriverTest {
 
 	@Test
 	public void testProperties() throws Exception {
-		assertEquals(10, driver.getPropertyInfo("jdbc:sqlite::memory:", new Properties()).length);
+		assertEquals(11, driver.getPropertyInfo("jdbc:sqlite::memory:", new Properties()).length);
 		//assertArrayEquals(new DriverPropertyInfo[10], driver.getPropertyInfo("jdbc:sqlite::memory:", new Properties()));
 	}
 }
@@ -275,7 +275,9 @@ public class SqliteStatementTest extends SqliteTestHelper {
 		try (Statement stmt = conn.createStatement()) {
 			assertEquals(1, stmt.getFetchSize());
 			stmt.setFetchSize(10);
-			assertEquals(1, stmt.getFetchSize());
+			assertEquals(10, stmt.getFetchSize());
+			stmt.setFetchSize(0);
+			assertEquals(10, stmt.getFetchSize());
 		}
 	}
 